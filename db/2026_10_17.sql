@@ -0,0 +1,4 @@
+-- 按 deviceId+roleId+createTime 更新音频路径、查询历史消息，组合索引的前缀可以替代原 deviceId 索引
+ALTER TABLE `xiaozhi`.`sys_message`
+DROP INDEX `deviceId`,
+ADD INDEX `deviceId_roleId_createTime` (`deviceId`, `roleId`, `createTime`);
@@ -90,7 +90,7 @@ CREATE TABLE `xiaozhi`.`sys_message` (
   `state` enum('1','0') CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci DEFAULT '1' COMMENT '状态：1-有效，0-删除',
   `createTime` timestamp NULL DEFAULT CURRENT_TIMESTAMP COMMENT '消息发送时间',
   PRIMARY KEY (`messageId`),
-  KEY `deviceId` (`deviceId`),
+  KEY `deviceId_roleId_createTime` (`deviceId`, `roleId`, `createTime`),
   KEY `sessionId` (`sessionId`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='人与AI对话消息表';
 
@@ -0,0 +1,29 @@
+-- 压测数据：提供商为 loadtest 的模拟STT/LLM/TTS配置、使用它们的角色，以及绑定到该角色的设备 loadtest-00001 ~ loadtest-05000
+-- 模拟设备见 src/test/com/xiaozhi/loadtest/SimulatedDevice.java，压测入口为同目录的 LoadTest.java；可重复执行，会先清理上次的压测数据
+SET NAMES utf8mb4;
+
+DELETE FROM `xiaozhi`.`sys_device` WHERE `deviceId` LIKE 'loadtest-%';
+DELETE FROM `xiaozhi`.`sys_message` WHERE `deviceId` LIKE 'loadtest-%';
+DELETE FROM `xiaozhi`.`sys_role` WHERE `roleName` = '压测角色';
+DELETE FROM `xiaozhi`.`sys_config` WHERE `provider` = 'loadtest';
+
+INSERT INTO `xiaozhi`.`sys_config` (`userId`, `configType`, `provider`, `configName`, `configDesc`) VALUES
+(1, 'stt', 'loadtest', 'loadtest', '压测用的模拟STT');
+SET @sttId = LAST_INSERT_ID();
+
+INSERT INTO `xiaozhi`.`sys_config` (`userId`, `configType`, `provider`, `configName`, `configDesc`) VALUES
+(1, 'tts', 'loadtest', 'loadtest', '压测用的模拟TTS');
+SET @ttsId = LAST_INSERT_ID();
+
+INSERT INTO `xiaozhi`.`sys_config` (`userId`, `configType`, `modelType`, `provider`, `configName`, `configDesc`) VALUES
+(1, 'llm', 'chat', 'loadtest', 'loadtest', '压测用的模拟LLM');
+SET @modelId = LAST_INSERT_ID();
+
+INSERT INTO `xiaozhi`.`sys_role` (`roleName`, `roleDesc`, `ttsId`, `modelId`, `sttId`, `voiceName`, `userId`) VALUES
+('压测角色', '你是一个压测用的角色', @ttsId, @modelId, @sttId, 'loadtest', 1);
+SET @roleId = LAST_INSERT_ID();
+
+SET SESSION cte_max_recursion_depth = 5000;
+INSERT INTO `xiaozhi`.`sys_device` (`deviceId`, `deviceName`, `roleId`, `type`, `state`, `userId`)
+WITH RECURSIVE seq (n) AS (SELECT 1 UNION ALL SELECT n + 1 FROM seq WHERE n < 5000)
+SELECT CONCAT('loadtest-', LPAD(n, 5, '0')), CONCAT('压测设备', n), @roleId, 'loadtest', '0', 1 FROM seq;
@@ -0,0 +1,174 @@
+package com.xiaozhi.common.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.function.BiConsumer;
+
+/**
+ * 两级缓存
+ * 进程内有界LRU + TTL 的一级缓存，放在Redis缓存之前，
+ * 热点数据（如音频链路上逐帧读取的角色、配置）命中时不产生任何远程调用。
+ * 写入和删除会通过 invalidator 广播给其他节点，由其他节点清除各自的一级缓存；
+ * 未命中后回填（@Cacheable 在同一线程中先 get 未命中、再 put 同一个key）不是修改，不广播。
+ *
+ * @author Joey
+ */
+public class NearCache implements Cache {
+
+    private final Cache remote;
+    private final long ttlMillis;
+    private final BiConsumer<String, Object> invalidator;
+    private final Map<String, Entry> local;
+    // 当前线程最近一次未命中的key，随后对同一key的put视为回填
+    private final ThreadLocal<String> missedKey = new ThreadLocal<>();
+
+    private record Entry(Object value, long expireAt) {
+    }
+
+    /**
+     * @param remote      二级缓存（Redis）
+     * @param maxSize     一级缓存最大条目数
+     * @param ttlMillis   一级缓存过期时间（毫秒）
+     * @param invalidator 失效广播，参数为缓存名和key（key为null表示清空整个缓存）
+     */
+    public NearCache(Cache remote, int maxSize, long ttlMillis, BiConsumer<String, Object> invalidator) {
+        this.remote = remote;
+        this.ttlMillis = ttlMillis;
+        this.invalidator = invalidator;
+        this.local = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    @Override
+    public String getName() {
+        return remote.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return remote.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        String localKey = localKey(key);
+        missedKey.remove();
+        synchronized (local) {
+            Entry entry = local.get(localKey);
+            if (entry != null) {
+                if (entry.expireAt > System.currentTimeMillis()) {
+                    return new SimpleValueWrapper(entry.value);
+                }
+                local.remove(localKey);
+            }
+        }
+        ValueWrapper wrapper = remote.get(key);
+        if (wrapper != null) {
+            putLocal(localKey, wrapper.get());
+        } else {
+            missedKey.set(localKey);
+        }
+        return wrapper;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper == null) {
+            return null;
+        }
+        Object value = wrapper.get();
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("缓存值类型不匹配: " + type.getName());
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null) {
+            return (T) wrapper.get();
+        }
+        T value = remote.get(key, valueLoader);
+        putLocal(localKey(key), value);
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        String localKey = localKey(key);
+        boolean fill = localKey.equals(missedKey.get());
+        missedKey.remove();
+        remote.put(key, value);
+        putLocal(localKey, value);
+        if (!fill) {
+            invalidator.accept(getName(), key);
+        }
+    }
+
+    @Override
+    public void evict(Object key) {
+        remote.evict(key);
+        evictLocal(key);
+        invalidator.accept(getName(), key);
+    }
+
+    @Override
+    public void clear() {
+        remote.clear();
+        clearLocal();
+        invalidator.accept(getName(), null);
+    }
+
+    /**
+     * 仅清除本节点一级缓存中的条目（收到其他节点的失效广播时调用）
+     */
+    public void evictLocal(Object key) {
+        synchronized (local) {
+            local.remove(localKey(key));
+        }
+    }
+
+    /**
+     * 仅清空本节点一级缓存
+     */
+    public void clearLocal() {
+        synchronized (local) {
+            local.clear();
+        }
+    }
+
+    /**
+     * 一级缓存当前条目数
+     */
+    public int localSize() {
+        synchronized (local) {
+            return local.size();
+        }
+    }
+
+    private void putLocal(String localKey, Object value) {
+        synchronized (local) {
+            local.put(localKey, new Entry(value, System.currentTimeMillis() + ttlMillis));
+        }
+    }
+
+    /**
+     * 与Redis缓存的key转换保持一致：Redis中key最终都是字符串，
+     * 这样失效广播只需要传递字符串形式的key
+     */
+    private static String localKey(Object key) {
+        return String.valueOf(key);
+    }
+}
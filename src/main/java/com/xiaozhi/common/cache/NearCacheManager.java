@@ -0,0 +1,129 @@
+package com.xiaozhi.common.cache;
+
+import com.xiaozhi.utils.JsonUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * 两级缓存管理器
+ * 对指定名称的缓存在Redis缓存之前加一层进程内缓存（{@link NearCache}），
+ * 其余缓存直接使用Redis缓存。
+ * 节点间通过Redis发布订阅同步失效：本节点写入/删除时发布消息，其他节点收到后清除一级缓存。
+ *
+ * @author Joey
+ */
+public class NearCacheManager implements CacheManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(NearCacheManager.class);
+
+    /**
+     * 一级缓存失效广播频道
+     */
+    public static final String INVALIDATION_CHANNEL = "XiaoZhi:cache:invalidate";
+
+    private final CacheManager remote;
+    private final Set<String> nearCacheNames;
+    private final int maxSize;
+    private final long ttlMillis;
+    private final Consumer<String> publisher;
+
+    // 节点标识，用于忽略自己发出的失效消息
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final ConcurrentMap<String, Cache> caches = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, NearCache> nearCaches = new ConcurrentHashMap<>();
+
+    /**
+     * 失效消息
+     *
+     * @param node  发送节点
+     * @param cache 缓存名称
+     * @param key   缓存key，为null表示清空整个缓存
+     */
+    public record Invalidation(String node, String cache, String key) {
+    }
+
+    /**
+     * @param remote         Redis缓存管理器（不应开启事务感知，事务感知由本类统一处理）
+     * @param nearCacheNames 需要一级缓存的缓存名称
+     * @param maxSize        每个一级缓存的最大条目数
+     * @param ttlMillis      一级缓存过期时间（毫秒），作为丢失失效消息时的兜底
+     * @param publisher      失效消息发布函数
+     */
+    public NearCacheManager(CacheManager remote, Set<String> nearCacheNames, int maxSize, long ttlMillis,
+                            Consumer<String> publisher) {
+        this.remote = remote;
+        this.nearCacheNames = nearCacheNames;
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.publisher = publisher;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, n -> {
+            Cache cache = remote.getCache(n);
+            if (cache == null) {
+                return null;
+            }
+            if (nearCacheNames.contains(n)) {
+                NearCache nearCache = new NearCache(cache, maxSize, ttlMillis, this::publish);
+                nearCaches.put(n, nearCache);
+                cache = nearCache;
+            }
+            // 与原RedisCacheManager的transactionAware保持一致：事务提交后才写缓存
+            return new TransactionAwareCacheDecorator(cache);
+        });
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return remote.getCacheNames();
+    }
+
+    /**
+     * 获取一级缓存，未启用一级缓存的缓存名返回null
+     */
+    public NearCache getNearCache(String name) {
+        return nearCaches.get(name);
+    }
+
+    /**
+     * 处理来自Redis频道的失效消息
+     */
+    public void onInvalidation(String message) {
+        Invalidation invalidation = JsonUtil.fromJson(message, Invalidation.class);
+        if (invalidation == null || nodeId.equals(invalidation.node())) {
+            return;
+        }
+        NearCache nearCache = nearCaches.get(invalidation.cache());
+        if (nearCache == null) {
+            return;
+        }
+        if (invalidation.key() == null) {
+            nearCache.clearLocal();
+        } else {
+            nearCache.evictLocal(invalidation.key());
+        }
+        logger.debug("一级缓存失效: {}::{}", invalidation.cache(), invalidation.key());
+    }
+
+    private void publish(String cacheName, Object key) {
+        try {
+            publisher.accept(JsonUtil.toJson(new Invalidation(nodeId, cacheName, key == null ? null : String.valueOf(key))));
+        } catch (Exception e) {
+            // 发布失败时依赖一级缓存TTL兜底，不影响本次写操作
+            logger.warn("发布缓存失效消息失败: {}::{}", cacheName, key, e);
+        }
+    }
+}
@@ -4,6 +4,8 @@ import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.xiaozhi.common.cache.NearCacheManager;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
@@ -11,13 +13,18 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ThreadLocalRandom;
 
 /**
@@ -30,11 +37,26 @@ import java.util.concurrent.ThreadLocalRandom;
 @EnableCaching
 public class RedisCacheConfig {
 
+    /**
+     * 音频链路上逐帧读取的缓存，启用进程内一级缓存
+     */
+    private static final Set<String> NEAR_CACHE_NAMES = Set.of("XiaoZhi:SysRole", "XiaoZhi:SysConfig");
+
+    @Value("${cache.local.enabled:true}")
+    private boolean localCacheEnabled;
+
+    @Value("${cache.local.max-size:1000}")
+    private int localCacheMaxSize;
+
+    @Value("${cache.local.ttl-seconds:60}")
+    private int localCacheTtlSeconds;
+
     /**
      * 自定义CacheManager
      * - 支持空值缓存(防穿透)
      * - 随机TTL(防雪崩)
      * - 不同业务不同过期时间
+     * - 角色、配置缓存前置进程内一级缓存，通过Redis发布订阅失效
      */
     @Bean
     public CacheManager cacheManager(RedisConnectionFactory factory) {
@@ -90,11 +112,41 @@ public class RedisCacheConfig {
                 .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
                 .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(serializer)));
 
-        return RedisCacheManager.builder(factory)
+        if (!localCacheEnabled) {
+            return RedisCacheManager.builder(factory)
+                .cacheDefaults(defaultConfig)
+                .withInitialCacheConfigurations(cacheConfigurations)
+                .transactionAware()  // 支持事务
+                .build();
+        }
+
+        // 事务感知由NearCacheManager统一包装，保证一级缓存同样在事务提交后才写入
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(factory)
             .cacheDefaults(defaultConfig)
             .withInitialCacheConfigurations(cacheConfigurations)
-            .transactionAware()  // 支持事务
             .build();
+        redisCacheManager.afterPropertiesSet();
+
+        StringRedisTemplate redisTemplate = new StringRedisTemplate(factory);
+        return new NearCacheManager(redisCacheManager, NEAR_CACHE_NAMES, localCacheMaxSize,
+            Duration.ofSeconds(localCacheTtlSeconds).toMillis(),
+            message -> redisTemplate.convertAndSend(NearCacheManager.INVALIDATION_CHANNEL, message));
+    }
+
+    /**
+     * 订阅一级缓存失效频道
+     */
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationListenerContainer(RedisConnectionFactory factory,
+                                                                           CacheManager cacheManager) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(factory);
+        if (cacheManager instanceof NearCacheManager nearCacheManager) {
+            container.addMessageListener(
+                (message, pattern) -> nearCacheManager.onInvalidation(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(NearCacheManager.INVALIDATION_CHANNEL));
+        }
+        return container;
     }
 
     /**
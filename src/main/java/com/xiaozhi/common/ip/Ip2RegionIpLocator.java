@@ -0,0 +1,241 @@
+package com.xiaozhi.common.ip;
+
+import com.xiaozhi.utils.CmsUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于本地 ip2region xdb 数据文件的IP所在地查询。
+ * 启动时把整个数据文件读入内存，查询只做内存中的二分查找，不访问网络；最近查询的结果放在LRU缓存中。
+ * 数据文件不存在或查不到时，可选择回退到 {@link CmsUtils#getIPInfoByAddress} 在线查询（默认关闭，在线服务有频率限制）；
+ * 回退结果和查不到的结果同样缓存，同一IP不会反复在线查询。
+ * <p>
+ * xdb 文件结构（IPv4，小端序）：
+ * - 256字节文件头
+ * - 向量索引：按IP前两段分为 256*256 格，每格8字节，为该段第一个和最后一个段索引的位置
+ * - 段索引：每条14字节，起始IP(4) 结束IP(4) 地区长度(2) 地区位置(4)
+ * - 地区：UTF-8，如"中国|0|广东省|深圳市|电信"，依次为 国家|区域|省份|城市|运营商，0表示空
+ */
+@Component
+public class Ip2RegionIpLocator implements IpLocator {
+    private static final Logger logger = LoggerFactory.getLogger(Ip2RegionIpLocator.class);
+
+    private static final int HEADER_LENGTH = 256;
+    private static final int VECTOR_INDEX_COLS = 256;
+    private static final int VECTOR_INDEX_SIZE = 8;
+    private static final int SEGMENT_INDEX_SIZE = 14;
+
+    /**
+     * 查询统计
+     *
+     * @param entries 缓存的IP数
+     * @param hits    缓存命中次数
+     * @param misses  未命中（查询数据文件或在线查询）次数
+     */
+    public record Stats(int entries, long hits, long misses) {
+    }
+
+    // 整个数据文件，未加载时为null
+    private final ByteBuffer db;
+    private final int cacheSize;
+    private final boolean onlineFallback;
+
+    // 缓存中表示查不到所在地
+    private static final String UNKNOWN = "";
+
+    // 访问顺序的LinkedHashMap，队首为最久未使用，由this加锁
+    private final LinkedHashMap<String, String> cache = new LinkedHashMap<>(256, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param dbPath         xdb 数据文件路径
+     * @param cacheSize      缓存的IP数
+     * @param onlineFallback 数据文件中查不到时是否在线查询
+     */
+    public Ip2RegionIpLocator(@Value("${ip.locator.db-path:models/ip2region.xdb}") String dbPath,
+                              @Value("${ip.locator.cache-size:10000}") int cacheSize,
+                              @Value("${ip.locator.online-fallback:false}") boolean onlineFallback) {
+        this.db = load(Path.of(dbPath));
+        this.cacheSize = Math.max(1, cacheSize);
+        this.onlineFallback = onlineFallback;
+    }
+
+    @Override
+    public String locate(String ip) {
+        long address = parseIpv4(ip);
+        // 内网、回环地址没有所在地
+        if (ip == null || ip.isEmpty() || (address >= 0 && isPrivate(address))) {
+            return null;
+        }
+        synchronized (this) {
+            String location = cache.get(ip);
+            if (location != null) {
+                hits.incrementAndGet();
+                return UNKNOWN.equals(location) ? null : location;
+            }
+        }
+        misses.incrementAndGet();
+        String location = address >= 0 ? search(address) : null;
+        if (location == null && onlineFallback) {
+            location = locateOnline(ip);
+        }
+        synchronized (this) {
+            cache.put(ip, location != null ? location : UNKNOWN);
+            Iterator<String> iterator = cache.values().iterator();
+            while (cache.size() > cacheSize && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+        return location;
+    }
+
+    public boolean isLoaded() {
+        return db != null;
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(cache.size(), hits.get(), misses.get());
+    }
+
+    /**
+     * 在数据文件中查询
+     *
+     * @param ip 无符号32位IPv4地址
+     * @return 数据文件未加载或查不到时返回null
+     */
+    private String search(long ip) {
+        if (db == null) {
+            return null;
+        }
+        int il0 = (int) (ip >>> 24) & 0xFF;
+        int il1 = (int) (ip >>> 16) & 0xFF;
+        int index = HEADER_LENGTH + il0 * VECTOR_INDEX_COLS * VECTOR_INDEX_SIZE + il1 * VECTOR_INDEX_SIZE;
+        long startPtr = Integer.toUnsignedLong(db.getInt(index));
+        long endPtr = Integer.toUnsignedLong(db.getInt(index + 4));
+        // 数据文件未覆盖该段
+        if (startPtr == 0) {
+            return null;
+        }
+        long low = 0;
+        long high = (endPtr - startPtr) / SEGMENT_INDEX_SIZE;
+        while (low <= high) {
+            long mid = (low + high) >>> 1;
+            int pos = (int) (startPtr + mid * SEGMENT_INDEX_SIZE);
+            if (ip < Integer.toUnsignedLong(db.getInt(pos))) {
+                high = mid - 1;
+            } else if (ip > Integer.toUnsignedLong(db.getInt(pos + 4))) {
+                low = mid + 1;
+            } else {
+                int length = Short.toUnsignedInt(db.getShort(pos + 8));
+                int dataPtr = db.getInt(pos + 10);
+                byte[] region = new byte[length];
+                db.get(dataPtr, region);
+                return toLocation(new String(region, StandardCharsets.UTF_8));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 把"国家|区域|省份|城市|运营商"转为"国家 省份 城市"
+     */
+    static String toLocation(String region) {
+        String[] fields = region.split("\\|");
+        StringJoiner location = new StringJoiner(" ");
+        String previous = null;
+        for (int i : new int[]{0, 2, 3}) {
+            if (i >= fields.length) {
+                break;
+            }
+            String field = fields[i].trim();
+            if (field.isEmpty() || "0".equals(field) || field.equals(previous)) {
+                continue;
+            }
+            location.add(field);
+            previous = field;
+        }
+        return location.length() == 0 ? null : location.toString();
+    }
+
+    private static String locateOnline(String ip) {
+        CmsUtils.IPInfo ipInfo = CmsUtils.getIPInfoByAddress(ip);
+        if (ipInfo == null || ipInfo.getLocation().isEmpty() || "未知位置".equals(ipInfo.getLocation())) {
+            return null;
+        }
+        return ipInfo.getLocation();
+    }
+
+    /**
+     * @return 无符号32位地址，不是IPv4地址时返回-1
+     */
+    static long parseIpv4(String ip) {
+        if (ip == null || ip.isEmpty()) {
+            return -1;
+        }
+        long address = 0;
+        int part = -1;
+        int dots = 0;
+        for (int i = 0; i < ip.length(); i++) {
+            char c = ip.charAt(i);
+            if (c >= '0' && c <= '9') {
+                part = part < 0 ? c - '0' : part * 10 + (c - '0');
+                if (part > 255) {
+                    return -1;
+                }
+            } else if (c == '.' && part >= 0 && dots < 3) {
+                address = address << 8 | part;
+                part = -1;
+                dots++;
+            } else {
+                return -1;
+            }
+        }
+        if (part < 0 || dots != 3) {
+            return -1;
+        }
+        return address << 8 | part;
+    }
+
+    private static boolean isPrivate(long ip) {
+        int first = (int) (ip >>> 24);
+        int second = (int) (ip >>> 16) & 0xFF;
+        return first == 10 || first == 127 || first == 0
+                || (first == 172 && second >= 16 && second <= 31)
+                || (first == 192 && second == 168);
+    }
+
+    private static ByteBuffer load(Path path) {
+        if (!Files.isRegularFile(path)) {
+            logger.warn("IP数据文件不存在: {}", path.toAbsolutePath());
+            return null;
+        }
+        try {
+            byte[] bytes = Files.readAllBytes(path);
+            if (bytes.length < HEADER_LENGTH + VECTOR_INDEX_COLS * VECTOR_INDEX_COLS * VECTOR_INDEX_SIZE) {
+                logger.warn("IP数据文件格式不正确: {}", path.toAbsolutePath());
+                return null;
+            }
+            logger.info("已加载IP数据文件: {}，{} 字节", path.toAbsolutePath(), bytes.length);
+            return ByteBuffer.wrap(bytes).asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+        } catch (IOException e) {
+            logger.warn("读取IP数据文件失败: {}", path.toAbsolutePath(), e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.xiaozhi.common.ip;
+
+/**
+ * IP地理位置查询
+ */
+public interface IpLocator {
+
+    /**
+     * 查询IP所在地
+     *
+     * @param ip IP地址
+     * @return 如"中国 广东省 深圳市"，与设备表的location格式一致；内网地址或查不到时返回null
+     */
+    String locate(String ip);
+}
@@ -4,6 +4,7 @@ import com.xiaozhi.communication.domain.iot.IotDescriptor;
 import com.xiaozhi.dialogue.llm.memory.Conversation;
 import com.xiaozhi.dialogue.llm.tool.ToolsSessionHolder;
 import com.xiaozhi.dialogue.llm.tool.mcp.device.DeviceMcpHolder;
+import com.xiaozhi.dialogue.metrics.TurnTrace;
 import com.xiaozhi.dialogue.service.Player;
 import com.xiaozhi.dialogue.service.Synthesizer;
 import com.xiaozhi.entity.SysDevice;
@@ -93,6 +94,10 @@ public abstract class ChatSession {
      * 当前session是否支持function_call
      */
     protected boolean supportFunctionCall = true;
+    /**
+     * 当前一轮对话的各阶段耗时追踪，检测到用户开始说话时替换
+     */
+    protected volatile TurnTrace turnTrace = TurnTrace.NOOP;
 
     /**
      * 最近一次对话的模型响应时间及TTS响应时间
@@ -10,6 +10,7 @@ import com.xiaozhi.dialogue.llm.tool.ToolsGlobalRegistry;
 import com.xiaozhi.dialogue.llm.tool.ToolsSessionHolder;
 import com.xiaozhi.dialogue.service.*;
 import com.xiaozhi.dialogue.stt.factory.SttServiceFactory;
+import com.xiaozhi.dialogue.tts.TtsCache;
 import com.xiaozhi.dialogue.tts.factory.TtsServiceFactory;
 import com.xiaozhi.entity.SysConfig;
 import com.xiaozhi.entity.SysDevice;
@@ -34,7 +35,6 @@ import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 
 @Component
@@ -86,6 +86,12 @@ public class MessageHandler {
     @Resource
     private SysMessageService sysMessageService;
 
+    @Resource
+    private FramePacer framePacer;
+
+    @Resource
+    private TtsCache ttsCache;
+
     // 用于存储设备ID和验证码生成状态的映射
     private final Map<String, Boolean> captchaGenerationInProgress = new ConcurrentHashMap<>();
 
@@ -342,14 +348,12 @@ public class MessageHandler {
         Thread.startVirtualThread(() -> {
             try {
                 // 对于未绑定设备， 播放器是一次性用途，不需要绑定到ChatSession。
-                Player player = new FilePlayer(chatSession, messageService, sessionManager, sysMessageService);
+                Player player = new FilePlayer(chatSession, messageService, sessionManager, sysMessageService, framePacer);
                 // 设备已注册但未配置模型
                 if (device.getDeviceName() != null && device.getRoleId() == null) {
                     String message = "设备未配置角色，请到角色配置页面完成配置后开始对话";
 
-                    String audioFilePath = ttsFactory.getDefaultTtsService().textToSpeech(message);
-
-                    player.append(new Sentence(message, audioFilePath));
+                    player.append(cachedSentence(message, message));
                     player.play();
 
                     // 延迟一段时间后再解除标记
@@ -365,19 +369,18 @@ public class MessageHandler {
                 // 设备未命名，生成验证码
                 // 生成新验证码
                 SysDevice codeResult = deviceService.generateCode(device);
-                String audioFilePath;
+                String codeMessage = "请到设备管理页面添加设备，输入验证码" + codeResult.getCode();
+                // 验证码有效期内设备反复重连时，提示语音从TTS缓存中取
+                TtsCache.Entry codeSpeech = ttsCache.synthesize(ttsFactory.getDefaultTtsService(), codeMessage);
                 if (!StringUtils.hasText(codeResult.getAudioPath())) {
-                    String codeMessage = "请到设备管理页面添加设备，输入验证码" + codeResult.getCode();
-                    audioFilePath = ttsFactory.getDefaultTtsService().textToSpeech(codeMessage);
                     codeResult.setDeviceId(deviceId);
                     codeResult.setSessionId(sessionId);
-                    codeResult.setAudioPath(audioFilePath);
+                    // 缓存文件随时可能被淘汰，数据库中记录导出的文件
+                    codeResult.setAudioPath(ttsCache.export(codeSpeech).toString());
                     deviceService.updateCode(codeResult);
-                } else {
-                    audioFilePath = codeResult.getAudioPath();
                 }
 
-                player.append(new Sentence(codeResult.getCode(), codeResult.getAudioPath()));
+                player.append(cachedSentence(codeResult.getCode(), codeSpeech));
                 player.play();
                 // 延迟一段时间后再解除标记
                 try {
@@ -397,6 +400,21 @@ public class MessageHandler {
         return false;
     }
 
+    /**
+     * 用默认TTS合成提示语，结果经过TTS缓存，Player直接下发缓存的Opus帧
+     */
+    private Sentence cachedSentence(String text, String speech) throws Exception {
+        return cachedSentence(text, ttsCache.synthesize(ttsFactory.getDefaultTtsService(), speech));
+    }
+
+    private Sentence cachedSentence(String text, TtsCache.Entry cached) {
+        Sentence sentence = new Sentence(text);
+        sentence.setOpusFrames(cached.frames());
+        // 提示语不合并到对话音频，不需要音频文件
+        sentence.setShouldMerge(false);
+        return sentence;
+    }
+
     private void handleListenMessage(ChatSession chatSession, ListenMessage message) {
         String sessionId = chatSession.getSessionId();
         logger.info("收到listen消息 - SessionId: {}, State: {}, Mode: {}", sessionId, message.getState(), message.getMode());
@@ -510,11 +528,8 @@ public class MessageHandler {
     }
 
     private void handleDeviceMcpMessage(ChatSession chatSession, DeviceMcpMessage message) {
-        Long mcpRequestId = message.getPayload().getId();
-        CompletableFuture<DeviceMcpMessage> future = chatSession.getDeviceMcpHolder().getMcpPendingRequests().get(mcpRequestId);
-        if(future != null){
-            future.complete(message);
-            chatSession.getDeviceMcpHolder().getMcpPendingRequests().remove(mcpRequestId);
+        if (!chatSession.getDeviceMcpHolder().getMcpPendingRequests().complete(message)) {
+            logger.debug("SessionId: {}, 收到没有对应请求的MCP响应（可能已超时）: {}", chatSession.getSessionId(), message);
         }
     }
 
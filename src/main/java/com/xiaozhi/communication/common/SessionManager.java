@@ -44,6 +44,9 @@ public class SessionManager {
     // 用于存储所有连接的会话信息
     private final ConcurrentHashMap<String, ChatSession> sessions = new ConcurrentHashMap<>();
 
+    // 设备ID到会话的索引，在注册设备和移除会话时维护；同一设备重连时指向最新的会话
+    private final ConcurrentHashMap<String, ChatSession> deviceSessions = new ConcurrentHashMap<>();
+
     // 存储验证码生成状态
     private final ConcurrentHashMap<String, Boolean> captchaState = new ConcurrentHashMap<>();
 
@@ -63,6 +66,9 @@ public class SessionManager {
     @Value("${inactive.timeout.seconds:20}")
     private int inactiveTimeOutSeconds;
 
+    // 不活跃会话的超时时间轮，每秒推进一格
+    private volatile SessionTimeoutWheel timeoutWheel;
+
     private DialogueService getDialogueService() {
         return applicationContext.getBean(DialogueService.class);
     }
@@ -87,8 +93,12 @@ public class SessionManager {
                 }
             }, 1, TimeUnit.SECONDS);
         
-            // 定期检查不活跃的会话
-            scheduler.scheduleAtFixedRate(this::checkInactiveSessions, 10, 10, TimeUnit.SECONDS);
+            // 定期检查不活跃的会话，每秒只处理到期的时间轮槽
+            SessionTimeoutWheel wheel = new SessionTimeoutWheel(1000, 64,
+                    TimeUnit.SECONDS.toMillis(inactiveTimeOutSeconds), this::onSessionTimeout);
+            sessions.values().stream().filter(session -> session instanceof WebSocketSession).forEach(wheel::add);
+            timeoutWheel = wheel;
+            scheduler.scheduleAtFixedRate(this::checkInactiveSessions, 1, 1, TimeUnit.SECONDS);
             logger.info("不活跃会话检查任务已启动，超时时间: {}秒", inactiveTimeOutSeconds);
         }
     }
@@ -113,25 +123,35 @@ public class SessionManager {
 
     /**
      * 检查不活跃的会话并关闭它们
-     * 使用虚拟线程实现异步处理
+     * 只检查时间轮中到期的会话，不再遍历全部会话
      */
     private void checkInactiveSessions() {
+        SessionTimeoutWheel wheel = timeoutWheel;
+        if (wheel == null) {
+            return;
+        }
+        try {
+            wheel.advance(System.currentTimeMillis());
+        } catch (Exception e) {
+            logger.error("检查不活跃会话失败", e);
+        }
+    }
+
+    /**
+     * 会话超时，发送超时提示
+     * 使用虚拟线程实现异步处理
+     */
+    private void onSessionTimeout(ChatSession session) {
+        Instant lastActivity = session.getLastActivityTime();
+        if (lastActivity == null) {
+            return;
+        }
+        Duration inactiveDuration = Duration.between(lastActivity, Instant.now());
         Thread.startVirtualThread(() -> {
-            Instant now = Instant.now();
-            sessions.values().forEach(session -> {
-                if(session instanceof  WebSocketSession) {
-                    Instant lastActivity = session.getLastActivityTime();
-                    if (lastActivity != null) {
-                        Duration inactiveDuration = Duration.between(lastActivity, now);
-                        if (inactiveDuration.getSeconds() > inactiveTimeOutSeconds) {
-                            logger.info("会话 {} 已经 {} 秒没有有效活动，发送超时提示并自动关闭",
-                                    session.getSessionId(), inactiveDuration.getSeconds());
-                            DialogueService dialogueService = getDialogueService();
-                            dialogueService.sendTimeoutMessage(session);
-                        }
-                    }
-                }
-            });
+            logger.info("会话 {} 已经 {} 秒没有有效活动，发送超时提示并自动关闭",
+                    session.getSessionId(), inactiveDuration.getSeconds());
+            DialogueService dialogueService = getDialogueService();
+            dialogueService.sendTimeoutMessage(session);
         });
     }
 
@@ -156,6 +176,10 @@ public class SessionManager {
      */
     public void registerSession(String sessionId, ChatSession chatSession) {
         sessions.put(sessionId, chatSession);
+        SessionTimeoutWheel wheel = timeoutWheel;
+        if (wheel != null && chatSession instanceof WebSocketSession) {
+            wheel.add(chatSession);
+        }
         logger.info("会话已注册 - SessionId: {}  SessionType: {}", sessionId, chatSession.getClass().getSimpleName());
         applicationContext.publishEvent(new ChatSessionOpenEvent(chatSession));
     }
@@ -166,7 +190,19 @@ public class SessionManager {
      * @param sessionId 会话ID
      */
     public void removeSession(String sessionId){
-        sessions.remove(sessionId);
+        ChatSession chatSession = sessions.remove(sessionId);
+        if (chatSession == null) {
+            return;
+        }
+        SysDevice device = chatSession.getSysDevice();
+        if (device != null && device.getDeviceId() != null) {
+            // 设备可能已经重连，只移除仍指向本会话的索引
+            deviceSessions.remove(device.getDeviceId(), chatSession);
+        }
+        SessionTimeoutWheel wheel = timeoutWheel;
+        if (wheel != null) {
+            wheel.remove(sessionId);
+        }
     }
 
     /**
@@ -205,6 +241,8 @@ public class SessionManager {
             // 重置会话状态
             chatSession.setStreamingState(false);
             chatSession.setAudioSinks(null);
+            // 结束等待设备响应的MCP请求
+            chatSession.getDeviceMcpHolder().getMcpPendingRequests().cancelAll();
             // 清理Conversation缓存的对话历史。
             Conversation conversation = chatSession.getConversation();
             if (conversation != null) {
@@ -226,7 +264,15 @@ public class SessionManager {
         // 先检查是否已存在该sessionId的配置
         ChatSession chatSession = sessions.get(sessionId);
         if(chatSession != null){
+            SysDevice previous = chatSession.getSysDevice();
+            if (previous != null && previous.getDeviceId() != null
+                    && !previous.getDeviceId().equals(device.getDeviceId())) {
+                deviceSessions.remove(previous.getDeviceId(), chatSession);
+            }
             chatSession.setSysDevice(device);
+            if (device.getDeviceId() != null) {
+                deviceSessions.put(device.getDeviceId(), chatSession);
+            }
             updateLastActivity(sessionId); // 更新活动时间
             logger.debug("设备配置已注册 - SessionId: {}, DeviceId: {}", sessionId, device.getDeviceId());
         }
@@ -298,10 +344,10 @@ public class SessionManager {
      * @return 会话对象，如果不存在则返回null
      */
     public ChatSession getSessionByDeviceId(String deviceId) {
-        return sessions.values().stream()
-                .filter(session -> session.getSysDevice() != null && deviceId.equals(session.getSysDevice().getDeviceId()))
-                .findFirst()
-                .orElse(null);
+        if (deviceId == null) {
+            return null;
+        }
+        return deviceSessions.get(deviceId);
     }
 
     /**
@@ -528,9 +574,7 @@ public class SessionManager {
     }
 
     public Optional<Conversation> findConversation(String deviceId) {
-        return sessions.values().stream()
-                .filter(session -> session.getSysDevice().getDeviceId().equals(deviceId))
-                .findFirst()
+        return Optional.ofNullable(getSessionByDeviceId(deviceId))
                 .map(ChatSession::getConversation);
     }
 }
@@ -0,0 +1,133 @@
+package com.xiaozhi.communication.common;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * 会话不活跃超时的时间轮。
+ * 原先每10秒遍历所有会话判断是否超时，会话数量多时每次检查都是全量扫描。
+ * 这里每个会话按 lastActivityTime + timeout 放入对应的槽，每个tick只处理到期槽中的会话：
+ * 到期时若 lastActivityTime 已被更新（有新的活动），按新的截止时间重新放入；否则触发超时回调。
+ * lastActivityTime 会被播放线程逐帧更新，所以采用到期时再检查的方式，更新活动时间本身没有额外开销。
+ */
+public class SessionTimeoutWheel {
+
+    private final long tickMillis;
+    private final long timeoutMillis;
+    private final Queue<Entry>[] slots;
+    private final int mask;
+    private final Consumer<ChatSession> onTimeout;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // 最后处理过的tick，只在advance中修改
+    private volatile long processedTick;
+
+    /**
+     * @param tickMillis    每个槽的时间跨度
+     * @param slotCount     槽数，会向上取整为2的幂
+     * @param timeoutMillis 不活跃超时时间
+     * @param onTimeout     超时回调，在调用advance的线程中执行
+     */
+    @SuppressWarnings("unchecked")
+    public SessionTimeoutWheel(long tickMillis, int slotCount, long timeoutMillis, Consumer<ChatSession> onTimeout) {
+        this.tickMillis = tickMillis;
+        this.timeoutMillis = timeoutMillis;
+        this.onTimeout = onTimeout;
+        int size = Integer.highestOneBit(Math.max(2, slotCount) - 1) << 1;
+        this.slots = new Queue[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.mask = size - 1;
+        this.processedTick = System.currentTimeMillis() / tickMillis;
+    }
+
+    /**
+     * 开始跟踪会话，重复添加同一会话只保留最后一次
+     */
+    public void add(ChatSession session) {
+        Entry entry = new Entry(session);
+        Entry previous = entries.put(session.getSessionId(), entry);
+        if (previous != null) {
+            previous.cancelled = true;
+        }
+        schedule(entry, deadlineOf(session));
+    }
+
+    /**
+     * 停止跟踪会话
+     */
+    public void remove(String sessionId) {
+        Entry entry = entries.remove(sessionId);
+        if (entry != null) {
+            entry.cancelled = true;
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * 处理截至 nowMillis 的所有到期槽
+     * @return 本次检查的会话数
+     */
+    public int advance(long nowMillis) {
+        long nowTick = nowMillis / tickMillis;
+        int checked = 0;
+        // 落后超过一圈时，每个槽只需处理一次
+        long from = Math.max(processedTick + 1, nowTick - mask);
+        for (long tick = from; tick <= nowTick; tick++) {
+            Queue<Entry> slot = slots[(int) (tick & mask)];
+            // 先取出再处理，重新放回同一槽的会话留到下一圈
+            List<Entry> due = new ArrayList<>();
+            Entry entry;
+            while ((entry = slot.poll()) != null) {
+                due.add(entry);
+            }
+            processedTick = tick;
+            for (Entry e : due) {
+                if (e.cancelled) {
+                    continue;
+                }
+                checked++;
+                long deadline = deadlineOf(e.session);
+                if (deadline > nowMillis) {
+                    // 有新的活动（或者还没到这一圈），按新的截止时间放回
+                    schedule(e, deadline);
+                } else {
+                    onTimeout.accept(e.session);
+                    // 超时后会话通常会在提示语播放完后关闭；若仍未关闭，一个超时周期后再次检查
+                    schedule(e, nowMillis + timeoutMillis);
+                }
+            }
+        }
+        return checked;
+    }
+
+    private long deadlineOf(ChatSession session) {
+        Instant lastActivity = session.getLastActivityTime();
+        long last = lastActivity != null ? lastActivity.toEpochMilli() : System.currentTimeMillis();
+        return last + timeoutMillis;
+    }
+
+    private void schedule(Entry entry, long deadlineMillis) {
+        // 向上取整到tick，保证不早于截止时间检查；已过期的放到下一个待处理的槽
+        long tick = Math.max((deadlineMillis + tickMillis - 1) / tickMillis, processedTick + 1);
+        slots[(int) (tick & mask)].add(entry);
+    }
+
+    private static final class Entry {
+        final ChatSession session;
+        volatile boolean cancelled = false;
+
+        Entry(ChatSession session) {
+            this.session = session;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.xiaozhi.communication.server.websocket;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * WebSocket会话的发送队列。
+ * 播放线程、帧写线程、MCP、消息处理等多个线程都会向同一个连接发送消息，而 WebSocketSession.sendMessage 既不是线程安全的，
+ * 在设备网络较差时又会阻塞调用方。这里所有消息先进入有界队列，由单个写线程按顺序发送，调用方从不阻塞。
+ * - 待发送消息的总字节数超过 bufferSizeLimit 时按 {@link OverflowPolicy} 处理：丢弃最早的音频帧，或关闭连接。
+ *   文本消息（tts/stt状态等）体积小且关系到设备状态，不会被丢弃。
+ * - 单条消息发送时间超过 sendTimeLimitMs 视为连接不可用，关闭连接。写线程阻塞在发送上时由看门狗线程定期检查，
+ *   不依赖下一条消息入队。
+ * - 与队尾内容相同的表情消息（type为llm，设置设备显示的表情，重复发送与发送一次效果相同）在积压时合并为一条；
+ *   tts/stt 等事件消息即使内容相同也逐条发送。
+ * - 正常关闭不阻塞调用方：写线程发送完已入队的消息（如 tts stop 及之前的音频帧）后关闭连接，
+ *   超过 sendTimeLimitMs 仍未发送完时由看门狗丢弃剩余的消息并关闭连接。
+ */
+public class OutboundQueue {
+    private static final Logger logger = LoggerFactory.getLogger(OutboundQueue.class);
+
+    // 表情消息的类型字段，见 MessageService.sendEmotion
+    private static final String EMOTION_TYPE = "\"type\":\"llm\"";
+    // 看门狗检查发送时间的间隔
+    private static final long WATCHDOG_INTERVAL_MS = 100;
+    // 写线程正在运行的队列，由看门狗检查发送时间
+    private static final Set<OutboundQueue> sending = ConcurrentHashMap.newKeySet();
+    private static final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "outbound-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        watchdog.scheduleWithFixedDelay(OutboundQueue::checkSendTimes,
+                WATCHDOG_INTERVAL_MS, WATCHDOG_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public enum OverflowPolicy {
+        // 丢弃最早的音频帧
+        DROP_OLDEST,
+        // 关闭连接
+        CLOSE
+    }
+
+    /**
+     * 发送限制
+     * @param sendTimeLimitMs 单条消息最长发送时间
+     * @param bufferSizeLimit 待发送消息的最大总字节数
+     * @param overflowPolicy  超出 bufferSizeLimit 时的处理方式
+     */
+    public record Limits(long sendTimeLimitMs, int bufferSizeLimit, OverflowPolicy overflowPolicy) {
+        public static final Limits DEFAULT = new Limits(5000, 512 * 1024, OverflowPolicy.DROP_OLDEST);
+    }
+
+    private final org.springframework.web.socket.WebSocketSession session;
+    private final Limits limits;
+
+    private final Deque<WebSocketMessage<?>> queue = new ArrayDeque<>();
+    private long bufferedBytes = 0;
+    private boolean writing = false;
+    private volatile boolean closed = false;
+    // 正在关闭：不再接收新消息，写线程发送完已入队的消息后关闭连接
+    private volatile boolean closing = false;
+    // 正常关闭时发送完剩余消息的截止时间（单调时钟）
+    private volatile long closeDeadlineNanos = 0;
+    // 当前消息开始发送的时间（单调时钟），0表示空闲
+    private volatile long sendStartNanos = 0;
+    private final AtomicLong droppedFrames = new AtomicLong();
+
+    public OutboundQueue(org.springframework.web.socket.WebSocketSession session, Limits limits) {
+        this.session = session;
+        this.limits = limits != null ? limits : Limits.DEFAULT;
+    }
+
+    /**
+     * 消息入队，不阻塞
+     * @return false表示连接已关闭，消息被丢弃
+     */
+    public boolean offer(WebSocketMessage<?> message) {
+        if (closing || closed || !session.isOpen()) {
+            return false;
+        }
+        boolean startWriter = false;
+        boolean overflow = false;
+        synchronized (this) {
+            if (message instanceof TextMessage text && isIdempotent(text)
+                    && queue.peekLast() instanceof TextMessage last && last.getPayload().equals(text.getPayload())) {
+                return true;
+            }
+            queue.addLast(message);
+            bufferedBytes += message.getPayloadLength();
+            if (bufferedBytes > limits.bufferSizeLimit()) {
+                if (limits.overflowPolicy() == OverflowPolicy.CLOSE) {
+                    overflow = true;
+                } else {
+                    dropOldestFrames();
+                }
+            }
+            if (!overflow && !writing) {
+                writing = true;
+                startWriter = true;
+            }
+        }
+        if (overflow) {
+            closeForLimit("发送缓冲超过" + limits.bufferSizeLimit() + "字节");
+            return false;
+        }
+        if (startWriter) {
+            Thread.startVirtualThread(this::drain);
+        }
+        return true;
+    }
+
+    /**
+     * 待发送的消息数
+     */
+    public synchronized int getDepth() {
+        return queue.size();
+    }
+
+    /**
+     * 待发送消息的总字节数
+     */
+    public synchronized long getBufferedBytes() {
+        return bufferedBytes;
+    }
+
+    /**
+     * 因缓冲超限丢弃的音频帧数
+     */
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    /**
+     * 关闭队列，不阻塞：不再接收新消息，由写线程发送完已入队的消息后关闭连接
+     */
+    public void close() {
+        boolean startWriter;
+        synchronized (this) {
+            if (closing || closed) {
+                return;
+            }
+            closeDeadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(limits.sendTimeLimitMs());
+            closing = true;
+            // 写线程空闲时队列为空，启动写线程直接关闭连接
+            startWriter = !writing;
+            writing = true;
+        }
+        if (startWriter) {
+            Thread.startVirtualThread(this::drain);
+        }
+    }
+
+    /**
+     * 立即关闭队列，丢弃尚未发送的消息
+     */
+    private void discard() {
+        closed = true;
+        synchronized (this) {
+            queue.clear();
+            bufferedBytes = 0;
+        }
+    }
+
+    private void dropOldestFrames() {
+        Iterator<WebSocketMessage<?>> iterator = queue.iterator();
+        while (bufferedBytes > limits.bufferSizeLimit() && iterator.hasNext()) {
+            WebSocketMessage<?> queued = iterator.next();
+            if (queued instanceof BinaryMessage) {
+                iterator.remove();
+                bufferedBytes -= queued.getPayloadLength();
+                droppedFrames.incrementAndGet();
+            }
+        }
+    }
+
+    private void drain() {
+        sending.add(this);
+        boolean drained;
+        try {
+            while (true) {
+                WebSocketMessage<?> message;
+                synchronized (this) {
+                    message = closed ? null : queue.pollFirst();
+                    if (message == null) {
+                        writing = false;
+                        drained = closing && !closed;
+                        break;
+                    }
+                    bufferedBytes -= message.getPayloadLength();
+                }
+                sendStartNanos = System.nanoTime();
+                try {
+                    session.sendMessage(message);
+                } catch (Exception e) {
+                    logger.error("发送{}消息失败 - SessionId: {}", message instanceof TextMessage ? "Text" : "Binary",
+                            session.getId(), e);
+                } finally {
+                    sendStartNanos = 0;
+                }
+            }
+        } finally {
+            sending.remove(this);
+        }
+        if (drained) {
+            // 正常关闭，已入队的消息全部发送完毕
+            closed = true;
+            closeSession(CloseStatus.NORMAL);
+        }
+    }
+
+    /**
+     * 看门狗：关闭单条消息发送超时的连接，写线程阻塞在发送上时由此解除
+     */
+    private static void checkSendTimes() {
+        for (OutboundQueue queue : sending) {
+            try {
+                if (queue.isSendTimeExceeded()) {
+                    queue.closeForLimit("发送超时(" + queue.limits.sendTimeLimitMs() + "ms)");
+                } else if (queue.isCloseTimeExceeded()) {
+                    queue.closeForLimit("关闭前" + queue.limits.sendTimeLimitMs() + "ms内未能发送完，丢弃 "
+                            + queue.getDepth() + " 条消息");
+                }
+            } catch (Exception e) {
+                logger.warn("检查发送超时失败 - SessionId: {}", queue.session.getId(), e);
+            }
+        }
+    }
+
+    private boolean isSendTimeExceeded() {
+        long start = sendStartNanos;
+        return start != 0 && System.nanoTime() - start > TimeUnit.MILLISECONDS.toNanos(limits.sendTimeLimitMs());
+    }
+
+    /**
+     * 只设置设备状态、可以合并的消息：表情消息
+     */
+    private static boolean isIdempotent(TextMessage message) {
+        return message.getPayload().contains(EMOTION_TYPE);
+    }
+
+    private boolean isCloseTimeExceeded() {
+        return closing && !closed && System.nanoTime() - closeDeadlineNanos > 0;
+    }
+
+    private void closeForLimit(String reason) {
+        if (closed) {
+            return;
+        }
+        discard();
+        logger.warn("WebSocket发送受限，关闭连接 - SessionId: {}, 原因: {}", session.getId(), reason);
+        // 写线程可能正阻塞在发送上，关闭操作不在调用方线程中进行
+        Thread.startVirtualThread(() -> closeSession(CloseStatus.SESSION_NOT_RELIABLE));
+    }
+
+    private void closeSession(CloseStatus status) {
+        try {
+            session.close(status);
+        } catch (Exception e) {
+            logger.debug("关闭WebSocket连接失败 - SessionId: {}", session.getId(), e);
+        }
+    }
+}
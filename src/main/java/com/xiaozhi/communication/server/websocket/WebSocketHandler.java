@@ -10,6 +10,7 @@ import com.xiaozhi.utils.JsonUtil;
 import jakarta.annotation.Resource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.BinaryMessage;
@@ -42,6 +43,16 @@ public class WebSocketHandler extends AbstractWebSocketHandler {
     @Resource
     private ApplicationContext applicationContext;
 
+    // 发送队列限制
+    @Value("${websocket.send.time-limit-ms:5000}")
+    private long sendTimeLimitMs = 5000;
+
+    @Value("${websocket.send.buffer-size-limit:524288}")
+    private int sendBufferSizeLimit = 512 * 1024;
+
+    @Value("${websocket.send.overflow-policy:DROP_OLDEST}")
+    private OutboundQueue.OverflowPolicy overflowPolicy = OutboundQueue.OverflowPolicy.DROP_OLDEST;
+
     @Override
     public void afterConnectionEstablished(WebSocketSession session) {
         Map<String, String> headers = getHeadersFromSession(session);
@@ -74,7 +85,8 @@ public class WebSocketHandler extends AbstractWebSocketHandler {
 //        }else{
 
         com.xiaozhi.communication.server.websocket.WebSocketSession xiaoZhiSession
-                = new com.xiaozhi.communication.server.websocket.WebSocketSession(session);
+                = new com.xiaozhi.communication.server.websocket.WebSocketSession(session,
+                new OutboundQueue.Limits(sendTimeLimitMs, sendBufferSizeLimit, overflowPolicy));
         messageHandler.afterConnection(xiaoZhiSession, deviceIdAuth);
         applicationContext.publishEvent(new ChatAudioOpenEvent(xiaoZhiSession));
         logger.info("WebSocket连接建立成功 - SessionId: {}, DeviceId: {}", session.getId(), deviceIdAuth);
@@ -182,10 +194,15 @@ public class WebSocketHandler extends AbstractWebSocketHandler {
                 .setAudioParams(AudioParams.Opus);
 
         try {
-            session.sendMessage(new TextMessage(JsonUtil.toJson(resp)));
+            // 经会话的发送队列发送，避免与其他线程的发送并发
+            ChatSession chatSession = sessionManager.getSession(sessionId);
+            if (chatSession != null) {
+                chatSession.sendTextMessage(JsonUtil.toJson(resp));
+            } else {
+                session.sendMessage(new TextMessage(JsonUtil.toJson(resp)));
+            }
             if(message.getFeatures() != null && message.getFeatures().getMcp()) {
                 //如果客户端开启mcp协议，异步初始化MCP工具
-                ChatSession chatSession = sessionManager.getSession(sessionId);
                 Thread.startVirtualThread(() -> {
                     SysDevice device = sessionManager.getDeviceConfig(sessionId);
                     if (device.getRoleId() != null) {
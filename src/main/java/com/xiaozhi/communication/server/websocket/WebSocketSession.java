@@ -6,22 +6,29 @@ import org.slf4j.LoggerFactory;
 import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.TextMessage;
 
-import java.io.IOException;
-
 public class WebSocketSession extends ChatSession {
     private static final Logger logger = LoggerFactory.getLogger(WebSocketSession.class);
     /**
      * 当前会话的链接 session
      */
     protected org.springframework.web.socket.WebSocketSession session;
+    /**
+     * 发送队列，所有发往设备的消息经此由单个写线程发送
+     */
+    protected OutboundQueue outboundQueue;
 
     public WebSocketSession(String sessionId) {
         super(sessionId);
     }
 
     public WebSocketSession(org.springframework.web.socket.WebSocketSession session) {
+        this(session, OutboundQueue.Limits.DEFAULT);
+    }
+
+    public WebSocketSession(org.springframework.web.socket.WebSocketSession session, OutboundQueue.Limits limits) {
         super(session.getId());
         this.session = session;
+        this.outboundQueue = new OutboundQueue(session, limits);
     }
 
     @Override
@@ -36,11 +43,8 @@ public class WebSocketSession extends ChatSession {
     @Override
     public void close() {
         if(session != null){
-            try {
-                session.close();
-            } catch (IOException e) {
-                logger.error("关闭WebSocket会话时发生错误 - SessionId: {}", getSessionId(), e);
-            }
+            // 不阻塞调用方，发送队列发送完已入队的消息后关闭连接
+            outboundQueue.close();
         }
     }
 
@@ -51,19 +55,34 @@ public class WebSocketSession extends ChatSession {
 
     @Override
     public void sendTextMessage(String message) {
-        try {
-            session.sendMessage(new TextMessage(message));
-        } catch (IOException e) {
-            logger.error("发送Text消息失败, message: {}", message, e);
+        if (!outboundQueue.offer(new TextMessage(message))) {
+            logger.debug("连接已关闭，丢弃Text消息 - SessionId: {}, message: {}", getSessionId(), message);
         }
     }
 
     @Override
     public void sendBinaryMessage(byte[] message) {
-        try {
-            session.sendMessage(new BinaryMessage(message));
-        } catch (IOException e) {
-            logger.error("发送Binary消息失败", e);
-        }
+        outboundQueue.offer(new BinaryMessage(message));
+    }
+
+    /**
+     * 待发送的消息数
+     */
+    public int getSendQueueDepth() {
+        return outboundQueue.getDepth();
+    }
+
+    /**
+     * 待发送消息的总字节数
+     */
+    public long getSendBufferedBytes() {
+        return outboundQueue.getBufferedBytes();
+    }
+
+    /**
+     * 因发送缓冲超限丢弃的音频帧数
+     */
+    public long getDroppedFrames() {
+        return outboundQueue.getDroppedFrames();
     }
 }
@@ -5,6 +5,10 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Value;
@@ -27,6 +31,7 @@ import org.springframework.web.bind.annotation.RestController;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.github.pagehelper.PageInfo;
+import com.xiaozhi.common.ip.IpLocator;
 import com.xiaozhi.common.web.PageFilter;
 import com.xiaozhi.common.web.ResultMessage;
 import com.xiaozhi.communication.common.ChatSession;
@@ -60,6 +65,12 @@ import jakarta.validation.Valid;
 @Tag(name = "设备管理", description = "设备相关操作")
 public class DeviceController extends BaseController {
 
+    // 查询设备地理位置（可能在线查询，在线服务有频率限制）的线程，最多2个线程、1000个排队任务；
+    // 队列满时丢弃，位置只是尽力更新，设备下次OTA时会再次查询
+    private static final ExecutorService LOCATION_EXECUTOR = new ThreadPoolExecutor(2, 2, 0, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(1000), Thread.ofPlatform().name("device-location-", 0).daemon().factory(),
+            new ThreadPoolExecutor.DiscardPolicy());
+
     @Resource
     private SysDeviceService deviceService;
 
@@ -72,6 +83,9 @@ public class DeviceController extends BaseController {
     @Resource
     private CmsUtils cmsUtils;
 
+    @Resource
+    private IpLocator ipLocator;
+
     @Value("${xiaozhi.communication.protocol:both}")
     private String communicationProtocol;
 
@@ -315,11 +329,6 @@ public class DeviceController extends BaseController {
 
             // 设置设备IP地址
             device.setIp(CmsUtils.getClientIp(request));
-            // 根据设备的IP地址获取地理位置信息
-            var ipInfo = CmsUtils.getIPInfoByAddress(device.getIp());
-            if (ipInfo != null && ipInfo.getLocation() != null && !ipInfo.getLocation().isEmpty()) {
-                device.setLocation(ipInfo.getLocation());
-            }
 
             // 查询设备是否已绑定
             List<SysDevice> queryDevice = deviceService.query(device, new PageFilter());
@@ -371,6 +380,8 @@ public class DeviceController extends BaseController {
 
                 // 更新设备信息
                 deviceService.update(device);
+                // 异步查询并更新地理位置，不阻塞OTA响应
+                updateLocationAsync(deviceId, device.getIp(), boundDevice.getLocation());
             }
 
             // 组装响应数据
@@ -404,6 +415,26 @@ public class DeviceController extends BaseController {
         }
     }
 
+    /**
+     * 根据设备的IP地址查询地理位置，与已保存的不同时更新
+     */
+    private void updateLocationAsync(String deviceId, String ip, String currentLocation) {
+        LOCATION_EXECUTOR.execute(() -> {
+            try {
+                String location = ipLocator.locate(ip);
+                if (location == null || location.equals(currentLocation)) {
+                    return;
+                }
+                SysDevice device = new SysDevice();
+                device.setDeviceId(deviceId);
+                device.setLocation(location);
+                deviceService.update(device);
+            } catch (Exception e) {
+                logger.warn("更新设备 {} 地理位置失败: {}", deviceId, e.getMessage());
+            }
+        });
+    }
+
 
     @PostMapping("/ota/activate")
     @ResponseBody
@@ -17,6 +17,11 @@ public interface MessageMapper {
 
   void saveAll(List<SysMessage> messages);
 
+  /**
+   * 批量保存消息，同时写入音频路径
+   */
+  void saveAllWithAudio(List<SysMessage> messages);
+
   int delete(SysMessage message);
 
   List<SysMessage> query(SysMessage message);
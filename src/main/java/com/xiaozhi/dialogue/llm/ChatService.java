@@ -1,10 +1,13 @@
 package com.xiaozhi.dialogue.llm;
 
 import com.xiaozhi.communication.common.ChatSession;
+import com.xiaozhi.dialogue.llm.cache.SemanticCache;
 import com.xiaozhi.dialogue.llm.factory.ChatModelFactory;
 import com.xiaozhi.dialogue.llm.memory.ChatMemory;
+import com.xiaozhi.dialogue.metrics.TurnTrace;
 import com.xiaozhi.mcp.McpSessionManager;
 import com.xiaozhi.dialogue.llm.memory.Conversation;
+import com.xiaozhi.dialogue.llm.tool.observation.ChatModelObservationHandler;
 import jakarta.annotation.Resource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,12 +16,19 @@ import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.chat.observation.ChatModelObservationContext;
 import org.springframework.ai.chat.prompt.ChatOptions;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.ai.model.tool.ToolCallingChatOptions;
 import org.springframework.ai.model.tool.ToolCallingManager;
 import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
 import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 
@@ -38,6 +48,11 @@ public class ChatService {
 
     public static final String TOOL_CONTEXT_SESSION_KEY = "session";
 
+    /**
+     * 语义缓存命中时，耗时指标中的LLM提供商名称
+     */
+    public static final String CACHE_PROVIDER_NAME = "cache";
+
 
 
 
@@ -50,6 +65,12 @@ public class ChatService {
     @Resource
     private ToolCallingManager toolCallingManager;
 
+    @Resource
+    private SemanticCache semanticCache;
+
+    @Resource
+    private ChatModelObservationHandler chatModelObservationHandler;
+
     /**
      * 处理用户查询（同步方式）
      * 
@@ -148,19 +169,122 @@ public class ChatService {
             conversationTimestamp = System.currentTimeMillis();
         }
 
+        // 启用语义缓存的角色先向量化用户的话，用于查找和写入缓存
+        Conversation conversation = session.getConversation();
+        Integer roleId = conversation.role().getRoleId();
+        float[] vector = semanticCache.isEnabled(roleId) ? semanticCache.embed(userMessage.getText()) : null;
+
+        // 记录本轮是否调用了工具，调用了工具的回答不写入缓存
+        AtomicBoolean toolCalled = new AtomicBoolean();
+        List<ToolCallback> toolCallbacks = useFunctionCall && session.isSupportFunctionCall() ? session.getToolCallbacks() : new ArrayList<>();
+        if (vector != null) {
+            toolCallbacks = toolCallbacks.stream()
+                    .<ToolCallback>map(toolCallback -> new TrackedToolCallback(toolCallback, toolCalled))
+                    .toList();
+        }
+
         ChatOptions chatOptions = ToolCallingChatOptions.builder()
-                .toolCallbacks(useFunctionCall && session.isSupportFunctionCall() ? session.getToolCallbacks() : new ArrayList<>())
+                .toolCallbacks(toolCallbacks)
                 .toolContext(TOOL_CONTEXT_SESSION_KEY, session)
                 .toolContext("conversationTimestamp", conversationTimestamp)
                 .build();
 
-        Conversation conversation = session.getConversation();
         conversation.add(userMessage, ChatMemory.getTimeMillis(userMessage));
         List<Message> messages = conversation.messages();
         Prompt prompt = new Prompt(messages, chatOptions);
 
-        // 调用实际的流式聊天方法
-        return chatModel.stream(prompt);
+        TurnTrace trace = session.getTurnTrace();
+        String cachedAnswer = semanticCache.lookup(roleId, vector);
+        if (cachedAnswer != null) {
+            return cachedStream(prompt, cachedAnswer, trace);
+        }
+
+        // 调用实际的流式聊天方法，记录首个token的耗时
+        trace.llmRequested(providerName(chatModel));
+        Flux<ChatResponse> responses = chatModel.stream(prompt).doOnNext(response -> {
+            if (response.getResult() != null && StringUtils.hasLength(response.getResult().getOutput().getText())) {
+                trace.llmFirstToken();
+            }
+        });
+        if (vector == null) {
+            return responses;
+        }
+        // 完整输出后写入缓存，出错或被打断的回答不写入
+        StringBuilder answer = new StringBuilder();
+        return responses.doOnNext(response -> {
+            if (response.hasToolCalls()) {
+                toolCalled.set(true);
+            }
+            if (response.getResult() != null && response.getResult().getOutput().getText() != null) {
+                answer.append(response.getResult().getOutput().getText());
+            }
+        }).doOnComplete(() -> {
+            if (!toolCalled.get()) {
+                semanticCache.put(roleId, vector, userMessage.getText(), answer.toString());
+            }
+        });
+    }
+
+    /**
+     * 返回缓存的回答，不请求LLM。
+     * 没有模型调用就没有观察事件，输出完毕后直接交给 ChatModelObservationHandler，与模型的回答一样加入对话并持久化
+     */
+    private Flux<ChatResponse> cachedStream(Prompt prompt, String answer, TurnTrace trace) {
+        ChatResponse response = new ChatResponse(List.of(new Generation(new AssistantMessage(answer))));
+        trace.llmRequested(CACHE_PROVIDER_NAME);
+        return Flux.just(response)
+                .doOnNext(r -> trace.llmFirstToken())
+                .doOnComplete(() -> {
+                    ChatModelObservationContext context = ChatModelObservationContext.builder()
+                            .prompt(prompt)
+                            .provider(CACHE_PROVIDER_NAME)
+                            .build();
+                    context.setResponse(response);
+                    try {
+                        chatModelObservationHandler.onStop(context);
+                    } catch (Exception e) {
+                        logger.error("保存缓存的回答时出错: {}", e.getMessage(), e);
+                    }
+                });
+    }
+
+    /**
+     * 耗时指标中的LLM提供商名称，如 OpenAiChatModel -> openai
+     */
+    static String providerName(ChatModel chatModel) {
+        String name = chatModel.getClass().getSimpleName();
+        if (name.endsWith("ChatModel") && name.length() > "ChatModel".length()) {
+            name = name.substring(0, name.length() - "ChatModel".length());
+        }
+        return name.toLowerCase();
+    }
+
+    /**
+     * 调用时记录本轮调用了工具。模型内部执行工具调用，流式输出中看不到工具调用的过程
+     */
+    private record TrackedToolCallback(ToolCallback delegate, AtomicBoolean called) implements ToolCallback {
+
+        @Override
+        public ToolDefinition getToolDefinition() {
+            return delegate.getToolDefinition();
+        }
+
+        @Override
+        public ToolMetadata getToolMetadata() {
+            return delegate.getToolMetadata();
+        }
+
+        @Override
+        public String call(String toolInput) {
+            called.set(true);
+            return delegate.call(toolInput);
+        }
+
+        @Override
+        public String call(String toolInput, ToolContext toolContext) {
+            called.set(true);
+            return delegate.call(toolInput, toolContext);
+        }
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,103 @@
+package com.xiaozhi.dialogue.llm.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按余弦相似度查找最相近回答的向量索引，每个角色一个。
+ * <p>
+ * 每个角色缓存的问题只有几百到几千条，逐条比较（flat）即可在1毫秒内完成，且结果精确，不需要HNSW这类近似索引。
+ * 向量写入时已归一化，比较只需点积。写入时复制数组，查询不加锁。
+ */
+class CosineIndex {
+
+    /**
+     * @param vector    归一化后的问题向量
+     * @param expiresAt 过期时间（毫秒）
+     */
+    record Entry(float[] vector, String question, String answer, long expiresAt) {
+    }
+
+    record Match(Entry entry, float similarity) {
+    }
+
+    private static final Entry[] EMPTY = new Entry[0];
+
+    private final int maxEntries;
+    // 按写入先后排列，超出容量时丢弃最早的
+    private volatile Entry[] entries = EMPTY;
+
+    CosineIndex(int maxEntries) {
+        this.maxEntries = Math.max(1, maxEntries);
+    }
+
+    /**
+     * 查找未过期的最相近条目
+     *
+     * @param vector 归一化后的查询向量
+     * @return 没有可比较的条目时返回null
+     */
+    Match nearest(float[] vector, long now) {
+        Entry best = null;
+        float bestSimilarity = -1;
+        for (Entry entry : entries) {
+            // 更换向量模型后维度可能不同，旧条目不再可比
+            if (entry.expiresAt() <= now || entry.vector().length != vector.length) {
+                continue;
+            }
+            float similarity = dot(entry.vector(), vector);
+            if (similarity > bestSimilarity) {
+                bestSimilarity = similarity;
+                best = entry;
+            }
+        }
+        return best == null ? null : new Match(best, bestSimilarity);
+    }
+
+    /**
+     * 写入条目，同时清理已过期的条目
+     */
+    synchronized void add(Entry entry, long now) {
+        List<Entry> kept = new ArrayList<>(entries.length + 1);
+        for (Entry existing : entries) {
+            if (existing.expiresAt() > now) {
+                kept.add(existing);
+            }
+        }
+        kept.add(entry);
+        entries = kept.subList(Math.max(0, kept.size() - maxEntries), kept.size()).toArray(EMPTY);
+    }
+
+    int size() {
+        return entries.length;
+    }
+
+    /**
+     * 归一化为单位向量
+     *
+     * @return 零向量返回null
+     */
+    static float[] normalize(float[] vector) {
+        double sum = 0;
+        for (float v : vector) {
+            sum += v * v;
+        }
+        if (sum == 0) {
+            return null;
+        }
+        float scale = (float) (1 / Math.sqrt(sum));
+        float[] result = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            result[i] = vector[i] * scale;
+        }
+        return result;
+    }
+
+    private static float dot(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
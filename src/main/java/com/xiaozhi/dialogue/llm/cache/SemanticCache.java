@@ -0,0 +1,164 @@
+package com.xiaozhi.dialogue.llm.cache;
+
+import com.xiaozhi.dialogue.llm.factory.EmbeddingModelFactory;
+import com.xiaozhi.entity.SysConfig;
+import com.xiaozhi.event.SysConfigChangeEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.StringUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongSupplier;
+
+/**
+ * 语义缓存：用向量模型把用户的话转为向量，与同一角色之前的问题比较，足够相似时直接返回之前的回答，不再请求LLM。
+ * 大量设备会问几乎相同的问题（“讲个笑话”、“你是谁”），命中时省去一次LLM请求和首token等待。
+ * <p>
+ * 按角色启用并隔离，不同角色的提示词不同，回答不能互用。
+ * 回答有有效期，调用了工具的回答（查天气、调音量等）依赖当时的状态，不写入缓存，由调用方判断。
+ * 向量模型使用配置中的默认向量模型，向量模型配置变更后清空缓存。
+ */
+@Component
+public class SemanticCache {
+    private static final Logger logger = LoggerFactory.getLogger(SemanticCache.class);
+
+    private final Set<Integer> roleIds;
+    private final float threshold;
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final long embedTimeoutMs;
+    private final EmbeddingModelFactory embeddingModelFactory;
+    private final LongSupplier clock;
+
+    private final Map<Integer, CosineIndex> indexes = new ConcurrentHashMap<>();
+    private volatile EmbeddingModel embeddingModel;
+
+    @Autowired
+    public SemanticCache(@Value("${semantic-cache.role-ids:}") List<Integer> roleIds,
+                         @Value("${semantic-cache.threshold:0.92}") float threshold,
+                         @Value("${semantic-cache.ttl-minutes:60}") long ttlMinutes,
+                         @Value("${semantic-cache.max-entries:1000}") int maxEntries,
+                         @Value("${semantic-cache.embed-timeout-ms:1000}") long embedTimeoutMs,
+                         EmbeddingModelFactory embeddingModelFactory) {
+        this(roleIds, threshold, TimeUnit.MINUTES.toMillis(ttlMinutes), maxEntries, embedTimeoutMs,
+                embeddingModelFactory, System::currentTimeMillis);
+    }
+
+    SemanticCache(List<Integer> roleIds, float threshold, long ttlMillis, int maxEntries, long embedTimeoutMs,
+                  EmbeddingModelFactory embeddingModelFactory, LongSupplier clock) {
+        this.roleIds = Set.copyOf(roleIds);
+        this.threshold = threshold;
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+        this.embedTimeoutMs = embedTimeoutMs;
+        this.embeddingModelFactory = embeddingModelFactory;
+        this.clock = clock;
+    }
+
+    /**
+     * 角色是否启用了语义缓存
+     */
+    public boolean isEnabled(Integer roleId) {
+        return roleId != null && roleIds.contains(roleId);
+    }
+
+    /**
+     * 把用户的话转为归一化的向量
+     *
+     * @return 向量模型不可用、超时或出错时返回null，本轮不使用缓存
+     */
+    public float[] embed(String text) {
+        if (!StringUtils.hasText(text)) {
+            return null;
+        }
+        try {
+            EmbeddingModel model = embeddingModel();
+            // 向量化在LLM请求之前，超时则放弃缓存，避免拖慢本轮对话
+            float[] vector = CompletableFuture.supplyAsync(() -> model.embed(text), Thread::startVirtualThread)
+                    .get(embedTimeoutMs, TimeUnit.MILLISECONDS);
+            return CosineIndex.normalize(vector);
+        } catch (TimeoutException e) {
+            logger.warn("用户输入向量化超时（{}ms），本轮不使用语义缓存", embedTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.warn("用户输入向量化失败，本轮不使用语义缓存: {}", e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * 查找相似问题的回答
+     *
+     * @param vector {@link #embed} 返回的向量
+     * @return 未命中返回null
+     */
+    public String lookup(Integer roleId, float[] vector) {
+        CosineIndex index = indexes.get(roleId);
+        if (index == null || vector == null) {
+            return null;
+        }
+        CosineIndex.Match match = index.nearest(vector, clock.getAsLong());
+        if (match == null || match.similarity() < threshold) {
+            return null;
+        }
+        logger.info("语义缓存命中，相似度 {}，原问题: {}", match.similarity(), match.entry().question());
+        return match.entry().answer();
+    }
+
+    /**
+     * 写入回答，调用方需确保本轮没有调用工具
+     */
+    public void put(Integer roleId, float[] vector, String question, String answer) {
+        if (vector == null || !StringUtils.hasText(answer)) {
+            return;
+        }
+        long now = clock.getAsLong();
+        indexes.computeIfAbsent(roleId, id -> new CosineIndex(maxEntries))
+                .add(new CosineIndex.Entry(vector, question, answer, now + ttlMillis), now);
+    }
+
+    /**
+     * 角色已缓存的回答数，含未清理的过期回答
+     */
+    public int size(Integer roleId) {
+        CosineIndex index = indexes.get(roleId);
+        return index == null ? 0 : index.size();
+    }
+
+    public void clear() {
+        indexes.clear();
+    }
+
+    /**
+     * 向量模型配置变更后，新旧模型的向量不可比较，清空缓存并重新创建模型
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onConfigChange(SysConfigChangeEvent event) {
+        SysConfig config = event.getConfig();
+        if (config != null && SysConfig.ModelType.embedding.getValue().equals(config.getModelType())) {
+            embeddingModel = null;
+            clear();
+        }
+    }
+
+    private EmbeddingModel embeddingModel() {
+        EmbeddingModel model = embeddingModel;
+        if (model == null) {
+            model = embeddingModelFactory.defaultEmbeddingModel();
+            embeddingModel = model;
+        }
+        return model;
+    }
+}
@@ -5,6 +5,7 @@ import com.xiaozhi.dialogue.llm.providers.OpenAiLlmService;
 import com.xiaozhi.entity.SysConfig;
 import com.xiaozhi.entity.SysDevice;
 import com.xiaozhi.entity.SysRole;
+import com.xiaozhi.event.SysConfigChangeEvent;
 import com.xiaozhi.service.SysConfigService;
 import com.xiaozhi.service.SysRoleService;
 import io.micrometer.observation.ObservationRegistry;
@@ -12,11 +13,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
 import org.springframework.util.Assert;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -44,6 +50,23 @@ public class ChatModelFactory {
      */
     private final Map<String, ChatModelProvider> providers;
 
+    /**
+     * 已创建的ChatModel，key为 provider:configId:model:连接参数hash:角色参数hash
+     * ChatModel本身无状态，可在会话间共享，复用其底层HTTP连接。
+     * 本节点的配置变更通过 {@link #onConfigChange} 立即清理；其他节点修改配置后，本节点的配置缓存经Redis频道失效，
+     * 重新读到的配置连接参数不同，key随之改变，创建新的ChatModel。旧实例在写入超过 ttl 后清理。
+     */
+    private final Map<String, CachedModel> modelCache = new ConcurrentHashMap<>();
+
+    /**
+     * 缓存的ChatModel在创建多久后重建（分钟）
+     */
+    @Value("${llm.model-cache.ttl-minutes:30}")
+    private long modelCacheTtlMinutes = 30;
+
+    private record CachedModel(ChatModel model, long createdAt) {
+    }
+
     /**
      * 构造函数,自动注入所有ChatModelProvider
      * @param providers 所有的Provider实现
@@ -59,9 +82,9 @@ public class ChatModelFactory {
     }
     
     /**
-     * 根据配置ID创建ChatModel，首次调用时缓存，缓存key为配置ID。
+     * 根据配置ID获取ChatModel，首次调用时创建并缓存，配置变更时失效。
      * 
-     * @see SysConfigService#selectConfigById(Integer) 已经进行了Cacheable,所以此处没有必要缓存
+     * @see SysConfigService#selectConfigById(Integer) 配置本身已经进行了Cacheable
      * @param session 与网络链接绑定的聊天会话
      * @return ChatModel实例
      */
@@ -107,13 +130,66 @@ public class ChatModelFactory {
     }
     
     /**
-     * 创建ChatModel 
-     * 
+     * 配置变更后清理对应的ChatModel缓存。
+     * agent类型配置（Dify、星辰、Coze等的密钥）变更时，清理该provider下的全部缓存。
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onConfigChange(SysConfigChangeEvent event) {
+        removeCache(event.getConfig());
+    }
+
+    public void removeCache(SysConfig config) {
+        if (config == null) {
+            return;
+        }
+        String provider = config.getProvider() == null ? null : config.getProvider().toLowerCase();
+        String configId = String.valueOf(config.getConfigId());
+        boolean agent = "agent".equals(config.getConfigType());
+
+        modelCache.keySet().removeIf(key -> {
+            String[] parts = key.split(":", 3);
+            return configId.equals(parts[1]) || (agent && parts[0].equals(provider));
+        });
+    }
+
+    /**
+     * 获取ChatModel，可缓存的Provider复用已创建的实例
+     *
      * @param config 模型配置
      * @param role 角色配置
      * @return ChatModel实例
      */
     private ChatModel createChatModel(SysConfig config, SysRole role) {
+        ChatModelProvider provider = resolveProvider(config);
+        if (!provider.isCacheable()) {
+            return provider.createChatModel(config, role);
+        }
+        String cacheKey = createCacheKey(config, role);
+        long now = System.currentTimeMillis();
+        long ttlMillis = TimeUnit.MINUTES.toMillis(modelCacheTtlMinutes);
+        CachedModel cached = modelCache.get(cacheKey);
+        if (cached != null && now - cached.createdAt() < ttlMillis) {
+            return cached.model();
+        }
+        // 创建新实例时顺带清理过期的实例，包括连接参数已变更、不会再被使用的旧实例
+        modelCache.values().removeIf(entry -> now - entry.createdAt() >= ttlMillis);
+        return modelCache.compute(cacheKey, (k, existing) ->
+                existing != null && now - existing.createdAt() < ttlMillis
+                        ? existing
+                        : new CachedModel(provider.createChatModel(config, role), now)).model();
+    }
+
+    private String createCacheKey(SysConfig config, SysRole role) {
+        // 连接参数变更（包括其他节点修改后本节点重新读到的配置）需要新的实例
+        int connectionHash = Objects.hash(config.getApiUrl(), config.getApiKey(), config.getApiSecret(),
+                config.getAppId(), config.getAk(), config.getSk());
+        // 角色参数会写入ChatModel的默认选项，不同取值需要不同实例
+        int optionsHash = Objects.hash(role.getTemperature(), role.getTopP());
+        return config.getProvider().toLowerCase() + ":" + config.getConfigId() + ":"
+                + config.getConfigName() + ":" + connectionHash + ":" + optionsHash;
+    }
+
+    private ChatModelProvider resolveProvider(SysConfig config) {
         String providerName = config.getProvider().toLowerCase();
         
         // 从providers Map中获取对应的Provider
@@ -121,7 +197,7 @@ public class ChatModelFactory {
         
         if (provider != null) {
             logger.debug("使用Provider [{}] 创建ChatModel", providerName);
-            return provider.createChatModel(config, role);
+            return provider;
         }
         
         // 如果没有找到对应的Provider,尝试使用OpenAI Provider作为默认(兼容OpenAI协议)
@@ -129,7 +205,7 @@ public class ChatModelFactory {
         provider = providers.get("openai");
         
         if (provider != null) {
-            return provider.createChatModel(config, role);
+            return provider;
         }
         
         // 如果连OpenAI Provider都没有,抛出异常
@@ -24,6 +24,15 @@ public interface ChatModelProvider {
      */
     ChatModel createChatModel(SysConfig config, SysRole role);
     
+    /**
+     * 创建的ChatModel是否可以按配置缓存复用。
+     * 持有会过期凭证（如临时token）的提供商应返回false，每次重新创建
+     * @return true表示可缓存
+     */
+    default boolean isCacheable() {
+        return true;
+    }
+
     /**
      * 是否支持该提供商
      * @param provider 提供商名称(小写)
@@ -20,18 +20,11 @@ import org.springframework.ai.zhipuai.ZhiPuAiEmbeddingModel;
 import org.springframework.ai.zhipuai.ZhiPuAiEmbeddingOptions;
 import org.springframework.ai.zhipuai.api.ZhiPuAiApi;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.client.JdkClientHttpRequestFactory;
-import org.springframework.http.client.reactive.JdkClientHttpConnector;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.util.StringUtils;
-import org.springframework.web.client.RestClient;
-import org.springframework.web.reactive.function.client.WebClient;
-
-import java.net.http.HttpClient;
-import java.time.Duration;
 
 @Component
 public class EmbeddingModelFactory {
@@ -39,6 +32,8 @@ public class EmbeddingModelFactory {
     private final Logger logger = LoggerFactory.getLogger(EmbeddingModelFactory.class);
     @Autowired
     private SysConfigService configService;
+    @Autowired
+    private LlmHttpClients httpClients;
 
     public EmbeddingModel takeEmbeddingModel(Integer configId) {
         //SysConfig config = configService.selectModelType("embedding");
@@ -70,7 +65,10 @@ public class EmbeddingModelFactory {
     private EmbeddingModel newOllamaEmbeddingModel(SysConfig config) {
         String endpoint = config.getApiUrl();
         String model = config.getConfigName();
-        var ollamaApi = OllamaApi.builder().baseUrl(endpoint).build();
+        var ollamaApi = OllamaApi.builder().baseUrl(endpoint)
+                .restClientBuilder(httpClients.restClientBuilder(endpoint))
+                .webClientBuilder(httpClients.webClientBuilder(endpoint))
+                .build();
 
         var ollamaOptions = OllamaEmbeddingOptions.builder()
                 .model(model)
@@ -88,23 +86,13 @@ public class EmbeddingModelFactory {
         MultiValueMap<String, String> headers = new LinkedMultiValueMap<>();
         headers.add("Content-Type", "application/json");
 
-        // LM Studio不支持Http/2，所以需要强制使用HTTP/1.1
+        // 与ChatModel共用HTTP客户端，http地址（如LM Studio）固定HTTP/1.1
         var openAiApi = OpenAiApi.builder()
                 .apiKey(StringUtils.hasText(config.getApiKey()) ? new SimpleApiKey(config.getApiKey()) : new NoopApiKey())
                 .baseUrl(config.getApiUrl())
                 .headers(headers)
-                .webClientBuilder(WebClient.builder()
-                        // Force HTTP/1.1 for streaming
-                        .clientConnector(new JdkClientHttpConnector(HttpClient.newBuilder()
-                                .version(HttpClient.Version.HTTP_1_1)
-                                .connectTimeout(Duration.ofSeconds(30))
-                                .build())))
-                .restClientBuilder(RestClient.builder()
-                        // Force HTTP/1.1 for non-streaming
-                        .requestFactory(new JdkClientHttpRequestFactory(HttpClient.newBuilder()
-                                .version(HttpClient.Version.HTTP_1_1)
-                                .connectTimeout(Duration.ofSeconds(30))
-                                .build())))
+                .webClientBuilder(httpClients.webClientBuilder(config.getApiUrl()))
+                .restClientBuilder(httpClients.restClientBuilder(config.getApiUrl()))
                 .build();
         var openAiEmbeddingOptions = OpenAiEmbeddingOptions.builder().model(config.getConfigName()).build();
 
@@ -116,6 +104,8 @@ public class EmbeddingModelFactory {
         var zhiPuAiApi = ZhiPuAiApi.builder()
                 .baseUrl(config.getApiUrl())
                 .apiKey(config.getApiKey())
+                .restClientBuilder(httpClients.restClientBuilder(config.getApiUrl()))
+                .webClientBuilder(httpClients.webClientBuilder(config.getApiUrl()))
                 .build();
 
         var zhipuAiEmbeddingOptions = ZhiPuAiEmbeddingOptions.builder().model(config.getConfigName()).build();
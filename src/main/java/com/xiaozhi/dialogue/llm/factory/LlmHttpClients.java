@@ -0,0 +1,117 @@
+package com.xiaozhi.dialogue.llm.factory;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.http.client.reactive.JdkClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/**
+ * LLM调用共享的HTTP客户端
+ * 所有ChatModel/EmbeddingModel共用同一组JDK HttpClient，连接池和TLS会话在多轮对话之间复用，
+ * 避免每次创建模型都重新握手。
+ * https地址按配置使用HTTP/2（ALPN协商，服务端不支持时自动降级）；
+ * http地址固定使用HTTP/1.1，因为JDK对明文HTTP/2会发起h2c升级，LM Studio等本地服务不支持。
+ * JDK连接池的空闲连接数和保活时间只能通过JVM启动参数设置（对进程内所有HttpClient生效），这里不修改：
+ * -Djdk.httpclient.connectionPoolSize=0 -Djdk.httpclient.keepalive.timeout=1200
+ */
+@Component
+public class LlmHttpClients {
+
+    private static final Logger logger = LoggerFactory.getLogger(LlmHttpClients.class);
+
+    @Value("${llm.http.version:HTTP_2}")
+    private HttpClient.Version version = HttpClient.Version.HTTP_2;
+
+    @Value("${llm.http.connect-timeout-seconds:30}")
+    private int connectTimeoutSeconds = 30;
+
+    // 读超时，0表示不限制（流式输出可能持续较长时间）
+    @Value("${llm.http.read-timeout-seconds:0}")
+    private int readTimeoutSeconds = 0;
+
+    private HttpClient secureClient;
+    private HttpClient plainClient;
+
+    private JdkClientHttpRequestFactory secureRequestFactory;
+    private JdkClientHttpRequestFactory plainRequestFactory;
+    private JdkClientHttpConnector secureConnector;
+    private JdkClientHttpConnector plainConnector;
+
+    @PostConstruct
+    public void init() {
+        secureClient = newClient(version);
+        plainClient = version == HttpClient.Version.HTTP_1_1 ? secureClient : newClient(HttpClient.Version.HTTP_1_1);
+
+        secureRequestFactory = newRequestFactory(secureClient);
+        plainRequestFactory = plainClient == secureClient ? secureRequestFactory : newRequestFactory(plainClient);
+        secureConnector = newConnector(secureClient);
+        plainConnector = plainClient == secureClient ? secureConnector : newConnector(plainClient);
+
+        logger.info("LLM共享HTTP客户端已初始化: version={}, connectTimeout={}s, readTimeout={}s, keepAlive={}s",
+                version, connectTimeoutSeconds, readTimeoutSeconds, System.getProperty("jdk.httpclient.keepalive.timeout", "1200"));
+    }
+
+    /**
+     * 非流式调用使用的RestClient.Builder，每次返回新的Builder，底层连接共享
+     */
+    public RestClient.Builder restClientBuilder(String endpoint) {
+        return RestClient.builder().requestFactory(isPlainHttp(endpoint) ? plainRequestFactory : secureRequestFactory);
+    }
+
+    /**
+     * 流式调用使用的WebClient.Builder，每次返回新的Builder，底层连接共享
+     */
+    public WebClient.Builder webClientBuilder(String endpoint) {
+        return WebClient.builder().clientConnector(isPlainHttp(endpoint) ? plainConnector : secureConnector);
+    }
+
+    /**
+     * 获取底层HttpClient
+     */
+    public HttpClient httpClient(String endpoint) {
+        return isPlainHttp(endpoint) ? plainClient : secureClient;
+    }
+
+    private static boolean isPlainHttp(String endpoint) {
+        if (endpoint == null) {
+            return false;
+        }
+        try {
+            return "http".equalsIgnoreCase(URI.create(endpoint.trim()).getScheme());
+        } catch (IllegalArgumentException e) {
+            return endpoint.trim().toLowerCase().startsWith("http:");
+        }
+    }
+
+    private HttpClient newClient(HttpClient.Version httpVersion) {
+        return HttpClient.newBuilder()
+                .version(httpVersion)
+                .connectTimeout(Duration.ofSeconds(connectTimeoutSeconds))
+                .build();
+    }
+
+    private JdkClientHttpRequestFactory newRequestFactory(HttpClient client) {
+        JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(client);
+        if (readTimeoutSeconds > 0) {
+            factory.setReadTimeout(Duration.ofSeconds(readTimeoutSeconds));
+        }
+        return factory;
+    }
+
+    private JdkClientHttpConnector newConnector(HttpClient client) {
+        JdkClientHttpConnector connector = new JdkClientHttpConnector(client);
+        if (readTimeoutSeconds > 0) {
+            connector.setReadTimeout(Duration.ofSeconds(readTimeoutSeconds));
+        }
+        return connector;
+    }
+}
@@ -30,7 +30,15 @@ public class CozeModelProvider implements ChatModelProvider {
     public String getProviderName() {
         return "coze";
     }
-    
+
+    /**
+     * Coze的token会过期，每次重新获取
+     */
+    @Override
+    public boolean isCacheable() {
+        return false;
+    }
+
     @Override
     public ChatModel createChatModel(SysConfig config, SysRole role) {
         String model = config.getConfigName();
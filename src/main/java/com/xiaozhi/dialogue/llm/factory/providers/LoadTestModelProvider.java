@@ -0,0 +1,32 @@
+package com.xiaozhi.dialogue.llm.factory.providers;
+
+import com.xiaozhi.dialogue.llm.factory.ChatModelProvider;
+import com.xiaozhi.dialogue.llm.providers.LoadTestChatModel;
+import com.xiaozhi.entity.SysConfig;
+import com.xiaozhi.entity.SysRole;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 压测用的模拟LLM提供者，配置的提供商填 loadtest
+ */
+@Component
+public class LoadTestModelProvider implements ChatModelProvider {
+
+    @Value("${loadtest.llm.first-token-ms:400}")
+    private long firstTokenMs = 400;
+
+    @Value("${loadtest.llm.token-interval-ms:40}")
+    private long tokenIntervalMs = 40;
+
+    @Override
+    public String getProviderName() {
+        return "loadtest";
+    }
+
+    @Override
+    public ChatModel createChatModel(SysConfig config, SysRole role) {
+        return new LoadTestChatModel(firstTokenMs, tokenIntervalMs);
+    }
+}
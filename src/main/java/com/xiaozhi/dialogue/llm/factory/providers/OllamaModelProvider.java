@@ -1,6 +1,7 @@
 package com.xiaozhi.dialogue.llm.factory.providers;
 
 import com.xiaozhi.dialogue.llm.factory.ChatModelProvider;
+import com.xiaozhi.dialogue.llm.factory.LlmHttpClients;
 import com.xiaozhi.entity.SysConfig;
 import com.xiaozhi.entity.SysRole;
 import org.slf4j.Logger;
@@ -24,6 +25,9 @@ public class OllamaModelProvider implements ChatModelProvider {
     
     @Autowired
     private ToolCallingManager toolCallingManager;
+
+    @Autowired
+    private LlmHttpClients httpClients;
     
     @Override
     public String getProviderName() {
@@ -39,6 +43,8 @@ public class OllamaModelProvider implements ChatModelProvider {
         
         var ollamaApi = OllamaApi.builder()
                 .baseUrl(endpoint)
+                .restClientBuilder(httpClients.restClientBuilder(endpoint))
+                .webClientBuilder(httpClients.webClientBuilder(endpoint))
                 .build();
         
         var ollamaOptions = OllamaChatOptions.builder()
@@ -1,6 +1,7 @@
 package com.xiaozhi.dialogue.llm.factory.providers;
 
 import com.xiaozhi.dialogue.llm.factory.ChatModelProvider;
+import com.xiaozhi.dialogue.llm.factory.LlmHttpClients;
 import com.xiaozhi.entity.SysConfig;
 import com.xiaozhi.entity.SysRole;
 import io.micrometer.observation.ObservationRegistry;
@@ -14,17 +15,10 @@ import org.springframework.ai.openai.OpenAiChatModel;
 import org.springframework.ai.openai.OpenAiChatOptions;
 import org.springframework.ai.openai.api.OpenAiApi;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.client.JdkClientHttpRequestFactory;
-import org.springframework.http.client.reactive.JdkClientHttpConnector;
 import org.springframework.stereotype.Component;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.util.StringUtils;
-import org.springframework.web.client.RestClient;
-import org.springframework.web.reactive.function.client.WebClient;
-
-import java.net.http.HttpClient;
-import java.time.Duration;
 
 /**
  * OpenAI及兼容OpenAI协议的模型提供者
@@ -40,6 +34,9 @@ public class OpenAiModelProvider implements ChatModelProvider {
 
     @Autowired
     private ObservationRegistry observationRegistry;
+
+    @Autowired
+    private LlmHttpClients httpClients;
     
     @Override
     public String getProviderName() {
@@ -57,24 +54,14 @@ public class OpenAiModelProvider implements ChatModelProvider {
         MultiValueMap<String, String> headers = new LinkedMultiValueMap<>();
         headers.add("Content-Type", "application/json");
         
-        // LM Studio不支持Http/2，所以需要强制使用HTTP/1.1
+        // 使用共享HTTP客户端，多轮对话复用连接；http地址（如LM Studio）固定HTTP/1.1
         var openAiApi = OpenAiApi.builder()
                 .apiKey(StringUtils.hasText(apiKey) ? new SimpleApiKey(apiKey) : new NoopApiKey())
                 .baseUrl(endpoint)
                 .completionsPath("/chat/completions")
                 .headers(headers)
-                .webClientBuilder(WebClient.builder()
-                        // Force HTTP/1.1 for streaming
-                        .clientConnector(new JdkClientHttpConnector(HttpClient.newBuilder()
-                                .version(HttpClient.Version.HTTP_1_1)
-                                .connectTimeout(Duration.ofSeconds(30))
-                                .build())))
-                .restClientBuilder(RestClient.builder()
-                        // Force HTTP/1.1 for non-streaming
-                        .requestFactory(new JdkClientHttpRequestFactory(HttpClient.newBuilder()
-                                .version(HttpClient.Version.HTTP_1_1)
-                                .connectTimeout(Duration.ofSeconds(30))
-                                .build())))
+                .webClientBuilder(httpClients.webClientBuilder(endpoint))
+                .restClientBuilder(httpClients.restClientBuilder(endpoint))
                 .build();
         
         var openAiChatOptions = OpenAiChatOptions.builder()
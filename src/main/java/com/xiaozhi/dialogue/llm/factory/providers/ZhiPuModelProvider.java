@@ -1,6 +1,7 @@
 package com.xiaozhi.dialogue.llm.factory.providers;
 
 import com.xiaozhi.dialogue.llm.factory.ChatModelProvider;
+import com.xiaozhi.dialogue.llm.factory.LlmHttpClients;
 import com.xiaozhi.entity.SysConfig;
 import com.xiaozhi.entity.SysRole;
 import org.slf4j.Logger;
@@ -9,6 +10,7 @@ import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.zhipuai.ZhiPuAiChatModel;
 import org.springframework.ai.zhipuai.ZhiPuAiChatOptions;
 import org.springframework.ai.zhipuai.api.ZhiPuAiApi;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 /**
@@ -18,6 +20,9 @@ import org.springframework.stereotype.Component;
 public class ZhiPuModelProvider implements ChatModelProvider {
     
     private static final Logger logger = LoggerFactory.getLogger(ZhiPuModelProvider.class);
+
+    @Autowired
+    private LlmHttpClients httpClients;
     
     @Override
     public String getProviderName() {
@@ -32,7 +37,10 @@ public class ZhiPuModelProvider implements ChatModelProvider {
         Double temperature = role.getTemperature();
         Double topP = role.getTopP();
         
-        var zhiPuAiApi = ZhiPuAiApi.builder().baseUrl(endpoint).apiKey(apiKey).build();
+        var zhiPuAiApi = ZhiPuAiApi.builder().baseUrl(endpoint).apiKey(apiKey)
+                .restClientBuilder(httpClients.restClientBuilder(endpoint))
+                .webClientBuilder(httpClients.webClientBuilder(endpoint))
+                .build();
         
         var zhipuAiChatOptions = ZhiPuAiChatOptions.builder()
                 .model(model)
@@ -3,21 +3,79 @@ package com.xiaozhi.dialogue.llm.intent;
 import com.xiaozhi.utils.ExitKeywordDetector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * 意图检测器
  * 在调用 LLM 之前检测用户输入的明确意图
  * 对于某些明确的意图（如退出），直接处理而不经过 LLM
+ * <p>
+ * 所有意图的关键词（内置的和配置的）编译为一个自动机，一次扫描输入即可得到匹配的意图、优先级和关键词位置，
+ * 耗时与关键词数量无关。关键词变化时构建新的自动机整体替换，正在进行的检测不受影响。
  */
 @Component
 public class IntentDetector {
     private static final Logger logger = LoggerFactory.getLogger(IntentDetector.class);
 
-    private final ExitKeywordDetector exitKeywordDetector;
+    public static final String EXIT = "EXIT";
+
+    // 退出意图的优先级
+    private static final int EXIT_PRIORITY = 100;
+
+    // 按来源分组的关键词，由this加锁
+    private final Map<String, List<IntentKeyword>> keywordSets = new LinkedHashMap<>();
+
+    private volatile IntentKeywordMatcher matcher;
 
     public IntentDetector() {
-        this.exitKeywordDetector = new ExitKeywordDetector();
+        this(List.of());
+    }
+
+    /**
+     * @param exitKeywords 配置的额外退出关键词
+     */
+    @Autowired
+    public IntentDetector(@Value("${intent.exit.keywords:}") List<String> exitKeywords) {
+        updateKeywords("exit", ExitKeywordDetector.intentKeywords(EXIT, EXIT_PRIORITY));
+        updateKeywords("exit-config", exitKeywords.stream()
+                .filter(StringUtils::hasText)
+                .map(keyword -> IntentKeyword.keyword(EXIT, EXIT_PRIORITY, keyword))
+                .toList());
+    }
+
+    /**
+     * 替换某一来源的关键词并重新构建自动机。
+     * 意图类型需要在 DialogueService.handleIntent 中处理。
+     *
+     * @param source   关键词来源，如内置、配置
+     * @param keywords 该来源的全部关键词，为空时移除该来源
+     */
+    public synchronized void updateKeywords(String source, List<IntentKeyword> keywords) {
+        if (keywords == null || keywords.isEmpty()) {
+            keywordSets.remove(source);
+        } else {
+            keywordSets.put(source, List.copyOf(keywords));
+        }
+        List<IntentKeyword> all = new ArrayList<>();
+        keywordSets.values().forEach(all::addAll);
+        matcher = new IntentKeywordMatcher(all);
+    }
+
+    /**
+     * 匹配用户输入的意图
+     *
+     * @return 匹配的意图、优先级和关键词位置，没有明确意图返回 null
+     */
+    public IntentMatch match(String userInput) {
+        return matcher.match(userInput);
     }
 
     /**
@@ -27,20 +85,15 @@ public class IntentDetector {
      * @return 检测到的意图，如果没有明确意图返回 null
      */
     public UserIntent detectIntent(String userInput) {
-        if (userInput == null || userInput.trim().isEmpty()) {
+        IntentMatch match = match(userInput);
+        if (match == null) {
             return null;
         }
-
-        // 检测退出意图
-        if (exitKeywordDetector.detectExitIntent(userInput)) {
-            logger.info("检测到退出意图: \"{}\"", userInput);
+        logger.info("检测到意图: {} \"{}\", 关键词: \"{}\"", match.intent(), userInput, match.keyword());
+        if (EXIT.equals(match.intent())) {
             return new ExitIntent();
         }
-
-        // 未来可以在这里添加更多意图检测
-        // 例如：欢迎意图、帮助意图等
-
-        return null;
+        return match::intent;
     }
 
     /**
@@ -59,7 +112,7 @@ public class IntentDetector {
     public static class ExitIntent implements UserIntent {
         @Override
         public String getType() {
-            return "EXIT";
+            return EXIT;
         }
     }
 }
@@ -0,0 +1,48 @@
+package com.xiaozhi.dialogue.llm.intent;
+
+/**
+ * 意图关键词
+ *
+ * @param intent   意图类型
+ * @param priority 优先级，多个意图同时匹配时取优先级高的
+ * @param kind     关键词的作用
+ * @param scope    否定词与被否定词的分组，只有同组的否定词能否定被否定词；其他类型为null
+ * @param keyword  关键词，匹配前与输入一样转为小写并把连续空白视为一个空格
+ */
+public record IntentKeyword(String intent, int priority, Kind kind, String scope, String keyword) {
+
+    public enum Kind {
+        /**
+         * 出现即匹配意图
+         */
+        KEYWORD,
+        /**
+         * 只在输入较短时匹配意图，且必须原样出现（空白不能替换）
+         */
+        SHORT_INPUT_KEYWORD,
+        /**
+         * 否定词，如"不"、"别"
+         */
+        NEGATION,
+        /**
+         * 被否定词，如"退出"、"离开"。同组的否定词出现在它之前时，不匹配该意图
+         */
+        NEGATABLE
+    }
+
+    public static IntentKeyword keyword(String intent, int priority, String keyword) {
+        return new IntentKeyword(intent, priority, Kind.KEYWORD, null, keyword);
+    }
+
+    public static IntentKeyword shortInputKeyword(String intent, int priority, String keyword) {
+        return new IntentKeyword(intent, priority, Kind.SHORT_INPUT_KEYWORD, null, keyword);
+    }
+
+    public static IntentKeyword negation(String intent, String scope, String keyword) {
+        return new IntentKeyword(intent, 0, Kind.NEGATION, scope, keyword);
+    }
+
+    public static IntentKeyword negatable(String intent, String scope, String keyword) {
+        return new IntentKeyword(intent, 0, Kind.NEGATABLE, scope, keyword);
+    }
+}
@@ -0,0 +1,199 @@
+package com.xiaozhi.dialogue.llm.intent;
+
+import com.xiaozhi.utils.KeywordAutomaton;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 把所有意图的关键词编译为一个 {@link KeywordAutomaton}，一次扫描输入得到匹配的意图。
+ * 构建后不可修改，关键词变化时构建新的实例替换。
+ * <p>
+ * 输入先去除首尾空白并转为小写，连续空白视为一个空格（关键词同样处理），所以"see  you"能匹配关键词"see you"。
+ * 对每个意图：
+ * - 同组的否定词出现在被否定词之前时（如"不要退出"），不匹配该意图
+ * - 出现 KEYWORD 即匹配；没有时，输入不超过 {@value #SHORT_INPUT_LENGTH} 个字符且出现 SHORT_INPUT_KEYWORD 也匹配
+ * 多个意图同时匹配时取优先级高的，优先级相同取关键词出现早的。
+ * <p>
+ * 换行符的处理与原先基于 ".*关键词.*" 整体匹配的正则一致：输入中有换行符时，换行符都在关键词内部的空白中才匹配 KEYWORD，
+ * 并且不做否定判断。
+ */
+public final class IntentKeywordMatcher {
+
+    // 只在输入不超过该长度时匹配 SHORT_INPUT_KEYWORD
+    static final int SHORT_INPUT_LENGTH = 15;
+
+    /**
+     * @param keyword 意图关键词
+     * @param literal 转为小写的关键词，SHORT_INPUT_KEYWORD 需在输入中原样出现
+     */
+    private record Entry(IntentKeyword keyword, String literal) {
+    }
+
+    private final KeywordAutomaton<Entry> automaton;
+
+    public IntentKeywordMatcher(Collection<IntentKeyword> keywords) {
+        KeywordAutomaton.Builder<Entry> builder = KeywordAutomaton.builder();
+        for (IntentKeyword keyword : keywords) {
+            String literal = keyword.keyword().trim().toLowerCase();
+            if (!literal.isEmpty()) {
+                builder.add(collapseWhitespace(literal), new Entry(keyword, literal));
+            }
+        }
+        this.automaton = builder.build();
+    }
+
+    /**
+     * 关键词数量
+     */
+    public int size() {
+        return automaton.size();
+    }
+
+    /**
+     * 匹配输入的意图
+     *
+     * @return 没有匹配的意图时返回null
+     */
+    public IntentMatch match(String input) {
+        if (input == null) {
+            return null;
+        }
+        String text = input.trim().toLowerCase();
+        if (text.isEmpty()) {
+            return null;
+        }
+        Scan scan = new Scan(text);
+        automaton.forEachMatch(scan.normalized, scan);
+        return scan.result();
+    }
+
+    /**
+     * 一次匹配的状态：把连续空白合并后的文本及其与原文本的位置对应，以及每个意图的匹配情况
+     */
+    private static final class Scan implements KeywordAutomaton.Visitor<Entry> {
+        private final String text;
+        private final StringBuilder normalized;
+        // 合并后每个字符在原文本中的起止位置
+        private final int[] starts;
+        private final int[] ends;
+        private int firstLineBreak = -1;
+        private int lastLineBreak = -1;
+        private final Map<String, IntentState> intents = new HashMap<>(4);
+
+        Scan(String text) {
+            this.text = text;
+            this.normalized = new StringBuilder(text.length());
+            this.starts = new int[text.length()];
+            this.ends = new int[text.length()];
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (isLineBreak(c)) {
+                    if (firstLineBreak < 0) {
+                        firstLineBreak = i;
+                    }
+                    lastLineBreak = i;
+                }
+                if (isWhitespace(c) && i > 0 && isWhitespace(text.charAt(i - 1))) {
+                    ends[normalized.length() - 1] = i + 1;
+                    continue;
+                }
+                starts[normalized.length()] = i;
+                ends[normalized.length()] = i + 1;
+                normalized.append(isWhitespace(c) ? ' ' : c);
+            }
+        }
+
+        @Override
+        public void onMatch(int start, int end, Entry entry) {
+            IntentKeyword keyword = entry.keyword();
+            int from = starts[start];
+            int to = ends[end - 1];
+            IntentState state = intents.computeIfAbsent(keyword.intent(), intent -> new IntentState());
+            switch (keyword.kind()) {
+                case KEYWORD -> {
+                    // 换行符只能出现在关键词内部的空白中
+                    if (state.keyword == null && (firstLineBreak < 0 || (firstLineBreak >= from && lastLineBreak < to))) {
+                        state.keyword = new IntentMatch(keyword.intent(), keyword.priority(), from, to, entry.literal());
+                    }
+                }
+                case SHORT_INPUT_KEYWORD -> {
+                    if (state.shortInputKeyword == null && to - from == entry.literal().length()
+                            && text.startsWith(entry.literal(), from)) {
+                        state.shortInputKeyword = new IntentMatch(keyword.intent(), keyword.priority(), from, to, entry.literal());
+                    }
+                }
+                case NEGATION -> state.scope(keyword.scope())[0] = Math.min(state.scope(keyword.scope())[0], to);
+                case NEGATABLE -> state.scope(keyword.scope())[1] = Math.max(state.scope(keyword.scope())[1], from);
+            }
+        }
+
+        IntentMatch result() {
+            IntentMatch best = null;
+            for (IntentState state : intents.values()) {
+                IntentMatch match = state.match(text.length(), firstLineBreak < 0);
+                if (match != null && (best == null || match.priority() > best.priority()
+                        || (match.priority() == best.priority() && match.start() < best.start()))) {
+                    best = match;
+                }
+            }
+            return best;
+        }
+    }
+
+    private static final class IntentState {
+        private IntentMatch keyword;
+        private IntentMatch shortInputKeyword;
+        // 每组否定词最早的结束位置、被否定词最晚的起始位置
+        private Map<String, int[]> scopes;
+
+        int[] scope(String scope) {
+            if (scopes == null) {
+                scopes = new HashMap<>(2);
+            }
+            return scopes.computeIfAbsent(scope, key -> new int[]{Integer.MAX_VALUE, -1});
+        }
+
+        IntentMatch match(int length, boolean singleLine) {
+            if (singleLine && scopes != null) {
+                for (int[] scope : scopes.values()) {
+                    if (scope[0] <= scope[1]) {
+                        return null;
+                    }
+                }
+            }
+            if (keyword != null) {
+                return keyword;
+            }
+            return length <= SHORT_INPUT_LENGTH ? shortInputKeyword : null;
+        }
+    }
+
+    private static String collapseWhitespace(String keyword) {
+        StringBuilder result = new StringBuilder(keyword.length());
+        for (int i = 0; i < keyword.length(); i++) {
+            char c = keyword.charAt(i);
+            if (!isWhitespace(c)) {
+                result.append(c);
+            } else if (!isWhitespace(keyword.charAt(i - 1))) {
+                result.append(' ');
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * 与正则的 \s 一致
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || (c >= '\t' && c <= '\r');
+    }
+
+    /**
+     * 与正则的 . 不能匹配的行终止符一致
+     */
+    private static boolean isLineBreak(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+}
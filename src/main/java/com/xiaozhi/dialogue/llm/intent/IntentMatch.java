@@ -0,0 +1,13 @@
+package com.xiaozhi.dialogue.llm.intent;
+
+/**
+ * 意图关键词的匹配结果
+ *
+ * @param intent   意图类型
+ * @param priority 意图优先级
+ * @param start    关键词在输入中的起始位置（输入去除首尾空白并转为小写后）
+ * @param end      关键词在输入中的结束位置（不含）
+ * @param keyword  匹配到的关键词
+ */
+public record IntentMatch(String intent, int priority, int start, int end, String keyword) {
+}
@@ -3,6 +3,8 @@ package com.xiaozhi.dialogue.llm.memory;
 import com.xiaozhi.dao.MessageMapper;
 import com.xiaozhi.entity.Base;
 import com.xiaozhi.entity.SysMessage;
+import com.xiaozhi.service.impl.MessageWriteBuffer;
+import com.xiaozhi.service.impl.RecentMessageCache;
 
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
@@ -27,20 +29,38 @@ public class DatabaseChatMemory  implements ChatMemory {
 
     private final MessageMapper messageMapper;
 
+    private final RecentMessageCache recentMessageCache;
+
+    private final MessageWriteBuffer messageWriteBuffer;
+
     @Autowired
-    public DatabaseChatMemory(MessageMapper messageMapper) {
+    public DatabaseChatMemory(MessageMapper messageMapper, RecentMessageCache recentMessageCache,
+                              MessageWriteBuffer messageWriteBuffer) {
         this.messageMapper = messageMapper;
+        this.recentMessageCache = recentMessageCache;
+        this.messageWriteBuffer = messageWriteBuffer;
     }
 
+    /**
+     * 设备重连时优先读取最近消息缓存，未命中时才查询数据库。
+     * 查询前先写入缓冲区中的消息，否则刚保存、尚未写入的几轮对话不在查询结果里，也不会再追加到新加载的缓存中
+     */
     @Override
     public List<Message> find(String deviceId, int roleId, int limit) {
         try {
-            List<SysMessage> messages = messageMapper.find(deviceId, roleId, limit);
-            messages = new ArrayList<>(messages);
-            // 按时间升序排序，时间相同时按sender降序排序，保持user在assistant前面
-            messages.sort(Comparator.<SysMessage, Date>comparing(SysMessage::getCreateTime)
-                                    .thenComparing(SysMessage::getSender, Comparator.reverseOrder()));
-            if (messages == null || messages.isEmpty()) {
+            List<SysMessage> messages = recentMessageCache.get(deviceId, roleId, limit);
+            if (messages == null) {
+                int capacity = recentMessageCache.getCapacity();
+                messageWriteBuffer.flush();
+                // 查询结果按时间降序、时间相同时按sender升序，反转后user在assistant前面
+                messages = new ArrayList<>(messageMapper.find(deviceId, roleId, Math.max(limit, capacity)));
+                Collections.reverse(messages);
+                recentMessageCache.load(deviceId, roleId, messages);
+                if (messages.size() > limit) {
+                    messages = messages.subList(messages.size() - limit, messages.size());
+                }
+            }
+            if (messages.isEmpty()) {
                 return Collections.emptyList();
             }
             return messages.stream()
@@ -57,8 +77,12 @@ public class DatabaseChatMemory  implements ChatMemory {
     private static @NotNull AbstractMessage convert(SysMessage message) {
         String role = message.getSender();
         // 一般消息("messageType", "NORMAL");//默认为普通消息
-        Map<String, Object> metadata = Map.of("messageId", message.getMessageId(), ChatMemory.MESSAGE_TYPE_KEY,
-                message.getMessageType());
+        // 缓存中还未写入数据库的消息没有messageId
+        Map<String, Object> metadata = new HashMap<>();
+        if (message.getMessageId() != null) {
+            metadata.put("messageId", message.getMessageId());
+        }
+        metadata.put(ChatMemory.MESSAGE_TYPE_KEY, message.getMessageType());
         return switch (role) {
             case "assistant" -> AssistantMessage.builder().content(message.getMessage()).properties(metadata).build();
             case "user" -> UserMessage.builder().text(message.getMessage()).metadata(metadata).build();
@@ -16,6 +16,8 @@ import java.util.*;
  */
 public class MessageWindowConversation extends Conversation {
     private final int maxMessages;
+    // 窗口起点，之前的消息已滑出窗口。滑出的消息积累到一个窗口大小后换用新列表整体丢弃，避免逐条从头部移除
+    private int start = 0;
     private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(MessageWindowConversation.class);
 
 
@@ -26,6 +28,7 @@ public class MessageWindowConversation extends Conversation {
         logger.info("加载设备{}的普通消息(SysMessage.MESSAGE_TYPE_NORMAL)作为对话历史",device.getDeviceId());
         List<Message> history = chatMemory.find(device.getDeviceId(), role.getRoleId(), maxMessages);
         super.messages.addAll(history) ;
+        slide();
     }
 
     public static class Builder {
@@ -83,12 +86,13 @@ public class MessageWindowConversation extends Conversation {
 
             if(message == Conversation.ROLLBACK_MESSAGE){
                 // 避免特殊指令影响后续对话效果。将此前已添加的UserMessage移除。
-                if(messages.size() > 0){
+                if(messages.size() > start){
                     messages.removeLast();
                 }
             }else{
                 ChatMemory.setTimeMillis(message, timeMillis);
                 messages.add(message);
+                slide();
             }
         }else{
             logger.warn("不支持的消息类型：{}",message.getClass().getName());
@@ -97,19 +101,34 @@ public class MessageWindowConversation extends Conversation {
 
     @Override
     public List<Message> messages() {
-        // maxMessages一般设置为偶数，而实际调用此方法时一般是已添加了UserMessage。缩减缓存的历史消息size时，一般是移除一轮（User+Assistant）
-        while (messages.size() > maxMessages+1) {
-            messages.remove(0);
-            messages.remove(0);
+        // 复制窗口内的消息，之后添加、回滚的消息和窗口滑动都不影响返回的列表
+        Optional<SystemMessage> roleSystemMessage = roleSystemMessage();
+        int offset = roleSystemMessage.isPresent() ? 1 : 0;
+        Message[] window = new Message[messages.size() - start + offset];
+        roleSystemMessage.ifPresent(system -> window[0] = system);
+        for (int i = start; i < messages.size(); i++) {
+            window[i - start + offset] = messages.get(i);
         }
-        // 新消息列表对象，避免使用过程中污染原始列表对象
-        List<Message> historyMessages = new ArrayList<>();
-        var roleSystemMessage = roleSystemMessage();
-        if(roleSystemMessage.isPresent()){
-            historyMessages.add(roleSystemMessage.get());
+        return Collections.unmodifiableList(Arrays.asList(window));
+    }
+
+    @Override
+    public void clear() {
+        messages = new ArrayList<>();
+        start = 0;
+    }
+
+    /**
+     * maxMessages一般设置为偶数，而实际调用messages()时一般是已添加了UserMessage。缩减窗口时，一般是移除一轮（User+Assistant）
+     */
+    private void slide() {
+        while (messages.size() - start > maxMessages + 1) {
+            start += 2;
+        }
+        if (start > maxMessages) {
+            messages = new ArrayList<>(messages.subList(start, messages.size()));
+            start = 0;
         }
-        historyMessages.addAll(messages);
-        return historyMessages;
     }
 
 }
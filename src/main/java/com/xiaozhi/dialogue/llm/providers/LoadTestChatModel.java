@@ -0,0 +1,72 @@
+package com.xiaozhi.dialogue.llm.providers;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 压测用的模拟LLM，不请求任何外部服务。
+ * 首个token等待固定时长，之后按固定间隔逐个返回固定回复的token，不调用工具。
+ */
+public class LoadTestChatModel implements ChatModel {
+
+    /**
+     * 固定回复，三个句子
+     */
+    public static final String REPLY = "好的，我来给你讲一个小故事。从前有一只小兔子，它住在森林里。每天早上它都会去河边喝水。";
+
+    // 每个token的字数
+    private static final int TOKEN_CHARS = 3;
+
+    private static final List<String> TOKENS = tokenize(REPLY);
+
+    private final Duration firstTokenDelay;
+    private final Duration tokenInterval;
+
+    /**
+     * @param firstTokenMs    请求到首个token的耗时
+     * @param tokenIntervalMs 之后每个token的间隔
+     */
+    public LoadTestChatModel(long firstTokenMs, long tokenIntervalMs) {
+        this.firstTokenDelay = Duration.ofMillis(firstTokenMs);
+        this.tokenInterval = Duration.ofMillis(tokenIntervalMs);
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        try {
+            Thread.sleep(firstTokenDelay.plus(tokenInterval.multipliedBy(TOKENS.size() - 1)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return response(REPLY);
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        return Flux.fromIterable(TOKENS)
+                .index()
+                .concatMap(token -> Flux.just(token.getT2())
+                        .delayElements(token.getT1() == 0 ? firstTokenDelay : tokenInterval))
+                .map(LoadTestChatModel::response);
+    }
+
+    private static ChatResponse response(String text) {
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(text))));
+    }
+
+    private static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < text.length(); i += TOKEN_CHARS) {
+            tokens.add(text.substring(i, Math.min(text.length(), i + TOKEN_CHARS)));
+        }
+        return List.copyOf(tokens);
+    }
+}
@@ -7,6 +7,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.ai.tool.ToolCallback;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 与session绑定的functionTools
@@ -16,7 +17,8 @@ public class ToolsSessionHolder {
 
     private static final String TAG = "FUNCTION_SESSION";
 
-    private final Map<String, ToolCallback> functionRegistry = new HashMap<>();
+    // 同一轮的多个工具调用并发执行，可能同时注册、注销工具
+    private final Map<String, ToolCallback> functionRegistry = new ConcurrentHashMap<>();
 
     private String sessionId;
 
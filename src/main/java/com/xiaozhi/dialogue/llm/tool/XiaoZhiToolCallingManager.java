@@ -1,5 +1,6 @@
 package com.xiaozhi.dialogue.llm.tool;
 
+import io.micrometer.observation.Observation;
 import io.micrometer.observation.ObservationRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,8 +31,14 @@ import org.springframework.context.ApplicationContextAware;
 import org.springframework.util.Assert;
 import org.springframework.util.CollectionUtils;
 
+import java.time.Duration;
 import java.util.*;
-import java.util.HashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * 自定义的工具调用管理器，用于处理工具调用和执行。
@@ -56,24 +63,43 @@ public class XiaoZhiToolCallingManager implements ToolCallingManager, Applicatio
     private static final ToolExecutionExceptionProcessor DEFAULT_TOOL_EXECUTION_EXCEPTION_PROCESSOR
             = DefaultToolExecutionExceptionProcessor.builder().build();
 
+    private static final Duration DEFAULT_TOOL_CALL_TIMEOUT = Duration.ofSeconds(30);
+
     // @formatter:on
+
+    // 并发执行工具调用，设备MCP等调用大部分时间在等待响应
+    private static final ExecutorService TOOL_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
     private final ObservationRegistry observationRegistry;
 
     private final ToolCallbackResolver toolCallbackResolver;
 
     private final ToolExecutionExceptionProcessor toolExecutionExceptionProcessor;
 
+    private final Duration toolCallTimeout;
+
     private ToolCallingObservationConvention observationConvention = DEFAULT_OBSERVATION_CONVENTION;
 
     public XiaoZhiToolCallingManager(ObservationRegistry observationRegistry, ToolCallbackResolver toolCallbackResolver,
                                      ToolExecutionExceptionProcessor toolExecutionExceptionProcessor) {
+        this(observationRegistry, toolCallbackResolver, toolExecutionExceptionProcessor, DEFAULT_TOOL_CALL_TIMEOUT);
+    }
+
+    /**
+     * @param toolCallTimeout 单个工具调用的超时时间，超时后中断该调用，以错误信息作为工具结果
+     */
+    public XiaoZhiToolCallingManager(ObservationRegistry observationRegistry, ToolCallbackResolver toolCallbackResolver,
+                                     ToolExecutionExceptionProcessor toolExecutionExceptionProcessor,
+                                     Duration toolCallTimeout) {
         Assert.notNull(observationRegistry, "observationRegistry cannot be null");
         Assert.notNull(toolCallbackResolver, "toolCallbackResolver cannot be null");
         Assert.notNull(toolExecutionExceptionProcessor, "toolCallExceptionConverter cannot be null");
+        Assert.notNull(toolCallTimeout, "toolCallTimeout cannot be null");
 
         this.observationRegistry = observationRegistry;
         this.toolCallbackResolver = toolCallbackResolver;
         this.toolExecutionExceptionProcessor = toolExecutionExceptionProcessor;
+        this.toolCallTimeout = toolCallTimeout;
     }
     
     @Override
@@ -120,14 +146,16 @@ public class XiaoZhiToolCallingManager implements ToolCallingManager, Applicatio
 
         // 使用Spring AI原始实现：直接传递AssistantMessage，不合并ToolCall
         AssistantMessage assistantMessage = toolCallGeneration.get().getOutput();
+        // 调用前后的对话历史使用同一条带工具名称元数据的AssistantMessage
+        AssistantMessage historyAssistantMessage = withToolName(assistantMessage);
 
-        ToolContext toolContext = buildToolContext(prompt, assistantMessage);
+        ToolContext toolContext = buildToolContext(prompt, historyAssistantMessage);
 
         XiaoZhiToolCallingManager.InternalToolExecutionResult internalToolExecutionResult = executeToolCall(prompt, assistantMessage,
                 toolContext);
 
-        List<Message> conversationHistory = buildConversationHistoryAfterToolExecution(prompt.getInstructions(),
-                assistantMessage, internalToolExecutionResult.toolResponseMessage());
+        List<Message> conversationHistory = buildConversationHistory(prompt.getInstructions(),
+                historyAssistantMessage, internalToolExecutionResult.toolResponseMessage());
 
         return ToolExecutionResult.builder()
                 .conversationHistory(conversationHistory)
@@ -135,94 +163,63 @@ public class XiaoZhiToolCallingManager implements ToolCallingManager, Applicatio
                 .build();
     }
 
-    private static ToolContext buildToolContext(Prompt prompt, AssistantMessage assistantMessage) {
+    private static ToolContext buildToolContext(Prompt prompt, AssistantMessage historyAssistantMessage) {
         Map<String, Object> toolContextMap = Map.of();
 
         if (prompt.getOptions() instanceof ToolCallingChatOptions toolCallingChatOptions
                 && !CollectionUtils.isEmpty(toolCallingChatOptions.getToolContext())) {
             toolContextMap = new HashMap<>(toolCallingChatOptions.getToolContext());
-
-            List<Message> messageHistory = new ArrayList<>(prompt.copy().getInstructions());
-            
-            // 确保工具调用消息包含正确的元数据
-            if (!CollectionUtils.isEmpty(assistantMessage.getToolCalls())) {
-                Map<String, Object> metadata = new HashMap<>(assistantMessage.getMetadata());
-                String toolName = assistantMessage.getToolCalls().get(0).name();
-                metadata.put("toolName", toolName);
-                AssistantMessage updatedAssistantMessage = AssistantMessage.builder()
-                        .content(assistantMessage.getText())
-                        .properties(metadata)
-                        .toolCalls(assistantMessage.getToolCalls())
-                        .build();
-                messageHistory.add(updatedAssistantMessage);
-            } else {
-                messageHistory.add(AssistantMessage.builder()
-                        .content(assistantMessage.getText())
-                        .properties(assistantMessage.getMetadata())
-                        .toolCalls(assistantMessage.getToolCalls())
-                        .build());
-            }
-
             toolContextMap.put(ToolContext.TOOL_CALL_HISTORY,
-                    buildConversationHistoryBeforeToolExecution(prompt, assistantMessage));
+                    buildConversationHistory(prompt.getInstructions(), historyAssistantMessage, null));
         }
 
         return new ToolContext(toolContextMap);
     }
 
-    private static List<Message> buildConversationHistoryBeforeToolExecution(Prompt prompt,
-                                                                             AssistantMessage assistantMessage) {
-        List<Message> messageHistory = new ArrayList<>(prompt.copy().getInstructions());
-        
-        // 确保工具调用消息包含正确的元数据
-        if (!CollectionUtils.isEmpty(assistantMessage.getToolCalls())) {
-            Map<String, Object> metadata = new HashMap<>(assistantMessage.getMetadata());
-            String toolName = assistantMessage.getToolCalls().get(0).name();
-            metadata.put("toolName", toolName);
-            AssistantMessage updatedAssistantMessage = AssistantMessage.builder()
-                    .content(assistantMessage.getText())
-                    .properties(metadata)
-                    .toolCalls(assistantMessage.getToolCalls())
-                    .build();
-            messageHistory.add(updatedAssistantMessage);
-        } else {
-            messageHistory.add(AssistantMessage.builder()
-                    .content(assistantMessage.getText())
-                    .properties(assistantMessage.getMetadata())
-                    .toolCalls(assistantMessage.getToolCalls())
-                    .build());
+    /**
+     * 确保工具调用消息包含正确的元数据
+     */
+    private static AssistantMessage withToolName(AssistantMessage assistantMessage) {
+        if (CollectionUtils.isEmpty(assistantMessage.getToolCalls())) {
+            return assistantMessage;
         }
-        
-        return messageHistory;
+        Map<String, Object> metadata = new HashMap<>(assistantMessage.getMetadata());
+        String toolName = assistantMessage.getToolCalls().get(0).name();
+        metadata.put("toolName", toolName);
+        return AssistantMessage.builder()
+                .content(assistantMessage.getText())
+                .properties(metadata)
+                .toolCalls(assistantMessage.getToolCalls())
+                .build();
     }
 
     /**
-     * Execute the tool call and return the response message.
+     * 执行模型返回的全部工具调用。
+     * 互不依赖的调用在虚拟线程上并发执行，每个调用有超时时间；{@link XiaozhiToolMetadata#sequential()} 的调用
+     * 等之前的调用全部结束后单独执行，之后的调用也等它结束后再开始。工具结果按模型返回的顺序排列。
      */
     private XiaoZhiToolCallingManager.InternalToolExecutionResult executeToolCall(Prompt prompt, AssistantMessage assistantMessage,
                                                                                   ToolContext toolContext) {
-        List<ToolCallback> toolCallbacks = List.of();
+        Map<String, ToolCallback> toolCallbacks = new HashMap<>();
         if (prompt.getOptions() instanceof ToolCallingChatOptions toolCallingChatOptions) {
-            toolCallbacks = toolCallingChatOptions.getToolCallbacks();
+            for (ToolCallback toolCallback : toolCallingChatOptions.getToolCallbacks()) {
+                toolCallbacks.putIfAbsent(toolCallback.getToolDefinition().name(), toolCallback);
+            }
         }
 
-        List<ToolResponseMessage.ToolResponse> toolResponses = new ArrayList<>();
-
+        List<AssistantMessage.ToolCall> toolCalls = assistantMessage.getToolCalls();
+        List<ToolCallback> callbacks = new ArrayList<>(toolCalls.size());
         Boolean returnDirect = null;
-
-        for (AssistantMessage.ToolCall toolCall : assistantMessage.getToolCalls()) {
-
+        for (AssistantMessage.ToolCall toolCall : toolCalls) {
             String toolName = toolCall.name();
-            String toolInputArguments = toolCall.arguments();
-
-            ToolCallback toolCallback = toolCallbacks.stream()
-                    .filter(tool -> toolName.equals(tool.getToolDefinition().name()))
-                    .findFirst()
-                    .orElseGet(() -> this.toolCallbackResolver.resolve(toolName));
-
+            ToolCallback toolCallback = toolCallbacks.get(toolName);
+            if (toolCallback == null) {
+                toolCallback = this.toolCallbackResolver.resolve(toolName);
+            }
             if (toolCallback == null) {
                 throw new IllegalStateException("No ToolCallback found for tool name: " + toolName);
             }
+            callbacks.add(toolCallback);
 
             if (returnDirect == null) {
                 returnDirect = toolCallback.getToolMetadata().returnDirect();
@@ -230,64 +227,128 @@ public class XiaoZhiToolCallingManager implements ToolCallingManager, Applicatio
             else {
                 returnDirect = returnDirect && toolCallback.getToolMetadata().returnDirect();
             }
+        }
+
+        Observation parentObservation = this.observationRegistry.getCurrentObservation();
+        String[] results = new String[toolCalls.size()];
+        // 只有一个调用时也在虚拟线程上执行，与多个调用使用相同的超时
+        Map<Integer, RunningToolCall> running = new LinkedHashMap<>();
+        for (int i = 0; i < toolCalls.size(); i++) {
+            AssistantMessage.ToolCall toolCall = toolCalls.get(i);
+            ToolCallback toolCallback = callbacks.get(i);
+            if (isSequential(toolCallback)) {
+                awaitAll(running, toolCalls, results);
+                results[i] = awaitResult(toolCall, submit(toolCall, toolCallback, toolContext, parentObservation));
+            }
+            else {
+                running.put(i, submit(toolCall, toolCallback, toolContext, parentObservation));
+            }
+        }
+        awaitAll(running, toolCalls, results);
 
-            ToolCallingObservationContext observationContext = ToolCallingObservationContext.builder()
-                    .toolDefinition(toolCallback.getToolDefinition())
-                    .toolMetadata(toolCallback.getToolMetadata())
-                    .toolCallArguments(toolInputArguments)
-                    .build();
-            observationContext.put("session", toolContext.getContext().get("session"));
-
-
-            String toolCallResult = ToolCallingObservationDocumentation.TOOL_CALL
-                    .observation(this.observationConvention, DEFAULT_OBSERVATION_CONVENTION, () -> observationContext,
-                            this.observationRegistry)
-                    .observe(() -> {
-                        String toolResult;
-                        try {
-                            toolResult = toolCallback.call(toolInputArguments, toolContext);
-                        }
-                        catch (ToolExecutionException ex) {
-                            logger.error("Tool execution exception: ", ex);
-                            toolResult = this.toolExecutionExceptionProcessor.process(ex);
-                            logger.debug("Processed tool execution exception result: {}", toolResult);
-                        }
-                        catch (Exception ex) {
-                            logger.error("Unexpected exception during tool execution: ", ex);
-                            toolResult = "Error executing tool: " + ex.getMessage();
-                        }
-                        observationContext.setToolCallResult(toolResult);
-                        
-                        return toolResult;
-                    });
-
-            toolResponses.add(new ToolResponseMessage.ToolResponse(toolCall.id(), toolName,
-                    toolCallResult != null ? toolCallResult : ""));
+        List<ToolResponseMessage.ToolResponse> toolResponses = new ArrayList<>(toolCalls.size());
+        for (int i = 0; i < toolCalls.size(); i++) {
+            AssistantMessage.ToolCall toolCall = toolCalls.get(i);
+            toolResponses.add(new ToolResponseMessage.ToolResponse(toolCall.id(), toolCall.name(),
+                    results[i] != null ? results[i] : ""));
         }
 
         return new XiaoZhiToolCallingManager.InternalToolExecutionResult(ToolResponseMessage.builder().responses(toolResponses).build(), returnDirect);
     }
 
-    private List<Message> buildConversationHistoryAfterToolExecution(List<Message> previousMessages,
-                                                                     AssistantMessage assistantMessage, ToolResponseMessage toolResponseMessage) {
-        List<Message> messages = new ArrayList<>(previousMessages);
-        
-        // 确保工具调用消息包含正确的元数据
-        if (!CollectionUtils.isEmpty(assistantMessage.getToolCalls())) {
-            Map<String, Object> metadata = new HashMap<>(assistantMessage.getMetadata());
-            String toolName = assistantMessage.getToolCalls().get(0).name();
-            metadata.put("toolName", toolName);
-            AssistantMessage updatedAssistantMessage = AssistantMessage.builder()
-                    .content(assistantMessage.getText())
-                    .properties(metadata)
-                    .toolCalls(assistantMessage.getToolCalls())
-                    .build();
-            messages.add(updatedAssistantMessage);
-        } else {
-            messages.add(assistantMessage);
+    private static boolean isSequential(ToolCallback toolCallback) {
+        return toolCallback.getToolMetadata() instanceof XiaozhiToolMetadata xiaozhiToolMetadata
+                && xiaozhiToolMetadata.sequential();
+    }
+
+    private RunningToolCall submit(AssistantMessage.ToolCall toolCall, ToolCallback toolCallback, ToolContext toolContext,
+                                   Observation parentObservation) {
+        long deadline = System.nanoTime() + this.toolCallTimeout.toNanos();
+        return new RunningToolCall(TOOL_EXECUTOR.submit(
+                () -> callTool(toolCall, toolCallback, toolContext, parentObservation)), deadline);
+    }
+
+    private void awaitAll(Map<Integer, RunningToolCall> running, List<AssistantMessage.ToolCall> toolCalls,
+                          String[] results) {
+        for (Map.Entry<Integer, RunningToolCall> entry : running.entrySet()) {
+            results[entry.getKey()] = awaitResult(toolCalls.get(entry.getKey()), entry.getValue());
+        }
+        running.clear();
+    }
+
+    /**
+     * 超时时间从提交调用时开始计算，依次等待不会累加
+     */
+    private String awaitResult(AssistantMessage.ToolCall toolCall, RunningToolCall running) {
+        Future<String> future = running.future();
+        try {
+            return future.get(Math.max(0, running.deadline() - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+        catch (TimeoutException ex) {
+            future.cancel(true);
+            logger.warn("Tool execution timed out after {}ms: {}", this.toolCallTimeout.toMillis(), toolCall.name());
+            return "Error executing tool: timed out after " + this.toolCallTimeout.toMillis() + "ms";
+        }
+        catch (InterruptedException ex) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            return "Error executing tool: interrupted";
+        }
+        catch (ExecutionException ex) {
+            logger.error("Unexpected exception during tool execution: ", ex.getCause());
+            return "Error executing tool: " + ex.getCause().getMessage();
+        }
+    }
+
+    private String callTool(AssistantMessage.ToolCall toolCall, ToolCallback toolCallback, ToolContext toolContext,
+                            Observation parentObservation) {
+        String toolInputArguments = toolCall.arguments();
+
+        ToolCallingObservationContext observationContext = ToolCallingObservationContext.builder()
+                .toolDefinition(toolCallback.getToolDefinition())
+                .toolMetadata(toolCallback.getToolMetadata())
+                .toolCallArguments(toolInputArguments)
+                .build();
+        Object session = toolContext.getContext().get("session");
+        if (session != null) {
+            observationContext.put("session", session);
+        }
+
+        return ToolCallingObservationDocumentation.TOOL_CALL
+                .observation(this.observationConvention, DEFAULT_OBSERVATION_CONVENTION, () -> observationContext,
+                        this.observationRegistry)
+                .parentObservation(parentObservation)
+                .observe(() -> {
+                    String toolResult;
+                    try {
+                        toolResult = toolCallback.call(toolInputArguments, toolContext);
+                    }
+                    catch (ToolExecutionException ex) {
+                        logger.error("Tool execution exception: ", ex);
+                        toolResult = this.toolExecutionExceptionProcessor.process(ex);
+                        logger.debug("Processed tool execution exception result: {}", toolResult);
+                    }
+                    catch (Exception ex) {
+                        logger.error("Unexpected exception during tool execution: ", ex);
+                        toolResult = "Error executing tool: " + ex.getMessage();
+                    }
+                    observationContext.setToolCallResult(toolResult);
+
+                    return toolResult;
+                });
+    }
+
+    /**
+     * @param toolResponseMessage 为null时为工具调用前的对话历史
+     */
+    private static List<Message> buildConversationHistory(List<Message> previousMessages,
+                                                          AssistantMessage historyAssistantMessage, ToolResponseMessage toolResponseMessage) {
+        List<Message> messages = new ArrayList<>(previousMessages.size() + 2);
+        messages.addAll(previousMessages);
+        messages.add(historyAssistantMessage);
+        if (toolResponseMessage != null) {
+            messages.add(toolResponseMessage);
         }
-        
-        messages.add(toolResponseMessage);
         return messages;
     }
 
@@ -302,6 +363,9 @@ public class XiaoZhiToolCallingManager implements ToolCallingManager, Applicatio
     private record InternalToolExecutionResult(ToolResponseMessage toolResponseMessage, boolean returnDirect) {
     }
 
+    private record RunningToolCall(Future<String> future, long deadline) {
+    }
+
     public final static class Builder {
 
         private ObservationRegistry observationRegistry = DEFAULT_OBSERVATION_REGISTRY;
@@ -310,6 +374,8 @@ public class XiaoZhiToolCallingManager implements ToolCallingManager, Applicatio
 
         private ToolExecutionExceptionProcessor toolExecutionExceptionProcessor = DEFAULT_TOOL_EXECUTION_EXCEPTION_PROCESSOR;
 
+        private Duration toolCallTimeout = DEFAULT_TOOL_CALL_TIMEOUT;
+
         private Builder() {
         }
 
@@ -329,9 +395,14 @@ public class XiaoZhiToolCallingManager implements ToolCallingManager, Applicatio
             return this;
         }
 
+        public XiaoZhiToolCallingManager.Builder toolCallTimeout(Duration toolCallTimeout) {
+            this.toolCallTimeout = toolCallTimeout;
+            return this;
+        }
+
         public XiaoZhiToolCallingManager build() {
             return new XiaoZhiToolCallingManager(this.observationRegistry, this.toolCallbackResolver,
-                    this.toolExecutionExceptionProcessor);
+                    this.toolExecutionExceptionProcessor, this.toolCallTimeout);
         }
 
     }
@@ -6,7 +6,11 @@ import org.springframework.ai.tool.metadata.ToolMetadata;
  *
  * @param returnDirect 调用工具后直接返回工具调用结果，不再调用大语言模型
  * @param rollback 调用此工具的特定语言指令会污染对话上下文，标识从Conversation里剔除触发此工具调用的UserMessage。
+ * @param sequential 模型一次返回多个工具调用时，此工具不与其他调用并发执行，例如会切换角色、结束会话或占用播放器的工具。
  */
-public record XiaozhiToolMetadata(boolean returnDirect,boolean rollback) implements ToolMetadata {
+public record XiaozhiToolMetadata(boolean returnDirect,boolean rollback,boolean sequential) implements ToolMetadata {
 
+    public XiaozhiToolMetadata(boolean returnDirect, boolean rollback) {
+        this(returnDirect, rollback, false);
+    }
 }
@@ -8,9 +8,12 @@ import org.springframework.ai.tool.execution.DefaultToolExecutionExceptionProces
 import org.springframework.ai.tool.execution.ToolExecutionExceptionProcessor;
 import org.springframework.ai.tool.resolution.ToolCallbackResolver;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+
 @Configuration
 public class ToolCallConfig {
 
@@ -19,11 +22,13 @@ public class ToolCallConfig {
 
     @Bean
     public ToolCallingManager toolCallingManager(ObservationRegistry observationRegistry, ToolCallbackResolver toolCallbackResolver,
-                                                 @Autowired(required = false) ToolExecutionExceptionProcessor toolExecutionExceptionProcessor) {
+                                                 @Autowired(required = false) ToolExecutionExceptionProcessor toolExecutionExceptionProcessor,
+                                                 @Value("${tool.call.timeout-ms:30000}") long toolCallTimeoutMs) {
         // Create and return a ToolCallingManager instance
         // This is a placeholder; actual implementation may vary based on requirements
         return new XiaoZhiToolCallingManager(observationRegistry, toolCallbackResolver,
-                toolExecutionExceptionProcessor == null ? defaultToolExecutionExceptionProcessor : toolExecutionExceptionProcessor);
+                toolExecutionExceptionProcessor == null ? defaultToolExecutionExceptionProcessor : toolExecutionExceptionProcessor,
+                Duration.ofMillis(toolCallTimeoutMs));
     }
     
     /**
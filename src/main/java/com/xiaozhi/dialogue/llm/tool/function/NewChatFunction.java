@@ -5,10 +5,10 @@ import com.xiaozhi.dialogue.llm.ChatService;
 import com.xiaozhi.dialogue.llm.memory.Conversation;
 import com.xiaozhi.dialogue.llm.tool.ToolCallStringResultConverter;
 import com.xiaozhi.dialogue.llm.tool.ToolsGlobalRegistry;
+import com.xiaozhi.dialogue.llm.tool.XiaozhiToolMetadata;
 import org.springframework.ai.chat.model.ToolContext;
 import org.springframework.ai.tool.ToolCallback;
 import org.springframework.ai.tool.function.FunctionToolCallback;
-import org.springframework.ai.tool.metadata.ToolMetadata;
 import org.springframework.stereotype.Component;
 
 import java.util.Map;
@@ -30,7 +30,7 @@ public class NewChatFunction implements ToolsGlobalRegistry.GlobalFunction {
                 }
                 return sayNewChat;
             })
-            .toolMetadata(ToolMetadata.builder().returnDirect(true).build())
+            .toolMetadata(new XiaozhiToolMetadata(true, false, true))
             .description("当用户想开启新的对话调用function：new_chat")
             .inputSchema("""
                         {
@@ -6,6 +6,7 @@ import com.xiaozhi.communication.common.ChatSession;
 import com.xiaozhi.dialogue.llm.ChatService;
 import com.xiaozhi.dialogue.llm.tool.ToolCallStringResultConverter;
 import com.xiaozhi.dialogue.llm.tool.ToolsGlobalRegistry;
+import com.xiaozhi.dialogue.llm.tool.XiaozhiToolMetadata;
 import com.xiaozhi.dialogue.service.HuiBenService;
 import jakarta.annotation.Resource;
 import org.slf4j.Logger;
@@ -13,7 +14,6 @@ import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.model.ToolContext;
 import org.springframework.ai.tool.ToolCallback;
 import org.springframework.ai.tool.function.FunctionToolCallback;
-import org.springframework.ai.tool.metadata.ToolMetadata;
 import org.springframework.stereotype.Component;
 
 import java.util.Map;
@@ -41,7 +41,7 @@ public class PlayHuiBenFunction implements ToolsGlobalRegistry.GlobalFunction {
                     return "绘本播放失败";
                 }
             })
-            .toolMetadata(ToolMetadata.builder().returnDirect(true).build())
+            .toolMetadata(new XiaozhiToolMetadata(true, false, true))
             .description("绘本播放助手，需要用户提供绘本数字编号")
             .inputSchema("""
                         {
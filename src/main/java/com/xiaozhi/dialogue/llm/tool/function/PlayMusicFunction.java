@@ -4,6 +4,7 @@ import com.xiaozhi.communication.common.ChatSession;
 import com.xiaozhi.dialogue.llm.ChatService;
 import com.xiaozhi.dialogue.llm.tool.ToolsGlobalRegistry;
 import com.xiaozhi.dialogue.llm.tool.ToolCallStringResultConverter;
+import com.xiaozhi.dialogue.llm.tool.XiaozhiToolMetadata;
 import com.xiaozhi.dialogue.service.MusicService;
 import jakarta.annotation.Resource;
 import org.slf4j.Logger;
@@ -11,7 +12,6 @@ import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.model.ToolContext;
 import org.springframework.ai.tool.ToolCallback;
 import org.springframework.ai.tool.function.FunctionToolCallback;
-import org.springframework.ai.tool.metadata.ToolMetadata;
 import org.springframework.stereotype.Component;
 
 import java.util.Map;
@@ -39,7 +39,7 @@ public class PlayMusicFunction implements ToolsGlobalRegistry.GlobalFunction {
                     return "音乐播放失败";
                 }
             })
-            .toolMetadata(ToolMetadata.builder().returnDirect(true).build())
+            .toolMetadata(new XiaozhiToolMetadata(true, false, true))
             .description("音乐播放助手,需要用户提供歌曲的名称")
             .inputSchema("""
                         {
@@ -1,11 +1,8 @@
 package com.xiaozhi.dialogue.llm.tool.mcp.device;
 
-import com.xiaozhi.communication.domain.DeviceMcpMessage;
 import lombok.Data;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 设备端mcp相关属性
@@ -13,23 +10,23 @@ import java.util.concurrent.CompletableFuture;
 @Data
 public class DeviceMcpHolder {
     /**
-     * mcp请求ID
+     * mcp请求ID，并发执行的工具调用同时申请
      */
-    private Long mcpRequestId = 10000L;
+    private final AtomicLong mcpRequestId = new AtomicLong(10000L);
     /**
      * mcp初始化完成
      */
     private boolean mcpInitialized = false;
     /**
-     * mcp指令阻塞请求表
+     * mcp指令待响应请求表
      */
-    private Map<Long, CompletableFuture<DeviceMcpMessage>> mcpPendingRequests = new HashMap<>();
+    private final DeviceMcpPendingRequests mcpPendingRequests = new DeviceMcpPendingRequests();
     /**
      * mcp工具获取游标 用于分页，首次请求为空字符串
      */
     private String mcpCursor = "";
 
     public Long getMcpRequestId() {
-        return mcpRequestId ++;
+        return mcpRequestId.getAndIncrement();
     }
 }
\ No newline at end of file
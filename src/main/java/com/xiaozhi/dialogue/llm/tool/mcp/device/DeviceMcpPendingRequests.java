@@ -0,0 +1,121 @@
+package com.xiaozhi.dialogue.llm.tool.mcp.device;
+
+import com.xiaozhi.communication.domain.DeviceMcpMessage;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 设备端MCP的待响应请求表。
+ * 工具调用线程登记请求，WebSocket线程按请求ID完成请求，两者并发访问。
+ * 每个请求有自己的截止时间，由所有会话共用的定时任务统一检查，超时的请求以 {@link TimeoutException} 结束，
+ * 不需要调用方各自阻塞等待超时。
+ */
+public class DeviceMcpPendingRequests {
+
+    // 检查超时请求的间隔
+    private static final long SWEEP_INTERVAL_MS = 200;
+
+    // 有待响应请求的表，由共用的定时任务检查
+    private static final Set<DeviceMcpPendingRequests> ACTIVE = ConcurrentHashMap.newKeySet();
+
+    private static final ScheduledExecutorService SWEEPER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "mcp-request-sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        SWEEPER.scheduleWithFixedDelay(DeviceMcpPendingRequests::sweepAll,
+                SWEEP_INTERVAL_MS, SWEEP_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private record Pending(CompletableFuture<DeviceMcpMessage> future, long deadline) {
+    }
+
+    private final Map<Long, Pending> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 登记请求，应在发送请求之前调用，避免响应先于登记到达
+     *
+     * @param id        请求ID
+     * @param timeoutMs 超时时间
+     * @return 收到响应时完成；超时、会话关闭时异常结束
+     */
+    public CompletableFuture<DeviceMcpMessage> register(Long id, long timeoutMs) {
+        CompletableFuture<DeviceMcpMessage> future = new CompletableFuture<>();
+        Pending entry = new Pending(future, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs));
+        Pending previous = pending.put(id, entry);
+        if (previous != null) {
+            previous.future().completeExceptionally(new IllegalStateException("MCP请求ID重复: " + id));
+        }
+        // 调用方取消或以其他方式结束时移出请求表
+        future.whenComplete((message, error) -> pending.remove(id, entry));
+        ACTIVE.add(this);
+        return future;
+    }
+
+    /**
+     * 以设备的响应完成对应的请求
+     *
+     * @return 没有对应的请求（已超时或ID未知）时返回false
+     */
+    public boolean complete(DeviceMcpMessage message) {
+        if (message.getPayload() == null || message.getPayload().getId() == null) {
+            return false;
+        }
+        Pending entry = pending.remove(message.getPayload().getId());
+        return entry != null && entry.future().complete(message);
+    }
+
+    /**
+     * 会话关闭时结束全部待响应请求
+     */
+    public void cancelAll() {
+        for (Long id : pending.keySet()) {
+            Pending entry = pending.remove(id);
+            if (entry != null) {
+                entry.future().completeExceptionally(new CancellationException("会话已关闭"));
+            }
+        }
+        ACTIVE.remove(this);
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    /**
+     * 结束已超过截止时间的请求
+     */
+    void sweep(long now) {
+        for (Map.Entry<Long, Pending> entry : pending.entrySet()) {
+            Pending request = entry.getValue();
+            if (now - request.deadline() >= 0 && pending.remove(entry.getKey(), request)) {
+                request.future().completeExceptionally(
+                        new TimeoutException("MCP请求超时, id: " + entry.getKey()));
+            }
+        }
+    }
+
+    private static void sweepAll() {
+        long now = System.nanoTime();
+        for (DeviceMcpPendingRequests requests : ACTIVE) {
+            requests.sweep(now);
+            if (requests.pending.isEmpty()) {
+                ACTIVE.remove(requests);
+                // 移除期间可能有新的请求登记
+                if (!requests.pending.isEmpty()) {
+                    ACTIVE.add(requests);
+                }
+            }
+        }
+    }
+}
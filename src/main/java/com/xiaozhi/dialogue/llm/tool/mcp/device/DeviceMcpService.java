@@ -23,8 +23,10 @@ import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 
 @Service
 public class DeviceMcpService {
@@ -40,21 +42,38 @@ public class DeviceMcpService {
     private static int maxToolsCount = 32; // 最大工具数量限制
 
     /**
-     * 初始化设备端MCP工具列表
+     * 设备响应MCP请求的超时时间
+     */
+    @Value("${xiaozhi.mcp.device.request-timeout-ms:30000}")
+    private long requestTimeoutMs = 30000;
+
+    /**
+     * 初始化设备端MCP工具列表，阻塞至全部工具加载完成
      *
      * @param chatSession
      */
     public void initialize(ChatSession chatSession) {
+        try {
+            initializeAsync(chatSession).join();
+        } catch (CompletionException | CancellationException e) {
+            logger.error("SessionId: {}, MCP初始化失败", chatSession.getSessionId(), e);
+        }
+    }
+
+    /**
+     * 初始化设备端MCP工具列表
+     *
+     * @param chatSession
+     * @return 全部工具加载完成时完成
+     */
+    public CompletableFuture<Void> initializeAsync(ChatSession chatSession) {
         //1、调用始化命令
-        DeviceMcpMessage initResult = sendInitialize(chatSession);
-        //根据调用结果进行处理
-        if (initResult != null) {
+        return sendInitialize(chatSession).thenCompose(initResult -> {
+            logger.debug("SessionId: {}, MCP initialized successfully", chatSession.getSessionId());
             chatSession.getDeviceMcpHolder().setMcpInitialized(true);
-        }
-        if (chatSession.getDeviceMcpHolder().isMcpInitialized()) {
             //2、获取工具列表
-            sendToolsList(chatSession);
-        }
+            return sendToolsList(chatSession);
+        });
     }
 
     /**
@@ -63,7 +82,7 @@ public class DeviceMcpService {
      * @param chatSession
      * @return
      */
-    protected DeviceMcpMessage sendInitialize(ChatSession chatSession) {
+    protected CompletableFuture<DeviceMcpMessage> sendInitialize(ChatSession chatSession) {
         DeviceMcpMessage message = new DeviceMcpMessage();
         message.setSessionId(chatSession.getSessionId());
         DeviceMcpPayload payload = new DeviceMcpPayload();
@@ -75,12 +94,7 @@ public class DeviceMcpService {
         payload.setParams(initialize);
         message.setPayload(payload);
 
-        DeviceMcpMessage result = sendMcpRequest(chatSession, message);
-        if (result != null) {
-            logger.debug("SessionId: {}, MCP initialized successfully", chatSession.getSessionId());
-            return result;
-        }
-        return null;
+        return sendMcpRequestAsync(chatSession, message);
     }
 
     /**
@@ -106,109 +120,149 @@ public class DeviceMcpService {
     }
 
     /**
-     * 发送工具列表请求
+     * 发送工具列表请求，有下一页时在收到响应后继续请求下一页
      *
      * @param chatSession
+     * @return 全部工具加载完成时完成
      */
-    private void sendToolsList(ChatSession chatSession) {
+    private CompletableFuture<Void> sendToolsList(ChatSession chatSession) {
+        DeviceMcpHolder deviceMcpHolder = chatSession.getDeviceMcpHolder();
         DeviceMcpMessage message = new DeviceMcpMessage();
         message.setSessionId(chatSession.getSessionId());
         DeviceMcpPayload payload = new DeviceMcpPayload();
-        payload.setId(chatSession.getDeviceMcpHolder().getMcpRequestId());
+        payload.setId(deviceMcpHolder.getMcpRequestId());
         payload.setMethod("tools/list");
-        if (chatSession.getDeviceMcpHolder().getMcpCursor() != null) {
+        if (deviceMcpHolder.getMcpCursor() != null) {
             payload.setParams(Map.of(
-                    "cursor", chatSession.getDeviceMcpHolder().getMcpCursor()));
+                    "cursor", deviceMcpHolder.getMcpCursor()));
         } else {
             payload.setParams(Map.of(
                     "cursor", "")); // 初始请求时使用空字符串
         }
         message.setPayload(payload);
 
-        DeviceMcpMessage result = sendMcpRequest(chatSession, message);
-        if (result != null) {
-            //处理工具的注册
-            List<Map<String, Object>> tools = (List<Map<String, Object>>) result.getPayload().getResult().get("tools");
-            Object nextCursor = result.getPayload().getResult().get("nextCursor");
-            int toolsCount = chatSession.getToolCallbacks().size();
-            if (tools.isEmpty() || (toolsCount + tools.size()) > maxToolsCount) {//工具数量超过限制，不再添加
-                return;
-            } else {
-                for (Map<String, Object> tool : tools) {
-                    //开始注册工具
-                    String name = (String) tool.get("name");
-                    String funcName = "mcp_" + name.replace(".", "_");
-                    String funcDescription = (String) tool.get("description");
-                    Object inputSchema = tool.get("inputSchema");
-
-                    ToolCallback toolCallback = FunctionToolCallback
-                            .builder(funcName, (Map<String, Object> params, ToolContext toolContext) -> {
-                                DeviceMcpMessage request = new DeviceMcpMessage();
-                                request.setSessionId(chatSession.getSessionId());
-
-                                DeviceMcpPayload requestPayload = new DeviceMcpPayload();
-                                requestPayload.setMethod("tools/call");
-                                requestPayload.setId(chatSession.getDeviceMcpHolder().getMcpRequestId());
-                                requestPayload.setParams(Map.of(
-                                        "name", name,
-                                        "arguments", params
-                                ));
-
-                                request.setPayload(requestPayload);
-                                DeviceMcpMessage response = sendMcpRequest(chatSession, request);
-                                if (response != null) {
-                                    logger.info("SessionId: {},  MCP function call response: {}", chatSession.getSessionId(), response);
-                                    //空指针
-                                    if (response.getPayload().getResult() == null) {
-                                        return response.getPayload().getError().get("message");//返回结果
-                                    }
-                                    if ("false".equals(String.valueOf(response.getPayload().getResult().get("isError")))) {
-                                        return response.getPayload().getResult().get("content");//返回结果
-                                    } else {
-                                        return response.getPayload().getError();
-                                    }
-                                } else {
-                                    return "操作失败";
-                                }
-                            })
-                            .toolMetadata(ToolMetadata.builder().returnDirect(false).build())// 设置返回值需要ai再处理
-                            .description(funcDescription)
-                            .inputSchema(JsonUtil.toJson(inputSchema))
-                            .inputType(Map.class)
-                            .toolCallResultConverter(ToolCallStringResultConverter.INSTANCE)
-                            .build();
-                    // 注册到当前会话的函数持有者
-                    chatSession.getToolsSessionHolder().registerFunction(funcName, toolCallback);
-                }
-            }
-            // 如果cursor不为空，则迭代调用
-            if (nextCursor != null && !nextCursor.toString().isEmpty()) {
+        return sendMcpRequestAsync(chatSession, message).thenCompose(result -> {
+            String nextCursor = registerTools(chatSession, result);
+            if (nextCursor != null) {
                 // 如果有下一页游标，继续请求下一页
-                chatSession.getDeviceMcpHolder().setMcpCursor(nextCursor.toString());
-                sendToolsList(chatSession);
-            } else {
-                // 所有工具加载完成
-                chatSession.getDeviceMcpHolder().setMcpCursor(null);
-                logger.debug("SessionId: {}, mcp tools loaded successfully", chatSession.getSessionId());
+                deviceMcpHolder.setMcpCursor(nextCursor);
+                return sendToolsList(chatSession);
             }
+            // 所有工具加载完成
+            deviceMcpHolder.setMcpCursor(null);
+            logger.debug("SessionId: {}, mcp tools loaded successfully", chatSession.getSessionId());
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    /**
+     * 注册一页工具
+     *
+     * @return 下一页游标，没有下一页或工具数量已达上限时返回null
+     */
+    private String registerTools(ChatSession chatSession, DeviceMcpMessage result) {
+        //处理工具的注册
+        List<Map<String, Object>> tools = (List<Map<String, Object>>) result.getPayload().getResult().get("tools");
+        Object nextCursor = result.getPayload().getResult().get("nextCursor");
+        int toolsCount = chatSession.getToolCallbacks().size();
+        if (tools.isEmpty() || (toolsCount + tools.size()) > maxToolsCount) {//工具数量超过限制，不再添加
+            return null;
+        }
+        for (Map<String, Object> tool : tools) {
+            //开始注册工具
+            String name = (String) tool.get("name");
+            String funcName = "mcp_" + name.replace(".", "_");
+            String funcDescription = (String) tool.get("description");
+            Object inputSchema = tool.get("inputSchema");
+
+            ToolCallback toolCallback = FunctionToolCallback
+                    .builder(funcName, (Map<String, Object> params, ToolContext toolContext) -> {
+                        DeviceMcpMessage request = new DeviceMcpMessage();
+                        request.setSessionId(chatSession.getSessionId());
+
+                        DeviceMcpPayload requestPayload = new DeviceMcpPayload();
+                        requestPayload.setMethod("tools/call");
+                        requestPayload.setId(chatSession.getDeviceMcpHolder().getMcpRequestId());
+                        requestPayload.setParams(Map.of(
+                                "name", name,
+                                "arguments", params
+                        ));
+
+                        request.setPayload(requestPayload);
+                        DeviceMcpMessage response = sendMcpRequest(chatSession, request);
+                        if (response != null) {
+                            logger.info("SessionId: {},  MCP function call response: {}", chatSession.getSessionId(), response);
+                            //空指针
+                            if (response.getPayload().getResult() == null) {
+                                return response.getPayload().getError().get("message");//返回结果
+                            }
+                            if ("false".equals(String.valueOf(response.getPayload().getResult().get("isError")))) {
+                                return response.getPayload().getResult().get("content");//返回结果
+                            } else {
+                                return response.getPayload().getError();
+                            }
+                        } else {
+                            return "操作失败";
+                        }
+                    })
+                    .toolMetadata(ToolMetadata.builder().returnDirect(false).build())// 设置返回值需要ai再处理
+                    .description(funcDescription)
+                    .inputSchema(JsonUtil.toJson(inputSchema))
+                    .inputType(Map.class)
+                    .toolCallResultConverter(ToolCallStringResultConverter.INSTANCE)
+                    .build();
+            // 注册到当前会话的函数持有者
+            chatSession.getToolsSessionHolder().registerFunction(funcName, toolCallback);
         }
+        return nextCursor != null && !nextCursor.toString().isEmpty() ? nextCursor.toString() : null;
     }
 
+    /**
+     * 发送MCP请求，阻塞至收到响应
+     *
+     * @return 超时、会话关闭或发送失败时返回null
+     */
     public DeviceMcpMessage sendMcpRequest(ChatSession chatSession, DeviceMcpMessage mcpMessage) {
-        Long id = mcpMessage.getPayload().getId();
-        CompletableFuture<DeviceMcpMessage> future = new CompletableFuture<>();
-        chatSession.sendTextMessage(JsonUtil.toJson(mcpMessage));
-        chatSession.getDeviceMcpHolder().getMcpPendingRequests().put(id, future);
+        CompletableFuture<DeviceMcpMessage> future = sendMcpRequestAsync(chatSession, mcpMessage);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            // 工具调用超时被中断，不再等待响应
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | CancellationException e) {
+            logger.error("SessionId: {}, Error sending MCP request", chatSession.getSessionId(), e);
+        }
+        return null;
+    }
+
+    /**
+     * 发送MCP请求
+     *
+     * @return 收到响应时完成；超时、会话关闭或发送失败时异常结束
+     */
+    public CompletableFuture<DeviceMcpMessage> sendMcpRequestAsync(ChatSession chatSession, DeviceMcpMessage mcpMessage) {
+        return sendMcpRequestAsync(chatSession, mcpMessage, requestTimeoutMs);
+    }
 
-        DeviceMcpMessage response = null;
+    /**
+     * 发送MCP请求
+     *
+     * @param timeoutMs 等待设备响应的超时时间
+     * @return 收到响应时完成；超时、会话关闭或发送失败时异常结束
+     */
+    public CompletableFuture<DeviceMcpMessage> sendMcpRequestAsync(ChatSession chatSession, DeviceMcpMessage mcpMessage,
+                                                                   long timeoutMs) {
+        Long id = mcpMessage.getPayload().getId();
+        // 先登记再发送，设备的响应可能在发送返回前到达
+        CompletableFuture<DeviceMcpMessage> future = chatSession.getDeviceMcpHolder().getMcpPendingRequests()
+                .register(id, timeoutMs);
         try {
-            // 阻塞并等待异步操作完成
-            response = future.get(30, TimeUnit.SECONDS);//等待2秒，没反应则退出
+            chatSession.sendTextMessage(JsonUtil.toJson(mcpMessage));
         } catch (Exception e) {
-            logger.error("SessionId: {}, Error sending MCP request", chatSession.getSessionId(), e);
-            chatSession.getDeviceMcpHolder().getMcpPendingRequests().remove(id);
+            future.completeExceptionally(e);
         }
-        return response;
+        return future;
     }
 
-}
\ No newline at end of file
+}
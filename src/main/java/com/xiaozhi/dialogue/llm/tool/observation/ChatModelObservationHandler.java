@@ -1,7 +1,6 @@
 package com.xiaozhi.dialogue.llm.tool.observation;
 
 import com.xiaozhi.communication.common.ChatSession;
-import com.xiaozhi.dao.MessageMapper;
 import com.xiaozhi.dialogue.llm.memory.ChatMemory;
 import com.xiaozhi.dialogue.llm.memory.Conversation;
 import com.xiaozhi.dialogue.llm.tool.XiaozhiToolMetadata;
@@ -65,9 +64,6 @@ public class ChatModelObservationHandler  implements ObservationHandler<ChatMode
     @Autowired
     private SysMessageService sysMessageService;
 
-    @Autowired
-    private MessageMapper messageMapper;
-
     @Override
     public boolean supportsContext(Observation.Context context) {
         return context instanceof ChatModelObservationContext;
@@ -204,7 +200,7 @@ public class ChatModelObservationHandler  implements ObservationHandler<ChatMode
 
     /**
      * 更新消息表 用户消息的路径、时长信息
-     * TODO  等消息持久化 迁移至此处时，再执行此方法。在onStop方法里。
+     * 用户消息此时还在写入缓冲区中，音频路径随INSERT一起写入。
      * @param session
      * @param userMessage
      */
@@ -222,17 +218,14 @@ public class ChatModelObservationHandler  implements ObservationHandler<ChatMode
     /**
      * 添加消息。
      * 支持批量，对于注重性能的实现是很有必要的。
+     * 消息先进入写入缓冲区，与其他会话的消息合并为批量INSERT。
      */
     private void saveMessage(List<SysMessage> messageList) {
-
-        // 异步虚拟线程处理持久化。
-        Thread.startVirtualThread(() -> {
-            try {
-                messageMapper.saveAll(messageList);
-            } catch (Exception e) {
-                logger.error("保存消息时出错: {}", e.getMessage(), e);
-            }
-        });
+        try {
+            sysMessageService.saveAll(messageList);
+        } catch (Exception e) {
+            logger.error("保存消息时出错: {}", e.getMessage(), e);
+        }
     }
     // Message里塞的内容已经较多，后续再考虑优化。可能设计一个新的类，融合 SysMessage and Message是值得考虑的。
 }
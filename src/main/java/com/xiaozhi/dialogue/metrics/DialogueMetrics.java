@@ -0,0 +1,77 @@
+package com.xiaozhi.dialogue.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对话各阶段耗时的Micrometer指标，通过 /actuator/prometheus 采集。
+ * <ul>
+ * <li>xiaozhi.dialogue.stage：各阶段耗时，标签 stage（见 {@link TurnTrace.Stage}）和 provider</li>
+ * <li>xiaozhi.dialogue.response：用户说话停止到首帧音频下发的耗时，标签为本轮使用的 stt、llm、tts</li>
+ * </ul>
+ * 都发布直方图，可用 histogram_quantile 计算分位数。
+ */
+@Component
+public class DialogueMetrics {
+
+    public static final String STAGE_TIMER = "xiaozhi.dialogue.stage";
+    public static final String RESPONSE_TIMER = "xiaozhi.dialogue.response";
+    static final String UNKNOWN = "unknown";
+
+    private record StageKey(TurnTrace.Stage stage, String provider) {
+    }
+
+    private record ResponseKey(String stt, String llm, String tts) {
+    }
+
+    private final MeterRegistry registry;
+    // 按标签缓存Timer，避免每次记录都构建Meter.Id
+    private final ConcurrentMap<StageKey, Timer> stageTimers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<ResponseKey, Timer> responseTimers = new ConcurrentHashMap<>();
+
+    public DialogueMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * 新的一轮对话
+     */
+    public TurnTrace newTurn() {
+        return new TurnTrace(this);
+    }
+
+    void record(TurnTrace.Stage stage, String provider, long nanos) {
+        stageTimers.computeIfAbsent(new StageKey(stage, tag(provider)), key -> Timer.builder(STAGE_TIMER)
+                        .description("对话各阶段耗时")
+                        .tag("stage", key.stage().tag())
+                        .tag("provider", key.provider())
+                        .publishPercentileHistogram()
+                        .minimumExpectedValue(Duration.ofMillis(1))
+                        .maximumExpectedValue(Duration.ofSeconds(30))
+                        .register(registry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordResponse(String stt, String llm, String tts, long nanos) {
+        responseTimers.computeIfAbsent(new ResponseKey(stt, llm, tts), key -> Timer.builder(RESPONSE_TIMER)
+                        .description("用户说话停止到首帧音频下发的耗时")
+                        .tag("stt", key.stt())
+                        .tag("llm", key.llm())
+                        .tag("tts", key.tts())
+                        .publishPercentileHistogram()
+                        .minimumExpectedValue(Duration.ofMillis(100))
+                        .maximumExpectedValue(Duration.ofSeconds(30))
+                        .register(registry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    static String tag(String provider) {
+        return provider == null || provider.isEmpty() ? UNKNOWN : provider.toLowerCase();
+    }
+}
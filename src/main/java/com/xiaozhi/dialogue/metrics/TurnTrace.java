@@ -0,0 +1,167 @@
+package com.xiaozhi.dialogue.metrics;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 一轮对话（一问一答）的耗时追踪，挂在 ChatSession 上，每次检测到用户开始说话时新建。
+ * 各阶段的边界用 System.nanoTime() 记录，到达边界时立即发布对应阶段的耗时：
+ * <pre>
+ * 说话停止 --vad--> 检测到说话结束 --stt--> 识别完成
+ * 请求LLM --llm_first_token--> 首个token
+ * 请求LLM --first_sentence--> 首个句子
+ * 开始合成 --tts_first_chunk--> 首段音频（流式合成，每句一次）
+ * 开始合成 --tts--> 整句音频（每句一次）
+ * 首个句子 --first_audio--> 首帧下发
+ * </pre>
+ * 以及整体的 说话停止 -> 首帧下发（没有检测到说话结束时，如提前识别出意图，从识别完成开始计算）。
+ * vad为第一个静音帧到达至判定说话结束的实际耗时，包含配置的静音等待，超出部分为帧到达和推理的延迟。
+ * 各边界只记录第一次，后续调用忽略；可以被VAD、STT、LLM、TTS、播放等不同线程调用。
+ */
+public class TurnTrace {
+
+    /**
+     * 不发布任何指标，会话在第一轮对话之前使用
+     */
+    public static final TurnTrace NOOP = new TurnTrace(null);
+
+    public enum Stage {
+        VAD, STT, LLM_FIRST_TOKEN, FIRST_SENTENCE, TTS_FIRST_CHUNK, TTS, FIRST_AUDIO;
+
+        private final String tag = name().toLowerCase();
+
+        public String tag() {
+            return tag;
+        }
+    }
+
+    private final DialogueMetrics metrics;
+
+    // 各边界的时间（System.nanoTime），0表示还未到达
+    private volatile long speechStop;
+    private volatile long speechEnd;
+    private volatile long sttFinal;
+    private volatile long llmRequest;
+    private volatile long firstSentence;
+
+    private final AtomicBoolean firstTokenRecorded = new AtomicBoolean();
+    private final AtomicBoolean firstSentenceRecorded = new AtomicBoolean();
+    private final AtomicBoolean firstAudioRecorded = new AtomicBoolean();
+
+    private volatile String sttProvider = DialogueMetrics.UNKNOWN;
+    private volatile String llmProvider = DialogueMetrics.UNKNOWN;
+    private volatile String ttsProvider = DialogueMetrics.UNKNOWN;
+
+    TurnTrace(DialogueMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * VAD检测到说话结束
+     *
+     * @param provider      VAD模型
+     * @param silenceMillis 第一个静音帧到达至今的时长，说话停止的时间由此倒推
+     */
+    public void speechEnded(String provider, long silenceMillis) {
+        if (metrics == null || speechEnd != 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        long silenceNanos = Math.max(0, silenceMillis) * 1_000_000;
+        speechStop = now - silenceNanos;
+        speechEnd = now;
+        metrics.record(Stage.VAD, provider, silenceNanos);
+    }
+
+    /**
+     * STT返回最终识别结果
+     */
+    public void sttFinished(String provider) {
+        if (metrics == null || sttFinal != 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        sttFinal = now;
+        sttProvider = DialogueMetrics.tag(provider);
+        // 提前识别出意图时还没有检测到说话结束，没有可比较的起点
+        long from = speechEnd;
+        if (from != 0) {
+            metrics.record(Stage.STT, provider, now - from);
+        }
+    }
+
+    /**
+     * 开始请求LLM
+     */
+    public void llmRequested(String provider) {
+        if (metrics == null || llmRequest != 0) {
+            return;
+        }
+        llmProvider = DialogueMetrics.tag(provider);
+        llmRequest = System.nanoTime();
+    }
+
+    /**
+     * LLM返回首个token
+     */
+    public void llmFirstToken() {
+        if (metrics == null || llmRequest == 0 || !firstTokenRecorded.compareAndSet(false, true)) {
+            return;
+        }
+        metrics.record(Stage.LLM_FIRST_TOKEN, llmProvider, System.nanoTime() - llmRequest);
+    }
+
+    /**
+     * LLM输出切分出首个句子
+     */
+    public void firstSentence() {
+        if (metrics == null || llmRequest == 0 || !firstSentenceRecorded.compareAndSet(false, true)) {
+            return;
+        }
+        long now = System.nanoTime();
+        firstSentence = now;
+        metrics.record(Stage.FIRST_SENTENCE, llmProvider, now - llmRequest);
+    }
+
+    /**
+     * 流式合成收到一个句子的首段音频，需在首段音频交给Player之前调用
+     *
+     * @param nanos 开始合成到收到首段音频的耗时
+     */
+    public void ttsFirstChunk(String provider, long nanos) {
+        if (metrics == null) {
+            return;
+        }
+        ttsProvider = DialogueMetrics.tag(provider);
+        metrics.record(Stage.TTS_FIRST_CHUNK, provider, nanos);
+    }
+
+    /**
+     * 一个句子合成完成
+     *
+     * @param nanos 合成耗时
+     */
+    public void ttsSynthesized(String provider, long nanos) {
+        if (metrics == null) {
+            return;
+        }
+        ttsProvider = DialogueMetrics.tag(provider);
+        metrics.record(Stage.TTS, provider, nanos);
+    }
+
+    /**
+     * 首帧音频下发到设备
+     */
+    public void firstAudio() {
+        if (metrics == null || !firstAudioRecorded.compareAndSet(false, true)) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (firstSentence != 0) {
+            metrics.record(Stage.FIRST_AUDIO, ttsProvider, now - firstSentence);
+        }
+        long from = speechStop != 0 ? speechStop : sttFinal;
+        if (from != 0) {
+            metrics.recordResponse(sttProvider, llmProvider, ttsProvider, now - from);
+        }
+    }
+}
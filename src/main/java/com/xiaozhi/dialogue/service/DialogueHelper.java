@@ -6,117 +6,120 @@ import org.springframework.util.StringUtils;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.FluxSink;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 /**
  * 句子处理帮助类。
  * TODO 考虑将此类实现为订阅者。将DialogueService的handleSentence方法改为此类的方法或子类方法。
  * @see org.reactivestreams.Subscriber
  */
 class DialogueHelper {
-    // 句子结束标点符号模式（中英文句号、感叹号、问号）
-    private static final Pattern SENTENCE_END_PATTERN = Pattern.compile("[。！？!?]");
-
-    // 逗号、分号等停顿标点
-    private static final Pattern PAUSE_PATTERN = Pattern.compile("[，、；,;]");
-
-    // 换行符
-    private static final Pattern NEWLINE_PATTERN = Pattern.compile("[\n\r]");
-
-    // 数字模式（用于检测小数点是否在数字中）
-    private static final Pattern NUMBER_PATTERN = Pattern.compile("\\d+\\.\\d+");
+    // 字符分类，按位组合
+    private static final byte END_MARK = 1; // 句子结束标点（中文句号、中英文感叹号、问号）
+    private static final byte PAUSE_MARK = 2; // 逗号、分号等停顿标点
+    private static final byte NEWLINE = 4; // 换行符
+    private static final byte EMOJI = 8; // 表情符号
+
+    // BMP字符的分类表，其余码点只可能是表情符号
+    private static final byte[] CHAR_CLASS = new byte[Character.MAX_VALUE + 1];
+
+    static {
+        for (char c : "。！？!?".toCharArray()) {
+            CHAR_CLASS[c] |= END_MARK;
+        }
+        for (char c : "，、；,;".toCharArray()) {
+            CHAR_CLASS[c] |= PAUSE_MARK;
+        }
+        for (char c : "\n\r".toCharArray()) {
+            CHAR_CLASS[c] |= NEWLINE;
+        }
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            if (EmojiUtils.isEmoji(c)) {
+                CHAR_CLASS[c] |= EMOJI;
+            }
+        }
+    }
 
     // 最小句子长度（字符数）
     private static final int MIN_SENTENCE_LENGTH = 5;
 
     final StringBuilder currentSentence = new StringBuilder(); // 当前句子的缓冲区
-    final StringBuilder contextBuffer = new StringBuilder(); // 上下文缓冲区，用于检测数字中的小数点
-
-
 
+    // 当前句子中是否已出现颜文字。句子只会在末尾追加字符，出现后直到发送前都不会消失
+    private boolean containsKaomoji = false;
 
     public DialogueHelper( ) {
 
     }
 
-
+    /**
+     * 逐个码点追加到当前句子并判断是否断句。
+     * 每个字符只查分类表，颜文字只检查以当前字符结尾的部分，不重新扫描整个句子
+     */
     public void onToken(String token, FluxSink sink) {
         if (token == null || token.isEmpty()) {
             return;
         }
 
-
-        // 逐字符处理token
         for (int i = 0; i < token.length();) {
             int codePoint = token.codePointAt(i);
-            String charStr = new String(Character.toChars(codePoint));
+            currentSentence.appendCodePoint(codePoint);
 
-            // 将字符添加到上下文缓冲区（保留最近的字符以检测数字模式）
-            contextBuffer.append(charStr);
-            if (contextBuffer.length() > 20) { // 保留足够的上下文
-                contextBuffer.delete(0, contextBuffer.length() - 20);
+            int charClass = classOf(codePoint);
+            if (!containsKaomoji) {
+                containsKaomoji = EmojiUtils.endsWithKaomoji(currentSentence);
             }
 
-            // 将字符添加到当前句子缓冲区
-            currentSentence.append(charStr);
+            // 句子结束标点、换行符、停顿标点、表情符号和颜文字都是断句标记，句子足够长时才发送
+            if ((charClass != 0 || containsKaomoji) && currentSentence.length() >= MIN_SENTENCE_LENGTH) {
+                sendSentence(sink);
+            }
 
-            // 检查各种断句标记
-            boolean shouldSendSentence = false;
-            boolean isEndMark = SENTENCE_END_PATTERN.matcher(charStr).find();
-            boolean isPauseMark = PAUSE_PATTERN.matcher(charStr).find();
-            boolean isNewline = NEWLINE_PATTERN.matcher(charStr).find();
-            boolean isEmoji = EmojiUtils.isEmoji(codePoint);
+            // 移动到下一个码点
+            i += Character.charCount(codePoint);
+        }
+    }
 
-            // 检查当前句子是否包含颜文字
-            boolean containsKaomoji = false;
-            if (currentSentence.length() >= 3) { // 颜文字至少需要3个字符
-                containsKaomoji = EmojiUtils.containsKaomoji(currentSentence.toString());
-            }
+    /**
+     * 去掉首尾空白和颜文字后，有实质内容时发送当前句子；否则继续积累
+     */
+    private void sendSentence(FluxSink sink) {
+        int from = 0;
+        int to = currentSentence.length();
+        // 与 String.trim() 一致
+        while (from < to && currentSentence.charAt(from) <= ' ') {
+            from++;
+        }
+        while (to > from && currentSentence.charAt(to - 1) <= ' ') {
+            to--;
+        }
 
-            // 如果当前字符是句号，检查它是否是数字中的小数点
-            if (isEndMark && charStr.equals(".")) {
-                String context = contextBuffer.toString();
-                Matcher numberMatcher = NUMBER_PATTERN.matcher(context);
-                // 如果找到数字模式（如"0.271"），则不视为句子结束标点
-                if (numberMatcher.find() && numberMatcher.end() >= context.length() - 3) {
-                    isEndMark = false;
-                }
+        String sentence;
+        if (containsKaomoji) {
+            // 过滤颜文字
+            sentence = EmojiUtils.filterKaomoji(currentSentence.substring(from, to));
+            if (!containsSubstantialContent(sentence, 0, sentence.length())) {
+                return;
             }
-
-            // 判断是否应该发送当前句子
-            if (isEndMark) {
-                // 句子结束标点是强断句信号
-                shouldSendSentence = true;
-            } else if (isNewline) {
-                // 换行符也是强断句信号
-                shouldSendSentence = true;
-            } else if ((isPauseMark || isEmoji || containsKaomoji)
-                    && currentSentence.length() >= MIN_SENTENCE_LENGTH) {
-                // 停顿标点、特殊标点、表情符号或颜文字在句子足够长时可以断句
-                shouldSendSentence = true;
+        } else {
+            // 没有颜文字时直接在缓冲区上判断，只在发送时创建字符串
+            if (!containsSubstantialContent(currentSentence, from, to)) {
+                return;
             }
+            sentence = currentSentence.substring(from, to);
+        }
 
-            // 如果应该发送句子，且当前句子长度满足要求
-            if (shouldSendSentence && currentSentence.length() >= MIN_SENTENCE_LENGTH) {
-                String sentence = currentSentence.toString().trim();
-
-                // 过滤颜文字
-                sentence = EmojiUtils.filterKaomoji(sentence);
-
-                if (containsSubstantialContent(sentence)) {
-
-                    // 只有在onComplete中才会有最后一个句子
-                    sink.next(sentence);
+        // 只有在onComplete中才会有最后一个句子
+        sink.next(sentence);
 
-                    // 清空当前句子缓冲区
-                    currentSentence.setLength(0);
-                }
-            }
+        // 清空当前句子缓冲区
+        currentSentence.setLength(0);
+        containsKaomoji = false;
+    }
 
-            // 移动到下一个码点
-            i += Character.charCount(codePoint);
+    private static int classOf(int codePoint) {
+        if (codePoint <= Character.MAX_VALUE) {
+            return CHAR_CLASS[codePoint];
         }
+        return EmojiUtils.isEmoji(codePoint) ? EMOJI : 0;
     }
 
     public void onComplete(FluxSink sink) {
@@ -135,17 +138,51 @@ class DialogueHelper {
     /**
      * 判断文本是否包含实质性内容（不仅仅是空白字符或标点符号）
      *
-     * @param text 要检查的文本
+     * @param text 要检查的文本，只检查 [from, to) 部分
      * @return 是否包含实质性内容
      */
-    private boolean containsSubstantialContent(String text) {
-        if (text == null || text.trim().length() < MIN_SENTENCE_LENGTH) {
+    private static boolean containsSubstantialContent(CharSequence text, int from, int to) {
+        int start = from;
+        int end = to;
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (end - start < MIN_SENTENCE_LENGTH) {
             return false;
         }
 
-        // 移除所有标点符号和空白字符后，检查是否还有内容
-        String stripped = text.replaceAll("[\\p{P}\\s]", "");
-        return stripped.length() >= 2; // 至少有两个非标点非空白字符
+        // 不计标点符号和空白字符，至少有两个字符
+        int count = 0;
+        for (int i = from; i < to;) {
+            int codePoint = Character.codePointAt(text, i);
+            int charCount = Character.charCount(codePoint);
+            if (!isPunctuationOrWhitespace(codePoint)) {
+                count += charCount;
+                if (count >= 2) {
+                    return true;
+                }
+            }
+            i += charCount;
+        }
+        return false;
+    }
+
+    /**
+     * 与正则 [\\p{P}\\s] 一致：Unicode标点符号，以及空格和 \\t \\n \\x0B \\f \\r
+     */
+    private static boolean isPunctuationOrWhitespace(int codePoint) {
+        if (codePoint == ' ' || (codePoint >= '\t' && codePoint <= '\r')) {
+            return true;
+        }
+        return switch (Character.getType(codePoint)) {
+            case Character.CONNECTOR_PUNCTUATION, Character.DASH_PUNCTUATION, Character.START_PUNCTUATION,
+                 Character.END_PUNCTUATION, Character.INITIAL_QUOTE_PUNCTUATION, Character.FINAL_QUOTE_PUNCTUATION,
+                 Character.OTHER_PUNCTUATION -> true;
+            default -> false;
+        };
     }
 
     public Flux<String> convert(Flux<ChatResponse> chatResponseFlux){
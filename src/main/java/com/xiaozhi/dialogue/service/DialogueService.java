@@ -6,9 +6,13 @@ import com.xiaozhi.dialogue.llm.ChatService;
 import com.xiaozhi.dialogue.llm.intent.IntentDetector;
 import com.xiaozhi.dialogue.llm.intent.IntentDetector.UserIntent;
 import com.xiaozhi.dialogue.llm.memory.*;
+import com.xiaozhi.dialogue.metrics.DialogueMetrics;
+import com.xiaozhi.dialogue.metrics.TurnTrace;
 import com.xiaozhi.dialogue.service.VadService.VadStatus;
+import com.xiaozhi.dialogue.stt.SttResult;
 import com.xiaozhi.dialogue.stt.SttService;
 import com.xiaozhi.dialogue.stt.factory.SttServiceFactory;
+import com.xiaozhi.dialogue.tts.TtsCache;
 import com.xiaozhi.dialogue.tts.TtsService;
 import com.xiaozhi.dialogue.tts.factory.TtsServiceFactory;
 import com.xiaozhi.entity.SysConfig;
@@ -33,6 +37,7 @@ import org.springframework.util.StringUtils;
 
 import jakarta.annotation.Resource;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
 
 import java.nio.file.Path;
 import java.util.*;
@@ -60,6 +65,10 @@ public class DialogueService{
     @Value("${tts.max.concurrent.per.session:3}")
     private int MAX_CONCURRENT_PER_SESSION;
 
+    // 部分识别结果连续相同的次数达到该值时视为稳定，提前进行意图检测
+    @Value("${stt.stable.partial.count:3}")
+    private int STABLE_PARTIAL_COUNT = 3;
+
     @Resource
     private ApplicationContext applicationContext;
 
@@ -83,6 +92,9 @@ public class DialogueService{
 
     @Resource
     private SysMessageService sysMessageService;
+
+    @Resource
+    private FramePacer framePacer;
     
     @Resource
     private SysConfigService configService;
@@ -99,6 +111,12 @@ public class DialogueService{
     @Resource
     private TimeoutMessageSupplier timeoutMessages;
 
+    @Resource
+    private TtsCache ttsCache;
+
+    @Resource
+    private DialogueMetrics dialogueMetrics;
+
     @org.springframework.context.event.EventListener
     public void onApplicationEvent(ChatSessionCloseEvent event) {
         ChatSession chatSession = event.getSession();
@@ -158,6 +176,8 @@ public class DialogueService{
                         //检测到vad，触发当前语音打断事件
                         applicationContext.publishEvent(new ChatAbortEvent(session, "检测到vad"));
                     }
+                    // 新的一轮对话，开始记录各阶段耗时
+                    session.setTurnTrace(dialogueMetrics.newTurn());
                     startStt(session, sessionId, sttConfig, device, vadResult.getProcessedData());
                     break;
 
@@ -169,6 +189,7 @@ public class DialogueService{
                     break;
 
                 case SPEECH_END:
+                    session.getTurnTrace().speechEnded(VadService.PROVIDER_NAME, vadResult.getSilenceDurationMs());
                     // 语音结束，完成流式识别
                     if (sessionManager.isStreaming(sessionId)) {
                         sessionManager.completeAudioStream(sessionId);
@@ -194,6 +215,7 @@ public class DialogueService{
             SysDevice device,
             byte[] initialAudio) {
         Assert.notNull(session, "session不能为空");
+        TurnTrace trace = session.getTurnTrace();
 
         Thread.startVirtualThread(() -> {
             try {
@@ -216,15 +238,37 @@ public class DialogueService{
                     sessionManager.sendAudioData(sessionId, initialAudio);
                 }
 
-                final String finalText;
-                if (sessionManager.getAudioStream(sessionId) != null) {
-                    finalText = sttService.streamRecognition(sessionManager.getAudioStream(sessionId));
-                    if (!StringUtils.hasText(finalText)) {
-                        return;
+                Sinks.Many<byte[]> audioStream = sessionManager.getAudioStream(sessionId);
+                if (audioStream == null) {
+                    return;
+                }
+                String finalText = null;
+                UserIntent intent = null;
+                String lastPartial = null;
+                int stableCount = 0;
+                for (SttResult result : sttService.streamRecognitionResults(audioStream).toIterable()) {
+                    if (result.isFinal()) {
+                        finalText = result.text();
+                        break;
                     }
-                } else {
+                    // 部分结果连续多次不变时提前检测意图，明确的意图（如退出）不必等到说话结束
+                    stableCount = result.text().equals(lastPartial) ? stableCount + 1 : 1;
+                    lastPartial = result.text();
+                    if (stableCount == STABLE_PARTIAL_COUNT) {
+                        intent = intentDetector.detectIntent(lastPartial);
+                        if (intent != null) {
+                            finalText = lastPartial;
+                            // 结束识别，后续音频不再送入STT
+                            sessionManager.completeAudioStream(sessionId);
+                            sessionManager.setStreamingState(sessionId, false);
+                            break;
+                        }
+                    }
+                }
+                if (!StringUtils.hasText(finalText)) {
                     return;
                 }
+                trace.sttFinished(sttService.getProviderName());
                 messageService.sendSttMessage(session, finalText);
 
                 // 立即发送start消息，通知设备进入说话状态，避免在LLM处理期间错误监听环境声音
@@ -239,7 +283,9 @@ public class DialogueService{
                 session.setAssistantTimeMillis(assistantTimeMillis);
 
                 // 优先检测用户意图，如果检测到明确意图则直接处理，不走 LLM
-                UserIntent intent = intentDetector.detectIntent(finalText);
+                if (intent == null) {
+                    intent = intentDetector.detectIntent(finalText);
+                }
                 if (intent != null) {
                     handleIntent(session, intent, finalText);
                     return;
@@ -306,19 +352,38 @@ public class DialogueService{
         }
         TtsService ttsService = ttsFactory.getTtsService(ttsConfig, role.getVoiceName(), role.getTtsPitch(), role.getTtsSpeed());
 
+        if (ttsService.isSupportStreamTts()) {
+            return initStreamSynthesizer(chatSession, ttsService);
+        }
         return initFileSynthesizer(chatSession, ttsService);
     }
 
+    /**
+     * 初始化流式Synthesizer，与FileSynthesizer共用会话的FilePlayer
+     */
+    private Synthesizer initStreamSynthesizer(ChatSession chatSession, TtsService ttsService) {
+        Player player = chatSession.getPlayer();
+        if(player == null){
+            player = new FilePlayer( chatSession, messageService, sessionManager, sysMessageService, framePacer);
+            chatSession.setPlayer(player);
+        }
+        StreamSynthesizer synthesizer = new StreamSynthesizer(chatSession, messageService, ttsService, player,
+                MAX_CONCURRENT_PER_SESSION, ttsFactory.getProviderPermits(ttsService.getProviderName()), ttsCache);
+        chatSession.setSynthesizer(synthesizer);
+        return synthesizer;
+    }
+
     /**
      * 初始化Synthesizer
      */
     private Synthesizer initFileSynthesizer(ChatSession chatSession, TtsService ttsService) {
         Player player = chatSession.getPlayer();
         if(player == null){
-            player = new FilePlayer( chatSession, messageService, sessionManager, sysMessageService);
+            player = new FilePlayer( chatSession, messageService, sessionManager, sysMessageService, framePacer);
             chatSession.setPlayer(player);
         }
-        FileSynthesizer synthesizer = new FileSynthesizer(chatSession, messageService, ttsService, player);
+        FileSynthesizer synthesizer = new FileSynthesizer(chatSession, messageService, ttsService, player,
+                MAX_CONCURRENT_PER_SESSION, ttsFactory.getProviderPermits(ttsService.getProviderName()), ttsCache);
         chatSession.setSynthesizer(synthesizer);
         return synthesizer;
     }
@@ -337,7 +402,7 @@ public class DialogueService{
                 return;
             }
 
-            Player player = new FilePlayer(session, messageService, sessionManager, sysMessageService);
+            Player player = new FilePlayer(session, messageService, sessionManager, sysMessageService, framePacer);
             if(session.getPlayer()==null){
                 // 正常都应该是这个
                 session.setPlayer(player);
@@ -369,14 +434,15 @@ public class DialogueService{
         Player player = session.getPlayer();
 
         if(player == null){
-            player = new FilePlayer(session, messageService, sessionManager, sysMessageService);
+            player = new FilePlayer(session, messageService, sessionManager, sysMessageService, framePacer);
             logger.debug("当前session.player为null，新建一个FilemPlayer");
             session.setPlayer(player);
         }else{
             logger.debug("当前session.player: {}", player.getClass());
         }
 
-        FileSynthesizer synthesizer = new FileSynthesizer(session, messageService, ttsService, player);
+        FileSynthesizer synthesizer = new FileSynthesizer(session, messageService, ttsService, player,
+                MAX_CONCURRENT_PER_SESSION, ttsFactory.getProviderPermits(ttsService.getProviderName()));
         session.setSynthesizer(synthesizer);
 
         messageService.sendSttMessage(session, text);
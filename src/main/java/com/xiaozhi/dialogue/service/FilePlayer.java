@@ -8,10 +8,14 @@ import com.xiaozhi.utils.AudioUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -25,20 +29,27 @@ public class FilePlayer extends ThreadPlayer{
     // 帧发送时间间隔略小于OPUS_FRAME_DURATION_MS，避免因某些调度原因，导致没能在规定时间内发送，设备出现杂音
     final long OPUS_FRAME_SEND_INTERVAL_MS = AudioUtils.OPUS_FRAME_DURATION_MS;
 
-    // Burst模式相关变量
-    private long startTimestamp;      // 播放开始的时间戳（纳秒）
-    private long playPosition;        // 当前播放位置（纳秒）
-
     // 存储模型回复的每个句子所对应的音频路径
     private final List<String> audioFilesToMerge = new ArrayList<>();
+    // 命中TTS缓存的句子：缓存文件路径 -> 缓存的帧，合并时缓存文件已被淘汰则用帧重新写一份
+    private final Map<String, List<byte[]>> cachedFramesToMerge = new HashMap<>();
     // 状态与 sendStart sendStop保持同步。用于控制内部循环，在中断时可以及时打断。
     // 使用volatile确保多线程可见性
     private volatile boolean isPlaying = true;
     private final SysMessageService sysMessageService;
+    // 所有会话共用的帧调度器，本播放器只负责按句子准备帧，帧的下发时间由调度器控制
+    private final FramePacer framePacer;
+    private volatile FramePacer.Channel channel;
 
-    public FilePlayer(ChatSession session, MessageService messageService,SessionManager sessionManager, SysMessageService sysMessageService) {
+    public FilePlayer(ChatSession session, MessageService messageService, SessionManager sessionManager,
+                      SysMessageService sysMessageService, FramePacer framePacer) {
         super(session, messageService,sessionManager);
         this.sysMessageService = sysMessageService;
+        this.framePacer = framePacer != null ? framePacer : FramePacer.getDefault();
+    }
+
+    public FilePlayer(ChatSession session, MessageService messageService,SessionManager sessionManager, SysMessageService sysMessageService) {
+        this(session, messageService, sessionManager, sysMessageService, null);
     }
 
     public FilePlayer(ChatSession session, MessageService messageService,SessionManager sessionManager) {
@@ -50,10 +61,14 @@ public class FilePlayer extends ThreadPlayer{
     protected void onStop() {
         // 立即停止播放循环
         isPlaying = false;
+        FramePacer.Channel current = channel;
+        if (current != null) {
+            current.cancel();
+        }
         logger.debug("FilePlayer已停止播放 - SessionId: {}", session.getSessionId());
     }
 
-
+    @Override
     public void run() {
 
         // 注意：start消息现在由DialogueService在开始处理用户请求时发送，
@@ -62,130 +77,168 @@ public class FilePlayer extends ThreadPlayer{
         // 每次run开始时重置播放状态
         isPlaying = true;
 
-        // 初始化播放时间戳（在循环开始前设置一次）
-        startTimestamp = System.currentTimeMillis();
-        playPosition = -OPUS_FRAME_SEND_INTERVAL_MS * 2; // -120ms预缓冲
+        // 每次播放一条新的时间线，首帧前自动预缓冲
+        FramePacer.Channel channel = framePacer.open(this::sendPacedFrame);
+        this.channel = channel;
 
-        // 注意：start消息现在由DialogueService在开始处理用户请求时发送，
-        // 而不是在这里发送，这样可以避免在LLM处理期间设备仍处于监听状态
         // 修改循环条件：不仅检查队列是否有数据，还要检查Synthesizer是否还在对话中
         // 这样可以避免队列暂时为空但Synthesizer还在生成句子时误判结束
         // 同时检查synthesizer是否被中止，如果中止则立即退出播放
-        while (isPlaying && (this.getQueue().size() > 0 ||
-               (session.getSynthesizer() != null && session.getSynthesizer().isDialog()
-                && !session.getSynthesizer().isAborted()))) {
-            Sentence sentence = this.getQueue().poll();
-            if (sentence == null) {
-                try {
-                    Thread.sleep(60); // 等待 60ms，避免空转占用 CPU
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
+        try {
+            while (isPlaying && (this.getQueue().size() > 0 ||
+                   (session.getSynthesizer() != null && session.getSynthesizer().isDialog()
+                    && !session.getSynthesizer().isAborted()))) {
+                // 队列为空时最多等待一帧的时间，有新句子时立即返回
+                Sentence sentence = this.getQueue().poll(OPUS_FRAME_SEND_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (sentence == null) {
+                    continue;
                 }
-                continue;
-            }
-
-            Path audioPath = sentence.getAudioPath();
-            String text = sentence.getText();
-            logger.info("向设备发送音频消息（sendAudioMessage） - SessionId: {}, 文本: {}, 音频路径: {}", session.getSessionId(),
-                    text, audioPath);
-            // TODO  处理 等待正确顺序的句子出现。并且设置延时。
-
-
-            if (audioPath == null) {
-                if (text != null && !text.isEmpty()) {
 
-                    // 检查是否是纯表情符号（通过检查句子是否有moods但没有实际文本内容）
-                    if (sentence.isOnlyEmoji()) {
-                        // 纯表情符号，只发送表情，不发送文本
-                        this.sendEmotion( null);
-                    } else {
-                        // 有实际文本内容，发送异常提示
-                        this.sendSentenceStart(text);
-                        // 发送句子表情
-                        this.sendEmotion( null);
-                    }
-                    try {
+                Path audioPath = sentence.getAudioPath();
+                OpusFrameStream opusStream = sentence.getOpusStream();
+                List<byte[]> cachedFrames = sentence.getOpusFrames();
+                String text = sentence.getText();
+                logger.info("向设备发送音频消息（sendAudioMessage） - SessionId: {}, 文本: {}, 音频路径: {}", session.getSessionId(),
+                        text, audioPath);
+
+                if (audioPath == null && opusStream == null && cachedFrames == null) {
+                    // 等上一句的音频发送完，避免文本先于音频到达设备
+                    channel.awaitDrained();
+                    if (text != null && !text.isEmpty()) {
+
+                        // 检查是否是纯表情符号（通过检查句子是否有moods但没有实际文本内容）
+                        if (sentence.isOnlyEmoji()) {
+                            // 纯表情符号，只发送表情，不发送文本
+                            this.sendEmotion( null);
+                        } else {
+                            // 有实际文本内容，发送异常提示
+                            this.sendSentenceStart(text);
+                            // 发送句子表情
+                            this.sendEmotion( null);
+                        }
                         TimeUnit.MILLISECONDS.sleep(ONLY_TEXT_SLEEP_TIME_MS);
-                    } catch (InterruptedException e) {
-                        logger.error("等待表情播放失败", e);
                     }
-                }
-                // 没有音频、没有文本、还没结束，则下一轮循环。
-                continue;
-            }
-
-            // 发送句子开始标记
-            this.sendSentenceStart(text);
-
-            // 发送句子表情
-            this.sendEmotion(null);
-            
-            // 只有需要合并的音频才添加到合并列表
-            if (sentence.isShouldMerge()) {
-                audioFilesToMerge.add(audioPath.toString());
-            }
-            try {
-                // 处理音频文件
-                List<byte[]> opusFrames = AudioUtils.readAsOpus(audioPath.toString());
-                if (opusFrames == null || opusFrames.isEmpty()) {
+                    // 没有音频、没有文本、还没结束，则下一轮循环。
                     continue;
                 }
-                for (byte[] frame : opusFrames) {
-                    // 更新活跃时间
-                    session.setLastActivityTime(Instant.now());
 
-                    // 检查会话是否关闭
-                    if (!session.isOpen()) {
-                        break;
+                try {
+                    // 流式合成的句子直接从帧流读取，缓存命中的句子直接使用缓存的帧，否则读取音频文件
+                    // 文件在上一句还在下发时就读取编码好，不占用句子间隔
+                    Iterable<byte[]> opusFrames;
+                    if (opusStream != null) {
+                        opusFrames = opusStream;
+                    } else if (cachedFrames != null) {
+                        opusFrames = cachedFrames;
+                    } else {
+                        List<byte[]> fileFrames = AudioUtils.readAsOpus(audioPath.toString());
+                        if (fileFrames == null || fileFrames.isEmpty()) {
+                            continue;
+                        }
+                        opusFrames = fileFrames;
                     }
 
-                    // 检查synthesizer是否被中止，如果中止则立即停止播放
-                    if (session.getSynthesizer() != null && session.getSynthesizer().isAborted()) {
-                        logger.info("检测到对话已被中止，停止音频播放 - SessionId: {}", session.getSessionId());
-                        isPlaying = false;
+                    // 等上一句的音频发送完再发送句子开始标记
+                    channel.awaitDrained();
+                    if (!isPlaying || channel.isCancelled()) {
                         break;
                     }
 
-                    // 计算目标发送时间（绝对时间戳）
-                    long targetSendTime = startTimestamp + playPosition;
+                    // 发送句子开始标记
+                    this.sendSentenceStart(text);
 
-                    // 等待到目标时间（如果playPosition是负值，会立即通过，实现预缓冲）
-                    long delay = targetSendTime - System.currentTimeMillis();
-                    if (delay > 0) {
-                        Thread.sleep(delay);
+                    // 发送句子表情
+                    this.sendEmotion(null);
+
+                    // 只有需要合并的音频才添加到合并列表
+                    if (opusStream == null && audioPath != null && sentence.isShouldMerge()) {
+                        audioFilesToMerge.add(audioPath.toString());
+                        if (cachedFrames != null) {
+                            cachedFramesToMerge.put(audioPath.toString(), cachedFrames);
+                        }
                     }
 
-                    // 发送当前帧
-                    this.sendOpusFrame(frame);
+                    // 帧交给调度器按时下发，这里不再逐帧sleep
+                    for (byte[] frame : opusFrames) {
+                        if (!isPlaying || channel.isCancelled()) {
+                            break;
+                        }
+                        channel.offer(frame);
+                    }
 
-                    // 更新播放位置（每帧增加60ms）
-                    playPosition += OPUS_FRAME_SEND_INTERVAL_MS;
-                } // end for 发送一个句子的所有帧
+                    // 流式句子的音频文件在合成结束后才落盘
+                    if (opusStream != null && sentence.isShouldMerge() && sentence.getAudioPath() != null) {
+                        audioFilesToMerge.add(sentence.getAudioPath().toString());
+                    }
 
-                // 补偿预缓冲(120ms) + 预缓冲后第一帧(60ms) + 首句最后一帧(60ms) + 句子间隔(60ms) = 300ms
-                playPosition += OPUS_FRAME_SEND_INTERVAL_MS * 5;
-                logger.debug("句子播放完毕，等待360ms后播放下一句");
-            } catch (Exception e) {
-                // 发生错误，取消调度任务
-                logger.error("非流式帧处理失败", e);
-            }
-        } // end while,此时队列一定到了最后一个句子并且队列为空。
+                    // 补偿预缓冲(120ms) + 预缓冲后第一帧(60ms) + 首句最后一帧(60ms) + 句子间隔(60ms) = 300ms
+                    channel.pause(OPUS_FRAME_SEND_INTERVAL_MS * 5);
+                } catch (InterruptedException e) {
+                    throw e;
+                } catch (Exception e) {
+                    logger.error("非流式帧处理失败", e);
+                }
+            } // end while,此时队列一定到了最后一个句子并且队列为空。
 
-        // 等待设备播放完最后一句的缓冲时间
-        // 确保设备有足够时间播放完所有音频后再发送stop
-        try {
+            // 等待已提交的帧全部下发
+            channel.awaitDrained();
+
+            // 等待设备播放完最后一句的缓冲时间
+            // 确保设备有足够时间播放完所有音频后再发送stop
             Thread.sleep(500); // 500ms缓冲时间
         } catch (InterruptedException e) {
+            channel.cancel();
             Thread.currentThread().interrupt();
         }
-        
+
         sendStop();
         isPlaying = false;
         logger.debug("对话 {} 播放结束", session.getSessionId());
         saveAssistantResponse();
     }
 
+    /**
+     * 在通道的写线程中下发一帧
+     * @return false表示会话已关闭或对话已中止，丢弃剩余的帧
+     */
+    private boolean sendPacedFrame(byte[] frame) throws Exception {
+        // 检查会话是否关闭
+        if (!session.isOpen()) {
+            return false;
+        }
+        // 检查synthesizer是否被中止，如果中止则立即停止播放
+        if (session.getSynthesizer() != null && session.getSynthesizer().isAborted()) {
+            logger.info("检测到对话已被中止，停止音频播放 - SessionId: {}", session.getSessionId());
+            isPlaying = false;
+            return false;
+        }
+        // 更新活跃时间
+        session.setLastActivityTime(Instant.now());
+        this.sendOpusFrame(frame);
+        session.getTurnTrace().firstAudio();
+        return true;
+    }
+
+
+    /**
+     * 命中TTS缓存的句子直接使用缓存文件，合并前缓存文件可能已被淘汰删除，此时用缓存的帧写一份临时文件代替，合并后随其他源文件一起删除
+     */
+    private void restoreEvictedCacheFiles() {
+        for (int i = 0; i < audioFilesToMerge.size(); i++) {
+            String file = audioFilesToMerge.get(i);
+            List<byte[]> frames = cachedFramesToMerge.get(file);
+            if (frames == null || Files.exists(Path.of(file))) {
+                continue;
+            }
+            String restored = AudioUtils.AUDIO_PATH + UUID.randomUUID().toString().replace("-", "") + ".opus";
+            try {
+                AudioUtils.saveAsOpus(frames, restored);
+                audioFilesToMerge.set(i, restored);
+            } catch (Exception e) {
+                logger.warn("重写已淘汰的TTS缓存文件失败: {}", file, e);
+            }
+        }
+    }
 
     /**
      * 保存助手的完整响应（文本和合并音频）
@@ -200,11 +253,13 @@ public class FilePlayer extends ThreadPlayer{
                 Path path = session.getAudioPath(Conversation.MESSAGE_TYPE_ASSISTANT, assistantTimeMillis);
                 // 这里可能只有一条音频，合并可能会报错，尝试输出所有合并音频的路径
                 logger.info("合并音频文件数量: {}", audioFilesToMerge.size());
+                restoreEvictedCacheFiles();
                 AudioUtils.mergeAudioFiles(path, audioFilesToMerge);
                 // 保存合并后的音频路径
                 logger.info("对话 {} 的音频已合并: {}", assistantTimeMillis, path);
                 // 音频合并完成，删除源文件后，dialogueAudioPaths也应一并清除。
                 audioFilesToMerge.clear();
+                cachedFramesToMerge.clear();
                 if (sysMessageService != null) {
                     //合并完成，更新消息表路径、时长信息
                     String deviceId = session.getSysDevice().getDeviceId().replace("-", ":");
@@ -1,6 +1,7 @@
 package com.xiaozhi.dialogue.service;
 
 import com.xiaozhi.communication.common.ChatSession;
+import com.xiaozhi.dialogue.tts.TtsCache;
 import com.xiaozhi.dialogue.tts.TtsService;
 import com.xiaozhi.service.SysMessageService;
 import com.xiaozhi.utils.AudioUtils;
@@ -12,6 +13,7 @@ import java.nio.file.Path;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Semaphore;
 
 /**
  * 语音合成器，用于处理一个服务器响应时的多个句子，实现更好的输出。
@@ -27,6 +29,7 @@ public class FileSynthesizer extends ThreadSynthesizer  {
 
     private final MessageService messageService;
     private final TtsService ttsService;
+    private final TtsCache ttsCache;
 
     // 从配置文件读取TTS相关参数
     @Value("${tts.timeout.ms:10000}")
@@ -38,14 +41,33 @@ public class FileSynthesizer extends ThreadSynthesizer  {
     @Value("${tts.retry.delay.ms:1000}")
     private long TTS_RETRY_DELAY_MS = 1000;
 
-    @Value("${tts.max.concurrent.per.session:3}")
-    private int MAX_CONCURRENT_PER_SESSION = 3;
-
     public FileSynthesizer(ChatSession session, MessageService messageService,
                        TtsService ttsService, Player player) {
         super(session,player);
         this.messageService = messageService;
         this.ttsService = ttsService;
+        this.ttsCache = null;
+    }
+
+    /**
+     * @param maxInFlight     本会话同时合成的最大句子数
+     * @param providerPermits TTS提供商的全局并发许可，可为null
+     */
+    public FileSynthesizer(ChatSession session, MessageService messageService,
+                       TtsService ttsService, Player player, int maxInFlight, Semaphore providerPermits) {
+        this(session, messageService, ttsService, player, maxInFlight, providerPermits, null);
+    }
+
+    /**
+     * @param ttsCache TTS合成结果缓存，为null表示不缓存
+     */
+    public FileSynthesizer(ChatSession session, MessageService messageService,
+                       TtsService ttsService, Player player, int maxInFlight, Semaphore providerPermits,
+                       TtsCache ttsCache) {
+        super(session, player, maxInFlight, providerPermits);
+        this.messageService = messageService;
+        this.ttsService = ttsService;
+        this.ttsCache = ttsCache;
     }
 
     @Override
@@ -59,10 +81,21 @@ public class FileSynthesizer extends ThreadSynthesizer  {
         
         try {
             // TODO 超时须在ttsFactory里设置。
-            String audioPath = ttsService.textToSpeech(text);
+            long start = System.nanoTime();
+            String audioPath;
+            if (ttsCache != null && ttsCache.isCacheable(text)) {
+                // 短句走缓存，命中时Player直接下发缓存的Opus帧
+                TtsCache.Entry cached = ttsCache.synthesize(ttsService, text);
+                sentence.setOpusFrames(cached.frames());
+                // 直接使用缓存文件，合并对话音频时若已被淘汰，Player用缓存的帧重新写一份
+                audioPath = cached.path().toString();
+            } else {
+                audioPath = ttsService.textToSpeech(text);
+            }
             logger.debug("executeTtsTask audioPath:{}", audioPath);
             // 记录TTS生成时间
             sentence.setEndSynthesis(Instant.now());
+            chatSession.getTurnTrace().ttsSynthesized(ttsService.getProviderName(), System.nanoTime() - start);
 
             // 成功生成音频
             handleTtsSuccess(sentence, audioPath);
@@ -107,11 +140,8 @@ public class FileSynthesizer extends ThreadSynthesizer  {
             return;
         }
 
-        // 发送到客户端
-        player.append(sentence);
-        player.play();
-        // 从队列中移除已处理的句子
-        removeSentence(sentence);
+        // 按顺序发送到客户端，并从队列中移除已处理的句子
+        deliver(sentence);
     }
 
     /**
@@ -0,0 +1,309 @@
+package com.xiaozhi.dialogue.service;
+
+import com.xiaozhi.utils.AudioUtils;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 音频帧定时下发调度器，所有会话共用少量平台线程。
+ * 终端设备几乎没有缓冲，需要服务器端按时下发音频帧。原先每个播放中的会话一个虚拟线程，逐帧 Thread.sleep，
+ * 负载高时虚拟线程调度延迟叠加，发送时间抖动明显。
+ * 这里每个会话对应一个 {@link Channel}，帧的下发时间按单调时钟（System.nanoTime）的绝对时间计算，
+ * 不随单次调度误差累积；同一 Channel 任何时刻最多只有一个待执行的调度任务，保证帧的顺序。
+ * 调度线程只负责把到期的帧交给 Channel 自己的写循环发送，写循环有帧待发送时才从写线程池借用线程，
+ * 某个会话发送阻塞时只积压该会话的帧，不占用共享的调度线程。
+ * 写线程池大小固定（player.writer-threads），阻塞的会话最多占用这么多线程，超出时其他会话的写循环排队等待。
+ * 写线程使用平台线程而不是虚拟线程，虚拟线程的载体线程繁忙（VAD、编解码）时启动延迟会重新带来抖动。
+ */
+@Component
+public class FramePacer {
+    private static final Logger logger = LoggerFactory.getLogger(FramePacer.class);
+
+    private static final long FRAME_NANOS = TimeUnit.MILLISECONDS.toNanos(AudioUtils.OPUS_FRAME_DURATION_MS);
+
+    // 未注入Spring Bean时（例如测试或手动创建的播放器）使用的默认实例
+    private static volatile FramePacer defaultPacer;
+
+    private final Clock clock;
+    private final Executor writers;
+    private final long prebufferNanos;
+
+    /**
+     * @param prebufferMs 预缓冲时长，开始播放或播放中断后，先连续下发这么多音频，再按实时速率下发
+     * @param threads       调度线程数
+     * @param writerThreads 写线程数上限
+     */
+    @Autowired
+    public FramePacer(@Value("${player.prebuffer-ms:120}") long prebufferMs,
+                      @Value("${player.pacer-threads:2}") int threads,
+                      @Value("${player.writer-threads:8}") int writerThreads) {
+        this(prebufferMs, new SchedulerClock(threads), newWriterPool(writerThreads));
+        logger.info("音频帧调度器已初始化: prebuffer={}ms, threads={}, writerThreads={}",
+                prebufferMs, threads, writerThreads);
+    }
+
+    /**
+     * @param clock   单调时钟及定时任务
+     * @param writers 执行 Channel 的写循环
+     */
+    FramePacer(long prebufferMs, Clock clock, Executor writers) {
+        this.prebufferNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, prebufferMs));
+        this.clock = clock;
+        this.writers = writers;
+    }
+
+    public static FramePacer getDefault() {
+        if (defaultPacer == null) {
+            synchronized (FramePacer.class) {
+                if (defaultPacer == null) {
+                    defaultPacer = new FramePacer(120, 2, 8);
+                }
+            }
+        }
+        return defaultPacer;
+    }
+
+    /**
+     * 为一次播放创建帧通道
+     * @param sender 在通道的写线程中按顺序调用，发送一帧，可以阻塞；返回false表示放弃该通道剩余的帧（会话关闭、对话中止等）
+     */
+    public Channel open(FrameSender sender) {
+        return new Channel(sender);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        clock.shutdown();
+        if (writers instanceof ExecutorService pool) {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * 固定上限的写线程池，空闲的线程60秒后回收
+     */
+    private static ExecutorService newWriterPool(int threads) {
+        AtomicInteger index = new AtomicInteger();
+        int size = Math.max(1, threads);
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "frame-writer-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MAX_PRIORITY);
+            return thread;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * 单调时钟及定时任务，测试时替换为手动推进的时钟
+     */
+    interface Clock {
+        long nanoTime();
+
+        Future<?> schedule(Runnable task, long delayNanos);
+
+        default void shutdown() {
+        }
+    }
+
+    /**
+     * System.nanoTime 和共享的高优先级调度线程
+     */
+    private static final class SchedulerClock implements Clock {
+        private final ScheduledThreadPoolExecutor scheduler;
+
+        private SchedulerClock(int threads) {
+            AtomicInteger index = new AtomicInteger();
+            scheduler = new ScheduledThreadPoolExecutor(Math.max(1, threads), r -> {
+                Thread thread = new Thread(r, "frame-pacer-" + index.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MAX_PRIORITY);
+                return thread;
+            });
+            scheduler.setRemoveOnCancelPolicy(true);
+        }
+
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public Future<?> schedule(Runnable task, long delayNanos) {
+            return scheduler.schedule(task, delayNanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void shutdown() {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private record Frame(long deadline, byte[] data) {
+    }
+
+    @FunctionalInterface
+    public interface FrameSender {
+        boolean send(byte[] frame) throws Exception;
+    }
+
+    /**
+     * 一个会话的帧时间线
+     */
+    public class Channel {
+        private final FrameSender sender;
+        // 等待到期的帧
+        private final Queue<Frame> frames = new ArrayDeque<>();
+        // 已到期、等待写线程发送的帧
+        private final Queue<byte[]> ready = new ArrayDeque<>();
+        // 下一个入队帧的下发时间（单调时钟，纳秒）
+        private long nextDeadline = Long.MIN_VALUE;
+        private Future<?> task;
+        private boolean writing = false;
+        private boolean cancelled = false;
+
+        private Channel(FrameSender sender) {
+            this.sender = sender;
+        }
+
+        /**
+         * 追加一帧。时间线落后当前时间超过预缓冲时（首帧，或TTS未及时返回），从当前时间减去预缓冲处重新起算，
+         * 先补齐设备的预缓冲，之后再按实时速率下发。
+         */
+        public synchronized void offer(byte[] frame) {
+            if (cancelled) {
+                return;
+            }
+            long now = clock.nanoTime();
+            if (nextDeadline == Long.MIN_VALUE || nextDeadline < now - prebufferNanos) {
+                nextDeadline = now - prebufferNanos;
+            }
+            frames.add(new Frame(nextDeadline, frame));
+            nextDeadline += FRAME_NANOS;
+            if (task == null) {
+                schedule(now);
+            }
+        }
+
+        /**
+         * 在时间线上插入一段静音，例如句子之间的间隔
+         */
+        public synchronized void pause(long millis) {
+            if (nextDeadline != Long.MIN_VALUE) {
+                nextDeadline += TimeUnit.MILLISECONDS.toNanos(millis);
+            }
+        }
+
+        /**
+         * 丢弃尚未下发的帧，之后追加的帧也不再下发
+         */
+        public synchronized void cancel() {
+            cancelled = true;
+            frames.clear();
+            ready.clear();
+            if (task != null) {
+                task.cancel(false);
+                task = null;
+            }
+            notifyAll();
+        }
+
+        public synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * 尚未下发的帧数
+         */
+        public synchronized int pending() {
+            return frames.size() + ready.size();
+        }
+
+        /**
+         * 等待所有已追加的帧下发完毕或通道被取消
+         */
+        public synchronized void awaitDrained() throws InterruptedException {
+            // task不为空说明还有帧未到期，writing说明最后一帧可能还在发送中
+            while ((!frames.isEmpty() || !ready.isEmpty() || task != null || writing) && !cancelled) {
+                wait();
+            }
+        }
+
+        private void schedule(long now) {
+            task = clock.schedule(this::fire, Math.max(0, frames.peek().deadline() - now));
+        }
+
+        /**
+         * 在调度线程中执行：把到期的帧交给写循环，不在这里发送
+         */
+        private void fire() {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                long now = clock.nanoTime();
+                while (!frames.isEmpty() && frames.peek().deadline() <= now) {
+                    ready.add(frames.poll().data());
+                }
+                if (frames.isEmpty()) {
+                    task = null;
+                } else {
+                    schedule(now);
+                }
+                if (writing || ready.isEmpty()) {
+                    notifyAll();
+                    return;
+                }
+                writing = true;
+            }
+            writers.execute(this::write);
+        }
+
+        /**
+         * 写循环：按顺序发送已到期的帧，发送完后归还线程，有新的到期帧时再启动
+         */
+        private void write() {
+            while (true) {
+                byte[] frame;
+                synchronized (this) {
+                    frame = cancelled ? null : ready.poll();
+                    if (frame == null) {
+                        writing = false;
+                        notifyAll();
+                        return;
+                    }
+                }
+                boolean keep;
+                try {
+                    keep = sender.send(frame);
+                } catch (Exception e) {
+                    logger.error("音频帧发送失败", e);
+                    keep = true;
+                }
+                if (!keep) {
+                    synchronized (this) {
+                        writing = false;
+                    }
+                    cancel();
+                    return;
+                }
+            }
+        }
+    }
+}
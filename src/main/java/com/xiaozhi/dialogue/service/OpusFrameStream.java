@@ -0,0 +1,102 @@
+package com.xiaozhi.dialogue.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一个句子的Opus帧流。
+ * 流式合成时，Synthesizer 边合成边写入，Player 边读取边下发，不经过临时文件。
+ * 迭代器在没有新帧时阻塞等待，直到写入方调用 {@link #complete()}。
+ */
+public class OpusFrameStream implements Iterable<byte[]> {
+    private static final Logger logger = LoggerFactory.getLogger(OpusFrameStream.class);
+
+    // 结束标记
+    private static final byte[] END = new byte[0];
+
+    private final BlockingQueue<byte[]> frames = new LinkedBlockingQueue<>();
+    private final long stallTimeoutMs;
+    private volatile boolean completed = false;
+
+    /**
+     * @param stallTimeoutMs 读取方等待下一帧的最长时间，超时视为流结束，避免TTS异常时播放线程一直挂起
+     */
+    public OpusFrameStream(long stallTimeoutMs) {
+        this.stallTimeoutMs = stallTimeoutMs;
+    }
+
+    /**
+     * 写入一帧
+     */
+    public void push(byte[] frame) {
+        if (!completed && frame != null && frame.length > 0) {
+            frames.offer(frame);
+        }
+    }
+
+    /**
+     * 标记写入结束
+     */
+    public void complete() {
+        if (!completed) {
+            completed = true;
+            frames.offer(END);
+        }
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    @Override
+    public Iterator<byte[]> iterator() {
+        return new Iterator<>() {
+            private byte[] next;
+            private boolean finished;
+
+            @Override
+            public boolean hasNext() {
+                if (next != null) {
+                    return true;
+                }
+                if (finished) {
+                    return false;
+                }
+                try {
+                    byte[] frame = frames.poll(stallTimeoutMs, TimeUnit.MILLISECONDS);
+                    if (frame == null) {
+                        logger.warn("等待流式音频帧超时({}ms)，提前结束句子播放", stallTimeoutMs);
+                        finished = true;
+                        return false;
+                    }
+                    if (frame == END) {
+                        finished = true;
+                        return false;
+                    }
+                    next = frame;
+                    return true;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    finished = true;
+                    return false;
+                }
+            }
+
+            @Override
+            public byte[] next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                byte[] frame = next;
+                next = null;
+                return frame;
+            }
+        };
+    }
+}
@@ -9,7 +9,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.PriorityQueue;
+import java.util.concurrent.PriorityBlockingQueue;
 
 /**
  *
@@ -37,7 +37,8 @@ import java.util.PriorityQueue;
 @Data
 public abstract class Player{
     private static final Logger logger = LoggerFactory.getLogger(Player.class);
-    private PriorityQueue<Sentence> queue = new PriorityQueue<Sentence>((sentence1, sentence2)->sentence1.getSeq()-sentence2.getSeq());
+    // 多个合成线程可能同时append，需线程安全
+    private PriorityBlockingQueue<Sentence> queue = new PriorityBlockingQueue<Sentence>(11, (sentence1, sentence2)->sentence1.getSeq()-sentence2.getSeq());
 
 
 
@@ -36,6 +36,10 @@ public class Sentence implements Comparable<Sentence>{
     private List<String> moods=null;
     // audio path
     private Path audioPath = null;
+    // 流式合成时的Opus帧流，不为空时Player直接从流中读取帧，无需等待音频文件
+    private OpusFrameStream opusStream = null;
+    // TTS缓存命中时已编码好的Opus帧，不为空时Player直接下发，无需读取和编码音频文件
+    private List<byte[]> opusFrames = null;
     // 标记是否需要合并到最终音频文件（默认true）
     private boolean shouldMerge = true;
 
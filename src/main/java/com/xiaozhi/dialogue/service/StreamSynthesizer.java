@@ -0,0 +1,181 @@
+package com.xiaozhi.dialogue.service;
+
+import com.xiaozhi.communication.common.ChatSession;
+import com.xiaozhi.dialogue.metrics.TurnTrace;
+import com.xiaozhi.dialogue.tts.TtsCache;
+import com.xiaozhi.dialogue.tts.TtsService;
+import com.xiaozhi.utils.AudioUtils;
+import com.xiaozhi.utils.OpusProcessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 流式语音合成器。
+ * 与 {@link FileSynthesizer} 不同，句子在开始合成时就交给Player，TTS返回的PCM分片直接增量编码为Opus帧，
+ * 写入句子的 {@link OpusFrameStream}，Player 边收边发，首帧不必等整句合成完毕，也不经过临时文件。
+ * 整句合成结束后再把PCM落盘为wav，只用于对话音频的合并保存，不在播放的关键路径上。
+ * 仅适用于 {@link TtsService#isSupportStreamTts()} 为true的TTS服务。
+ */
+public class StreamSynthesizer extends ThreadSynthesizer {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamSynthesizer.class);
+
+    // 等待下一段TTS音频的最长时间
+    private static final long STREAM_STALL_TIMEOUT_MS = 10000;
+
+    private final MessageService messageService;
+    private final TtsService ttsService;
+    private final TtsCache ttsCache;
+
+    public StreamSynthesizer(ChatSession session, MessageService messageService,
+                             TtsService ttsService, Player player) {
+        super(session, player);
+        this.messageService = messageService;
+        this.ttsService = ttsService;
+        this.ttsCache = null;
+    }
+
+    /**
+     * @param maxInFlight     本会话同时合成的最大句子数
+     * @param providerPermits TTS提供商的全局并发许可，可为null
+     */
+    public StreamSynthesizer(ChatSession session, MessageService messageService,
+                             TtsService ttsService, Player player, int maxInFlight, Semaphore providerPermits) {
+        this(session, messageService, ttsService, player, maxInFlight, providerPermits, null);
+    }
+
+    /**
+     * @param ttsCache TTS合成结果缓存，为null表示不缓存
+     */
+    public StreamSynthesizer(ChatSession session, MessageService messageService,
+                             TtsService ttsService, Player player, int maxInFlight, Semaphore providerPermits,
+                             TtsCache ttsCache) {
+        super(session, player, maxInFlight, providerPermits);
+        this.messageService = messageService;
+        this.ttsService = ttsService;
+        this.ttsCache = ttsCache;
+    }
+
+    @Override
+    protected void doSynthesize(Sentence sentence) {
+        // 检查是否已被中断或中止，避免abort后继续请求TTS
+        if (Thread.currentThread().isInterrupted() || aborted) {
+            return;
+        }
+        // 确保当前Synthesizer仍然是session中的活跃Synthesizer
+        if (chatSession.getSynthesizer() != this) {
+            logger.debug("当前Synthesizer已被替换，跳过句子合成 - 序号: {}", sentence.getSeq());
+            return;
+        }
+
+        String text = sentence.getText4Speech();
+        TurnTrace trace = chatSession.getTurnTrace();
+        long start = System.nanoTime();
+        boolean cacheable = ttsCache != null && ttsCache.isCacheable(text);
+        if (cacheable) {
+            TtsCache.Entry cached = ttsCache.get(ttsService, text);
+            if (cached != null) {
+                // 缓存命中，不请求TTS，Player直接下发缓存的帧
+                sentence.setOpusFrames(cached.frames());
+                // 直接使用缓存文件，合并对话音频时若已被淘汰，Player用缓存的帧重新写一份
+                sentence.setAudio(cached.path());
+                sentence.setEndSynthesis(Instant.now());
+                sentence.setSynthesisCompleted(true);
+                long elapsed = System.nanoTime() - start;
+                trace.ttsFirstChunk(ttsService.getProviderName(), elapsed);
+                trace.ttsSynthesized(ttsService.getProviderName(), elapsed);
+                deliver(sentence);
+                return;
+            }
+        }
+
+        OpusFrameStream opusStream = new OpusFrameStream(STREAM_STALL_TIMEOUT_MS);
+        sentence.setOpusStream(opusStream);
+        // 需要写入缓存时保留编码好的帧
+        List<byte[]> encodedFrames = cacheable ? new ArrayList<>() : null;
+
+        // 先交给Player（前面的句子都已交付后才会入队），第一帧编码完成即可下发
+        deliver(sentence);
+
+        OpusProcessor encoder = new OpusProcessor();
+        ByteArrayOutputStream pcmData = new ByteArrayOutputStream();
+        // TTS分片可能在样本中间截断，保留不足一个样本的尾字节
+        byte[] carry = new byte[1];
+        int[] carryLen = {0};
+        boolean[] firstChunk = {true};
+
+        try {
+            ttsService.streamTextToSpeech(text, chunk -> {
+                if (aborted || chunk == null || chunk.length == 0) {
+                    return;
+                }
+                if (firstChunk[0]) {
+                    // 在首帧交给Player之前记录，首帧下发时已知本轮的TTS提供商
+                    firstChunk[0] = false;
+                    trace.ttsFirstChunk(ttsService.getProviderName(), System.nanoTime() - start);
+                }
+                byte[] pcm = chunk;
+                if (carryLen[0] > 0) {
+                    pcm = new byte[chunk.length + 1];
+                    pcm[0] = carry[0];
+                    System.arraycopy(chunk, 0, pcm, 1, chunk.length);
+                    carryLen[0] = 0;
+                }
+                if (pcm.length % 2 != 0) {
+                    carry[0] = pcm[pcm.length - 1];
+                    carryLen[0] = 1;
+                }
+                pcmData.write(pcm, 0, pcm.length - carryLen[0]);
+                for (byte[] frame : encoder.pcmToOpus(pcm, true)) {
+                    opusStream.push(frame);
+                    if (encodedFrames != null) {
+                        encodedFrames.add(frame);
+                    }
+                }
+            });
+            for (byte[] frame : encoder.flush()) {
+                opusStream.push(frame);
+                if (encodedFrames != null) {
+                    encodedFrames.add(frame);
+                }
+            }
+            sentence.setEndSynthesis(Instant.now());
+            if (!firstChunk[0]) {
+                trace.ttsSynthesized(ttsService.getProviderName(), System.nanoTime() - start);
+            }
+            logger.info("句子流式合成完成 - 序号: {}, 对话ID: {}, 语音生成: {}毫秒, 内容: \"{}\"",
+                    sentence.getSeq(), sentence.getAssistantTimeMillis(),
+                    sentence.getSynthesisDuration(), sentence.getText());
+
+            if (encodedFrames != null && !aborted && !encodedFrames.isEmpty()) {
+                try {
+                    ttsCache.put(ttsService, text, encodedFrames);
+                } catch (Exception e) {
+                    logger.warn("写入TTS缓存失败 - 内容: \"{}\", 原因: {}", text, e.getMessage());
+                }
+            }
+            if (!aborted && pcmData.size() > 0) {
+                String audioPath = AudioUtils.saveAsWav(pcmData.toByteArray());
+                if (audioPath != null) {
+                    sentence.setAudio(Path.of(audioPath));
+                }
+                sentence.setSynthesisCompleted(true);
+            }
+        } catch (Exception e) {
+            logger.error("流式TTS任务执行失败 - 句子序号: {}, 提供商: {}, 语音: {}, 原因: {}",
+                    sentence.getSeq(), ttsService.getProviderName(), ttsService.getVoiceName(), e.getMessage());
+            // 异常或失败，发送类似心跳包，避免设备端误判为会话终止
+            messageService.sendEmotion(chatSession, "happy");
+            sentence.setEndSynthesis(Instant.now());
+        } finally {
+            opusStream.complete();
+        }
+    }
+}
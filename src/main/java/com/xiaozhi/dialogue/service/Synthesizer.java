@@ -1,6 +1,7 @@
 package com.xiaozhi.dialogue.service;
 
 import com.xiaozhi.communication.common.ChatSession;
+import com.xiaozhi.dialogue.metrics.TurnTrace;
 import lombok.AccessLevel;
 import lombok.Data;
 import lombok.Getter;
@@ -185,11 +186,13 @@ public abstract class Synthesizer {
     }
 
     public void startSynthesis(Flux<ChatResponse> chatResponseFlux) {
+        TurnTrace trace = chatSession.getTurnTrace();
         // 保存订阅引用，以便在cancel时取消
         fluxSubscription = new DialogueHelper().convert2sentence(chatResponseFlux)
                 .subscribe(sentence -> {
                             // 检查是否已被中止，避免abort后继续追加内容
                             if (!aborted) {
+                                trace.firstSentence();
                                 this.append(sentence);
                             }
                         },
@@ -13,7 +13,7 @@ import java.util.List;
 /**
  * 基于线程方式实现的播放器，实测通过Thread的sleep方法，即使是纳秒时间依然是不够精确的。
  * 而小智固件程序默认的处理方式，终端设备没有缓存，需要服务器端准确按时的下发音频帧，否则终端设备会有沙沙声。
- * TODO 后续考虑通过 ScheduledExecutorService 来实现。它主要是得益于多线程频繁被唤醒，所以从DelayedWorkQueue获得的元素可以时间更精确。
+ * 因此逐帧的下发时间交给共享的 {@link FramePacer}（基于 ScheduledExecutorService），播放线程只负责按句子准备音频帧。
  */
 @Slf4j
 public abstract class ThreadPlayer extends Player implements Runnable{
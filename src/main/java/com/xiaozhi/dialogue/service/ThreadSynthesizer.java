@@ -4,17 +4,59 @@ import com.xiaozhi.communication.common.ChatSession;
 import lombok.extern.slf4j.Slf4j;
 
 import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * 多线程语音合成器
+ * 同一会话最多 maxInFlight 个句子并发合成（预合成后续句子，掩盖TTS延迟），
+ * 合成结果按pollSentence的顺序重新排好后才交给Player，保证播放顺序与LLM输出一致。
+ * 可选的 providerPermits 为同一TTS提供商在所有会话间共享的并发上限。
+ */
 @Slf4j
 public abstract class ThreadSynthesizer extends Synthesizer implements Runnable{
 
     private static final ExecutorService ttsExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    // 无事件时的最长等待，用于感知Player队列的消费
+    private static final long IDLE_WAIT_MS = 60;
+
     private final Future ttsFuture;
+    private final int maxInFlight;
+    private final Semaphore sessionPermits;
+    private final Semaphore providerPermits;
+    private final Set<Future<?>> inFlight = ConcurrentHashMap.newKeySet();
+
+    // 按顺序等待交给Player的句子，及已完成合成的句子（true为可播放，false为跳过）
+    private final Queue<Sentence> ordered = new ArrayDeque<>();
+    private final Map<Sentence, Boolean> resolved = new IdentityHashMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
     public ThreadSynthesizer(ChatSession chatSession, Player player) {
+        this(chatSession, player, 1, null);
+    }
+
+    /**
+     * @param maxInFlight     本会话同时合成的最大句子数，1表示逐句合成
+     * @param providerPermits 同一TTS提供商的全局并发许可，为null表示不限制
+     */
+    public ThreadSynthesizer(ChatSession chatSession, Player player, int maxInFlight, Semaphore providerPermits) {
         super(chatSession, player);
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.sessionPermits = new Semaphore(this.maxInFlight);
+        this.providerPermits = providerPermits;
         this.ttsFuture = ttsExecutor.submit(this);
     }
 
@@ -26,8 +68,42 @@ public abstract class ThreadSynthesizer extends Synthesizer implements Runnable{
         if (fluxSubscription != null && !fluxSubscription.isDisposed()) {
             fluxSubscription.dispose();
         }
-        // 取消TTS任务线程
+        // 取消TTS任务线程及正在合成的句子
         ttsFuture.cancel(true);
+        for (Future<?> future : inFlight) {
+            future.cancel(true);
+        }
+        inFlight.clear();
+        synchronized (ordered) {
+            ordered.clear();
+            resolved.clear();
+        }
+        signal();
+    }
+
+    @Override
+    public void append(String text) {
+        super.append(text);
+        signal();
+    }
+
+    @Override
+    public void setLast() {
+        super.setLast();
+        signal();
+    }
+
+    /**
+     * setLast之后仍有句子在合成或等待前面的句子时，对话尚未结束，否则Player会在队列暂时为空时提前退出
+     */
+    @Override
+    public boolean isDialog() {
+        if (super.isDialog() || !ttsFuture.isDone()) {
+            return true;
+        }
+        synchronized (ordered) {
+            return !ordered.isEmpty();
+        }
     }
 
     @Override
@@ -37,12 +113,16 @@ public abstract class ThreadSynthesizer extends Synthesizer implements Runnable{
             // 耗时操作需及时更新最后活动时间，避免误判为会话终止
             chatSession.setLastActivityTime(Instant.now());
 
-            // 等待播放队列为空才合成下一句，每次队列中只保持1句待播放
-            if (readyTts.length() == 0 || !player.getQueue().isEmpty()) {
-                try {
-                    Thread.sleep(60); // 等待 60ms，避免空转占用 CPU
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
+            // 没有待合成文本，或Player中待播放的句子已足够，则等待
+            if (readyTts.length() == 0 || player.getQueue().size() >= maxInFlight) {
+                if (!awaitChange()) {
+                    break;
+                }
+                continue;
+            }
+            // 已达本会话并发上限，等待某个句子合成完成
+            if (!sessionPermits.tryAcquire()) {
+                if (!awaitChange()) {
                     break;
                 }
                 continue;
@@ -50,11 +130,14 @@ public abstract class ThreadSynthesizer extends Synthesizer implements Runnable{
 
             Sentence sentence = this.pollSentence();
             // 防止只返回换行符等空白字符
-            if (sentence != null) {
-                sentence.setBeginSynthesis(Instant.now());
-                doSynthesize(sentence);
+            if (sentence == null) {
+                sessionPermits.release();
+                continue;
             }
-
+            synchronized (ordered) {
+                ordered.add(sentence);
+            }
+            submit(sentence);
         }
 
         // 检查是否因为abort而退出
@@ -66,5 +149,106 @@ public abstract class ThreadSynthesizer extends Synthesizer implements Runnable{
         }
     }
 
+    private void submit(Sentence sentence) {
+        inFlight.removeIf(Future::isDone);
+        inFlight.add(ttsExecutor.submit(() -> {
+            boolean providerAcquired = false;
+            try {
+                if (providerPermits != null) {
+                    providerPermits.acquire();
+                    providerAcquired = true;
+                }
+                if (!aborted) {
+                    sentence.setBeginSynthesis(Instant.now());
+                    doSynthesize(sentence);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("句子合成异常 - 序号: {}", sentence.getSeq(), e);
+            } finally {
+                if (providerAcquired) {
+                    providerPermits.release();
+                }
+                // 合成失败或被跳过的句子也要出队，避免阻塞后续句子
+                skip(sentence);
+                sessionPermits.release();
+                signal();
+            }
+        }));
+    }
+
+    /**
+     * 句子可以播放时调用（文件合成完成，或流式合成已开始）。
+     * 句子按顺序交给Player，之前的句子未就绪时先缓存。
+     */
+    protected void deliver(Sentence sentence) {
+        resolve(sentence, true);
+    }
+
+    /**
+     * 句子不需要播放（合成失败、被中止等），只从顺序队列中移除。已交付的句子调用无影响。
+     */
+    protected void skip(Sentence sentence) {
+        resolve(sentence, false);
+    }
+
+    private void resolve(Sentence sentence, boolean playable) {
+        synchronized (ordered) {
+            if (!ordered.contains(sentence)) {
+                // 不经过run循环直接合成的句子（或已经交付的句子），无需排序
+                if (playable) {
+                    play(sentence, true);
+                }
+                return;
+            }
+            if (resolved.containsKey(sentence)) {
+                return;
+            }
+            resolved.put(sentence, playable);
+            Sentence head;
+            while ((head = ordered.peek()) != null && resolved.containsKey(head)) {
+                ordered.poll();
+                play(head, resolved.remove(head));
+            }
+        }
+    }
+
+    private void play(Sentence sentence, boolean playable) {
+        // 确保当前Synthesizer仍然是session中的活跃Synthesizer
+        if (playable && !aborted && chatSession.getSynthesizer() == this) {
+            player.append(sentence);
+            player.play();
+        }
+        // 从队列中移除已处理的句子
+        removeSentence(sentence);
+    }
+
+    private void signal() {
+        lock.lock();
+        try {
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 等待新文本、合成完成或Player消费
+     * @return false表示线程被中断
+     */
+    private boolean awaitChange() {
+        lock.lock();
+        try {
+            changed.await(IDLE_WAIT_MS, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
     abstract protected void doSynthesize(Sentence sentence);
 }
@@ -9,6 +9,7 @@ import com.xiaozhi.service.SysRoleService;
 import com.xiaozhi.utils.AudioUtils;
 import com.xiaozhi.utils.AudioEnhancer;
 import com.xiaozhi.utils.OpusProcessor;
+import io.github.jaredmdobson.concentus.OpusException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -57,6 +58,9 @@ public class VadService {
 
     private static final int VAD_SAMPLE_SIZE = AudioUtils.BUFFER_SIZE;
 
+    // 耗时指标中的VAD模型名称
+    public static final String PROVIDER_NAME = "silero";
+
     @Autowired
     private SileroVadModel vadModel;
     
@@ -107,6 +111,10 @@ public class VadService {
         // 每会话 Silero 隐状态 [2][1][128]
         private float[][][] sileroState = new float[2][1][128];
 
+        // 每会话复用的 Opus 解码器和样本缓冲区，避免逐帧创建解码器
+        private OpusProcessor opusDecoder = new OpusProcessor();
+        private final short[] pcmScratch = new short[OpusProcessor.MAX_DECODE_SAMPLES];
+
         // 预缓冲
         private final LinkedList<byte[]> preBuffer = new LinkedList<>();
         private int preBufferSize = 0;
@@ -272,6 +280,29 @@ public class VadService {
             return result;
         }
 
+        /**
+         * 使用会话级解码器解码一帧Opus数据
+         */
+        public byte[] decodeOpus(byte[] opus) throws OpusException {
+            if (opusDecoder == null) {
+                opusDecoder = new OpusProcessor();
+            }
+            int samples = opusDecoder.opusToPcm(opus, pcmScratch);
+            byte[] pcm = new byte[samples * 2];
+            for (int i = 0; i < samples; i++) {
+                pcm[i * 2] = (byte) (pcmScratch[i] & 0xFF);
+                pcm[i * 2 + 1] = (byte) ((pcmScratch[i] >> 8) & 0xFF);
+            }
+            return pcm;
+        }
+
+        /**
+         * 释放会话级解码器
+         */
+        public void release() {
+            opusDecoder = null;
+        }
+
         // 累积缓冲区管理
         public void accumulate(byte[] pcm) {
             if (pcm != null && pcm.length > 0) {
@@ -422,7 +453,7 @@ public class VadService {
                 // 解码Opus数据
                 byte[] pcmData;
                 try {
-                    pcmData = new OpusProcessor().opusToPcm(opusData);
+                    pcmData = state.decodeOpus(opusData);
                     if (pcmData == null || pcmData.length == 0) {
                         return new VadResult(VadStatus.NO_SPEECH, null);
                     }
@@ -626,7 +657,7 @@ public class VadService {
                         state.pcmAccumulator.reset();
                         state.lastAccumTime = System.currentTimeMillis();
 
-                        return new VadResult(VadStatus.SPEECH_END, enhancedPcmData);
+                        return new VadResult(VadStatus.SPEECH_END, enhancedPcmData, silenceDuration);
                     } else {
                         // 静音未超时，继续收集（但这是静音帧）
                         state.addPcm(enhancedPcmData);
@@ -746,6 +777,7 @@ public class VadService {
             VadState state = states.get(sessionId);
             if (state != null) {
                 state.reset();
+                state.release();
             }
             states.remove(sessionId);
             locks.remove(sessionId);
@@ -833,10 +865,17 @@ public class VadService {
     public static class VadResult {
         private final VadStatus status;
         private final byte[] data;
+        // SPEECH_END时距第一个静音帧到达的实际时长
+        private final int silenceDurationMs;
 
         public VadResult(VadStatus status, byte[] data) {
+            this(status, data, 0);
+        }
+
+        public VadResult(VadStatus status, byte[] data, int silenceDurationMs) {
             this.status = status;
             this.data = data;
+            this.silenceDurationMs = silenceDurationMs;
         }
 
         public VadStatus getStatus() {
@@ -847,6 +886,10 @@ public class VadService {
             return data;
         }
 
+        public int getSilenceDurationMs() {
+            return silenceDurationMs;
+        }
+
         public boolean isSpeechActive() {
             return status == VadStatus.SPEECH_START || status == VadStatus.SPEECH_CONTINUE;
         }
@@ -0,0 +1,18 @@
+package com.xiaozhi.dialogue.stt;
+
+/**
+ * 流式识别结果
+ *
+ * @param text    识别文本。部分结果为到目前为止识别出的全部文本，而不是增量
+ * @param isFinal 是否为最终结果，最终结果之后不会再有结果
+ */
+public record SttResult(String text, boolean isFinal) {
+
+    public static SttResult partial(String text) {
+        return new SttResult(text, false);
+    }
+
+    public static SttResult ofFinal(String text) {
+        return new SttResult(text, true);
+    }
+}
@@ -1,5 +1,6 @@
 package com.xiaozhi.dialogue.stt;
 
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Sinks;
 
 /**
@@ -28,6 +29,20 @@ public interface SttService {
    */
   String streamRecognition(Sinks.Many<byte[]> audioSink);
 
+  /**
+   * 流式处理音频数据，识别过程中返回部分结果
+   * 默认实现在订阅时阻塞调用 {@link #streamRecognition}，只返回最终结果
+   *
+   * @param audioSink 音频数据流
+   * @return 识别结果流，以一个最终结果结束
+   */
+  default Flux<SttResult> streamRecognitionResults(Sinks.Many<byte[]> audioSink) {
+    return Flux.defer(() -> {
+      String text = streamRecognition(audioSink);
+      return Flux.just(SttResult.ofFinal(text != null ? text : ""));
+    });
+  }
+
   /**
    * 检查服务是否支持流式处理
    * 
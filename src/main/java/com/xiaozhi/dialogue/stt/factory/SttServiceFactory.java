@@ -6,10 +6,12 @@ import com.xiaozhi.dialogue.token.TokenService;
 import com.xiaozhi.dialogue.token.factory.TokenServiceFactory;
 import com.xiaozhi.entity.SysConfig;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Resource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import jakarta.annotation.PostConstruct;
@@ -25,6 +27,9 @@ public class SttServiceFactory {
     @Resource
     private TokenServiceFactory tokenServiceFactory;
 
+    @Resource
+    private MeterRegistry meterRegistry;
+
     // 缓存已初始化的服务：key format: "provider:configId"
     private final Map<String, SttService> serviceCache = new ConcurrentHashMap<>();
 
@@ -37,6 +42,18 @@ public class SttServiceFactory {
     // 备选默认提供商（当Vosk初始化失败时使用）
     private String fallbackProvider = null;
 
+    // Vosk同时进行的最大识别数
+    @Value("${stt.vosk.max-concurrent:32}")
+    private int voskMaxConcurrent = 32;
+
+    // Vosk识别数达到上限时等待识别器的超时时间
+    @Value("${stt.vosk.acquire-timeout-ms:3000}")
+    private long voskAcquireTimeoutMs = 3000;
+
+    // 压测用的模拟STT（provider为loadtest）返回识别结果的耗时
+    @Value("${loadtest.stt.delay-ms:300}")
+    private long loadTestDelayMs = 300;
+
     /**
      * 应用启动时自动初始化Vosk服务
      */
@@ -60,7 +77,7 @@ public class SttServiceFactory {
         }
 
         try {
-            var voskService = new VoskSttService();
+            var voskService = new VoskSttService(voskMaxConcurrent, voskAcquireTimeoutMs);
             voskService.initialize();
             
             // 检查模型是否真正加载成功
@@ -69,6 +86,7 @@ public class SttServiceFactory {
             }
             
             serviceCache.put(DEFAULT_PROVIDER, voskService);
+            voskService.bindTo(meterRegistry);
             voskInitialized = true;
             logger.info("Vosk STT服务初始化成功");
             return voskService;
@@ -125,8 +143,13 @@ public class SttServiceFactory {
                 TokenService aliyunTokenService = tokenServiceFactory.getTokenService(config);
                 yield new AliyunNlsSttService(config, aliyunTokenService);
             }
-            case "funasr" -> new FunASRSttService(config);
+            case "funasr" -> {
+                var service = new FunASRSttService(config);
+                service.bindTo(meterRegistry);
+                yield service;
+            }
             case "xfyun" -> new XfyunSttService(config);
+            case "loadtest" -> new LoadTestSttService(loadTestDelayMs);
             default -> {
                 var service = initializeVosk();
                 if (service == null) {
@@ -146,6 +169,14 @@ public class SttServiceFactory {
         Integer configId = config.getConfigId();
         String provider = config.getProvider();
         String cacheKey = provider + ":" + (configId != null ? configId : "default");
-        serviceCache.remove(cacheKey);
+        SttService removed = serviceCache.remove(cacheKey);
+        // 释放服务持有的连接等资源
+        if (removed instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                logger.warn("关闭STT服务失败 - {}", cacheKey, e);
+            }
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,309 @@
+package com.xiaozhi.dialogue.stt.providers;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.handshake.ServerHandshake;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * FunASR WebSocket连接池。
+ * FunASR服务端在一次识别结束（is_speaking=false 并返回 is_final）后可以在同一连接上开始下一次识别，
+ * 这里为每个服务地址保持少量已建立的连接，每句话借出一个连接，识别完成后归还，省去每句话的连接和握手。
+ * - 空闲连接由WebSocket ping检测存活，断开的连接从池中移除
+ * - 后台定期补足 minIdle 个空闲连接，连续连接失败时按指数退避重试
+ * - 识别未正常结束（取消、超时、出错）的连接服务端状态不确定，直接关闭不再复用
+ * 连接的复用和等待情况通过 {@link #bindTo} 发布为 xiaozhi.stt.funasr.* 指标，关闭连接池时移除。
+ */
+public class FunASRConnectionPool implements AutoCloseable, MeterBinder {
+    private static final Logger logger = LoggerFactory.getLogger(FunASRConnectionPool.class);
+
+    // 所有连接池共用的维护线程
+    private static final ScheduledExecutorService MAINTAINER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "funasr-pool-maintainer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final long MAINTAIN_INTERVAL_MS = 1000;
+    private static final long MAX_BACKOFF_MS = 30000;
+    private static final int PING_INTERVAL_SECONDS = 30;
+
+    /**
+     * 连接上当前识别的消息回调
+     */
+    interface UtteranceListener {
+        void onMessage(String message);
+
+        void onClosed(String reason);
+    }
+
+    /**
+     * 连接池统计信息
+     *
+     * @param idle            空闲连接数
+     * @param created         累计建立的连接数
+     * @param reused          借出已有连接的次数
+     * @param failures        累计连接失败次数
+     * @param waited          没有空闲连接、借出时需要新建连接的次数
+     * @param totalWaitMillis 借出时新建连接的累计耗时
+     */
+    public record Stats(int idle, long created, long reused, long failures, long waited, long totalWaitMillis) {
+    }
+
+    /**
+     * 池中的连接
+     */
+    public final class Connection extends WebSocketClient {
+        private volatile UtteranceListener listener;
+
+        private Connection(URI serverUri) {
+            super(serverUri);
+            setConnectionLostTimeout(PING_INTERVAL_SECONDS);
+            // 音频帧和结束信号都很小，不等待合并发送
+            setTcpNoDelay(true);
+        }
+
+        void setListener(UtteranceListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void onOpen(ServerHandshake handshake) {
+            logger.debug("FunASR WebSocket连接已打开 - {}", uri);
+        }
+
+        @Override
+        public void onMessage(String message) {
+            UtteranceListener current = listener;
+            if (current != null) {
+                current.onMessage(message);
+            }
+        }
+
+        @Override
+        public void onClose(int code, String reason, boolean remote) {
+            logger.debug("FunASR WS关闭，原因：{}", reason);
+            if (idle.remove(this)) {
+                idleCount.decrementAndGet();
+            }
+            UtteranceListener current = listener;
+            if (current != null) {
+                current.onClosed(reason);
+            }
+        }
+
+        @Override
+        public void onError(Exception ex) {
+            logger.error("FunASR WS错误", ex);
+        }
+    }
+
+    private final URI uri;
+    private final int minIdle;
+    private final int maxIdle;
+    private final long connectTimeoutMs;
+
+    private final Deque<Connection> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong waited = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+
+    private final List<Meter> meters = new CopyOnWriteArrayList<>();
+    private volatile MeterRegistry registry;
+
+    // 连续失败次数与下次允许补充连接的时间，只在维护线程中使用
+    private int consecutiveFailures = 0;
+    private long nextAttemptAt = 0;
+    private volatile boolean closed = false;
+    private final ScheduledFuture<?> maintainTask;
+
+    /**
+     * @param uri              服务地址
+     * @param minIdle          保持的最少空闲连接数
+     * @param maxIdle          最多保留的空闲连接数，超过的连接归还时关闭
+     * @param connectTimeoutMs 建立连接的超时时间
+     */
+    public FunASRConnectionPool(URI uri, int minIdle, int maxIdle, long connectTimeoutMs) {
+        this.uri = uri;
+        this.minIdle = minIdle;
+        this.maxIdle = Math.max(minIdle, maxIdle);
+        this.connectTimeoutMs = connectTimeoutMs;
+        // 立即在后台预热连接
+        this.maintainTask = MAINTAINER.scheduleWithFixedDelay(this::maintain, 0, MAINTAIN_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 借出一个可用连接，没有空闲连接时新建
+     */
+    public Connection acquire() throws Exception {
+        Connection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            idleCount.decrementAndGet();
+            if (connection.isOpen()) {
+                reused.incrementAndGet();
+                return connection;
+            }
+        }
+        long start = System.nanoTime();
+        try {
+            return connect();
+        } finally {
+            waited.incrementAndGet();
+            totalWaitNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 识别正常结束后归还连接
+     */
+    public void release(Connection connection) {
+        connection.setListener(null);
+        if (closed || !connection.isOpen()) {
+            connection.close();
+            return;
+        }
+        if (idleCount.incrementAndGet() > maxIdle) {
+            idleCount.decrementAndGet();
+            connection.close();
+        } else {
+            idle.offerFirst(connection);
+        }
+    }
+
+    /**
+     * 关闭状态不确定的连接
+     */
+    public void discard(Connection connection) {
+        connection.setListener(null);
+        connection.close();
+    }
+
+    public Stats getStats() {
+        return new Stats(idleCount.get(), created.get(), reused.get(), failures.get(), waited.get(),
+                TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get()));
+    }
+
+    /**
+     * 发布连接池的指标，标签 uri 为服务地址：
+     * <ul>
+     * <li>xiaozhi.stt.funasr.connections.idle：空闲连接数</li>
+     * <li>xiaozhi.stt.funasr.connections.created / reused / failures：建立、复用连接及连接失败的次数</li>
+     * <li>xiaozhi.stt.funasr.acquire.wait：没有空闲连接、借出时新建连接的次数及累计耗时</li>
+     * </ul>
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        String tag = uri.toString();
+        this.registry = registry;
+        meters.add(Gauge.builder("xiaozhi.stt.funasr.connections.idle", idleCount, AtomicInteger::get)
+                .description("FunASR空闲连接数")
+                .tag("uri", tag)
+                .register(registry));
+        meters.add(FunctionCounter.builder("xiaozhi.stt.funasr.connections.created", created, AtomicLong::get)
+                .description("建立FunASR连接的次数")
+                .tag("uri", tag)
+                .register(registry));
+        meters.add(FunctionCounter.builder("xiaozhi.stt.funasr.connections.reused", reused, AtomicLong::get)
+                .description("复用FunASR空闲连接的次数")
+                .tag("uri", tag)
+                .register(registry));
+        meters.add(FunctionCounter.builder("xiaozhi.stt.funasr.connections.failures", failures, AtomicLong::get)
+                .description("FunASR连接失败的次数")
+                .tag("uri", tag)
+                .register(registry));
+        meters.add(FunctionTimer.builder("xiaozhi.stt.funasr.acquire.wait", this,
+                        pool -> pool.waited.get(), pool -> pool.totalWaitNanos.get(), TimeUnit.NANOSECONDS)
+                .description("没有空闲连接时借出FunASR连接的耗时")
+                .tag("uri", tag)
+                .register(registry));
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        maintainTask.cancel(false);
+        MeterRegistry boundRegistry = registry;
+        if (boundRegistry != null) {
+            meters.forEach(boundRegistry::remove);
+            meters.clear();
+        }
+        Connection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            idleCount.decrementAndGet();
+            connection.close();
+        }
+    }
+
+    private Connection connect() throws Exception {
+        Connection connection = new Connection(uri);
+        try {
+            if (!connection.connectBlocking(connectTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("连接FunASR服务失败: " + uri);
+            }
+        } catch (Exception e) {
+            failures.incrementAndGet();
+            connection.close();
+            throw e;
+        }
+        created.incrementAndGet();
+        return connection;
+    }
+
+    /**
+     * 移除已断开的空闲连接，补足最少空闲连接
+     */
+    private void maintain() {
+        if (closed) {
+            return;
+        }
+        idle.removeIf(connection -> {
+            if (!connection.isOpen()) {
+                idleCount.decrementAndGet();
+                return true;
+            }
+            return false;
+        });
+        if (System.currentTimeMillis() < nextAttemptAt) {
+            return;
+        }
+        int missing = minIdle - idleCount.get();
+        for (int i = 0; i < missing && !closed; i++) {
+            try {
+                Connection connection = connect();
+                consecutiveFailures = 0;
+                release(connection);
+            } catch (Exception e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                consecutiveFailures++;
+                long backoff = Math.min(MAX_BACKOFF_MS, 1000L << Math.min(consecutiveFailures - 1, 5));
+                nextAttemptAt = System.currentTimeMillis() + backoff;
+                logger.warn("FunASR连接预热失败 - {}, {}ms后重试: {}", uri, backoff, e.getMessage());
+                return;
+            }
+        }
+    }
+}
@@ -2,23 +2,26 @@ package com.xiaozhi.dialogue.stt.providers;
 
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
+import com.xiaozhi.dialogue.stt.SttResult;
 import com.xiaozhi.dialogue.stt.SttService;
 import com.xiaozhi.entity.SysConfig;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.springframework.util.StringUtils;
-import org.java_websocket.client.WebSocketClient;
-import org.java_websocket.handshake.ServerHandshake;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
 import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
 
 import java.net.URI;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.time.Duration;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * FunASR STT服务实现
@@ -29,20 +32,35 @@ import java.util.concurrent.atomic.AtomicReference;
  *  <br/>
  * <a href="https://www.funasr.com/static/offline/index.html">体验地址</a>
  */
-public class FunASRSttService implements SttService {
+public class FunASRSttService implements SttService, AutoCloseable, MeterBinder {
 
     private static final Logger logger = LoggerFactory.getLogger(FunASRSttService.class);
     private static final String PROVIDER_NAME = "funasr";
 
     private static final String SPEAKING_START = "{\"mode\":\"online\",\"wav_name\":\"voice.wav\",\"is_speaking\":true,\"wav_format\":\"pcm\",\"chunk_size\":[5,10,5],\"itn\":true}";
     private static final String SPEAKING_END = "{\"is_speaking\": false}";
-    private static final int QUEUE_TIMEOUT_MS = 100; // 队列等待超时时间
     private static final long RECOGNITION_TIMEOUT_MS = 90000; // 识别超时时间（90秒）
+    private static final long FINAL_RESULT_TIMEOUT_MS = 10000; // 说话结束后等待最终结果的超时时间
+    private static final long CONNECT_TIMEOUT_MS = 5000; // 建立连接的超时时间
+    private static final int DEFAULT_MIN_IDLE = 1; // 保持的最少空闲连接数
+    private static final int DEFAULT_MAX_IDLE = 8; // 最多保留的空闲连接数
 
     private final String apiUrl;
+    private final FunASRConnectionPool connectionPool;
 
     public FunASRSttService(SysConfig config) {
+        this(config, DEFAULT_MIN_IDLE, DEFAULT_MAX_IDLE);
+    }
+
+    /**
+     * @param minIdle 保持的最少空闲连接数
+     * @param maxIdle 最多保留的空闲连接数
+     */
+    public FunASRSttService(SysConfig config, int minIdle, int maxIdle) {
         this.apiUrl = config.getApiUrl();
+        this.connectionPool = StringUtils.hasText(apiUrl)
+                ? new FunASRConnectionPool(URI.create(apiUrl), minIdle, maxIdle, CONNECT_TIMEOUT_MS)
+                : null;
     }
 
     @Override
@@ -63,105 +81,179 @@ public class FunASRSttService implements SttService {
 
     @Override
     public String streamRecognition(Sinks.Many<byte[]> audioSink) {
-        // 使用阻塞队列存储音频数据
-        BlockingQueue<byte[]> audioQueue = new LinkedBlockingQueue<>();
-        AtomicBoolean isCompleted = new AtomicBoolean(false);
-        AtomicReference<String> finalResult = new AtomicReference<>("");
-        CountDownLatch recognitionLatch = new CountDownLatch(1);
-        
-        // 订阅Sink并将数据放入队列
-        audioSink.asFlux().subscribe(
-            data -> audioQueue.offer(data),
-            error -> {
-                logger.error("音频流处理错误", error);
-                isCompleted.set(true);
-            },
-            () -> isCompleted.set(true)
-        );
-        
-        // 创建WebSocket客户端
-        WebSocketClient webSocketClient = new WebSocketClient(URI.create(apiUrl)) {
-            @Override
-            public void onOpen(ServerHandshake handshake) {
-                logger.debug("FunASR WebSocket连接已打开");
-                send(SPEAKING_START);
-                
-                // 启动虚拟线程发送音频数据
-                Thread.startVirtualThread(() -> {
-                    try {
-                        while (!isCompleted.get() || !audioQueue.isEmpty()) {
-                            byte[] audioChunk = null;
-                            try {
-                                audioChunk = audioQueue.poll(QUEUE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
-                            } catch (InterruptedException e) {
-                                logger.warn("音频数据队列等待被中断", e);
-                                Thread.currentThread().interrupt(); // 重新设置中断标志
-                                break;
-                            }
-                            
-                            if (audioChunk != null && isOpen()) {
-                                send(audioChunk);
-                            }
-                        }
-                        
-                        // 发送结束信号
-                        if (isOpen()) {
-                            send(SPEAKING_END);
-                        }
-                    } catch (Exception e) {
-                        logger.error("发送音频数据时发生错误", e);
-                    }
-                });
-            }
+        try {
+            // 等待识别完成或超时
+            SttResult result = streamRecognitionResults(audioSink)
+                    .filter(SttResult::isFinal)
+                    .blockLast(Duration.ofMillis(RECOGNITION_TIMEOUT_MS));
+            return result != null ? result.text() : "";
+        } catch (Exception e) {
+            logger.error("FunASR识别过程中发生错误", e);
+            return "";
+        }
+    }
 
-            @Override
-            public void onMessage(String message) {
-                try {
-                    JSONObject jsonObject = JSON.parseObject(message);
-                    if (jsonObject.getBoolean("is_final")) {
-                        String text = jsonObject.getString("text");
-                        finalResult.set(text);
-                        recognitionLatch.countDown(); // 识别完成，释放锁
-                    }
-                } catch (Exception e) {
-                    logger.error("解析FunASR响应失败", e);
+    @Override
+    public Flux<SttResult> streamRecognitionResults(Sinks.Many<byte[]> audioSink) {
+        if (connectionPool == null) {
+            logger.error("未配置FunASR服务地址");
+            return Flux.just(SttResult.ofFinal(""));
+        }
+        return Flux.create(emitter -> {
+            FunASRConnectionPool.Connection connection;
+            try {
+                connection = connectionPool.acquire();
+            } catch (Exception e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
                 }
+                logger.error("连接FunASR服务失败 - {}", apiUrl, e);
+                emitter.next(SttResult.ofFinal(""));
+                emitter.complete();
+                return;
+            }
+            Utterance utterance = new Utterance(connection, emitter);
+            Disposable.Swap subscription = Disposables.swap();
+            // 识别结束或下游取消时归还连接
+            emitter.onDispose(() -> {
+                subscription.dispose();
+                utterance.abort();
+            });
+            connection.setListener(utterance);
+            connection.send(SPEAKING_START);
+            // 音频数据到达时直接发送
+            subscription.update(audioSink.asFlux().subscribe(
+                    utterance::sendAudio,
+                    error -> {
+                        logger.error("音频流处理错误", error);
+                        utterance.endOfSpeech();
+                    },
+                    utterance::endOfSpeech
+            ));
+        });
+    }
+
+    /**
+     * 关闭连接池
+     */
+    @Override
+    public void close() {
+        if (connectionPool != null) {
+            connectionPool.close();
+        }
+    }
+
+    /**
+     * 发布连接池的指标，关闭服务时移除
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (connectionPool != null) {
+            connectionPool.bindTo(registry);
+        }
+    }
+
+    /**
+     * 连接池统计信息，未配置服务地址时返回null
+     */
+    public FunASRConnectionPool.Stats getPoolStats() {
+        return connectionPool != null ? connectionPool.getStats() : null;
+    }
+
+    /**
+     * 一次识别，以 is_speaking=true 开始、is_speaking=false 结束，收到 is_final 后归还连接
+     */
+    private final class Utterance implements FunASRConnectionPool.UtteranceListener {
+        private final FunASRConnectionPool.Connection connection;
+        private final FluxSink<SttResult> emitter;
+        private final AtomicBoolean finished = new AtomicBoolean(false);
+        // online模式下每条消息只包含新识别出的文本，这里累积为完整文本
+        private final StringBuffer recognizedText = new StringBuffer();
+        private volatile long endOfSpeechNanos = 0;
+        private volatile Disposable finalTimeout;
+
+        Utterance(FunASRConnectionPool.Connection connection, FluxSink<SttResult> emitter) {
+            this.connection = connection;
+            this.emitter = emitter;
+        }
+
+        void sendAudio(byte[] audioChunk) {
+            if (!finished.get() && connection.isOpen()) {
+                connection.send(audioChunk);
             }
+        }
 
-            @Override
-            public void onClose(int code, String reason, boolean remote) {
-                logger.info("FunASR WS关闭，原因：{}", reason);
-                // 确保锁被释放
-                recognitionLatch.countDown();
+        void endOfSpeech() {
+            if (finished.get() || !connection.isOpen()) {
+                finish(false);
+                return;
             }
+            endOfSpeechNanos = System.nanoTime();
+            // 发送结束信号
+            connection.send(SPEAKING_END);
+            finalTimeout = Schedulers.parallel().schedule(() -> {
+                logger.warn("等待FunASR最终结果超时({}ms)", FINAL_RESULT_TIMEOUT_MS);
+                finish(false);
+            }, FINAL_RESULT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        }
 
-            @Override
-            public void onError(Exception ex) {
-                logger.error("FunASR WS错误", ex);
-                // 确保锁被释放
-                recognitionLatch.countDown();
+        @Override
+        public void onMessage(String message) {
+            try {
+                JSONObject jsonObject = JSON.parseObject(message);
+                String text = jsonObject.getString("text");
+                if (StringUtils.hasText(text)) {
+                    recognizedText.append(text);
+                }
+                if (Boolean.TRUE.equals(jsonObject.getBoolean("is_final"))) {
+                    if (endOfSpeechNanos > 0) {
+                        logger.debug("FunASR识别完成，说话结束到最终结果 {}ms",
+                                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - endOfSpeechNanos));
+                    }
+                    finish(true);
+                } else if (StringUtils.hasText(text) && !finished.get()) {
+                    emitter.next(SttResult.partial(recognizedText.toString()));
+                }
+            } catch (Exception e) {
+                logger.error("解析FunASR响应失败", e);
             }
-        };
+        }
 
-        try {
-            // 连接WebSocket
-            webSocketClient.connect();
-            
-            // 等待识别完成或超时
-            boolean recognized = recognitionLatch.await(RECOGNITION_TIMEOUT_MS, TimeUnit.MILLISECONDS);
-            
-            if (!recognized) {
+        @Override
+        public void onClosed(String reason) {
+            // 未收到最终结果时以已识别的文本结束
+            finish(false);
+        }
 
+        /**
+         * 下游取消，服务端仍在本次识别中，连接不能复用
+         */
+        void abort() {
+            if (finished.compareAndSet(false, true)) {
+                cancelTimeout();
+                connectionPool.discard(connection);
             }
-        } catch (Exception e) {
-            logger.error("FunASR识别过程中发生错误", e);
-        } finally {
-            // 关闭WebSocket连接
-            if (webSocketClient.isOpen()) {
-                webSocketClient.close();
+        }
+
+        private void finish(boolean reusable) {
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+            cancelTimeout();
+            if (reusable) {
+                connectionPool.release(connection);
+            } else {
+                connectionPool.discard(connection);
+            }
+            emitter.next(SttResult.ofFinal(recognizedText.toString()));
+            emitter.complete();
+        }
+
+        private void cancelTimeout() {
+            Disposable timeout = finalTimeout;
+            if (timeout != null) {
+                timeout.dispose();
             }
         }
-        
-        return finalResult.get();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,68 @@
+package com.xiaozhi.dialogue.stt.providers;
+
+import com.xiaozhi.dialogue.stt.SttService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+
+/**
+ * 压测用的模拟STT，不请求任何外部服务。
+ * 读完整段音频（说话结束）后等待固定时长，模拟识别服务返回最终结果的耗时，
+ * 返回固定的识别文本，让对话走完整的LLM、TTS流程。
+ */
+public class LoadTestSttService implements SttService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadTestSttService.class);
+    private static final String PROVIDER_NAME = "loadtest";
+    private static final long RECOGNITION_TIMEOUT_MS = 90000; // 识别超时时间（90秒）
+
+    /**
+     * 返回的识别文本，不能包含退出等意图关键词
+     */
+    public static final String TEXT = "给我讲个故事";
+
+    private final long delayMs;
+
+    /**
+     * @param delayMs 说话结束到返回识别结果的耗时
+     */
+    public LoadTestSttService(long delayMs) {
+        this.delayMs = delayMs;
+    }
+
+    @Override
+    public String getProviderName() {
+        return PROVIDER_NAME;
+    }
+
+    @Override
+    public String recognition(byte[] audioData) {
+        sleep();
+        return TEXT;
+    }
+
+    @Override
+    public String streamRecognition(Sinks.Many<byte[]> audioSink) {
+        try {
+            Long bytes = audioSink.asFlux()
+                    .reduce(0L, (total, data) -> total + data.length)
+                    .block(Duration.ofMillis(RECOGNITION_TIMEOUT_MS));
+            logger.debug("模拟识别收到音频 {} 字节", bytes);
+        } catch (IllegalStateException e) {
+            logger.warn("模拟识别等待音频超时");
+            return null;
+        }
+        sleep();
+        return TEXT;
+    }
+
+    private void sleep() {
+        try {
+            Thread.sleep(delayMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.xiaozhi.dialogue.stt.providers;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vosk.Model;
+import org.vosk.Recognizer;
+
+import java.io.IOException;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Vosk识别器池。
+ * 创建Recognizer需要在native层分配解码器状态，每句话新建一个开销较大；这里按采样率缓存用过的识别器，
+ * 归还时 reset() 后复用。同时用信号量限制同时进行的识别数，超过上限时等待，等待超时则放弃本次识别。
+ * 池的大小、等待数和超时数通过 {@link #bindTo} 发布为 xiaozhi.stt.vosk.* 指标。
+ */
+public class VoskRecognizerPool implements AutoCloseable, MeterBinder {
+    private static final Logger logger = LoggerFactory.getLogger(VoskRecognizerPool.class);
+
+    /**
+     * 识别器的创建方式，便于测试时替换
+     */
+    interface RecognizerFactory {
+        Recognizer create(float sampleRate) throws IOException;
+    }
+
+    /**
+     * 池的统计信息
+     *
+     * @param maxSize         同时进行的最大识别数
+     * @param inUse           正在使用的识别器数
+     * @param idle            空闲的识别器数
+     * @param created         累计创建的识别器数
+     * @param acquired        累计借出次数
+     * @param waited          需要等待才借到的次数
+     * @param timeouts        等待超时的次数
+     * @param totalWaitMillis 累计等待时间
+     * @param maxWaitMillis   最长等待时间
+     */
+    public record Stats(int maxSize, int inUse, int idle, long created, long acquired, long waited,
+                        long timeouts, long totalWaitMillis, long maxWaitMillis) {
+    }
+
+    /**
+     * 借出的识别器，用完后通过 {@link #release} 或 {@link #discard} 归还
+     */
+    public static final class Lease {
+        private final Recognizer recognizer;
+        private final float sampleRate;
+
+        private Lease(Recognizer recognizer, float sampleRate) {
+            this.recognizer = recognizer;
+            this.sampleRate = sampleRate;
+        }
+
+        public Recognizer getRecognizer() {
+            return recognizer;
+        }
+    }
+
+    private final RecognizerFactory factory;
+    private final int maxSize;
+    private final long acquireTimeoutMillis;
+    private final Semaphore permits;
+    private final Map<Float, Deque<Recognizer>> idle = new ConcurrentHashMap<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong waited = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong totalWaitMillis = new AtomicLong();
+    private final AtomicLong maxWaitMillis = new AtomicLong();
+
+    public VoskRecognizerPool(Model model, int maxSize, long acquireTimeoutMillis) {
+        this(sampleRate -> new Recognizer(model, sampleRate), maxSize, acquireTimeoutMillis);
+    }
+
+    VoskRecognizerPool(RecognizerFactory factory, int maxSize, long acquireTimeoutMillis) {
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * 借出一个识别器，达到并发上限时最多等待 acquireTimeoutMillis
+     *
+     * @throws TimeoutException 等待超时
+     */
+    public Lease acquire(float sampleRate) throws IOException, TimeoutException, InterruptedException {
+        long start = System.nanoTime();
+        if (!permits.tryAcquire()) {
+            waited.incrementAndGet();
+            boolean acquiredPermit = permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+            recordWait(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            if (!acquiredPermit) {
+                timeouts.incrementAndGet();
+                throw new TimeoutException("等待Vosk识别器超时(" + acquireTimeoutMillis + "ms)，当前并发上限: " + maxSize);
+            }
+        }
+        acquired.incrementAndGet();
+        Recognizer recognizer = idle.computeIfAbsent(sampleRate, key -> new ConcurrentLinkedDeque<>()).pollFirst();
+        if (recognizer != null) {
+            idleCount.decrementAndGet();
+            return new Lease(recognizer, sampleRate);
+        }
+        try {
+            recognizer = factory.create(sampleRate);
+            created.incrementAndGet();
+            return new Lease(recognizer, sampleRate);
+        } catch (IOException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 归还识别器，重置后留给下一次识别使用
+     */
+    public void release(Lease lease) {
+        try {
+            lease.recognizer.reset();
+        } catch (Exception e) {
+            logger.warn("重置Vosk识别器失败，丢弃该识别器", e);
+            discard(lease);
+            return;
+        }
+        if (idleCount.incrementAndGet() > maxSize) {
+            // 多种采样率交替使用时，空闲识别器总数不超过上限
+            idleCount.decrementAndGet();
+            lease.recognizer.close();
+        } else {
+            idle.computeIfAbsent(lease.sampleRate, key -> new ConcurrentLinkedDeque<>()).offerFirst(lease.recognizer);
+        }
+        permits.release();
+    }
+
+    /**
+     * 归还出错的识别器，直接关闭不再复用
+     */
+    public void discard(Lease lease) {
+        try {
+            lease.recognizer.close();
+        } catch (Exception e) {
+            logger.debug("关闭Vosk识别器失败", e);
+        } finally {
+            permits.release();
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(maxSize, maxSize - permits.availablePermits(), idleCount.get(), created.get(),
+                acquired.get(), waited.get(), timeouts.get(), totalWaitMillis.get(), maxWaitMillis.get());
+    }
+
+    /**
+     * 发布池的指标：
+     * <ul>
+     * <li>xiaozhi.stt.vosk.recognizers：识别器数，标签 state 为 in_use 或 idle</li>
+     * <li>xiaozhi.stt.vosk.recognizers.max：同时进行的最大识别数</li>
+     * <li>xiaozhi.stt.vosk.waiters：正在等待识别器的请求数</li>
+     * <li>xiaozhi.stt.vosk.acquires / recognizers.created / acquire.timeouts：借出、创建、等待超时的次数</li>
+     * <li>xiaozhi.stt.vosk.acquire.wait：需要等待的借出次数及累计等待时间</li>
+     * </ul>
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("xiaozhi.stt.vosk.recognizers", this, pool -> pool.maxSize - pool.permits.availablePermits())
+                .description("Vosk识别器数")
+                .tag("state", "in_use")
+                .register(registry);
+        Gauge.builder("xiaozhi.stt.vosk.recognizers", idleCount, AtomicInteger::get)
+                .description("Vosk识别器数")
+                .tag("state", "idle")
+                .register(registry);
+        Gauge.builder("xiaozhi.stt.vosk.recognizers.max", this, pool -> pool.maxSize)
+                .description("同时进行的最大Vosk识别数")
+                .register(registry);
+        Gauge.builder("xiaozhi.stt.vosk.waiters", permits, Semaphore::getQueueLength)
+                .description("正在等待Vosk识别器的请求数")
+                .register(registry);
+        FunctionCounter.builder("xiaozhi.stt.vosk.acquires", acquired, AtomicLong::get)
+                .description("借出Vosk识别器的次数")
+                .register(registry);
+        FunctionCounter.builder("xiaozhi.stt.vosk.recognizers.created", created, AtomicLong::get)
+                .description("创建Vosk识别器的次数")
+                .register(registry);
+        FunctionCounter.builder("xiaozhi.stt.vosk.acquire.timeouts", timeouts, AtomicLong::get)
+                .description("等待Vosk识别器超时的次数")
+                .register(registry);
+        FunctionTimer.builder("xiaozhi.stt.vosk.acquire.wait", this,
+                        pool -> pool.waited.get(), pool -> pool.totalWaitMillis.get(), TimeUnit.MILLISECONDS)
+                .description("等待Vosk识别器的耗时")
+                .register(registry);
+    }
+
+    /**
+     * 关闭所有空闲的识别器
+     */
+    @Override
+    public void close() {
+        idle.values().forEach(deque -> {
+            Recognizer recognizer;
+            while ((recognizer = deque.pollFirst()) != null) {
+                idleCount.decrementAndGet();
+                recognizer.close();
+            }
+        });
+    }
+
+    private void recordWait(long millis) {
+        totalWaitMillis.addAndGet(millis);
+        maxWaitMillis.accumulateAndGet(millis, Math::max);
+    }
+}
@@ -1,41 +1,65 @@
 package com.xiaozhi.dialogue.stt.providers;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.xiaozhi.dialogue.stt.SttResult;
 import com.xiaozhi.dialogue.stt.SttService;
 import com.xiaozhi.utils.AudioUtils;
+import com.xiaozhi.utils.JsonUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import jakarta.annotation.PostConstruct;
-import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.vosk.LibVosk;
 import org.vosk.LogLevel;
 import org.vosk.Model;
 import org.vosk.Recognizer;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
 import reactor.core.publisher.Sinks;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Vosk STT服务实现
  * 使用JDK 21虚拟线程实现异步处理
+ * 识别器从 {@link VoskRecognizerPool} 借出并复用，音频数据到达时直接送入识别器，不经过中转队列。
  */
-public class VoskSttService implements SttService {
+public class VoskSttService implements SttService, MeterBinder {
 
     private static final Logger logger = LoggerFactory.getLogger(VoskSttService.class);
     private static final String PROVIDER_NAME = "vosk";
-    private static final int QUEUE_TIMEOUT_MS = 5000; // 队列等待超时时间
+    private static final long RECOGNITION_TIMEOUT_MS = 90000; // 识别超时时间（90秒）
+    private static final int DEFAULT_MAX_CONCURRENT = 32; // 同时进行的最大识别数
+    private static final long DEFAULT_ACQUIRE_TIMEOUT_MS = 3000; // 等待识别器的超时时间
 
     // Vosk模型相关对象
     private Model model;
     private String voskModelPath;
     private boolean modelLoaded = false;
+    private VoskRecognizerPool recognizerPool;
+
+    private final int maxConcurrent;
+    private final long acquireTimeoutMs;
+
+    public VoskSttService() {
+        this(DEFAULT_MAX_CONCURRENT, DEFAULT_ACQUIRE_TIMEOUT_MS);
+    }
+
+    /**
+     * @param maxConcurrent    同时进行的最大识别数
+     * @param acquireTimeoutMs 达到上限时等待识别器的超时时间
+     */
+    public VoskSttService(int maxConcurrent, long acquireTimeoutMs) {
+        this.maxConcurrent = maxConcurrent;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+    }
 
     /**
      * 初始化Vosk模型
@@ -63,6 +87,7 @@ public class VoskSttService implements SttService {
             // 加载模型，路径为配置的模型目录
             voskModelPath = System.getProperty("user.dir") + File.separator + Paths.get("models", "vosk-model");
             model = new Model(voskModelPath);
+            recognizerPool = new VoskRecognizerPool(model, maxConcurrent, acquireTimeoutMs);
             modelLoaded = true;
             logger.info("Vosk 模型加载成功！路径: {}", voskModelPath);
         } catch (Exception e) {
@@ -81,6 +106,23 @@ public class VoskSttService implements SttService {
         return modelLoaded && model != null;
     }
 
+    /**
+     * 识别器池的统计信息，模型未加载时返回null
+     */
+    public VoskRecognizerPool.Stats getPoolStats() {
+        return recognizerPool != null ? recognizerPool.getStats() : null;
+    }
+
+    /**
+     * 发布识别器池的指标，需在 {@link #initialize()} 之后调用
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (recognizerPool != null) {
+            recognizerPool.bindTo(registry);
+        }
+    }
+
     @Override
     public String getProviderName() {
         return PROVIDER_NAME;
@@ -101,7 +143,15 @@ public class VoskSttService implements SttService {
         // 将原始音频数据转换为WAV格式并保存
         String fileName = AudioUtils.saveAsWav(audioData);
 
-        try (Recognizer recognizer = new Recognizer(model, AudioUtils.SAMPLE_RATE)) {
+        VoskRecognizerPool.Lease lease;
+        try {
+            lease = recognizerPool.acquire(AudioUtils.SAMPLE_RATE);
+        } catch (Exception e) {
+            logger.error("获取Vosk识别器失败！", e);
+            return null;
+        }
+        try {
+            Recognizer recognizer = lease.getRecognizer();
             ByteArrayInputStream audioStream = new ByteArrayInputStream(audioData);
 
             byte[] buffer = new byte[4096];
@@ -110,19 +160,19 @@ public class VoskSttService implements SttService {
             while ((bytesRead = audioStream.read(buffer)) != -1) {
                 if (recognizer.acceptWaveForm(buffer, bytesRead)) {
                     // 如果识别到完整的结果
-                    String result = recognizer.getResult();
-                    JSONObject jsonResult = new JSONObject(result);
-                    return jsonResult.getString("text").replaceAll("\\s+", "");
+                    String text = textOf(recognizer.getResult(), "text");
+                    recognizerPool.release(lease);
+                    return text;
                 }
             }
 
             // 返回最终的识别结果
-            String finalResult = recognizer.getFinalResult();
-            JSONObject jsonFinal = new JSONObject(finalResult);
-            return jsonFinal.getString("text").replaceAll("\\s+", "");
-
+            String text = textOf(recognizer.getFinalResult(), "text");
+            recognizerPool.release(lease);
+            return text;
         } catch (Exception e) {
             logger.error("处理音频时发生错误！", e);
+            recognizerPool.discard(lease);
             return null;
         }
     }
@@ -138,88 +188,132 @@ public class VoskSttService implements SttService {
             logger.error("Vosk模型未加载，无法进行流式识别！");
             return null;
         }
-
-        // 使用阻塞队列存储音频数据
-        BlockingQueue<byte[]> audioQueue = new LinkedBlockingQueue<>();
-        AtomicBoolean isCompleted = new AtomicBoolean(false);
-        List<String> recognizedText = new ArrayList<>();
-        StringBuilder finalResult = new StringBuilder();
-
-        // 订阅Sink并将数据放入队列
-        audioSink.asFlux().subscribe(
-                data -> audioQueue.offer(data),
-                error -> {
-                    logger.error("音频流处理错误", error);
-                    isCompleted.set(true);
-                },
-                () -> isCompleted.set(true)
-        );
-
-        // 使用虚拟线程处理音频识别
         try {
-            Thread virtualThread = Thread.startVirtualThread(() -> {
-                try (Recognizer recognizer = new Recognizer(model, AudioUtils.SAMPLE_RATE)) {
-                    while (!isCompleted.get() || !audioQueue.isEmpty()) {
-                        try {
-                            byte[] audioChunk = audioQueue.poll(100, TimeUnit.MILLISECONDS);
-                            if (audioChunk != null) {
-                                boolean hasResult = recognizer.acceptWaveForm(audioChunk, audioChunk.length);
-                                if (hasResult) {
-                                    // 提取部分识别结果中的文本
-                                    String result = recognizer.getResult();
-                                    JSONObject jsonResult = new JSONObject(result);
-                                    if (jsonResult.has("text") && !jsonResult.getString("text").isEmpty()) {
-                                        String text = jsonResult.getString("text").replaceAll("\\s+", "");
-                                        recognizedText.add(text);
-                                        logger.debug("Vosk识别中间结果: {}", text);
-                                    }
-                                }
-                            }
-
-                            // 如果已完成且队列为空，获取最终结果
-                            if (isCompleted.get() && audioQueue.isEmpty()) {
-                                String finalText = recognizer.getFinalResult();
-                                JSONObject jsonFinal = new JSONObject(finalText);
-                                if (jsonFinal.has("text")) {
-                                    String text = jsonFinal.getString("text").replaceAll("\\s+", "");
-                                    if (!text.isEmpty()) {
-                                        recognizedText.add(text);
-                                        logger.debug("Vosk识别最终结果: {}", text);
-                                    }
-                                }
-                                break;
-                            }
-                        } catch (InterruptedException e) {
-                            logger.warn("音频数据队列等待被中断", e);
-                            Thread.currentThread().interrupt(); // 重新设置中断标志
-                            break;
-                        }
-                    }
-
-                    // 合并所有识别结果
-                    for (String text : recognizedText) {
-                        finalResult.append(text);
-                    }
+            // 最多等待90秒
+            SttResult result = streamRecognitionResults(audioSink)
+                    .filter(SttResult::isFinal)
+                    .blockLast(Duration.ofMillis(RECOGNITION_TIMEOUT_MS));
+            return result != null ? result.text() : "";
+        } catch (Exception e) {
+            logger.error("Vosk流式识别过程中发生错误", e);
+            return "";
+        }
+    }
 
-                } catch (Exception e) {
-                    logger.error("Vosk流式识别过程中发生错误", e);
+    @Override
+    public Flux<SttResult> streamRecognitionResults(Sinks.Many<byte[]> audioSink) {
+        if (!isModelLoaded()) {
+            logger.error("Vosk模型未加载，无法进行流式识别！");
+            return Flux.empty();
+        }
+        return Flux.create(emitter -> {
+            VoskRecognizerPool.Lease lease;
+            try {
+                lease = recognizerPool.acquire(AudioUtils.SAMPLE_RATE);
+            } catch (TimeoutException e) {
+                logger.warn("Vosk识别繁忙，放弃本次识别: {}", e.getMessage());
+                emitter.next(SttResult.ofFinal(""));
+                emitter.complete();
+                return;
+            } catch (Exception e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
                 }
+                emitter.error(e);
+                return;
+            }
+            Utterance utterance = new Utterance(lease, emitter);
+            Disposable.Swap subscription = Disposables.swap();
+            // 识别结束或下游取消（如已根据部分结果做出处理）时归还识别器
+            emitter.onDispose(() -> {
+                subscription.dispose();
+                utterance.release();
             });
-            
-            // 等待虚拟线程完成，最多等待90秒
+            // 音频数据到达时直接送入识别器
+            subscription.update(audioSink.asFlux().subscribe(
+                    utterance::accept,
+                    error -> {
+                        logger.error("音频流处理错误", error);
+                        utterance.finish();
+                    },
+                    utterance::finish
+            ));
+        });
+    }
+
+    /**
+     * 一次流式识别，串行处理音频数据并输出结果
+     */
+    private final class Utterance {
+        private final VoskRecognizerPool.Lease lease;
+        private final FluxSink<SttResult> emitter;
+        // 已确定的分段文本
+        private final StringBuilder recognizedText = new StringBuilder();
+        private boolean released = false;
+
+        Utterance(VoskRecognizerPool.Lease lease, FluxSink<SttResult> emitter) {
+            this.lease = lease;
+            this.emitter = emitter;
+        }
+
+        synchronized void accept(byte[] audioChunk) {
+            if (released) {
+                return;
+            }
             try {
-                virtualThread.join(90000); // 90秒超时
-                if (virtualThread.isAlive()) {
-                    virtualThread.interrupt(); // 中断线程
+                Recognizer recognizer = lease.getRecognizer();
+                if (recognizer.acceptWaveForm(audioChunk, audioChunk.length)) {
+                    // 一个分段识别完成
+                    String text = textOf(recognizer.getResult(), "text");
+                    if (!text.isEmpty()) {
+                        recognizedText.append(text);
+                        logger.debug("Vosk识别中间结果: {}", text);
+                        emitter.next(SttResult.partial(recognizedText.toString()));
+                    }
+                } else {
+                    // 当前分段尚未完成，文本可能还会变化
+                    String partial = textOf(recognizer.getPartialResult(), "partial");
+                    if (!partial.isEmpty()) {
+                        emitter.next(SttResult.partial(recognizedText + partial));
+                    }
                 }
-            } catch (InterruptedException e) {
-                logger.warn("等待Vosk识别完成时被中断", e);
-                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                logger.error("Vosk流式识别过程中发生错误", e);
+                released = true;
+                recognizerPool.discard(lease);
+                emitter.next(SttResult.ofFinal(recognizedText.toString()));
+                emitter.complete();
             }
-        } catch (Exception e) {
-            logger.error("启动虚拟线程失败", e);
         }
 
-        return finalResult.toString();
+        synchronized void finish() {
+            if (released) {
+                return;
+            }
+            try {
+                String text = textOf(lease.getRecognizer().getFinalResult(), "text");
+                recognizedText.append(text);
+                logger.debug("Vosk识别最终结果: {}", text);
+            } catch (Exception e) {
+                logger.error("Vosk流式识别过程中发生错误", e);
+            }
+            release();
+            emitter.next(SttResult.ofFinal(recognizedText.toString()));
+            emitter.complete();
+        }
+
+        synchronized void release() {
+            if (!released) {
+                released = true;
+                recognizerPool.release(lease);
+            }
+        }
+    }
+
+    /**
+     * 提取Vosk结果JSON中的文本，去掉词之间的空格
+     */
+    private static String textOf(String json, String key) throws JsonProcessingException {
+        return JsonUtil.OBJECT_MAPPER.readTree(json).path(key).asText("").replaceAll("\\s+", "");
     }
 }
@@ -0,0 +1,416 @@
+package com.xiaozhi.dialogue.tts;
+
+import com.xiaozhi.utils.AudioUtils;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * TTS合成结果缓存。
+ * 告别语、超时提示、验证码提示、简短应答等固定短句每次出现都要重新请求TTS并编码为Opus，
+ * 这里以 提供商+音色+音调+语速+规范化文本 的哈希为键，缓存编码好的Opus帧：
+ * - 内存中按总字节数限制的LRU，命中时Player直接下发帧，不读文件也不重新编码
+ * - 磁盘上保存为Ogg Opus文件，按总字节数限制的LRU，重启后仍然有效
+ * 同一短句同时被多个会话请求时只合成一次。
+ * 磁盘淘汰会删除缓存文件：合并对话音频直接使用缓存文件，已被淘汰时由Player用缓存的帧重写；
+ * 需要长期保存文件的地方（写入数据库）通过 {@link #export} 取得不受淘汰影响的文件。
+ * 命中、未命中、淘汰次数及占用通过 {@link #bindTo} 发布为 xiaozhi.tts.cache.* 指标。
+ */
+@Component
+public class TtsCache implements MeterBinder {
+    private static final Logger logger = LoggerFactory.getLogger(TtsCache.class);
+
+    private static final String SUFFIX = ".opus";
+
+    /**
+     * 缓存的合成结果
+     *
+     * @param key    缓存键
+     * @param path   磁盘上的Ogg Opus文件，属于缓存，随时可能被淘汰删除
+     * @param frames 编码好的Opus帧，不可修改
+     */
+    public record Entry(String key, Path path, List<byte[]> frames) {
+    }
+
+    /**
+     * 缓存统计信息
+     *
+     * @param memoryHits    内存命中次数
+     * @param diskHits      磁盘命中次数
+     * @param misses        未命中（需要请求TTS）次数
+     * @param memoryEntries 内存中的条目数
+     * @param memoryBytes   内存中Opus帧的总字节数
+     * @param diskEntries   磁盘上的条目数
+     * @param diskBytes     磁盘上文件的总字节数
+     * @param memoryEvictions 从内存淘汰的条目数
+     * @param diskEvictions   从磁盘淘汰（删除文件）的条目数
+     */
+    public record Stats(long memoryHits, long diskHits, long misses, int memoryEntries, long memoryBytes,
+                        int diskEntries, long diskBytes, long memoryEvictions, long diskEvictions) {
+
+        public long hits() {
+            return memoryHits + diskHits;
+        }
+
+        public double hitRate() {
+            long total = hits() + misses;
+            return total == 0 ? 0 : (double) hits() / total;
+        }
+    }
+
+    private final Path directory;
+    private final long memoryMaxBytes;
+    private final long diskMaxBytes;
+    private final int maxTextLength;
+
+    // 访问顺序的LinkedHashMap，队首为最久未使用；两个索引都由this加锁
+    private final LinkedHashMap<String, Entry> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private final LinkedHashMap<String, Long> disk = new LinkedHashMap<>(64, 0.75f, true);
+    private long memoryBytes = 0;
+    private long diskBytes = 0;
+
+    // 正在合成的短句，相同的短句等待同一次合成
+    private final Map<String, CompletableFuture<Entry>> inflight = new ConcurrentHashMap<>();
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong memoryEvictions = new AtomicLong();
+    private final AtomicLong diskEvictions = new AtomicLong();
+
+    /**
+     * @param memoryMaxMb   内存缓存上限
+     * @param diskMaxMb     磁盘缓存上限
+     * @param maxTextLength 只缓存不超过该长度的文本，长句很少重复
+     */
+    @Autowired
+    public TtsCache(@Value("${tts.cache.memory-max-mb:32}") long memoryMaxMb,
+                    @Value("${tts.cache.disk-max-mb:512}") long diskMaxMb,
+                    @Value("${tts.cache.max-text-length:50}") int maxTextLength) {
+        this(Paths.get(AudioUtils.TTS_CACHE_PATH), memoryMaxMb * 1024 * 1024, diskMaxMb * 1024 * 1024, maxTextLength);
+    }
+
+    public TtsCache(Path directory, long memoryMaxBytes, long diskMaxBytes, int maxTextLength) {
+        this.directory = directory;
+        this.memoryMaxBytes = memoryMaxBytes;
+        this.diskMaxBytes = diskMaxBytes;
+        this.maxTextLength = maxTextLength;
+    }
+
+    /**
+     * 加载磁盘上已有的缓存文件，按修改时间恢复LRU顺序
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> cached = files.filter(file -> file.getFileName().toString().endsWith(SUFFIX))
+                    .sorted(Comparator.comparing(TtsCache::lastModified))
+                    .toList();
+            synchronized (this) {
+                for (Path file : cached) {
+                    long size = Files.size(file);
+                    disk.put(keyOf(file), size);
+                    diskBytes += size;
+                }
+                evictDisk();
+            }
+        }
+        logger.info("TTS缓存已加载: {} 个文件, {}KB", disk.size(), diskBytes / 1024);
+    }
+
+    /**
+     * 该文本是否值得缓存
+     */
+    public boolean isCacheable(String text) {
+        return text != null && !text.isBlank() && normalize(text).length() <= maxTextLength;
+    }
+
+    /**
+     * 缓存键：提供商、音色、音调、语速和规范化文本的SHA-256
+     */
+    public static String key(TtsService ttsService, String text) {
+        String source = ttsService.getProviderName() + "\n" + ttsService.getVoiceName() + "\n"
+                + ttsService.getPitch() + "\n" + ttsService.getSpeed() + "\n" + normalize(text);
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(source.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 查找缓存，依次查内存和磁盘
+     *
+     * @return 未命中时返回null
+     */
+    public Entry get(TtsService ttsService, String text) {
+        Entry entry = lookup(key(ttsService, text));
+        if (entry == null) {
+            misses.incrementAndGet();
+        }
+        return entry;
+    }
+
+    /**
+     * 查找缓存，未命中时请求TTS合成、编码为Opus帧并写入缓存
+     */
+    public Entry synthesize(TtsService ttsService, String text) throws Exception {
+        String key = key(ttsService, text);
+        Entry entry = lookup(key);
+        if (entry != null) {
+            return entry;
+        }
+        CompletableFuture<Entry> future = new CompletableFuture<>();
+        CompletableFuture<Entry> existing = inflight.putIfAbsent(key, future);
+        if (existing != null) {
+            // 其他会话正在合成同一短句
+            try {
+                return existing.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
+        }
+        try {
+            // 抢到合成权之前可能刚被别人写入
+            entry = lookup(key);
+            if (entry == null) {
+                misses.incrementAndGet();
+                String audioPath = ttsService.textToSpeech(text);
+                try {
+                    entry = store(key, AudioUtils.readAsOpus(audioPath));
+                } finally {
+                    Files.deleteIfExists(Paths.get(audioPath));
+                }
+            }
+            future.complete(entry);
+            return entry;
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inflight.remove(key, future);
+        }
+    }
+
+    /**
+     * 写入已编码好的Opus帧，用于流式合成结束后补充缓存
+     */
+    public Entry put(TtsService ttsService, String text, List<byte[]> frames) throws IOException {
+        return store(key(ttsService, text), frames);
+    }
+
+    /**
+     * 把缓存文件导出到音频目录，返回的文件归调用方所有，之后的缓存淘汰不会删除它，调用方负责删除。
+     * 优先创建硬链接，不复制数据；不支持硬链接或缓存文件已被淘汰时，用内存中的帧重新写一份。
+     */
+    public Path export(Entry entry) throws IOException {
+        Path target = directory.resolveSibling(UUID.randomUUID().toString().replace("-", "") + SUFFIX);
+        try {
+            return Files.createLink(target, entry.path());
+        } catch (IOException | UnsupportedOperationException e) {
+            logger.debug("链接TTS缓存文件失败，改为写入新文件: {}", entry.path(), e);
+        }
+        AudioUtils.saveAsOpus(entry.frames(), target.toString());
+        return target;
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(memoryHits.get(), diskHits.get(), misses.get(), memory.size(), memoryBytes,
+                disk.size(), diskBytes, memoryEvictions.get(), diskEvictions.get());
+    }
+
+    /**
+     * 发布缓存指标：
+     * <ul>
+     * <li>xiaozhi.tts.cache.hits：命中次数，标签 tier 为 memory 或 disk</li>
+     * <li>xiaozhi.tts.cache.misses：未命中、需要请求TTS的次数</li>
+     * <li>xiaozhi.tts.cache.evictions：淘汰次数，标签 tier 为 memory 或 disk</li>
+     * <li>xiaozhi.tts.cache.entries / xiaozhi.tts.cache.bytes：条目数和占用字节数，标签 tier</li>
+     * </ul>
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("xiaozhi.tts.cache.hits", memoryHits, AtomicLong::get)
+                .description("TTS缓存命中次数").tag("tier", "memory").register(registry);
+        FunctionCounter.builder("xiaozhi.tts.cache.hits", diskHits, AtomicLong::get)
+                .description("TTS缓存命中次数").tag("tier", "disk").register(registry);
+        FunctionCounter.builder("xiaozhi.tts.cache.misses", misses, AtomicLong::get)
+                .description("TTS缓存未命中次数").register(registry);
+        FunctionCounter.builder("xiaozhi.tts.cache.evictions", memoryEvictions, AtomicLong::get)
+                .description("TTS缓存淘汰次数").tag("tier", "memory").register(registry);
+        FunctionCounter.builder("xiaozhi.tts.cache.evictions", diskEvictions, AtomicLong::get)
+                .description("TTS缓存淘汰次数").tag("tier", "disk").register(registry);
+        Gauge.builder("xiaozhi.tts.cache.entries", this, cache -> cache.getStats().memoryEntries())
+                .description("TTS缓存条目数").tag("tier", "memory").register(registry);
+        Gauge.builder("xiaozhi.tts.cache.entries", this, cache -> cache.getStats().diskEntries())
+                .description("TTS缓存条目数").tag("tier", "disk").register(registry);
+        Gauge.builder("xiaozhi.tts.cache.bytes", this, cache -> cache.getStats().memoryBytes())
+                .description("TTS缓存占用字节数").tag("tier", "memory").baseUnit("bytes").register(registry);
+        Gauge.builder("xiaozhi.tts.cache.bytes", this, cache -> cache.getStats().diskBytes())
+                .description("TTS缓存占用字节数").tag("tier", "disk").baseUnit("bytes").register(registry);
+    }
+
+    private Entry lookup(String key) {
+        Path path = pathOf(key);
+        synchronized (this) {
+            Entry entry = memory.get(key);
+            if (entry != null) {
+                memoryHits.incrementAndGet();
+                disk.get(key);
+                return entry;
+            }
+            if (disk.get(key) == null) {
+                return null;
+            }
+        }
+        List<byte[]> frames = AudioUtils.readOpus(path.toFile());
+        if (frames.isEmpty()) {
+            // 文件已被删除或损坏
+            removeDisk(key);
+            return null;
+        }
+        diskHits.incrementAndGet();
+        touch(path);
+        Entry entry = new Entry(key, path, List.copyOf(frames));
+        synchronized (this) {
+            putMemory(entry);
+        }
+        return entry;
+    }
+
+    private Entry store(String key, List<byte[]> frames) throws IOException {
+        if (frames == null || frames.isEmpty()) {
+            throw new IOException("TTS合成结果为空");
+        }
+        Path path = pathOf(key);
+        // 先写临时文件再改名，读取方不会读到写了一半的文件
+        Path tmp = directory.resolve(key + ".tmp");
+        AudioUtils.saveAsOpus(frames, tmp.toString());
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        long size = Files.size(path);
+        Entry entry = new Entry(key, path, List.copyOf(frames));
+        synchronized (this) {
+            Long previous = disk.put(key, size);
+            diskBytes += size - (previous == null ? 0 : previous);
+            evictDisk();
+            putMemory(entry);
+        }
+        return entry;
+    }
+
+    private void putMemory(Entry entry) {
+        Entry previous = memory.put(entry.key(), entry);
+        if (previous != null) {
+            memoryBytes -= sizeOf(previous);
+        }
+        memoryBytes += sizeOf(entry);
+        Iterator<Entry> iterator = memory.values().iterator();
+        while (memoryBytes > memoryMaxBytes && iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            iterator.remove();
+            memoryBytes -= sizeOf(eldest);
+            memoryEvictions.incrementAndGet();
+        }
+    }
+
+    private void evictDisk() {
+        Iterator<Map.Entry<String, Long>> iterator = disk.entrySet().iterator();
+        while (diskBytes > diskMaxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            iterator.remove();
+            diskBytes -= eldest.getValue();
+            diskEvictions.incrementAndGet();
+            Entry cached = memory.remove(eldest.getKey());
+            if (cached != null) {
+                memoryBytes -= sizeOf(cached);
+            }
+            try {
+                Files.deleteIfExists(pathOf(eldest.getKey()));
+            } catch (IOException e) {
+                logger.warn("删除TTS缓存文件失败: {}", eldest.getKey(), e);
+            }
+        }
+    }
+
+    private synchronized void removeDisk(String key) {
+        Long size = disk.remove(key);
+        if (size != null) {
+            diskBytes -= size;
+        }
+    }
+
+    private Path pathOf(String key) {
+        return directory.resolve(key + SUFFIX);
+    }
+
+    private static String keyOf(Path file) {
+        String name = file.getFileName().toString();
+        return name.substring(0, name.length() - SUFFIX.length());
+    }
+
+    private static long sizeOf(Entry entry) {
+        long size = 0;
+        for (byte[] frame : entry.frames()) {
+            size += frame.length;
+        }
+        return size;
+    }
+
+    /**
+     * 更新修改时间，重启后按最近使用顺序恢复
+     */
+    private static void touch(Path path) {
+        try {
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            logger.debug("更新TTS缓存文件时间失败: {}", path, e);
+        }
+    }
+
+    private static FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /**
+     * 全半角、首尾空白和连续空白不影响合成结果
+     */
+    private static String normalize(String text) {
+        return Normalizer.normalize(text, Normalizer.Form.NFKC).strip().replaceAll("\\s+", " ");
+    }
+}
@@ -9,12 +9,14 @@ import com.xiaozhi.entity.SysConfig;
 import jakarta.annotation.Resource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.util.ObjectUtils;
 
 import java.io.File;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
 
 @Component
 public class TtsServiceFactory {
@@ -24,6 +26,16 @@ public class TtsServiceFactory {
     // 缓存已初始化的服务：键为"provider:configId:voiceName"格式，确保音色变化时创建新实例
     private final Map<String, TtsService> serviceCache = new ConcurrentHashMap<>();
 
+    // 每个TTS提供商在所有会话间共享的并发许可，避免预合成放大请求量触发限流
+    private final Map<String, Semaphore> providerPermits = new ConcurrentHashMap<>();
+
+    @Value("${tts.max.concurrent.per.provider:16}")
+    private int maxConcurrentPerProvider = 16;
+
+    // 压测用的模拟TTS（provider为loadtest）每句的合成耗时
+    @Value("${loadtest.tts.delay-ms:250}")
+    private long loadTestDelayMs = 250;
+
     @Resource
     private TokenServiceFactory tokenServiceFactory;
 
@@ -53,6 +65,14 @@ public class TtsServiceFactory {
         return provider + ":" + configId + ":" + voiceName + ":" + pitch + ":" + speed;
     }
 
+    /**
+     * 获取TTS提供商的全局并发许可，同一提供商的所有会话共用一个Semaphore
+     */
+    public Semaphore getProviderPermits(String provider) {
+        String key = ObjectUtils.isEmpty(provider) ? DEFAULT_PROVIDER : provider;
+        return providerPermits.computeIfAbsent(key, k -> new Semaphore(Math.max(1, maxConcurrentPerProvider), true));
+    }
+
     /**
      * 根据配置获取TTS服务（带pitch和speed参数）
      */
@@ -92,6 +112,7 @@ public class TtsServiceFactory {
             case "volcengine" -> new VolcengineTtsService(config, voiceName, pitch, speed, outputPath);
             case "xfyun" -> new XfyunTtsService(config, voiceName, pitch, speed, outputPath);
             case "minimax" -> new MiniMaxTtsService(config, voiceName, pitch, speed, outputPath);
+            case "loadtest" -> new LoadTestTtsService(voiceName, pitch, speed, outputPath, loadTestDelayMs);
             default -> new EdgeTtsService(voiceName, pitch, speed, outputPath);
         };
     }
@@ -16,9 +16,10 @@ import org.slf4j.LoggerFactory;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
-import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 /**
  * 阿里云NLS标准语音合成服务
@@ -85,6 +86,11 @@ public class AliyunNlsTtsService implements TtsService {
         return pitch;
     }
 
+    @Override
+    public boolean isSupportStreamTts() {
+        return true;
+    }
+
     @Override
     public String textToSpeech(String text) throws Exception {
         if (text == null || text.isEmpty()) {
@@ -93,7 +99,47 @@ public class AliyunNlsTtsService implements TtsService {
         }
 
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        synthesize(text, OutputFormatEnum.WAV, outputStream::writeBytes);
+
+        // 检查是否有音频数据生成
+        byte[] audioData = outputStream.toByteArray();
+        if (audioData.length == 0) {
+            throw new RuntimeException("未生成音频数据");
+        }
+
+        String audioFileName = getAudioFileName();
+        String filePath = outputPath + audioFileName;
+
+        File outputDir = new File(outputPath);
+        if (!outputDir.exists()) {
+            outputDir.mkdirs();
+        }
+
+        try (FileOutputStream fileOutputStream = new FileOutputStream(filePath)) {
+            fileOutputStream.write(audioData);
+        }
+
+        return filePath;
+    }
+
+    /**
+     * 流式合成：以16kHz单声道PCM分片的形式回调音频数据
+     */
+    @Override
+    public void streamTextToSpeech(String text, Consumer<byte[]> audioDataConsumer) throws Exception {
+        if (text == null || text.isEmpty()) {
+            logger.warn("文本内容为空！");
+            return;
+        }
+        synthesize(text, OutputFormatEnum.PCM, audioDataConsumer);
+    }
+
+    /**
+     * 调用NLS合成，音频分片到达时回调，合成完成或失败后返回
+     */
+    private void synthesize(String text, OutputFormatEnum format, Consumer<byte[]> audioDataConsumer) throws Exception {
         CountDownLatch latch = new CountDownLatch(1);
+        AtomicBoolean failed = new AtomicBoolean(false);
         NlsClient client = null;
         SpeechSynthesizer synthesizer = null;
 
@@ -112,6 +158,7 @@ public class AliyunNlsTtsService implements TtsService {
                 public void onFail(SpeechSynthesizerResponse response) {
                     logger.error("NLS语音合成失败 - TaskId: {}, Status: {}, StatusText: {}",
                             response.getTaskId(), response.getStatus(), response.getStatusText());
+                    failed.set(true);
                     latch.countDown();
                 }
 
@@ -120,8 +167,8 @@ public class AliyunNlsTtsService implements TtsService {
                     byte[] buffer = new byte[message.remaining()];
                     message.get(buffer);
                     try {
-                        outputStream.write(buffer);
-                    } catch (IOException e) {
+                        audioDataConsumer.accept(buffer);
+                    } catch (Exception e) {
                         logger.error("写入音频数据失败", e);
                     }
                 }
@@ -130,7 +177,7 @@ public class AliyunNlsTtsService implements TtsService {
             // 设置appKey
             synthesizer.setAppKey(config.getApiKey());
             // 设置语音输出格式
-            synthesizer.setFormat(OutputFormatEnum.WAV);
+            synthesizer.setFormat(format);
             // 设置采样率
             synthesizer.setSampleRate(SampleRateEnum.SAMPLE_RATE_16K);
             // 设置语音
@@ -155,27 +202,10 @@ public class AliyunNlsTtsService implements TtsService {
                 logger.error("NLS语音合成超时");
                 throw new RuntimeException("语音合成超时");
             }
-
-            // 检查是否有音频数据生成
-            byte[] audioData = outputStream.toByteArray();
-            if (audioData.length == 0) {
-                throw new RuntimeException("未生成音频数据");
-            }
-
-            String audioFileName = getAudioFileName();
-            String filePath = outputPath + audioFileName;
-
-            File outputDir = new File(outputPath);
-            if (!outputDir.exists()) {
-                outputDir.mkdirs();
+            if (failed.get()) {
+                throw new RuntimeException("语音合成失败");
             }
 
-            try (FileOutputStream fileOutputStream = new FileOutputStream(filePath)) {
-                fileOutputStream.write(audioData);
-            }
-
-            return filePath;
-
         } catch (Exception e) {
             logger.error("阿里云NLS语音合成失败: {}", e.getMessage(), e);
             throw e;
@@ -0,0 +1,74 @@
+package com.xiaozhi.dialogue.tts.providers;
+
+import com.xiaozhi.dialogue.tts.TtsService;
+import com.xiaozhi.utils.AudioUtils;
+
+import java.nio.file.Path;
+
+/**
+ * 压测用的模拟TTS，不请求任何外部服务。
+ * 等待固定时长模拟合成耗时，生成时长与文本长度成正比的单音WAV文件，
+ * 之后的读取、Opus编码、下发与真实TTS相同。
+ */
+public class LoadTestTtsService implements TtsService {
+
+    private static final String PROVIDER_NAME = "loadtest";
+
+    // 每个字的音频时长，约为正常语速
+    private static final int MILLIS_PER_CHAR = 200;
+    private static final int MIN_MILLIS = 300;
+    private static final int TONE_HZ = 440;
+
+    private final String voiceName;
+    private final Float pitch;
+    private final Float speed;
+    private final String outputPath;
+    private final long delayMs;
+
+    /**
+     * @param delayMs 每句的合成耗时
+     */
+    public LoadTestTtsService(String voiceName, Float pitch, Float speed, String outputPath, long delayMs) {
+        this.voiceName = voiceName;
+        this.pitch = pitch;
+        this.speed = speed;
+        this.outputPath = outputPath;
+        this.delayMs = delayMs;
+    }
+
+    @Override
+    public String getProviderName() {
+        return PROVIDER_NAME;
+    }
+
+    @Override
+    public String getVoiceName() {
+        return voiceName;
+    }
+
+    @Override
+    public Float getSpeed() {
+        return speed;
+    }
+
+    @Override
+    public Float getPitch() {
+        return pitch;
+    }
+
+    @Override
+    public String textToSpeech(String text) throws Exception {
+        Thread.sleep(delayMs);
+        int millis = Math.max(MIN_MILLIS, text.codePointCount(0, text.length()) * MILLIS_PER_CHAR);
+        int samples = AudioUtils.SAMPLE_RATE * millis / 1000;
+        byte[] pcm = new byte[samples * 2];
+        for (int i = 0; i < samples; i++) {
+            short s = (short) (Math.sin(2 * Math.PI * TONE_HZ * i / AudioUtils.SAMPLE_RATE) * 6000);
+            pcm[i * 2] = (byte) (s & 0xFF);
+            pcm[i * 2 + 1] = (byte) ((s >> 8) & 0xFF);
+        }
+        Path path = Path.of(outputPath, getAudioFileName());
+        AudioUtils.saveAsWav(path, pcm);
+        return path.toString();
+    }
+}
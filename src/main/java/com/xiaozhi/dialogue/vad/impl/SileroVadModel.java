@@ -16,7 +16,11 @@ import com.xiaozhi.utils.AudioUtils;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Silero VAD模型实现
@@ -28,11 +32,31 @@ public class SileroVadModel implements VadModel {
     @Value("${vad.model.path:models/silero_vad.onnx}")
     private String modelPath;
 
+    // ONNX算子内并行线程数
+    @Value("${vad.model.intra-threads:1}")
+    private int intraOpThreads;
+
+    // 跨会话微批推理：开启后多个会话的帧在收集窗口内合并为一次推理
+    @Value("${vad.batch.enabled:false}")
+    private boolean batchEnabled;
+
+    // 微批收集窗口（毫秒）
+    @Value("${vad.batch.window-ms:3}")
+    private int batchWindowMs;
+
+    // 单批最大帧数
+    @Value("${vad.batch.max-size:64}")
+    private int batchMaxSize;
+
+    // 等待批量推理结果的超时（毫秒），超时时请求还在排队则撤回并退化为单帧推理
+    private static final long BATCH_TIMEOUT_MS = 200;
+
     private OrtEnvironment env;
     private OrtSession session;
     private float[][][] state;
     private float[][] context;
     private final int windowSize = AudioUtils.BUFFER_SIZE; // 16kHz的窗口大小
+    private VadInferenceBatcher batcher;
 
     @PostConstruct
     @Override
@@ -43,7 +67,7 @@ public class SileroVadModel implements VadModel {
             OrtSession.SessionOptions opts = new OrtSession.SessionOptions();
             opts.setSessionLogLevel(OrtLoggingLevel.ORT_LOGGING_LEVEL_ERROR);
             opts.setInterOpNumThreads(1);
-            opts.setIntraOpNumThreads(1);
+            opts.setIntraOpNumThreads(intraOpThreads);
             opts.addCPU(true);
 
             // 创建会话
@@ -52,6 +76,11 @@ public class SileroVadModel implements VadModel {
             // 初始化状态
             reset();
 
+            if (batchEnabled) {
+                batcher = new VadInferenceBatcher(this::inferBatch, batchWindowMs * 1000L, batchMaxSize);
+                logger.info("Silero VAD微批推理已开启, 窗口: {}ms, 最大批: {}", batchWindowMs, batchMaxSize);
+            }
+
             logger.info("Silero VAD模型初始化成功");
         } catch (UnsatisfiedLinkError e) {
             logger.error("ONNX Runtime native libraries加载失败，请安装Visual C++ Redistributable: {}", e.getMessage());
@@ -111,6 +140,36 @@ public class SileroVadModel implements VadModel {
 
     @Override
     public InferenceResult infer(float[] samples, float[][][] prevState) {
+        if (batcher != null) {
+            if (samples.length != windowSize) {
+                throw new IllegalArgumentException("样本数量必须是" + windowSize);
+            }
+            VadInferenceBatcher.Request request = batcher.submit(samples, prevState);
+            try {
+                try {
+                    return request.getFuture().get(BATCH_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    if (!request.cancel()) {
+                        // 已进入正在推理的批次，等待结果，避免同一帧推理两次
+                        return request.getFuture().get();
+                    }
+                    logger.warn("VAD批量推理排队超过{}ms，退化为单帧推理", BATCH_TIMEOUT_MS);
+                }
+            } catch (InterruptedException e) {
+                request.cancel();
+                Thread.currentThread().interrupt();
+                return new InferenceResult(0.0f, prevState);
+            } catch (ExecutionException e) {
+                logger.warn("VAD批量推理失败，退化为单帧推理: {}", e.getCause().getMessage());
+            }
+        }
+        return inferSingle(samples, prevState);
+    }
+
+    /**
+     * 单帧推理
+     */
+    public InferenceResult inferSingle(float[] samples, float[][][] prevState) {
         try {
             if (samples.length != windowSize) {
                 throw new IllegalArgumentException("样本数量必须是" + windowSize);
@@ -149,6 +208,49 @@ public class SileroVadModel implements VadModel {
         }
     }
 
+    /**
+     * 批量推理：将多个会话的帧堆叠为 [B][512] 输入和 [2][B][128] 隐状态，一次推理后按行拆分
+     *
+     * @param requests 各会话的推理请求
+     * @return 与请求一一对应的推理结果
+     */
+    public InferenceResult[] inferBatch(List<VadInferenceBatcher.Request> requests) {
+        int batchSize = requests.size();
+        float[][] x = new float[batchSize][];
+        float[][][] batchState = new float[2][batchSize][];
+        for (int i = 0; i < batchSize; i++) {
+            VadInferenceBatcher.Request request = requests.get(i);
+            x[i] = request.getSamples();
+            float[][][] prev = request.getState();
+            batchState[0][i] = prev != null ? prev[0][0] : new float[128];
+            batchState[1][i] = prev != null ? prev[1][0] : new float[128];
+        }
+
+        try (OnnxTensor inputTensor = OnnxTensor.createTensor(env, x);
+             OnnxTensor stateTensor = OnnxTensor.createTensor(env, batchState);
+             OnnxTensor srTensor = OnnxTensor.createTensor(env, new long[] { AudioUtils.SAMPLE_RATE });
+             OrtSession.Result result = session.run(Map.of(
+                     "input", inputTensor,
+                     "sr", srTensor,
+                     "state", stateTensor
+             ))) {
+
+            float[][] output = (float[][]) result.get(0).getValue();
+            float[][][] nextState = (float[][][]) result.get(1).getValue();
+
+            InferenceResult[] results = new InferenceResult[batchSize];
+            for (int i = 0; i < batchSize; i++) {
+                results[i] = new InferenceResult(output[i][0], new float[][][] {
+                        { nextState[0][i] },
+                        { nextState[1][i] }
+                });
+            }
+            return results;
+        } catch (OrtException e) {
+            throw new IllegalStateException("VAD批量推理失败", e);
+        }
+    }
+
     @Override
     public void reset() {
         state = new float[2][1][128];
@@ -158,6 +260,9 @@ public class SileroVadModel implements VadModel {
     @PreDestroy
     @Override
     public void close() {
+        if (batcher != null) {
+            batcher.shutdown();
+        }
         try {
             if (session != null) {
                 session.close();
@@ -0,0 +1,165 @@
+package com.xiaozhi.dialogue.vad.impl;
+
+import com.xiaozhi.dialogue.vad.VadModel.InferenceResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * VAD跨会话微批推理执行器
+ * 在一个很短的时间窗口内收集多个会话的帧，合并为一次批量推理，再把概率和隐状态分发回各个会话。
+ * 所有推理都在单个调度线程上执行，ONNX会话不会被并发调用。
+ * 请求在被批次取走之前可以撤回（{@link Request#cancel()}），撤回的请求不会再被推理，调用方可以自行推理而不会重复。
+ */
+public class VadInferenceBatcher {
+    private static final Logger logger = LoggerFactory.getLogger(VadInferenceBatcher.class);
+
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final Function<List<Request>, InferenceResult[]> batchInfer;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+
+    /**
+     * 单帧推理请求
+     */
+    public static class Request {
+        final float[] samples;
+        final float[][][] state;
+        final CompletableFuture<InferenceResult> future = new CompletableFuture<>();
+        // 被批次取走或被撤回，二者只有一个会成功
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        Request(float[] samples, float[][][] state) {
+            this.samples = samples;
+            this.state = state;
+        }
+
+        public CompletableFuture<InferenceResult> getFuture() {
+            return future;
+        }
+
+        /**
+         * 撤回还在排队的请求
+         *
+         * @return false表示请求已进入批次，结果会通过 future 返回
+         */
+        public boolean cancel() {
+            if (claimed.compareAndSet(false, true)) {
+                future.cancel(false);
+                return true;
+            }
+            return false;
+        }
+
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        public float[] getSamples() {
+            return samples;
+        }
+
+        public float[][][] getState() {
+            return state;
+        }
+    }
+
+    /**
+     * @param batchInfer   批量推理函数，返回结果与请求一一对应
+     * @param windowMicros 收集窗口（微秒），窗口内到达的帧合并为一批
+     * @param maxBatchSize 单批最大帧数，达到后立即推理
+     */
+    public VadInferenceBatcher(Function<List<Request>, InferenceResult[]> batchInfer, long windowMicros, int maxBatchSize) {
+        this.batchInfer = batchInfer;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.maxBatchSize = maxBatchSize;
+        this.dispatcher = Thread.ofPlatform().name("vad-batcher").daemon(true).start(this::dispatchLoop);
+    }
+
+    /**
+     * 提交一帧推理请求
+     */
+    public Request submit(float[] samples, float[][][] state) {
+        Request request = new Request(samples, state);
+        if (!running) {
+            request.future.completeExceptionally(new IllegalStateException("VAD批量推理已关闭"));
+            return request;
+        }
+        queue.offer(request);
+        return request;
+    }
+
+    private void dispatchLoop() {
+        List<Request> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                Request first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + windowNanos;
+                queue.drainTo(batch, maxBatchSize - batch.size());
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    Request next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                }
+                // 跳过已被调用方撤回的请求
+                batch.removeIf(request -> !request.claim());
+                if (!batch.isEmpty()) {
+                    runBatch(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+        // 关闭时让等待中的调用方尽快退出
+        Request pending;
+        while ((pending = queue.poll()) != null) {
+            pending.future.completeExceptionally(new IllegalStateException("VAD批量推理已关闭"));
+        }
+    }
+
+    private void runBatch(List<Request> batch) {
+        try {
+            InferenceResult[] results = batchInfer.apply(batch);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future.complete(results[i]);
+            }
+        } catch (Exception e) {
+            logger.error("VAD批量推理失败, 批大小: {}", batch.size(), e);
+            for (Request request : batch) {
+                request.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * 停止调度线程
+     */
+    public void shutdown() {
+        running = false;
+        dispatcher.interrupt();
+    }
+}
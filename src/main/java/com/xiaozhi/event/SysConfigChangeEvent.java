@@ -0,0 +1,19 @@
+package com.xiaozhi.event;
+
+import com.xiaozhi.entity.SysConfig;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * 模型配置变更事件，用于清理按配置缓存的模型实例
+ */
+public class SysConfigChangeEvent extends ApplicationEvent {
+
+    public SysConfigChangeEvent(SysConfig config) {
+        super(config);
+    }
+
+    public SysConfig getConfig() {
+        return (SysConfig) getSource();
+    }
+
+}
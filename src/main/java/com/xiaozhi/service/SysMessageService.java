@@ -21,6 +21,13 @@ public interface SysMessageService {
    */
   int add(SysMessage message);
 
+  /**
+   * 批量新增记录，先进入写入缓冲区，按批量或定时合并写入
+   *
+   * @param messages
+   */
+  void saveAll(List<SysMessage> messages);
+
   /**
    * 查询聊天记录
    * 指定分页信息
@@ -38,7 +45,7 @@ public interface SysMessageService {
   int delete(SysMessage message);
 
   /**
-   * 更新消息的音频数据信息
+   * 更新消息的音频数据信息，消息还未写入时随INSERT一起写入
    * @param deviceId
    * @param roleId
    * @param sender
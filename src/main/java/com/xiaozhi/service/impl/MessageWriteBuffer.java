@@ -0,0 +1,231 @@
+package com.xiaozhi.service.impl;
+
+import com.xiaozhi.dao.MessageMapper;
+import com.xiaozhi.entity.SysMessage;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 聊天记录的延迟批量写入。
+ * 原先每轮对话起一个虚拟线程单独插入两条消息，随后再按 deviceId+roleId+sender+createTime 更新音频路径，
+ * 更新可能先于插入执行而丢失。这里先把消息放入有界缓冲区，达到批量大小或定时合并为多行INSERT写入：
+ * - 消息还在缓冲区时到达的音频路径直接随INSERT写入，不再单独UPDATE
+ * - 消息已写入后才到达的音频路径在下一次写入时，排在本批INSERT之后执行UPDATE
+ * - 缓冲区满时由调用方线程同步写入，不丢弃消息
+ * - 应用关闭时写完缓冲区中的所有消息
+ */
+@Component
+public class MessageWriteBuffer {
+    private static final Logger logger = LoggerFactory.getLogger(MessageWriteBuffer.class);
+
+    /**
+     * 写入统计
+     *
+     * @param pending  缓冲区中等待写入的消息数
+     * @param inserted 累计写入的消息数
+     * @param batches  累计执行的批量INSERT数
+     * @param merged   随INSERT一起写入的音频路径数
+     * @param updates  单独执行的音频路径UPDATE数
+     * @param failures 写入失败的次数
+     */
+    public record Stats(int pending, long inserted, long batches, long merged, long updates, long failures) {
+    }
+
+    /**
+     * 缓冲区中的消息
+     */
+    private static final class Pending {
+        private final SysMessage message;
+        private boolean withAudio;
+
+        private Pending(SysMessage message) {
+            this.message = message;
+        }
+    }
+
+    private final MessageMapper messageMapper;
+    private final int batchSize;
+    private final int capacity;
+
+    // 以下三个集合由this加锁
+    private List<Pending> pending = new ArrayList<>();
+    private final Map<String, Pending> pendingByKey = new HashMap<>();
+    private List<SysMessage> updates = new ArrayList<>();
+
+    // 保证同一时刻只有一个线程在写入，批次之间按顺序执行
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final ScheduledExecutorService writer;
+
+    private final AtomicLong inserted = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong merged = new AtomicLong();
+    private final AtomicLong updated = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    /**
+     * @param batchSize       单条INSERT最多写入的消息数，缓冲区达到该数量时立即写入
+     * @param flushIntervalMs 定时写入间隔
+     * @param capacity        缓冲区上限，达到上限时调用方同步写入
+     */
+    public MessageWriteBuffer(MessageMapper messageMapper,
+                              @Value("${message.write.batch-size:200}") int batchSize,
+                              @Value("${message.write.flush-interval-ms:1000}") long flushIntervalMs,
+                              @Value("${message.write.capacity:10000}") int capacity) {
+        this.messageMapper = messageMapper;
+        this.batchSize = Math.max(1, batchSize);
+        this.capacity = Math.max(this.batchSize, capacity);
+        this.writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "message-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.writer.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 添加待写入的消息
+     */
+    public void add(List<SysMessage> messages) {
+        int size;
+        synchronized (this) {
+            for (SysMessage message : messages) {
+                Pending entry = new Pending(message);
+                pending.add(entry);
+                pendingByKey.put(keyOf(message), entry);
+            }
+            size = pending.size();
+        }
+        if (size >= capacity) {
+            // 数据库跟不上时由调用方承担写入，形成背压
+            flush();
+        } else if (size >= batchSize && flushRequested.compareAndSet(false, true)) {
+            writer.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * 记录消息的音频路径，按 deviceId+roleId+sender+createTime 匹配消息
+     */
+    public void attachAudio(SysMessage update) {
+        synchronized (this) {
+            Pending entry = pendingByKey.get(keyOf(update));
+            if (entry != null) {
+                entry.message.setAudioPath(update.getAudioPath());
+                entry.withAudio = true;
+                merged.incrementAndGet();
+                return;
+            }
+            updates.add(update);
+        }
+        if (flushRequested.compareAndSet(false, true)) {
+            writer.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * 写入缓冲区中的全部消息和音频路径
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            flushRequested.set(false);
+            List<Pending> messages;
+            List<SysMessage> audioUpdates;
+            synchronized (this) {
+                if (pending.isEmpty() && updates.isEmpty()) {
+                    return;
+                }
+                messages = pending;
+                audioUpdates = updates;
+                pending = new ArrayList<>();
+                updates = new ArrayList<>();
+                pendingByKey.clear();
+            }
+            List<SysMessage> plain = new ArrayList<>();
+            List<SysMessage> withAudio = new ArrayList<>();
+            for (Pending entry : messages) {
+                (entry.withAudio ? withAudio : plain).add(entry.message);
+            }
+            insert(plain, false);
+            insert(withAudio, true);
+            // 更新的消息可能就在刚写入的批次里，必须在INSERT之后执行
+            for (SysMessage update : audioUpdates) {
+                try {
+                    messageMapper.updateMessageByAudioFile(update);
+                    updated.incrementAndGet();
+                } catch (Exception e) {
+                    failures.incrementAndGet();
+                    logger.error("更新消息音频路径失败: {}", e.getMessage(), e);
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public Stats getStats() {
+        int size;
+        synchronized (this) {
+            size = pending.size();
+        }
+        return new Stats(size, inserted.get(), batches.get(), merged.get(), updated.get(), failures.get());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        logger.info("聊天记录已全部写入: {}", getStats());
+    }
+
+    private void insert(List<SysMessage> messages, boolean withAudio) {
+        for (int from = 0; from < messages.size(); from += batchSize) {
+            List<SysMessage> batch = messages.subList(from, Math.min(messages.size(), from + batchSize));
+            try {
+                if (withAudio) {
+                    messageMapper.saveAllWithAudio(batch);
+                } else {
+                    messageMapper.saveAll(batch);
+                }
+                inserted.addAndGet(batch.size());
+                batches.incrementAndGet();
+            } catch (Exception e) {
+                failures.incrementAndGet();
+                logger.error("批量保存消息失败，丢失 {} 条消息: {}", batch.size(), e.getMessage(), e);
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.error("写入聊天记录时出错: {}", e.getMessage(), e);
+        }
+    }
+
+    private static String keyOf(SysMessage message) {
+        long time = message.getCreateTime() == null ? 0 : message.getCreateTime().getTime();
+        return message.getDeviceId() + "|" + message.getRoleId() + "|" + message.getSender() + "|" + time;
+    }
+}
@@ -0,0 +1,170 @@
+package com.xiaozhi.service.impl;
+
+import com.xiaozhi.entity.SysMessage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 每个 设备+角色 最近若干条对话消息的缓存。
+ * 设备闲置超时后会断开并很快重连，每次重连都要按时间倒序查询历史消息。
+ * 这里保存最近 capacity 条普通消息（与 MessageMapper.find 的条件一致），每轮对话保存时追加，
+ * 重连时直接读取，只有未命中时才查询数据库：
+ * - 条目数按LRU限制，每个条目是固定长度的环形队列
+ * - 条目超过有效期后重新查询数据库，作为其他节点写入或后台修改记录时的兜底
+ * - 删除聊天记录时清除对应条目
+ */
+@Component
+public class RecentMessageCache {
+
+    /**
+     * 缓存统计
+     *
+     * @param entries 缓存的 设备+角色 数
+     * @param hits    命中次数
+     * @param misses  未命中（查询数据库）次数
+     */
+    public record Stats(int entries, long hits, long misses) {
+    }
+
+    private static final class History {
+        private final ArrayDeque<SysMessage> messages;
+        private final long loadedAt;
+
+        private History(ArrayDeque<SysMessage> messages, long loadedAt) {
+            this.messages = messages;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    private final int capacity;
+    private final int maxEntries;
+    private final long expireMillis;
+
+    // 访问顺序的LinkedHashMap，队首为最久未使用，由this加锁
+    private final LinkedHashMap<String, History> histories = new LinkedHashMap<>(256, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param capacity      每个 设备+角色 缓存的消息数，与对话窗口大小一致
+     * @param maxEntries    最多缓存的 设备+角色 数
+     * @param expireMinutes 条目的有效期
+     */
+    public RecentMessageCache(@Value("${conversation.max-messages:16}") int capacity,
+                              @Value("${conversation.history-cache.max-entries:10000}") int maxEntries,
+                              @Value("${conversation.history-cache.expire-minutes:30}") long expireMinutes) {
+        this.capacity = Math.max(1, capacity);
+        this.maxEntries = Math.max(1, maxEntries);
+        this.expireMillis = expireMinutes * 60_000;
+    }
+
+    /**
+     * 每个 设备+角色 缓存的消息数，未命中时应至少从数据库查询这么多条
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 获取最近的消息，按时间升序
+     *
+     * @param limit 消息数，超过缓存容量时视为未命中
+     * @return 未命中时返回null
+     */
+    public List<SysMessage> get(String deviceId, int roleId, int limit) {
+        String key = keyOf(deviceId, roleId);
+        synchronized (this) {
+            History history = histories.get(key);
+            if (history != null && System.currentTimeMillis() - history.loadedAt > expireMillis) {
+                histories.remove(key);
+                history = null;
+            }
+            if (history == null || limit > capacity) {
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            List<SysMessage> result = new ArrayList<>(Math.min(limit, history.messages.size()));
+            Iterator<SysMessage> iterator = history.messages.iterator();
+            for (int skip = history.messages.size() - limit; skip > 0; skip--) {
+                iterator.next();
+            }
+            iterator.forEachRemaining(result::add);
+            return result;
+        }
+    }
+
+    /**
+     * 放入从数据库查询到的消息
+     *
+     * @param messages 按时间升序，为该 设备+角色 最近的至少 capacity 条消息，不足表示全部消息
+     */
+    public void load(String deviceId, int roleId, List<SysMessage> messages) {
+        ArrayDeque<SysMessage> ring = new ArrayDeque<>(capacity);
+        for (int i = Math.max(0, messages.size() - capacity); i < messages.size(); i++) {
+            ring.addLast(messages.get(i));
+        }
+        synchronized (this) {
+            // 查询期间已有其他连接放入的条目更新，保留原条目
+            histories.putIfAbsent(keyOf(deviceId, roleId), new History(ring, System.currentTimeMillis()));
+            Iterator<History> iterator = histories.values().iterator();
+            while (histories.size() > maxEntries && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * 追加刚保存的消息。只追加会被 MessageMapper.find 查询到的普通对话消息；
+     * 没有缓存的 设备+角色 不追加，下次读取时从数据库加载。
+     */
+    public void append(List<SysMessage> messages) {
+        synchronized (this) {
+            for (SysMessage message : messages) {
+                if (!SysMessage.MESSAGE_TYPE_NORMAL.equals(message.getMessageType())
+                        || message.getRoleId() == null) {
+                    continue;
+                }
+                History history = histories.get(keyOf(message.getDeviceId(), message.getRoleId()));
+                if (history == null) {
+                    continue;
+                }
+                if (history.messages.size() == capacity) {
+                    history.messages.pollFirst();
+                }
+                history.messages.addLast(message);
+            }
+        }
+    }
+
+    /**
+     * 清除设备的缓存
+     *
+     * @param deviceId 为null时清除全部
+     */
+    public synchronized void evict(String deviceId) {
+        if (deviceId == null) {
+            histories.clear();
+            return;
+        }
+        String prefix = deviceId + "|";
+        histories.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(histories.size(), hits.get(), misses.get());
+    }
+
+    private static String keyOf(String deviceId, int roleId) {
+        return deviceId + "|" + roleId;
+    }
+}
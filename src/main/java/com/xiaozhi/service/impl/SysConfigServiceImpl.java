@@ -8,6 +8,7 @@ import com.xiaozhi.dialogue.stt.factory.SttServiceFactory;
 import com.xiaozhi.dialogue.token.factory.TokenServiceFactory;
 import com.xiaozhi.dialogue.tts.factory.TtsServiceFactory;
 import com.xiaozhi.entity.SysConfig;
+import com.xiaozhi.event.SysConfigChangeEvent;
 import com.xiaozhi.service.SysConfigService;
 import jakarta.annotation.Resource;
 import org.springframework.cache.Cache;
@@ -15,6 +16,7 @@ import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.Caching;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -49,6 +51,9 @@ public class SysConfigServiceImpl extends BaseServiceImpl implements SysConfigSe
     @Resource
     private CacheManager cacheManager;
 
+    @Resource
+    private ApplicationEventPublisher eventPublisher;
+
     /**
      * 添加配置
      *
@@ -91,6 +96,8 @@ public class SysConfigServiceImpl extends BaseServiceImpl implements SysConfigSe
             if (configs.size() > 0) {
                 tokenService.removeCache(configs.getFirst());
             }
+            // ChatModel缓存由ChatModelFactory在事务提交后清理
+            eventPublisher.publishEvent(new SysConfigChangeEvent(configs.isEmpty() ? config : configs.getFirst()));
         }
         return rows;
     }
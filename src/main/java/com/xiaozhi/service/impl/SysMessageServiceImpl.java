@@ -25,6 +25,12 @@ public class SysMessageServiceImpl extends BaseServiceImpl implements SysMessage
     @Resource
     private MessageMapper messageMapper;
 
+    @Resource
+    private MessageWriteBuffer messageWriteBuffer;
+
+    @Resource
+    private RecentMessageCache recentMessageCache;
+
     /**
      * 新增聊天记录
      *
@@ -37,6 +43,12 @@ public class SysMessageServiceImpl extends BaseServiceImpl implements SysMessage
         return messageMapper.add(message);
     }
 
+    @Override
+    public void saveAll(List<SysMessage> messages) {
+        messageWriteBuffer.add(messages);
+        recentMessageCache.append(messages);
+    }
+
     /**
      * 查询聊天记录
      *
@@ -60,7 +72,10 @@ public class SysMessageServiceImpl extends BaseServiceImpl implements SysMessage
     @Override
     @Transactional
     public int delete(SysMessage message) {
-        return messageMapper.delete(message);
+        int rows = messageMapper.delete(message);
+        // 按消息ID删除时不知道属于哪个设备，清除全部缓存
+        recentMessageCache.evict(message.getMessageId() == null ? message.getDeviceId() : null);
+        return rows;
     }
 
     @Override
@@ -74,7 +89,7 @@ public class SysMessageServiceImpl extends BaseServiceImpl implements SysMessage
         sysMessage.setCreateTime(DateUtils.toDate(createTime.replace("T", " "), "yyyy-MM-dd HHmmss"));
         // 设置音频路径和TTS时长
         sysMessage.setAudioPath(audioPath);
-        messageMapper.updateMessageByAudioFile(sysMessage);
+        messageWriteBuffer.attachAudio(sysMessage);
     }
 
 }
\ No newline at end of file
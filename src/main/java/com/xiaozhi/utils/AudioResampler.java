@@ -0,0 +1,179 @@
+package com.xiaozhi.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 音频重采样工具
+ * 多相（polyphase）加窗sinc重采样，按 输入采样率:输出采样率 约分为 L/M，
+ * 预先计算 L 个相位的Kaiser窗滤波器系数，降采样时截止频率随比例下移，兼做抗混叠滤波。
+ * 系数表按采样率组合缓存，常见的 24k/44.1k/48k → 16k 只需计算一次。
+ */
+public final class AudioResampler {
+
+    // 每侧保留的sinc过零点数，越大过渡带越窄
+    private static final int ZERO_CROSSINGS = 16;
+    // Kaiser窗beta值，约对应80dB阻带衰减
+    private static final double KAISER_BETA = 8.0;
+    // 截止频率相对目标奈奎斯特频率的比例，留出过渡带
+    private static final double ROLLOFF = 0.95;
+
+    private static final Map<Long, Filter> FILTERS = new ConcurrentHashMap<>();
+
+    private AudioResampler() {
+    }
+
+    /**
+     * 多相滤波器：phases[p][k] 为第 p 个相位的第 k 个系数
+     */
+    private record Filter(int up, int down, int halfWidth, float[][] phases) {
+    }
+
+    /**
+     * 单声道16位PCM重采样
+     *
+     * @param input   输入样本
+     * @param inRate  输入采样率
+     * @param outRate 输出采样率
+     * @return 重采样后的样本，采样率相同时返回原数组
+     */
+    public static short[] resample(short[] input, int inRate, int outRate) {
+        if (inRate == outRate || input.length == 0) {
+            return input;
+        }
+        Filter filter = FILTERS.computeIfAbsent(((long) inRate << 32) | outRate, k -> design(inRate, outRate));
+        int up = filter.up();
+        int down = filter.down();
+        int halfWidth = filter.halfWidth();
+
+        int outLength = (int) ((long) input.length * up / down);
+        short[] output = new short[outLength];
+        for (int n = 0; n < outLength; n++) {
+            // 输出样本n对应输入位置 n*down/up，整数部分为基准样本，余数为相位
+            long pos = (long) n * down;
+            int base = (int) (pos / up);
+            float[] taps = filter.phases()[(int) (pos % up)];
+            int start = base - halfWidth + 1;
+
+            double acc = 0;
+            if (start >= 0 && start + taps.length <= input.length) {
+                for (int k = 0; k < taps.length; k++) {
+                    acc += taps[k] * input[start + k];
+                }
+            } else {
+                // 边界处越界部分按0处理
+                for (int k = 0; k < taps.length; k++) {
+                    int i = start + k;
+                    if (i >= 0 && i < input.length) {
+                        acc += taps[k] * input[i];
+                    }
+                }
+            }
+            output[n] = clip(acc);
+        }
+        return output;
+    }
+
+    /**
+     * 单声道16位小端PCM字节数组重采样
+     */
+    public static byte[] resample(byte[] pcm, int inRate, int outRate) {
+        if (inRate == outRate) {
+            return pcm;
+        }
+        short[] samples = new short[pcm.length / 2];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) ((pcm[i * 2] & 0xFF) | (pcm[i * 2 + 1] << 8));
+        }
+        return toBytes(resample(samples, inRate, outRate));
+    }
+
+    /**
+     * 样本数组转16位小端PCM字节数组
+     */
+    public static byte[] toBytes(short[] samples) {
+        byte[] pcm = new byte[samples.length * 2];
+        for (int i = 0; i < samples.length; i++) {
+            pcm[i * 2] = (byte) (samples[i] & 0xFF);
+            pcm[i * 2 + 1] = (byte) ((samples[i] >> 8) & 0xFF);
+        }
+        return pcm;
+    }
+
+    private static Filter design(int inRate, int outRate) {
+        int gcd = gcd(inRate, outRate);
+        int up = outRate / gcd;
+        int down = inRate / gcd;
+
+        // 截止频率（相对输入奈奎斯特频率），降采样时需低于输出奈奎斯特频率
+        double cutoff = Math.min(1.0, (double) outRate / inRate) * ROLLOFF;
+        int halfWidth = (int) Math.ceil(ZERO_CROSSINGS / cutoff);
+        int taps = halfWidth * 2;
+
+        float[][] phases = new float[up][taps];
+        double i0Beta = besselI0(KAISER_BETA);
+        for (int p = 0; p < up; p++) {
+            double frac = (double) p / up;
+            double sum = 0;
+            double[] h = new double[taps];
+            for (int k = 0; k < taps; k++) {
+                // 系数k对应输入样本 base-halfWidth+1+k，与输出位置的距离
+                double x = (k - halfWidth + 1) - frac;
+                double ratio = x / halfWidth;
+                double window = Math.abs(ratio) >= 1 ? 0 : besselI0(KAISER_BETA * Math.sqrt(1 - ratio * ratio)) / i0Beta;
+                h[k] = cutoff * sinc(cutoff * x) * window;
+                sum += h[k];
+            }
+            // 每个相位单独归一化，保证直流增益为1
+            for (int k = 0; k < taps; k++) {
+                phases[p][k] = (float) (h[k] / sum);
+            }
+        }
+        return new Filter(up, down, halfWidth, phases);
+    }
+
+    private static double sinc(double x) {
+        if (x == 0) {
+            return 1.0;
+        }
+        double px = Math.PI * x;
+        return Math.sin(px) / px;
+    }
+
+    /**
+     * 第一类零阶修正贝塞尔函数（级数展开）
+     */
+    private static double besselI0(double x) {
+        double sum = 1.0;
+        double term = 1.0;
+        double halfX = x / 2;
+        for (int k = 1; k < 50; k++) {
+            term *= (halfX / k) * (halfX / k);
+            sum += term;
+            if (term < sum * 1e-12) {
+                break;
+            }
+        }
+        return sum;
+    }
+
+    private static short clip(double v) {
+        long r = Math.round(v);
+        if (r > Short.MAX_VALUE) {
+            return Short.MAX_VALUE;
+        }
+        if (r < Short.MIN_VALUE) {
+            return Short.MIN_VALUE;
+        }
+        return (short) r;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
@@ -16,6 +16,8 @@ import java.util.UUID;
 
 public class AudioUtils {
     public static final String AUDIO_PATH = "audio/";
+    // TTS合成结果缓存目录，由TtsCache管理
+    public static final String TTS_CACHE_PATH = AUDIO_PATH + "tts-cache/";
     private static final Logger logger = org.slf4j.LoggerFactory.getLogger(AudioUtils.class);
     public static final int FRAME_SIZE = 960;
     public static final int SAMPLE_RATE = 16000; // 采样率
@@ -224,9 +226,12 @@ public class AudioUtils {
                 }
             }
             // 目前采用的处理策略是删除已经合并了的文件。
+            // 缓存的TTS音频会被其他对话复用，不删除
             for (var audioPath : audioPaths) {
                 var fullPath = audioPath.startsWith(AUDIO_PATH) ? audioPath : AUDIO_PATH + audioPath;
-                Files.deleteIfExists(Paths.get(fullPath));
+                if (!fullPath.startsWith(TTS_CACHE_PATH)) {
+                    Files.deleteIfExists(Paths.get(fullPath));
+                }
             }
 
         } catch (Exception e) {
@@ -316,12 +321,28 @@ public class AudioUtils {
     }
 
     /**
-     * 将MP3转换为PCM格式
+     * 将MP3转换为PCM格式（16kHz, 单声道, 16位）
+     * 优先在进程内解码并重采样，解码失败（如非标准封装）时再回退到ffmpeg
      *
      * @param mp3Path MP3文件路径
      * @return PCM数据字节数组
      */
     public static byte[] mp3ToPcm(String mp3Path) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(mp3Path))) {
+            return Mp3Decoder.decode(in, SAMPLE_RATE);
+        } catch (IOException e) {
+            logger.warn("MP3进程内解码失败，回退到ffmpeg: {} - {}", mp3Path, e.getMessage());
+        }
+        return mp3ToPcmByFfmpeg(mp3Path);
+    }
+
+    /**
+     * 使用ffmpeg将音频转换为PCM格式
+     *
+     * @param mp3Path 音频文件路径
+     * @return PCM数据字节数组
+     */
+    static byte[] mp3ToPcmByFfmpeg(String mp3Path) throws IOException {
         try {
             // 创建临时PCM文件
             String tempPcmPath = AUDIO_PATH + UUID.randomUUID().toString().replace("-", "") + ".pcm";
@@ -452,13 +473,26 @@ public class AudioUtils {
 
     /**
      * 获取音频文件的时长
-     * 使用 ffprobe 获取所有格式的音频时长
+     * WAV读取文件头，MP3累加帧头时长，其余格式使用 ffprobe 获取
      *
      * @param path 音频文件路径
      * @return 时长（秒），失败返回-1
      */
     public static double getAudioDuration(Path path) {
         String pathStr = path.toString();
+        String lower = pathStr.toLowerCase();
+
+        try {
+            if (lower.endsWith(".wav")) {
+                return wavDuration(path);
+            } else if (lower.endsWith(".mp3")) {
+                try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+                    return Mp3Decoder.duration(in);
+                }
+            }
+        } catch (Exception e) {
+            logger.debug("进程内获取音频时长失败，回退到ffprobe: {}", pathStr, e);
+        }
 
         try {
             // 使用ffprobe获取时长
@@ -494,6 +528,24 @@ public class AudioUtils {
         return -1;
     }
 
+    /**
+     * 根据WAV文件头中的字节率计算时长
+     */
+    private static double wavDuration(Path path) throws IOException {
+        byte[] header = new byte[44];
+        try (InputStream in = Files.newInputStream(path)) {
+            if (in.readNBytes(header, 0, header.length) < header.length
+                    || header[0] != 'R' || header[1] != 'I' || header[2] != 'F' || header[3] != 'F') {
+                throw new IOException("不是有效的WAV文件格式");
+            }
+        }
+        int byteRate = (header[28] & 0xFF) | (header[29] & 0xFF) << 8 | (header[30] & 0xFF) << 16 | (header[31] & 0xFF) << 24;
+        if (byteRate <= 0) {
+            throw new IOException("WAV字节率无效: " + byteRate);
+        }
+        return (double) (Files.size(path) - header.length) / byteRate;
+    }
+
     /**
      * 读取标准Ogg Opus文件
      *
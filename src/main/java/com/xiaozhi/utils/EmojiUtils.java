@@ -171,6 +171,105 @@ public class EmojiUtils {
         return matcher.find();
     }
 
+    /**
+     * 检查文本末尾是否是颜文字，即 {@link #KAOMOJI_PATTERN} 是否有以最后一个字符结尾的匹配。
+     * 逐字符追加文本时，若追加前不包含颜文字，追加后 containsKaomoji 与此方法结果相同，
+     * 只需检查末尾的少量字符。修改 KAOMOJI_PATTERN 时需同步修改此方法。
+     *
+     * @param text 要检查的文本
+     * @return 末尾是颜文字返回true
+     */
+    public static boolean endsWithKaomoji(CharSequence text) {
+        int end = text.length();
+        if (end < 2) {
+            return false;
+        }
+        char last = text.charAt(end - 1);
+        int pos = end - 1;
+        switch (last) {
+            case ')':
+                // (^_^) 或 :) :-) ;) ;-)
+                return endsWithBracketed(text, pos, '(', '（', ')', '）')
+                        || endsWithFace(text, pos, ':') || endsWithFace(text, pos, ';');
+            case '）':
+                return endsWithBracketed(text, pos, '(', '（', ')', '）');
+            case '>':
+            case '＞':
+                // <(￣︶￣)>
+                return endsWithBracketed(text, pos, '<', '＜', '>', '＞');
+            case 'D':
+            case '(':
+                // :D :-(
+                return endsWithFace(text, pos, ':');
+            case '\\':
+            case '¯':
+            case '*':
+                // \_\ *_*
+                return endsWithEyes(text, pos);
+            case '/':
+                // \o/ =/ =\/
+                return (pos >= 2 && text.charAt(pos - 1) == 'o' && text.charAt(pos - 2) == '\\')
+                        || endsWithFlat(text, pos);
+            case '_':
+                // =_ =\_
+                return endsWithFlat(text, pos);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * [(（][^)）]{1,10}[)）]：pos 为右括号位置，括号内为1到10个不是右括号的码点
+     */
+    private static boolean endsWithBracketed(CharSequence text, int pos, char open, char fullWidthOpen,
+                                             char close, char fullWidthClose) {
+        int i = pos;
+        for (int count = 1; count <= 10 && i > 0; count++) {
+            int codePoint = Character.codePointBefore(text, i);
+            if (codePoint == close || codePoint == fullWidthClose) {
+                return false;
+            }
+            i -= Character.charCount(codePoint);
+            if (i > 0 && (text.charAt(i - 1) == open || text.charAt(i - 1) == fullWidthOpen)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * :-?[)D(] 或 ;-?[)]
+     */
+    private static boolean endsWithFace(CharSequence text, int pos, char eyes) {
+        return text.charAt(pos - 1) == eyes
+                || (pos >= 2 && text.charAt(pos - 1) == '-' && text.charAt(pos - 2) == eyes);
+    }
+
+    /**
+     * [\\¯*][_-]{1,2}[\\¯*]
+     */
+    private static boolean endsWithEyes(CharSequence text, int pos) {
+        for (int count = 1; count <= 2 && pos - count >= 1; count++) {
+            char mouth = text.charAt(pos - count);
+            if (mouth != '_' && mouth != '-') {
+                return false;
+            }
+            char eye = text.charAt(pos - count - 1);
+            if (eye == '\\' || eye == '¯' || eye == '*') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * =\\?[_/]
+     */
+    private static boolean endsWithFlat(CharSequence text, int pos) {
+        return text.charAt(pos - 1) == '='
+                || (pos >= 2 && text.charAt(pos - 1) == '\\' && text.charAt(pos - 2) == '=');
+    }
+
     /**
      * 过滤文本中的颜文字
      *
@@ -1,12 +1,16 @@
 package com.xiaozhi.utils;
 
+import com.xiaozhi.dialogue.llm.intent.IntentKeyword;
+import com.xiaozhi.dialogue.llm.intent.IntentKeywordMatcher;
+
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.regex.Pattern;
 
 /**
  * 退出关键词检测器
  * 用于检测用户输入中是否包含明确的退出意图关键词
+ * 所有关键词编译为一个 Aho-Corasick 自动机，一次扫描输入完成匹配，结果与原先逐个匹配 ".*关键词.*" 正则相同
  * 注意：这个类不再是 Spring 组件，而是作为工具类被 IntentDetector 使用
  */
 public class ExitKeywordDetector {
@@ -38,86 +42,85 @@ public class ExitKeywordDetector {
     );
 
     /**
-     * 精确匹配的短语模式
-     * 这些短语必须完整出现才算匹配
+     * 精确匹配的短语
+     * 这些短语必须完整出现才算匹配，连续空白视为一个空格。
+     * 原先的正则中"我?要?走了"、"(?:我|你)?(?:先)?(?:要)?离开"等前缀都是可选的，等价于只匹配"走了"、"离开"；
+     * "bye\s*bye"对应"byebye"和"bye bye"，"see\s+you"对应"see you"
      */
-    private static final List<Pattern> EXACT_PATTERNS = Arrays.asList(
-            Pattern.compile(".*拜拜.*", Pattern.CASE_INSENSITIVE),
-            Pattern.compile(".*再见.*", Pattern.CASE_INSENSITIVE),
-            Pattern.compile(".*退下.*", Pattern.CASE_INSENSITIVE),
-            Pattern.compile(".*走了.*", Pattern.CASE_INSENSITIVE),
-            Pattern.compile(".*我?要?走了.*", Pattern.CASE_INSENSITIVE),
-            Pattern.compile(".*结束对话.*", Pattern.CASE_INSENSITIVE),
-            Pattern.compile(".*退出.*", Pattern.CASE_INSENSITIVE),
-            Pattern.compile(".*告辞.*", Pattern.CASE_INSENSITIVE),
-            Pattern.compile(".*告退.*", Pattern.CASE_INSENSITIVE),
-            Pattern.compile(".*(?:我|你)?(?:先)?(?:要)?离开.*", Pattern.CASE_INSENSITIVE),
-            Pattern.compile(".*(?:我|你)?(?:先)?下线.*", Pattern.CASE_INSENSITIVE),
-            Pattern.compile(".*bye\\s*bye.*", Pattern.CASE_INSENSITIVE),
-            Pattern.compile(".*goodbye.*", Pattern.CASE_INSENSITIVE),
-            Pattern.compile(".*see\\s+you.*", Pattern.CASE_INSENSITIVE),
-            Pattern.compile(".*see\\s+ya.*", Pattern.CASE_INSENSITIVE)
+    private static final List<String> EXACT_KEYWORDS = Arrays.asList(
+            "拜拜",
+            "再见",
+            "退下",
+            "走了",
+            "结束对话",
+            "退出",
+            "告辞",
+            "告退",
+            "离开",
+            "下线",
+            "byebye",
+            "bye bye",
+            "goodbye",
+            "see you",
+            "see ya"
     );
 
     /**
-     * 排除的短语模式
-     * 包含这些短语时不应该触发退出
+     * 排除的短语
+     * 否定词出现在动作之前时不应该触发退出
      * 例如："不要退出"、"别走"、"不离开" 等
      */
-    private static final List<Pattern> EXCLUDE_PATTERNS = Arrays.asList(
-            Pattern.compile(".*不.*(?:退出|离开|走|退下|结束).*", Pattern.CASE_INSENSITIVE),
-            Pattern.compile(".*别.*(?:退出|离开|走|退下|结束).*", Pattern.CASE_INSENSITIVE),
-            Pattern.compile(".*不要.*(?:退出|离开|走|退下|结束).*", Pattern.CASE_INSENSITIVE),
-            Pattern.compile(".*为什么.*(?:退出|离开|走|退下|结束).*", Pattern.CASE_INSENSITIVE),
-            Pattern.compile(".*怎么.*(?:退出|离开|走|退下|结束).*", Pattern.CASE_INSENSITIVE),
-            Pattern.compile(".*如何.*(?:退出|离开|走|退下|结束).*", Pattern.CASE_INSENSITIVE),
-            Pattern.compile(".*能否.*(?:退出|离开|走|退下|结束).*", Pattern.CASE_INSENSITIVE),
-            Pattern.compile(".*可以.*(?:退出|离开|走|退下|结束).*", Pattern.CASE_INSENSITIVE),
-            Pattern.compile(".*会.*(?:退出|离开|走|退下|结束).*", Pattern.CASE_INSENSITIVE),
-            Pattern.compile(".*什么.*(?:退出|离开|走|退下|结束).*", Pattern.CASE_INSENSITIVE),
-            Pattern.compile(".*don't.*(?:leave|exit|quit|bye).*", Pattern.CASE_INSENSITIVE),
-            Pattern.compile(".*not.*(?:leave|exit|quit|bye).*", Pattern.CASE_INSENSITIVE)
-    );
+    private static final List<String> NEGATIONS = Arrays.asList(
+            "不", "别", "不要", "为什么", "怎么", "如何", "能否", "可以", "会", "什么");
+    private static final List<String> NEGATED_ACTIONS = Arrays.asList(
+            "退出", "离开", "走", "退下", "结束");
+    private static final List<String> EN_NEGATIONS = Arrays.asList(
+            "don't", "not");
+    private static final List<String> EN_NEGATED_ACTIONS = Arrays.asList(
+            "leave", "exit", "quit", "bye");
+
+    private static final String EXIT = "EXIT";
+
+    private static final IntentKeywordMatcher MATCHER = new IntentKeywordMatcher(intentKeywords(EXIT, 0));
 
     /**
-     * 检测输入文本是否包含退出意图
-     * 
-     * @param input 用户输入的文本
-     * @return 如果检测到退出意图返回 true，否则返回 false
+     * 退出意图的全部关键词，供 IntentDetector 与其他意图的关键词一起编译
+     *
+     * @param intent   意图类型
+     * @param priority 意图优先级
      */
-    public boolean detectExitIntent(String input) {
-        if (input == null || input.trim().isEmpty()) {
-            return false;
+    public static List<IntentKeyword> intentKeywords(String intent, int priority) {
+        List<IntentKeyword> keywords = new ArrayList<>();
+        for (String keyword : EXACT_KEYWORDS) {
+            keywords.add(IntentKeyword.keyword(intent, priority, keyword));
         }
-
-        // 去除空格和标点符号，统一转为小写
-        String normalizedInput = input.trim().toLowerCase();
-        
-        // 首先检查排除模式，如果匹配到排除模式则不触发退出
-        for (Pattern excludePattern : EXCLUDE_PATTERNS) {
-            if (excludePattern.matcher(normalizedInput).matches()) {
-                return false;
-            }
+        // 简单关键词只适用于单独的短消息
+        for (String keyword : EXIT_KEYWORDS) {
+            keywords.add(IntentKeyword.shortInputKeyword(intent, priority, keyword));
         }
-
-        // 检查精确匹配模式
-        for (Pattern pattern : EXACT_PATTERNS) {
-            if (pattern.matcher(normalizedInput).matches()) {
-                return true;
-            }
+        for (String keyword : NEGATIONS) {
+            keywords.add(IntentKeyword.negation(intent, "zh", keyword));
         }
-
-        // 检查简单关键词（适用于单独的短消息）
-        // 只有当输入很短（少于15个字符）时才使用简单关键词匹配
-        if (normalizedInput.length() <= 15) {
-            for (String keyword : EXIT_KEYWORDS) {
-                if (normalizedInput.contains(keyword.toLowerCase())) {
-                    return true;
-                }
-            }
+        for (String keyword : NEGATED_ACTIONS) {
+            keywords.add(IntentKeyword.negatable(intent, "zh", keyword));
+        }
+        for (String keyword : EN_NEGATIONS) {
+            keywords.add(IntentKeyword.negation(intent, "en", keyword));
         }
+        for (String keyword : EN_NEGATED_ACTIONS) {
+            keywords.add(IntentKeyword.negatable(intent, "en", keyword));
+        }
+        return keywords;
+    }
 
-        return false;
+    /**
+     * 检测输入文本是否包含退出意图
+     * 
+     * @param input 用户输入的文本
+     * @return 如果检测到退出意图返回 true，否则返回 false
+     */
+    public boolean detectExitIntent(String input) {
+        return MATCHER.match(input) != null;
     }
 
     /**
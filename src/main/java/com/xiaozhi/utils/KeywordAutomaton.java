@@ -0,0 +1,183 @@
+package com.xiaozhi.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * 多关键词匹配（Aho-Corasick自动机）。
+ * 所有关键词编译为一个自动机，一次扫描文本即可找出所有关键词的所有出现位置，耗时与关键词数量无关。
+ * 构建后不可修改，可被多个线程同时使用；关键词变化时构建新的自动机替换即可。
+ *
+ * @param <T> 关键词附带的数据
+ */
+public final class KeywordAutomaton<T> {
+
+    /**
+     * 匹配回调
+     */
+    @FunctionalInterface
+    public interface Visitor<T> {
+        /**
+         * @param start 关键词在文本中的起始位置
+         * @param end   关键词在文本中的结束位置（不含）
+         * @param value 关键词附带的数据
+         */
+        void onMatch(int start, int end, T value);
+    }
+
+    // 每个状态的转移字符（升序）和目标状态，状态0为根
+    private final char[][] keys;
+    private final int[][] targets;
+    // 失败指针
+    private final int[] fail;
+    // 沿失败指针最近的有输出的状态，没有为0
+    private final int[] outputLink;
+    // 状态对应的字符串长度
+    private final int[] depth;
+    // 在该状态结束的关键词的数据，没有为null
+    private final Object[][] outputs;
+    private final int size;
+
+    private KeywordAutomaton(char[][] keys, int[][] targets, int[] fail, int[] outputLink, int[] depth,
+                             Object[][] outputs, int size) {
+        this.keys = keys;
+        this.targets = targets;
+        this.fail = fail;
+        this.outputLink = outputLink;
+        this.depth = depth;
+        this.outputs = outputs;
+        this.size = size;
+    }
+
+    public static <T> Builder<T> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * 关键词数量
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 按结束位置顺序回调文本中所有关键词的出现，结束位置相同时较长的关键词在前
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachMatch(CharSequence text, Visitor<T> visitor) {
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int next;
+            while ((next = next(state, c)) < 0 && state != 0) {
+                state = fail[state];
+            }
+            state = Math.max(next, 0);
+            for (int s = outputs[state] != null ? state : outputLink[state]; s != 0; s = outputLink[s]) {
+                for (Object value : outputs[s]) {
+                    visitor.onMatch(i + 1 - depth[s], i + 1, (T) value);
+                }
+            }
+        }
+    }
+
+    private int next(int state, char c) {
+        int index = Arrays.binarySearch(keys[state], c);
+        return index < 0 ? -1 : targets[state][index];
+    }
+
+    public static final class Builder<T> {
+        private final List<TreeMap<Character, Integer>> children = new ArrayList<>();
+        private final List<List<Object>> outputs = new ArrayList<>();
+        private final List<Integer> depth = new ArrayList<>();
+        private int size;
+
+        private Builder() {
+            newState(0);
+        }
+
+        /**
+         * 添加关键词，同一关键词可以添加多次，匹配时各自回调
+         */
+        public Builder<T> add(String keyword, T value) {
+            if (keyword == null || keyword.isEmpty()) {
+                throw new IllegalArgumentException("关键词不能为空");
+            }
+            int state = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                Integer next = children.get(state).get(keyword.charAt(i));
+                if (next == null) {
+                    next = newState(i + 1);
+                    children.get(state).put(keyword.charAt(i), next);
+                }
+                state = next;
+            }
+            if (outputs.get(state) == null) {
+                outputs.set(state, new ArrayList<>(1));
+            }
+            outputs.get(state).add(value);
+            size++;
+            return this;
+        }
+
+        public KeywordAutomaton<T> build() {
+            int count = children.size();
+            char[][] keys = new char[count][];
+            int[][] targets = new int[count][];
+            for (int state = 0; state < count; state++) {
+                TreeMap<Character, Integer> map = children.get(state);
+                keys[state] = new char[map.size()];
+                targets[state] = new int[map.size()];
+                int index = 0;
+                for (var entry : map.entrySet()) {
+                    keys[state][index] = entry.getKey();
+                    targets[state][index] = entry.getValue();
+                    index++;
+                }
+            }
+
+            // 按广度优先顺序计算失败指针，父状态的失败指针总是先于子状态计算
+            int[] fail = new int[count];
+            int[] outputLink = new int[count];
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            for (int child : targets[0]) {
+                queue.add(child);
+            }
+            while (!queue.isEmpty()) {
+                int state = queue.poll();
+                for (int i = 0; i < keys[state].length; i++) {
+                    char c = keys[state][i];
+                    int child = targets[state][i];
+                    int f = fail[state];
+                    int index;
+                    while ((index = Arrays.binarySearch(keys[f], c)) < 0 && f != 0) {
+                        f = fail[f];
+                    }
+                    fail[child] = index >= 0 ? targets[f][index] : 0;
+                    int link = fail[child];
+                    outputLink[child] = outputs.get(link) != null ? link : outputLink[link];
+                    queue.add(child);
+                }
+            }
+
+            Object[][] outputArray = new Object[count][];
+            int[] depthArray = new int[count];
+            for (int state = 0; state < count; state++) {
+                List<Object> values = outputs.get(state);
+                outputArray[state] = values == null ? null : values.toArray();
+                depthArray[state] = depth.get(state);
+            }
+            return new KeywordAutomaton<>(keys, targets, fail, outputLink, depthArray, outputArray, size);
+        }
+
+        private int newState(int stateDepth) {
+            children.add(new TreeMap<>());
+            outputs.add(null);
+            depth.add(stateDepth);
+            return children.size() - 1;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.xiaozhi.utils;
+
+import javazoom.jl.decoder.Bitstream;
+import javazoom.jl.decoder.Decoder;
+import javazoom.jl.decoder.Header;
+import javazoom.jl.decoder.JavaLayerException;
+import javazoom.jl.decoder.SampleBuffer;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * 纯Java的MP3解码工具
+ * 逐帧解码为PCM，多声道取平均混为单声道，再重采样到目标采样率，全程在内存中完成，不依赖ffmpeg进程。
+ */
+public final class Mp3Decoder {
+
+    private Mp3Decoder() {
+    }
+
+    /**
+     * 解码MP3为单声道16位小端PCM
+     *
+     * @param in         MP3数据流，由调用方负责关闭
+     * @param targetRate 目标采样率
+     * @return PCM数据
+     * @throws IOException 数据不是可解码的MP3时抛出
+     */
+    public static byte[] decode(InputStream in, int targetRate) throws IOException {
+        Bitstream bitstream = new Bitstream(in instanceof BufferedInputStream ? in : new BufferedInputStream(in));
+        Decoder decoder = new Decoder();
+
+        short[] mono = new short[16384];
+        int length = 0;
+        int sampleRate = 0;
+        try {
+            Header header;
+            while ((header = bitstream.readFrame()) != null) {
+                SampleBuffer frame = (SampleBuffer) decoder.decodeFrame(header, bitstream);
+                bitstream.closeFrame();
+
+                int channels = frame.getChannelCount();
+                int frameRate = frame.getSampleFrequency();
+                if (sampleRate == 0) {
+                    sampleRate = frameRate;
+                } else if (frameRate != sampleRate) {
+                    throw new IOException("MP3采样率不一致: " + sampleRate + " / " + frameRate);
+                }
+
+                short[] buffer = frame.getBuffer();
+                int samples = frame.getBufferLength() / channels;
+                if (length + samples > mono.length) {
+                    mono = Arrays.copyOf(mono, Math.max(mono.length * 2, length + samples));
+                }
+                if (channels == 1) {
+                    System.arraycopy(buffer, 0, mono, length, samples);
+                } else {
+                    for (int i = 0; i < samples; i++) {
+                        int sum = 0;
+                        for (int c = 0; c < channels; c++) {
+                            sum += buffer[i * channels + c];
+                        }
+                        mono[length + i] = (short) (sum / channels);
+                    }
+                }
+                length += samples;
+            }
+        } catch (JavaLayerException e) {
+            throw new IOException("MP3解码失败: " + e.getMessage(), e);
+        }
+
+        if (length == 0) {
+            throw new IOException("未解码出任何MP3帧");
+        }
+        short[] samples = Arrays.copyOf(mono, length);
+        return AudioResampler.toBytes(AudioResampler.resample(samples, sampleRate, targetRate));
+    }
+
+    /**
+     * 读取帧头累加时长，不做解码
+     *
+     * @param in MP3数据流，由调用方负责关闭
+     * @return 时长（秒）
+     */
+    public static double duration(InputStream in) throws IOException {
+        Bitstream bitstream = new Bitstream(in instanceof BufferedInputStream ? in : new BufferedInputStream(in));
+        double millis = 0;
+        int frames = 0;
+        try {
+            Header header;
+            while ((header = bitstream.readFrame()) != null) {
+                millis += header.ms_per_frame();
+                frames++;
+                bitstream.closeFrame();
+            }
+        } catch (JavaLayerException e) {
+            throw new IOException("读取MP3帧头失败: " + e.getMessage(), e);
+        }
+        if (frames == 0) {
+            throw new IOException("未找到MP3帧");
+        }
+        return millis / 1000.0;
+    }
+}
@@ -23,7 +23,8 @@ public class OpusProcessor {
 
     // 缓存
     private OpusDecoder decoders = initDecoder();
-    private final OpusEncoder encoders = initEncoder();
+    // 编码器按需创建，仅做解码的场景（如VAD）不必付出编码器的初始化开销
+    private OpusEncoder encoders;
 
     // 残留数据状态缓存
     private final LeftoverState leftoverStates = new LeftoverState();
@@ -34,6 +35,8 @@ public class OpusProcessor {
     private static final int CHANNELS = AudioUtils.CHANNELS;
     public static final int OPUS_FRAME_DURATION_MS = AudioUtils.OPUS_FRAME_DURATION_MS;
     private static final int MAX_SIZE = 1275;
+    // 单个Opus包最多可解出120ms的样本
+    public static final int MAX_DECODE_SAMPLES = FRAME_SIZE * 12;
 
     /**
      * 残留数据状态类
@@ -62,18 +65,33 @@ public class OpusProcessor {
             return new byte[0];
         }
 
-        try {
-            OpusDecoder decoder = decoders;
-            short[] buf = new short[FRAME_SIZE * 12];
-            int samples = decoder.decode(data, 0, data.length, buf, 0, buf.length, false);
-
-            byte[] pcm = new byte[samples * 2];
-            for (int i = 0; i < samples; i++) {
-                pcm[i * 2] = (byte) (buf[i] & 0xFF);
-                pcm[i * 2 + 1] = (byte) ((buf[i] >> 8) & 0xFF);
-            }
+        short[] buf = new short[MAX_DECODE_SAMPLES];
+        int samples = opusToPcm(data, buf);
+
+        byte[] pcm = new byte[samples * 2];
+        for (int i = 0; i < samples; i++) {
+            pcm[i * 2] = (byte) (buf[i] & 0xFF);
+            pcm[i * 2 + 1] = (byte) ((buf[i] >> 8) & 0xFF);
+        }
+
+        return pcm;
+    }
+
+    /**
+     * Opus解码到调用方提供的样本缓冲区，不做任何额外分配。
+     * 适用于逐帧解码的热路径，调用方应复用同一个 OpusProcessor 和缓冲区。
+     *
+     * @param data Opus数据包
+     * @param out  输出缓冲区，长度建议不小于 {@link #MAX_DECODE_SAMPLES}
+     * @return 解码得到的样本数
+     */
+    public int opusToPcm(byte[] data, short[] out) throws OpusException {
+        if (data == null || data.length == 0) {
+            return 0;
+        }
 
-            return pcm;
+        try {
+            return decoders.decode(data, 0, data.length, out, 0, out.length, false);
         } catch (OpusException e) {
             logger.warn("解码失败: {}", e.getMessage());
             // 重置解码器
@@ -100,6 +118,9 @@ public class OpusProcessor {
         int frameSize = FRAME_SIZE;
 
         // 获取编码器
+        if (encoders == null) {
+            encoders = initEncoder();
+        }
         OpusEncoder encoder = encoders;
 
         // 处理PCM
@@ -202,7 +223,31 @@ public class OpusProcessor {
         }
         return frames;
     }
-    
+
+    /**
+     * 流式编码结束时调用：将残留的不足一帧的样本补零编码为最后一帧，并重置流状态
+     */
+    public List<byte[]> flush() {
+        List<byte[]> frames = new ArrayList<>();
+        LeftoverState state = leftoverStates;
+        if (state.leftoverCount > 0 && encoders != null) {
+            short[] shortBuf = new short[FRAME_SIZE];
+            System.arraycopy(state.leftoverBuffer, 0, shortBuf, 0, state.leftoverCount);
+            byte[] opusBuf = new byte[MAX_SIZE];
+            try {
+                int opusLen = encoders.encode(shortBuf, 0, FRAME_SIZE, opusBuf, 0, opusBuf.length);
+                if (opusLen > 0) {
+                    frames.add(Arrays.copyOf(opusBuf, opusLen));
+                }
+            } catch (Exception | AssertionError e) {
+                logger.warn("尾帧编码失败: {}", e.getMessage());
+            }
+        }
+        state.clear();
+        state.isFirst = true;
+        return frames;
+    }
+
     /**
      * 获取解码器
      */
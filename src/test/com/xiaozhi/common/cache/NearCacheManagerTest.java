@@ -0,0 +1,125 @@
+package com.xiaozhi.common.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 两级缓存测试
+ * 使用内存缓存替代Redis缓存，用内存消息总线替代Redis发布订阅，模拟两个节点
+ */
+public class NearCacheManagerTest {
+
+    private static final String CACHE_NAME = "XiaoZhi:SysRole";
+
+    private final AtomicInteger remoteReads = new AtomicInteger();
+    private final AtomicInteger invalidations = new AtomicInteger();
+    private final List<NearCacheManager> nodes = new ArrayList<>();
+    private NearCacheManager nodeA;
+    private NearCacheManager nodeB;
+
+    @BeforeEach
+    void setUp() {
+        // 两个节点共享同一个"Redis"
+        ConcurrentMapCacheManager redis = new ConcurrentMapCacheManager() {
+            @Override
+            protected Cache createConcurrentMapCache(String name) {
+                return new ConcurrentMapCache(name, true) {
+                    @Override
+                    public ValueWrapper get(Object key) {
+                        remoteReads.incrementAndGet();
+                        return super.get(key);
+                    }
+                };
+            }
+        };
+        nodeA = node(redis, 100, 60_000);
+        nodeB = node(redis, 100, 60_000);
+    }
+
+    private NearCacheManager node(ConcurrentMapCacheManager redis, int maxSize, long ttlMillis) {
+        NearCacheManager manager = new NearCacheManager(redis, Set.of(CACHE_NAME), maxSize, ttlMillis,
+            message -> {
+                invalidations.incrementAndGet();
+                nodes.forEach(n -> n.onInvalidation(message));
+            });
+        nodes.add(manager);
+        return manager;
+    }
+
+    @Test
+    void warmLookupDoesNotTouchRemote() {
+        nodeA.getCache(CACHE_NAME).put(1, "role-1");
+        remoteReads.set(0);
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("role-1", nodeA.getCache(CACHE_NAME).get(1).get());
+        }
+        assertEquals(0, remoteReads.get());
+    }
+
+    @Test
+    void updateOnOneNodeInvalidatesOtherNodes() {
+        Cache a = nodeA.getCache(CACHE_NAME);
+        Cache b = nodeB.getCache(CACHE_NAME);
+
+        a.put(1, "v1");
+        assertEquals("v1", b.get(1).get());
+
+        a.put(1, "v2");
+        assertEquals("v2", b.get(1).get());
+
+        a.evict(1);
+        assertNull(b.get(1));
+    }
+
+    @Test
+    void fillAfterMissIsNotBroadcast() {
+        Cache a = nodeA.getCache(CACHE_NAME);
+        Cache b = nodeB.getCache(CACHE_NAME);
+        b.put(1, "v1");
+        assertEquals("v1", b.get(1).get());
+        invalidations.set(0);
+
+        // @Cacheable 未命中后回填：先get未命中，再put同一个key
+        assertNull(a.get(2));
+        a.put(2, "v2");
+        assertEquals(0, invalidations.get());
+        // 其他节点的一级缓存不受影响
+        remoteReads.set(0);
+        assertEquals("v1", b.get(1).get());
+        assertEquals(0, remoteReads.get());
+
+        // 没有先未命中的put是修改，仍然广播
+        a.put(2, "v3");
+        assertEquals(1, invalidations.get());
+    }
+
+    @Test
+    void localCacheIsBoundedAndExpires() throws InterruptedException {
+        nodes.clear();
+        ConcurrentMapCacheManager redis = new ConcurrentMapCacheManager();
+        NearCacheManager small = node(redis, 2, 50);
+        Cache cache = small.getCache(CACHE_NAME);
+        cache.put(1, "a");
+        cache.put(2, "b");
+        cache.put(3, "c");
+
+        assertEquals(2, small.getNearCache(CACHE_NAME).localSize());
+
+        // 直接修改"Redis"，一级缓存过期后应读到新值
+        redis.getCache(CACHE_NAME).put(3, "c2");
+        assertEquals("c", cache.get(3).get());
+        Thread.sleep(80);
+        assertEquals("c2", cache.get(3).get());
+    }
+}
@@ -0,0 +1,104 @@
+package com.xiaozhi.common.ip;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 用小型 xdb 数据文件验证IP所在地查询。
+ * ip/ip2region-test.xdb 只包含以下地址段，其余地址查不到：
+ * 1.0.1.0-1.0.3.255 福州，1.0.4.0-1.0.7.255 墨尔本，1.0.8.0-1.0.15.255 广州，8.8.8.0/24 美国，
+ * 58.60.0.0-58.61.255.255 深圳（跨两个/16段），114.114.114.0/24 南京，202.106.0.0/16 北京，223.5.5.0/24 杭州
+ */
+public class Ip2RegionIpLocatorTest {
+
+    private static final String FIXTURE = "/ip/ip2region-test.xdb";
+
+    @Test
+    void locatesAddressesInFixture() throws Exception {
+        Ip2RegionIpLocator locator = locator(100);
+        assertTrue(locator.isLoaded());
+
+        assertEquals("中国 福建省 福州市", locator.locate("1.0.1.0"));
+        assertEquals("中国 福建省 福州市", locator.locate("1.0.3.255"));
+        assertEquals("澳大利亚 维多利亚 墨尔本", locator.locate("1.0.4.0"));
+        assertEquals("中国 广东省 广州市", locator.locate("1.0.15.255"));
+        assertEquals("美国", locator.locate("8.8.8.8"));
+        assertEquals("中国 广东省 深圳市", locator.locate("58.60.255.255"));
+        assertEquals("中国 广东省 深圳市", locator.locate("58.61.0.1"));
+        assertEquals("中国 江苏省 南京市", locator.locate("114.114.114.114"));
+        assertEquals("中国 北京 北京市", locator.locate("202.106.0.20"));
+        assertEquals("中国 浙江省 杭州市", locator.locate("223.5.5.5"));
+    }
+
+    @Test
+    void unknownPrivateAndInvalidAddressesReturnNull() throws Exception {
+        Ip2RegionIpLocator locator = locator(100);
+
+        // 段内的空隙和数据文件未覆盖的段
+        assertNull(locator.locate("1.0.0.255"));
+        assertNull(locator.locate("1.0.16.0"));
+        assertNull(locator.locate("58.62.0.0"));
+        assertNull(locator.locate("255.255.255.255"));
+
+        assertNull(locator.locate("192.168.1.10"));
+        assertNull(locator.locate("172.20.0.1"));
+        assertNull(locator.locate("10.0.0.1"));
+        assertNull(locator.locate("127.0.0.1"));
+
+        assertNull(locator.locate(null));
+        assertNull(locator.locate(""));
+        assertNull(locator.locate("0:0:0:0:0:0:0:1"));
+        assertNull(locator.locate("1.0.1.256"));
+        assertNull(locator.locate("1.0.1"));
+        assertNull(locator.locate("1..1.1"));
+    }
+
+    @Test
+    void recentResultsAreCached() throws Exception {
+        Ip2RegionIpLocator locator = locator(2);
+
+        locator.locate("8.8.8.8");
+        locator.locate("8.8.8.8");
+        locator.locate("223.5.5.5");
+        locator.locate("8.8.8.8");
+        // 超过容量时淘汰最久未使用的 223.5.5.5
+        locator.locate("114.114.114.114");
+        assertEquals(new Ip2RegionIpLocator.Stats(2, 2, 3), locator.getStats());
+        locator.locate("223.5.5.5");
+        assertEquals(new Ip2RegionIpLocator.Stats(2, 2, 4), locator.getStats());
+    }
+
+    @Test
+    void unknownResultsAreCached() throws Exception {
+        Ip2RegionIpLocator locator = locator(100);
+
+        assertNull(locator.locate("1.0.16.0"));
+        assertNull(locator.locate("1.0.16.0"));
+        assertNull(locator.locate("0:0:0:0:0:0:0:1"));
+        assertNull(locator.locate("0:0:0:0:0:0:0:1"));
+        // 查不到的结果也缓存，第二次查询不再查数据文件或在线查询
+        assertEquals(new Ip2RegionIpLocator.Stats(2, 2, 2), locator.getStats());
+    }
+
+    @Test
+    void missingDatabaseFileReturnsNull() {
+        Ip2RegionIpLocator locator = new Ip2RegionIpLocator("models/not-exists.xdb", 100, false);
+        assertFalse(locator.isLoaded());
+        assertNull(locator.locate("8.8.8.8"));
+    }
+
+    @Test
+    void regionIsFormattedLikeDeviceLocation() {
+        assertEquals("中国 广东省 深圳市", Ip2RegionIpLocator.toLocation("中国|0|广东省|深圳市|电信"));
+        assertEquals("中国 上海", Ip2RegionIpLocator.toLocation("中国|0|上海|上海|电信"));
+        assertNull(Ip2RegionIpLocator.toLocation("0|0|0|0|0"));
+    }
+
+    private static Ip2RegionIpLocator locator(int cacheSize) throws Exception {
+        Path path = Path.of(Ip2RegionIpLocatorTest.class.getResource(FIXTURE).toURI());
+        return new Ip2RegionIpLocator(path.toString(), cacheSize, false);
+    }
+}
@@ -0,0 +1,174 @@
+package com.xiaozhi.communication.common;
+
+import com.xiaozhi.communication.server.websocket.WebSocketSession;
+import com.xiaozhi.entity.SysDevice;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 10000个会话下的设备查找与超时检查：
+ * 设备ID索引 vs 遍历全部会话（按读取设备信息的次数比较）；时间轮每秒只检查到期的会话 vs 每次检查遍历全部会话。
+ */
+public class SessionManagerTest {
+
+    private static final int SESSIONS = 10_000;
+    private static final long TIMEOUT_MS = 20_000;
+
+    private SessionManager sessionManager;
+    private ConcurrentHashMap<String, ChatSession> sessions;
+    // 所有会话 getSysDevice 的调用次数
+    private final AtomicLong deviceReads = new AtomicLong();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        sessionManager = new SessionManager();
+        ReflectionTestUtils.setField(sessionManager, "applicationContext", mock(ApplicationContext.class));
+        sessions = (ConcurrentHashMap<String, ChatSession>) ReflectionTestUtils.getField(sessionManager, "sessions");
+    }
+
+    @Test
+    void deviceLookupUsesIndex() {
+        for (int i = 0; i < SESSIONS; i++) {
+            String sessionId = "session-" + i;
+            sessionManager.registerSession(sessionId, new FakeSession(sessionId));
+            sessionManager.registerDevice(sessionId, new SysDevice().setDeviceId(deviceId(i)));
+        }
+
+        // 遍历查找每次都要读取会话的设备信息，平均读取半数会话
+        deviceReads.set(0);
+        scanLookups(100);
+        assertTrue(deviceReads.get() > 100L * SESSIONS / 4, "遍历读取设备信息 " + deviceReads.get() + " 次");
+
+        // 索引查找不读取任何会话的设备信息
+        deviceReads.set(0);
+        indexLookups(1000);
+        assertEquals(0, deviceReads.get());
+
+        assertEquals("session-1234", sessionManager.getSessionByDeviceId(deviceId(1234)).getSessionId());
+        assertNull(sessionManager.getSessionByDeviceId("unknown"));
+    }
+
+    @Test
+    void deviceIndexFollowsReconnectAndClose() {
+        sessionManager.registerSession("s1", new FakeSession("s1"));
+        sessionManager.registerDevice("s1", new SysDevice().setDeviceId("AA:BB"));
+        // 同一设备重连，旧连接稍后才关闭
+        sessionManager.registerSession("s2", new FakeSession("s2"));
+        sessionManager.registerDevice("s2", new SysDevice().setDeviceId("AA:BB"));
+        assertEquals("s2", sessionManager.getSessionByDeviceId("AA:BB").getSessionId());
+
+        sessionManager.closeSession("s1");
+        assertEquals("s2", sessionManager.getSessionByDeviceId("AA:BB").getSessionId());
+        assertTrue(sessionManager.findConversation("AA:BB").isEmpty());
+
+        sessionManager.closeSession("s2");
+        assertNull(sessionManager.getSessionByDeviceId("AA:BB"));
+    }
+
+    @Test
+    void wheelChecksOnlyDueSessions() {
+        long start = System.currentTimeMillis();
+        Set<String> expired = ConcurrentHashMap.newKeySet();
+        SessionTimeoutWheel wheel = new SessionTimeoutWheel(1000, 64, TIMEOUT_MS,
+                session -> assertTrue(expired.add(session.getSessionId()), "重复超时: " + session.getSessionId()));
+
+        // 最后活动时间均匀分布在过去20秒内
+        List<FakeSession> all = new ArrayList<>();
+        for (int i = 0; i < SESSIONS; i++) {
+            FakeSession session = new FakeSession("session-" + i);
+            session.setLastActivityTime(Instant.ofEpochMilli(start - (long) i * TIMEOUT_MS / SESSIONS));
+            all.add(session);
+            wheel.add(session);
+        }
+        // 偶数会话持续有活动，一部分会话在超时前关闭
+        Set<String> removed = new HashSet<>();
+        for (int i = 1; i < SESSIONS; i += 10) {
+            wheel.remove(all.get(i).getSessionId());
+            removed.add(all.get(i).getSessionId());
+        }
+
+        int maxChecked = 0;
+        long totalChecked = 0;
+        for (long now = start + 1000; now <= start + TIMEOUT_MS + 1000; now += 1000) {
+            for (int i = 0; i < SESSIONS; i += 2) {
+                all.get(i).setLastActivityTime(Instant.ofEpochMilli(now));
+            }
+            int checked = wheel.advance(now);
+            maxChecked = Math.max(maxChecked, checked);
+            totalChecked += checked;
+        }
+        // 每个tick只检查约 SESSIONS / 20 个到期会话，21次tick合计远少于全量扫描
+        assertTrue(maxChecked <= SESSIONS / 20 + 50, "单次检查 " + maxChecked);
+        assertTrue(totalChecked < 21L * SESSIONS / 10, "共检查 " + totalChecked);
+        for (int i = 0; i < SESSIONS; i++) {
+            String id = all.get(i).getSessionId();
+            boolean shouldExpire = i % 2 == 1 && !removed.contains(id);
+            assertEquals(shouldExpire, expired.contains(id), id);
+        }
+        assertEquals(SESSIONS - removed.size(), wheel.size());
+    }
+
+    private void scanLookups(int count) {
+        for (int i = 0; i < count; i++) {
+            String deviceId = deviceId((i * 7919) % SESSIONS);
+            ChatSession found = sessions.values().stream()
+                    .filter(session -> session.getSysDevice() != null && deviceId.equals(session.getSysDevice().getDeviceId()))
+                    .findFirst()
+                    .orElse(null);
+            assertNotNull(found);
+        }
+    }
+
+    private void indexLookups(int count) {
+        for (int i = 0; i < count; i++) {
+            assertNotNull(sessionManager.getSessionByDeviceId(deviceId((i * 7919) % SESSIONS)));
+        }
+    }
+
+    private static String deviceId(int i) {
+        return String.format("%012x", i);
+    }
+
+    private class FakeSession extends WebSocketSession {
+        private final String id;
+
+        FakeSession(String id) {
+            super(id);
+            this.id = id;
+        }
+
+        @Override
+        public String getSessionId() {
+            return id;
+        }
+
+        @Override
+        public SysDevice getSysDevice() {
+            deviceReads.incrementAndGet();
+            return super.getSysDevice();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
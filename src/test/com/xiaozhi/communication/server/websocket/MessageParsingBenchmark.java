@@ -0,0 +1,76 @@
+package com.xiaozhi.communication.server.websocket;
+
+import com.xiaozhi.communication.domain.Message;
+import com.xiaozhi.communication.domain.UnknownMessage;
+import com.xiaozhi.utils.JsonUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WebSocketHandler 解析设备文本消息的耗时，与 handleTextMessage 一样用 JsonUtil 反序列化为 {@link Message}。
+ * 消息来自测试资源 websocket/device-messages.jsonl（hello、listen、abort、mcp、iot、goodbye）。
+ * <p>
+ * 运行：在IDE中执行 main 方法，或 mvn -P benchmark test
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageParsingBenchmark {
+
+    private static final String MESSAGES = "/websocket/device-messages.jsonl";
+
+    private List<String> payloads;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        try (InputStream in = MessageParsingBenchmark.class.getResourceAsStream(MESSAGES)) {
+            if (in == null) {
+                throw new IllegalStateException("缺少测试消息 " + MESSAGES);
+            }
+            payloads = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)).lines()
+                    .filter(line -> !line.isBlank())
+                    .toList();
+        }
+        for (String payload : payloads) {
+            Message message = JsonUtil.fromJson(payload, Message.class);
+            if (message == null || message instanceof UnknownMessage) {
+                throw new IllegalStateException("消息解析失败: " + payload);
+            }
+        }
+    }
+
+    @Benchmark
+    public Message parse() {
+        String payload = payloads.get(index);
+        index = (index + 1) % payloads.size();
+        return JsonUtil.fromJson(payload, Message.class);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(MessageParsingBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,383 @@
+package com.xiaozhi.communication.server.websocket;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.websocket.DeploymentException;
+import jakarta.websocket.server.ServerContainer;
+import jakarta.websocket.server.ServerEndpointConfig;
+import org.apache.catalina.Context;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.websocket.server.WsSci;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+import org.springframework.web.socket.adapter.standard.StandardWebSocketHandlerAdapter;
+import org.springframework.web.socket.adapter.standard.StandardWebSocketSession;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 发送队列测试：嵌入式Tomcat + 手写的慢速WebSocket客户端（小接收缓冲区，读取很慢或不读取），
+ * 对比直接调用 sendMessage 与经过 {@link OutboundQueue} 时发送方被阻塞的时间。
+ */
+public class OutboundQueueTest {
+
+    private static final int FRAME_BYTES = 1000;
+    private static final int FRAMES = 200;
+    // 设备端处理一帧的时间，远慢于发送速度
+    private static final long SLOW_READ_MS = 20;
+
+    private Tomcat tomcat;
+    private int port;
+    private CompletableFuture<org.springframework.web.socket.WebSocketSession> serverSession;
+    private final List<Socket> clients = new ArrayList<>();
+
+    @BeforeEach
+    void startServer() throws Exception {
+        serverSession = new CompletableFuture<>();
+        AbstractWebSocketHandler handler = new AbstractWebSocketHandler() {
+            @Override
+            public void afterConnectionEstablished(org.springframework.web.socket.WebSocketSession session) {
+                serverSession.complete(session);
+            }
+        };
+
+        tomcat = new Tomcat();
+        tomcat.setBaseDir(Files.createTempDirectory("tomcat").toString());
+        tomcat.setPort(0);
+        Connector connector = tomcat.getConnector();
+        // 缩小服务端发送缓冲区，慢速客户端很快就会让发送阻塞
+        connector.setProperty("socket.txBufSize", "4096");
+        Context context = tomcat.addContext("", null);
+        Tomcat.addServlet(context, "default", new HttpServlet() {
+        });
+        context.addServletMappingDecoded("/", "default");
+        context.addServletContainerInitializer(new WsSci(), null);
+        context.addServletContainerInitializer((classes, servletContext) -> {
+            ServerContainer container = (ServerContainer) servletContext.getAttribute(ServerContainer.class.getName());
+            try {
+                container.addEndpoint(ServerEndpointConfig.Builder.create(StandardWebSocketHandlerAdapter.class, "/ws")
+                        .configurator(new ServerEndpointConfig.Configurator() {
+                            @Override
+                            @SuppressWarnings("unchecked")
+                            public <T> T getEndpointInstance(Class<T> endpointClass) {
+                                return (T) new StandardWebSocketHandlerAdapter(handler,
+                                        new StandardWebSocketSession(null, null, null, null));
+                            }
+                        }).build());
+            } catch (DeploymentException e) {
+                throw new ServletException(e);
+            }
+        }, null);
+        tomcat.start();
+        port = connector.getLocalPort();
+    }
+
+    @AfterEach
+    void stopServer() throws Exception {
+        for (Socket client : clients) {
+            client.close();
+        }
+        tomcat.stop();
+        tomcat.destroy();
+    }
+
+    @Test
+    void slowClientDoesNotBlockSender() throws Exception {
+        // 直接发送：发送方被慢速客户端拖住
+        SlowClient direct = connect(SLOW_READ_MS);
+        org.springframework.web.socket.WebSocketSession raw = serverSession.get(5, TimeUnit.SECONDS);
+        long directMaxMs = produce(frame -> raw.sendMessage(new BinaryMessage(frame)));
+        direct.close();
+
+        // 经过发送队列
+        serverSession = new CompletableFuture<>();
+        SlowClient queued = connect(SLOW_READ_MS);
+        int limit = 20 * FRAME_BYTES;
+        WebSocketSession session = new WebSocketSession(serverSession.get(5, TimeUnit.SECONDS),
+                new OutboundQueue.Limits(5000, limit, OutboundQueue.OverflowPolicy.DROP_OLDEST));
+        AtomicInteger maxDepth = new AtomicInteger();
+        long queuedMaxMs = produce(frame -> {
+            session.sendBinaryMessage(frame);
+            maxDepth.accumulateAndGet(session.getSendQueueDepth(), Math::max);
+        });
+        session.sendTextMessage("{\"type\":\"tts\",\"state\":\"stop\"}");
+
+        assertTrue(directMaxMs > SLOW_READ_MS, "直接发送应被阻塞: " + directMaxMs + "ms");
+        assertTrue(queuedMaxMs < SLOW_READ_MS, "发送队列不应阻塞发送方: " + queuedMaxMs + "ms");
+        assertTrue(session.getSendBufferedBytes() <= limit + 64);
+        // 队列深度受缓冲上限约束
+        assertTrue(maxDepth.get() <= limit / FRAME_BYTES + 1, "队列最大深度 " + maxDepth.get());
+        assertTrue(session.getDroppedFrames() > 0);
+
+        // 客户端最终收到的帧仍然有序，且控制消息不会被丢弃
+        assertTrue(queued.awaitText(15, TimeUnit.SECONDS), "未收到文本消息");
+        List<Integer> seqs = queued.binarySeqs;
+        assertEquals(FRAMES - session.getDroppedFrames(), seqs.size());
+        for (int i = 1; i < seqs.size(); i++) {
+            assertTrue(seqs.get(i) > seqs.get(i - 1), "帧乱序: " + seqs);
+        }
+        // 丢弃的是最早的帧，最后一帧一定送达
+        assertEquals(FRAMES - 1, seqs.getLast());
+    }
+
+    @Test
+    void concurrentSendersAreSerialized() throws Exception {
+        SlowClient client = connect(0);
+        WebSocketSession session = new WebSocketSession(serverSession.get(5, TimeUnit.SECONDS));
+        int threads = 8;
+        int perThread = 50;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> senders = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            senders.add(Thread.startVirtualThread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    session.sendTextMessage("{\"thread\":" + id + ",\"i\":" + i + "}");
+                    session.sendBinaryMessage(frame(id * perThread + i));
+                }
+            }));
+        }
+        start.countDown();
+        for (Thread sender : senders) {
+            sender.join();
+        }
+        assertTrue(client.awaitCount(threads * perThread * 2, 10, TimeUnit.SECONDS),
+                "收到 " + client.texts.size() + " 条文本, " + client.binarySeqs.size() + " 帧");
+    }
+
+    @Test
+    void closeSendsPendingMessagesFirst() throws Exception {
+        // 与 Player.sendStop 之后关闭会话相同：最后的音频帧和 tts stop 还在队列中
+        SlowClient client = connect(SLOW_READ_MS);
+        WebSocketSession session = new WebSocketSession(serverSession.get(5, TimeUnit.SECONDS));
+        int frames = 20;
+        for (int i = 0; i < frames; i++) {
+            session.sendBinaryMessage(frame(i));
+        }
+        session.sendTextMessage("{\"type\":\"tts\",\"state\":\"stop\"}");
+        // 客户端读完这些消息需要 frames * SLOW_READ_MS，关闭不等待发送完毕
+        long start = System.nanoTime();
+        session.close();
+        long closeMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(closeMs < SLOW_READ_MS, "关闭阻塞了调用方: " + closeMs + "ms");
+        // 关闭后不再接收消息
+        session.sendTextMessage("{\"type\":\"tts\",\"state\":\"start\"}");
+
+        assertTrue(client.awaitText(5, TimeUnit.SECONDS), "未收到 tts stop");
+        assertEquals(frames, client.binarySeqs.size());
+        assertTrue(awaitClosed(session), "发送完毕后应关闭连接");
+        assertEquals(0, session.getSendQueueDepth());
+        assertEquals(List.of("{\"type\":\"tts\",\"state\":\"stop\"}"), client.texts);
+    }
+
+    @Test
+    void closeGivesUpAfterSendTimeLimit() throws Exception {
+        // 客户端完全不读取，已入队的消息发送不完
+        connect(-1);
+        WebSocketSession session = new WebSocketSession(serverSession.get(5, TimeUnit.SECONDS),
+                new OutboundQueue.Limits(300, 1024 * 1024, OutboundQueue.OverflowPolicy.DROP_OLDEST));
+        for (int i = 0; i < FRAMES; i++) {
+            session.sendBinaryMessage(frame(i));
+        }
+        session.close();
+        assertTrue(awaitClosed(session), "超过发送时限后应关闭连接");
+        assertEquals(0, session.getSendQueueDepth());
+    }
+
+    @Test
+    void onlyEmotionMessagesAreCoalesced() throws Exception {
+        SlowClient client = connect(SLOW_READ_MS);
+        WebSocketSession session = new WebSocketSession(serverSession.get(5, TimeUnit.SECONDS));
+        // 先入队的音频帧使后面的文本消息积压在队尾
+        for (int i = 0; i < 10; i++) {
+            session.sendBinaryMessage(frame(i));
+        }
+        String sentenceStart = "{\"type\":\"tts\",\"state\":\"sentence_start\",\"text\":\"好的\"}";
+        String emotion = "{\"session_id\":\"s\",\"type\":\"llm\",\"emotion\":\"happy\",\"text\":\"happy\"}";
+        session.sendTextMessage(sentenceStart);
+        session.sendTextMessage(sentenceStart);
+        session.sendTextMessage(emotion);
+        session.sendTextMessage(emotion);
+
+        assertTrue(client.awaitCount(10 + 3, 5, TimeUnit.SECONDS),
+                "收到 " + client.texts.size() + " 条文本, " + client.binarySeqs.size() + " 帧");
+        // 留出时间收到可能多出的消息
+        Thread.sleep(SLOW_READ_MS * 5);
+        // 重复的句子开始是两句相同的话，不能合并；重复的表情只发送一次
+        assertEquals(List.of(sentenceStart, sentenceStart, emotion), client.texts);
+    }
+
+    @Test
+    void overflowClosePolicyClosesConnection() throws Exception {
+        // 客户端完全不读取
+        connect(-1);
+        WebSocketSession session = new WebSocketSession(serverSession.get(5, TimeUnit.SECONDS),
+                new OutboundQueue.Limits(60000, 20 * FRAME_BYTES, OutboundQueue.OverflowPolicy.CLOSE));
+        for (int i = 0; i < FRAMES && session.isOpen(); i++) {
+            session.sendBinaryMessage(frame(i));
+            Thread.sleep(1);
+        }
+        assertTrue(awaitClosed(session), "缓冲超限后应关闭连接");
+    }
+
+    @Test
+    void sendTimeLimitClosesConnection() throws Exception {
+        connect(-1);
+        WebSocketSession session = new WebSocketSession(serverSession.get(5, TimeUnit.SECONDS),
+                new OutboundQueue.Limits(300, 1024 * 1024, OutboundQueue.OverflowPolicy.DROP_OLDEST));
+        // 一次性入队后不再发送，写线程阻塞在发送上，由看门狗发现超时
+        for (int i = 0; i < FRAMES * 5; i++) {
+            session.sendBinaryMessage(frame(i));
+        }
+        assertTrue(awaitClosed(session), "发送超时后应关闭连接");
+    }
+
+    private interface FrameSender {
+        void send(byte[] frame) throws Exception;
+    }
+
+    /**
+     * 以60ms音频帧的若干倍速率连续发送，返回单次发送调用的最长耗时
+     */
+    private long produce(FrameSender sender) throws Exception {
+        long max = 0;
+        for (int i = 0; i < FRAMES; i++) {
+            long start = System.nanoTime();
+            sender.send(frame(i));
+            max = Math.max(max, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            Thread.sleep(2);
+        }
+        return max;
+    }
+
+    private static byte[] frame(int seq) {
+        return ByteBuffer.allocate(FRAME_BYTES).putInt(seq).array();
+    }
+
+    private static boolean awaitClosed(WebSocketSession session) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (session.isOpen() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        return !session.isOpen();
+    }
+
+    /**
+     * @param readDelayMs 每读取一帧后的等待时间，小于0表示握手后不再读取
+     */
+    private SlowClient connect(long readDelayMs) throws IOException {
+        Socket socket = new Socket();
+        socket.setReceiveBufferSize(4096);
+        socket.connect(new InetSocketAddress("127.0.0.1", port));
+        clients.add(socket);
+        OutputStream out = socket.getOutputStream();
+        out.write(("GET /ws HTTP/1.1\r\nHost: 127.0.0.1:" + port + "\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+                + "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\nSec-WebSocket-Version: 13\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        InputStream in = socket.getInputStream();
+        // 跳过握手响应头
+        int matched = 0;
+        byte[] end = "\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+        while (matched < end.length) {
+            int b = in.read();
+            if (b < 0) {
+                throw new IOException("握手失败");
+            }
+            matched = b == end[matched] ? matched + 1 : (b == end[0] ? 1 : 0);
+        }
+        SlowClient client = new SlowClient(socket, new DataInputStream(in), readDelayMs);
+        if (readDelayMs >= 0) {
+            Thread.startVirtualThread(client::readLoop);
+        }
+        return client;
+    }
+
+    private static class SlowClient {
+        final Socket socket;
+        final DataInputStream in;
+        final long readDelayMs;
+        final List<Integer> binarySeqs = new CopyOnWriteArrayList<>();
+        final List<String> texts = new CopyOnWriteArrayList<>();
+        final CountDownLatch firstText = new CountDownLatch(1);
+
+        SlowClient(Socket socket, DataInputStream in, long readDelayMs) {
+            this.socket = socket;
+            this.in = in;
+            this.readDelayMs = readDelayMs;
+        }
+
+        void readLoop() {
+            try {
+                while (true) {
+                    int b0 = in.readUnsignedByte();
+                    int b1 = in.readUnsignedByte();
+                    long length = b1 & 0x7F;
+                    if (length == 126) {
+                        length = in.readUnsignedShort();
+                    } else if (length == 127) {
+                        length = in.readLong();
+                    }
+                    byte[] payload = new byte[(int) length];
+                    in.readFully(payload);
+                    int opcode = b0 & 0x0F;
+                    if (opcode == 1) {
+                        texts.add(new String(payload, StandardCharsets.UTF_8));
+                        firstText.countDown();
+                    } else if (opcode == 2) {
+                        binarySeqs.add(ByteBuffer.wrap(payload).getInt());
+                    } else if (opcode == 8) {
+                        return;
+                    }
+                    if (readDelayMs > 0) {
+                        Thread.sleep(readDelayMs);
+                    }
+                }
+            } catch (Exception e) {
+                // 连接关闭
+            }
+        }
+
+        boolean awaitText(long timeout, TimeUnit unit) throws InterruptedException {
+            return firstText.await(timeout, unit);
+        }
+
+        boolean awaitCount(int count, long timeout, TimeUnit unit) throws InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            while (texts.size() + binarySeqs.size() < count && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            return texts.size() + binarySeqs.size() == count;
+        }
+
+        void close() throws IOException {
+            socket.close();
+        }
+    }
+}
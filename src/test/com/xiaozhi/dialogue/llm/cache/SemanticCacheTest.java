@@ -0,0 +1,251 @@
+package com.xiaozhi.dialogue.llm.cache;
+
+import com.xiaozhi.communication.common.ChatSession;
+import com.xiaozhi.dialogue.llm.ChatService;
+import com.xiaozhi.dialogue.llm.factory.ChatModelFactory;
+import com.xiaozhi.dialogue.llm.factory.EmbeddingModelFactory;
+import com.xiaozhi.dialogue.llm.memory.Conversation;
+import com.xiaozhi.dialogue.llm.tool.observation.ChatModelObservationHandler;
+import com.xiaozhi.entity.SysDevice;
+import com.xiaozhi.entity.SysRole;
+import com.xiaozhi.mcp.McpSessionManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.chat.observation.ChatModelObservationContext;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 用确定性的模拟向量模型验证语义缓存的命中、有效期、角色隔离及工具调用轮次的排除
+ */
+public class SemanticCacheTest {
+
+    private static final float THRESHOLD = 0.9f;
+    private static final long TTL_MS = TimeUnit.MINUTES.toMillis(10);
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final FakeEmbeddingModel embeddingModel = new FakeEmbeddingModel();
+    private final FakeChatModel chatModel = new FakeChatModel();
+    private final ChatModelObservationHandler observationHandler = mock(ChatModelObservationHandler.class);
+    private final ChatService chatService = new ChatService();
+    private SemanticCache cache;
+
+    @BeforeEach
+    void setUp() {
+        EmbeddingModelFactory embeddingModelFactory = mock(EmbeddingModelFactory.class);
+        when(embeddingModelFactory.defaultEmbeddingModel()).thenReturn(embeddingModel);
+        cache = new SemanticCache(List.of(1, 2), THRESHOLD, TTL_MS, 100, 1000, embeddingModelFactory, now::get);
+
+        ChatModelFactory chatModelFactory = mock(ChatModelFactory.class);
+        when(chatModelFactory.takeChatModel(any(ChatSession.class))).thenReturn(chatModel);
+        ReflectionTestUtils.setField(chatService, "chatModelFactory", chatModelFactory);
+        ReflectionTestUtils.setField(chatService, "mcpSessionManager", mock(McpSessionManager.class));
+        ReflectionTestUtils.setField(chatService, "semanticCache", cache);
+        ReflectionTestUtils.setField(chatService, "chatModelObservationHandler", observationHandler);
+    }
+
+    @Test
+    void similarQuestionReturnsCachedAnswer() {
+        assertEquals("回答1", ask(1, "给我讲个笑话"));
+        assertEquals(1, cache.size(1));
+
+        // 与“给我讲个笑话”的相似度约为0.91
+        assertEquals("回答1", ask(1, "给我讲个笑话吧"));
+        assertEquals(1, chatModel.calls.get());
+        // 命中时与模型的回答一样加入对话并持久化
+        ArgumentCaptor<ChatModelObservationContext> context = ArgumentCaptor.forClass(ChatModelObservationContext.class);
+        verify(observationHandler).onStop(context.capture());
+        assertEquals("回答1", context.getValue().getResponse().getResult().getOutput().getText());
+        assertEquals("给我讲个笑话吧", context.getValue().getRequest().getUserMessage().getText());
+
+        // 不相似的问题请求模型
+        assertEquals("回答2", ask(1, "今天天气怎么样"));
+        assertEquals(2, cache.size(1));
+    }
+
+    @Test
+    void rolesAreIsolated() {
+        ask(1, "给我讲个笑话");
+        assertEquals("回答2", ask(2, "给我讲个笑话"));
+        assertEquals(2, chatModel.calls.get());
+    }
+
+    @Test
+    void answerExpiresAfterTtl() {
+        ask(1, "给我讲个笑话");
+        now.addAndGet(TTL_MS);
+        assertEquals("回答2", ask(1, "给我讲个笑话"));
+        // 写入时清理过期的回答
+        assertEquals(1, cache.size(1));
+    }
+
+    @Test
+    void toolCallingTurnIsNotCached() {
+        chatModel.callTool = true;
+        ask(1, "现在几点了");
+        assertEquals(1, chatModel.toolCalls.get());
+        assertEquals(0, cache.size(1));
+
+        chatModel.callTool = false;
+        assertEquals("回答2", ask(1, "现在几点了"));
+    }
+
+    @Test
+    void disabledRoleIsNotEmbedded() {
+        ask(3, "给我讲个笑话");
+        ask(3, "给我讲个笑话");
+        assertEquals(2, chatModel.calls.get());
+        assertEquals(0, embeddingModel.calls.get());
+    }
+
+    @Test
+    void oldestAnswerIsDroppedWhenFull() {
+        CosineIndex index = new CosineIndex(2);
+        for (int i = 0; i < 3; i++) {
+            float[] vector = new float[3];
+            vector[i] = 1;
+            index.add(new CosineIndex.Entry(vector, "问题" + i, "回答" + i, Long.MAX_VALUE), 0);
+        }
+        assertEquals(2, index.size());
+        assertEquals("回答1", index.nearest(new float[]{0, 1, 0}, 0).entry().answer());
+        assertTrue(index.nearest(new float[]{1, 0, 0}, 0).similarity() < THRESHOLD);
+    }
+
+    private String ask(int roleId, String text) {
+        TestSession session = new TestSession(roleId);
+        session.setAssistantTimeMillis(System.currentTimeMillis());
+        return chatService.chatStream(session, new UserMessage(text), true)
+                .map(response -> response.getResult().getOutput().getText())
+                .collect(Collectors.joining())
+                .block();
+    }
+
+    /**
+     * 以相邻两字的出现次数为向量，字面越接近越相似，结果固定
+     */
+    private static class FakeEmbeddingModel implements EmbeddingModel {
+        private static final int DIMENSIONS = 256;
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            List<String> texts = request.getInstructions();
+            return new EmbeddingResponse(texts.stream()
+                    .map(text -> new Embedding(vector(text), texts.indexOf(text)))
+                    .toList());
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return vector(document.getText());
+        }
+
+        private float[] vector(String text) {
+            calls.incrementAndGet();
+            float[] vector = new float[DIMENSIONS];
+            for (int i = 0; i + 1 < text.length(); i++) {
+                vector[Math.floorMod(text.substring(i, i + 2).hashCode(), DIMENSIONS)]++;
+            }
+            return vector;
+        }
+    }
+
+    /**
+     * 每次请求返回不同的回答；需要时像模型内部执行工具调用一样调用请求中的工具
+     */
+    private static class FakeChatModel implements ChatModel {
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicInteger toolCalls = new AtomicInteger();
+        volatile boolean callTool;
+
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Flux<ChatResponse> stream(Prompt prompt) {
+            int call = calls.incrementAndGet();
+            if (callTool) {
+                ToolCallingChatOptions options = (ToolCallingChatOptions) prompt.getOptions();
+                options.getToolCallbacks().getFirst().call("{}", new ToolContext(options.getToolContext()));
+            }
+            return Flux.just("回答", String.valueOf(call))
+                    .map(token -> new ChatResponse(List.of(new Generation(new AssistantMessage(token)))));
+        }
+    }
+
+    private class TestSession extends ChatSession {
+        private final ToolCallback clock = new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return ToolDefinition.builder().name("get_time").description("查询当前时间").inputSchema("{}").build();
+            }
+
+            @Override
+            public String call(String toolInput) {
+                chatModel.toolCalls.incrementAndGet();
+                return "12:00";
+            }
+        };
+
+        TestSession(int roleId) {
+            super("cache-session");
+            SysDevice device = new SysDevice();
+            device.setDeviceId("aa:bb:cc:dd:ee:ff");
+            device.setRoleId(roleId);
+            setSysDevice(device);
+            SysRole role = new SysRole();
+            role.setRoleId(roleId);
+            setConversation(new Conversation(device, role, getSessionId()));
+        }
+
+        @Override
+        public List<ToolCallback> getToolCallbacks() {
+            return List.of(clock);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void sendTextMessage(String message) {
+        }
+
+        @Override
+        public void sendBinaryMessage(byte[] message) {
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.xiaozhi.dialogue.llm.factory;
+
+import com.sun.net.httpserver.HttpServer;
+import com.xiaozhi.dialogue.llm.factory.providers.OpenAiModelProvider;
+import com.xiaozhi.entity.SysConfig;
+import com.xiaozhi.entity.SysRole;
+import com.xiaozhi.event.SysConfigChangeEvent;
+import com.xiaozhi.service.SysConfigService;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * ChatModel缓存与共享HTTP连接：用本地模拟的OpenAI兼容服务统计多轮对话使用的TCP连接数
+ */
+public class ChatModelFactoryTest {
+
+    private static final String COMPLETION = """
+            {"id":"chatcmpl-1","object":"chat.completion","created":1,"model":"mock",
+             "choices":[{"index":0,"message":{"role":"assistant","content":"你好"},"finish_reason":"stop"}],
+             "usage":{"prompt_tokens":1,"completion_tokens":1,"total_tokens":2}}
+            """;
+
+    private HttpServer server;
+    // 客户端连接的远端端口，每个端口对应一条TCP连接
+    private final Set<Integer> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private ChatModelFactory factory;
+    private SysConfig config;
+    private SysRole role;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/chat/completions", exchange -> {
+            connections.add(exchange.getRemoteAddress().getPort());
+            requests.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            byte[] body = COMPLETION.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+
+        LlmHttpClients httpClients = new LlmHttpClients();
+        httpClients.init();
+        OpenAiModelProvider provider = new OpenAiModelProvider();
+        ReflectionTestUtils.setField(provider, "toolCallingManager", ToolCallingManager.builder().build());
+        ReflectionTestUtils.setField(provider, "observationRegistry", ObservationRegistry.NOOP);
+        ReflectionTestUtils.setField(provider, "httpClients", httpClients);
+
+        config = new SysConfig()
+                .setProvider("openai")
+                .setConfigName("mock")
+                .setApiUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/v1");
+        config.setConfigId(1);
+        role = new SysRole().setModelId(1).setTemperature(0.7).setTopP(0.9);
+
+        SysConfigService configService = mock(SysConfigService.class);
+        when(configService.selectConfigById(1)).thenReturn(config);
+        factory = new ChatModelFactory(List.of(provider));
+        ReflectionTestUtils.setField(factory, "configService", configService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void turnsReuseModelAndConnection() {
+        ChatModel first = factory.takeChatModel(role);
+        for (int turn = 0; turn < 5; turn++) {
+            ChatModel model = factory.takeChatModel(role);
+            assertSame(first, model);
+            assertEquals("你好", model.call(new Prompt("第" + turn + "轮")).getResult().getOutput().getText());
+        }
+        assertEquals(5, requests.get());
+        assertEquals(1, connections.size(), "多轮对话应复用同一条连接");
+    }
+
+    @Test
+    void roleOptionsAndConfigChangeCreateNewModel() {
+        ChatModel first = factory.takeChatModel(role);
+
+        SysRole warmer = new SysRole().setModelId(1).setTemperature(1.2).setTopP(0.9);
+        assertNotSame(first, factory.takeChatModel(warmer));
+
+        factory.onConfigChange(new SysConfigChangeEvent(config));
+        ChatModel rebuilt = factory.takeChatModel(role);
+        assertNotSame(first, rebuilt);
+
+        // 重建后的模型仍使用共享连接
+        rebuilt.call(new Prompt("你好"));
+        first.call(new Prompt("你好"));
+        assertEquals(1, connections.size());
+    }
+
+    @Test
+    void configChangedOnAnotherNodeCreatesNewModel() {
+        ChatModel first = factory.takeChatModel(role);
+
+        // 其他节点修改了密钥，本节点没有收到配置变更事件，只是重新读到了新的配置
+        SysConfig updated = new SysConfig()
+                .setProvider("openai")
+                .setConfigName("mock")
+                .setApiKey("new-key")
+                .setApiUrl(config.getApiUrl());
+        updated.setConfigId(1);
+        SysConfigService configService = mock(SysConfigService.class);
+        when(configService.selectConfigById(1)).thenReturn(updated);
+        ReflectionTestUtils.setField(factory, "configService", configService);
+
+        ChatModel rebuilt = factory.takeChatModel(role);
+        assertNotSame(first, rebuilt);
+        assertSame(rebuilt, factory.takeChatModel(role));
+    }
+
+    @Test
+    void cachedModelExpiresAfterTtl() {
+        ChatModel first = factory.takeChatModel(role);
+        assertSame(first, factory.takeChatModel(role));
+
+        ReflectionTestUtils.setField(factory, "modelCacheTtlMinutes", 0L);
+        assertNotSame(first, factory.takeChatModel(role));
+    }
+}
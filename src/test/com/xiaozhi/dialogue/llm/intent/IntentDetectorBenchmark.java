@@ -0,0 +1,102 @@
+package com.xiaozhi.dialogue.llm.intent;
+
+import com.xiaozhi.utils.ExitKeywordDetector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * 意图检测耗时与关键词数量的关系：关键词自动机与逐个匹配 ".*关键词.*" 正则对比。
+ * 两者都包含内置的退出关键词，另有 keywords 个随机生成的2到4字关键词；输入为不含关键词的普通语句。
+ * <p>
+ * 运行：在IDE中执行 main 方法，或 mvn test-compile 后以测试classpath运行本类
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IntentDetectorBenchmark {
+
+    private static final List<String> UTTERANCES = List.of(
+            "今天天气怎么样", "给我讲一个小兔子乖乖的故事", "把客厅的灯打开，亮度调到百分之八十",
+            "帮我定一个明天早上七点的闹钟", "what's the weather like in shanghai tomorrow",
+            "我今天在学校学了一首新的古诗，你想听吗", "播放周杰伦的稻香", "一加一等于几");
+
+    @Param({"0", "1000"})
+    public int keywords;
+
+    private IntentDetector intentDetector;
+    private List<Pattern> patterns;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(1);
+        List<IntentKeyword> extra = new ArrayList<>();
+        patterns = new ArrayList<>();
+        for (String keyword : new ExitKeywordDetector().getExitKeywords()) {
+            patterns.add(Pattern.compile(".*" + Pattern.quote(keyword) + ".*", Pattern.CASE_INSENSITIVE));
+        }
+        for (int i = 0; i < keywords; i++) {
+            StringBuilder keyword = new StringBuilder();
+            for (int k = 2 + random.nextInt(3); k > 0; k--) {
+                // 常用汉字范围内的随机字
+                keyword.append((char) (0x4E00 + random.nextInt(0x5000)));
+            }
+            extra.add(IntentKeyword.keyword("CUSTOM_" + i % 10, i % 10, keyword.toString()));
+            patterns.add(Pattern.compile(".*" + Pattern.quote(keyword.toString()) + ".*", Pattern.CASE_INSENSITIVE));
+        }
+        intentDetector = new IntentDetector();
+        intentDetector.updateKeywords("benchmark", extra);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(8)
+    public int automaton() {
+        int matched = 0;
+        for (String utterance : UTTERANCES) {
+            matched += intentDetector.match(utterance) != null ? 1 : 0;
+        }
+        return matched;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(8)
+    public int regex() {
+        int matched = 0;
+        for (String utterance : UTTERANCES) {
+            String text = utterance.trim().toLowerCase();
+            for (Pattern pattern : patterns) {
+                if (pattern.matcher(text).matches()) {
+                    matched++;
+                    break;
+                }
+            }
+        }
+        return matched;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(IntentDetectorBenchmark.class.getSimpleName()).build()).run();
+    }
+}
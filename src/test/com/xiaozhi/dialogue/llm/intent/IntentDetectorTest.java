@@ -0,0 +1,204 @@
+package com.xiaozhi.dialogue.llm.intent;
+
+import com.xiaozhi.utils.ExitKeywordDetector;
+import com.xiaozhi.utils.KeywordAutomaton;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 验证关键词自动机的意图检测结果与原先逐个匹配正则的结果相同，以及优先级、匹配位置和关键词更新
+ */
+public class IntentDetectorTest {
+
+    private static final List<String> UTTERANCES = List.of(
+            "拜拜", "再见啦", "我走了", "我要走了", "走了走了", "好的我先退下了", "结束对话", "退出", "我要退出",
+            "下线吧", "结束", "今天的课程结束了，我们来复习一下吧", "告辞", "告退", "我先离开一下", "你先离开",
+            "bye", "Bye Bye", "byebye", "bye  bye", "GoodBye my friend", "see you", "See   You tomorrow", "see ya",
+            "不要退出", "别走", "我不离开", "为什么要退出", "怎么退出这个应用", "如何结束对话", "能否不结束",
+            "你可以走了", "你会离开我吗", "什么时候结束", "don't leave me", "do not exit", "I will not quit",
+            "not now, bye", "今天天气怎么样", "给我讲个故事", "播放一首歌", "把音量调到50", "帮我开灯",
+            "我今天走了很远的路，好累", "再见到你真高兴", "你好呀，小智", "看看下线的设备有哪些", "退出登录是什么意思",
+            "  再见  ", "", "   ", "再\n见", "bye\nbye", "see\tyou", "see\nyou", "好的\n再见", "再见\n",
+            "我们结束吧", "算了，结束", "不说了，拜拜", "今天不想学习了，再见", "你别走了好不好，拜拜");
+
+    private final ExitKeywordDetector detector = new ExitKeywordDetector();
+    private final RegexExitKeywordDetector reference = new RegexExitKeywordDetector();
+
+    @Test
+    void exitDetectionMatchesRegexImplementation() {
+        for (String utterance : UTTERANCES) {
+            assertEquals(reference.detectExitIntent(utterance), detector.detectExitIntent(utterance), utterance);
+        }
+    }
+
+    @Test
+    void randomInputsMatchRegexImplementation() {
+        List<String> pieces = new ArrayList<>(List.of("不", "别", "要", "会", "什么", "怎么", "我", "你", "先",
+                "好", "的", "了", "吧", "走", "退", "出", "下", "线", "再", "见", "拜", "结", "束", "对", "话",
+                "离", "开", "告", "辞", "by", "e", "good", "see", "you", "ya", "not", "don't", "leave", "quit",
+                "exit", " ", "  ", "\t", "\n", "\r\n", "\u2028", "，", "B", "Y", "E"));
+        pieces.addAll(new ExitKeywordDetector().getExitKeywords());
+        Random random = new Random(7);
+        int exits = 0;
+        for (int n = 0; n < 20_000; n++) {
+            StringBuilder input = new StringBuilder();
+            for (int k = 1 + random.nextInt(8); k > 0; k--) {
+                input.append(pieces.get(random.nextInt(pieces.size())));
+            }
+            String utterance = input.toString();
+            boolean expected = reference.detectExitIntent(utterance);
+            assertEquals(expected, detector.detectExitIntent(utterance), utterance);
+            exits += expected ? 1 : 0;
+        }
+        // 两种结果都有足够多的样本
+        assertTrue(exits > 2000 && exits < 18_000, "exits: " + exits);
+    }
+
+    @Test
+    void returnsIntentPriorityAndSpan() {
+        IntentDetector intentDetector = new IntentDetector();
+        IntentMatch match = intentDetector.match("  好的，那我们就先再见啦  ");
+        assertEquals(IntentDetector.EXIT, match.intent());
+        assertEquals(100, match.priority());
+        assertEquals("再见", match.keyword());
+        assertEquals("好的，那我们就先再见啦".indexOf("再见"), match.start());
+        assertEquals(match.start() + 2, match.end());
+
+        // 关键词之间的空白按原文计算位置
+        match = intentDetector.match("ok see   you");
+        assertEquals(3, match.start());
+        assertEquals(12, match.end());
+
+        assertInstanceOf(IntentDetector.ExitIntent.class, intentDetector.detectIntent("拜拜"));
+        assertNull(intentDetector.detectIntent("给我讲个故事"));
+    }
+
+    @Test
+    void higherPriorityIntentWins() {
+        IntentDetector intentDetector = new IntentDetector();
+        intentDetector.updateKeywords("test", List.of(
+                IntentKeyword.keyword("STOP_MUSIC", 200, "别放了"),
+                IntentKeyword.keyword("HELP", 10, "帮助")));
+
+        assertEquals("STOP_MUSIC", intentDetector.match("别放了，再见").intent());
+        assertEquals(IntentDetector.EXIT, intentDetector.match("再见，帮助").intent());
+        assertEquals("HELP", intentDetector.detectIntent("打开帮助").getType());
+    }
+
+    @Test
+    void configuredKeywordsAreAddedAndReplacedAtomically() throws Exception {
+        IntentDetector intentDetector = new IntentDetector(List.of("晚安", " ", "我去睡觉了"));
+        assertEquals("晚安", intentDetector.match("好困，晚安").keyword());
+        // 配置的关键词同样受否定词限制
+        assertNull(intentDetector.match("我不走，晚安"));
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Throwable> errors = new ArrayList<>();
+        Thread reader = Thread.startVirtualThread(() -> {
+            while (running.get()) {
+                try {
+                    // 内置关键词在更新过程中始终可用
+                    assertNotNull(intentDetector.match("拜拜"));
+                } catch (Throwable e) {
+                    errors.add(e);
+                    return;
+                }
+            }
+        });
+        for (int i = 0; i < 200; i++) {
+            intentDetector.updateKeywords("exit-config", List.of(IntentKeyword.keyword(IntentDetector.EXIT, 100, "关键词" + i)));
+        }
+        running.set(false);
+        reader.join();
+        assertEquals(List.of(), errors);
+        assertNull(intentDetector.match("好困，晚安"));
+        assertEquals("关键词199", intentDetector.match("关键词199").keyword());
+
+        intentDetector.updateKeywords("exit-config", List.of());
+        assertNull(intentDetector.match("关键词199"));
+    }
+
+    @Test
+    void automatonFindsAllOccurrences() {
+        KeywordAutomaton<String> automaton = KeywordAutomaton.<String>builder()
+                .add("he", "he").add("she", "she").add("his", "his").add("hers", "hers").add("he", "he2")
+                .build();
+        List<String> matches = new ArrayList<>();
+        automaton.forEachMatch("ushers", (start, end, value) -> matches.add(value + "@" + start + "-" + end));
+        assertEquals(List.of("she@1-4", "he@2-4", "he2@2-4", "hers@2-6"), matches);
+        assertEquals(5, automaton.size());
+    }
+
+    /**
+     * 改为关键词自动机之前的实现，作为对照
+     */
+    static class RegexExitKeywordDetector {
+        private static final List<String> EXIT_KEYWORDS = new ExitKeywordDetector().getExitKeywords();
+
+        private static final List<Pattern> EXACT_PATTERNS = Arrays.asList(
+                Pattern.compile(".*拜拜.*", Pattern.CASE_INSENSITIVE),
+                Pattern.compile(".*再见.*", Pattern.CASE_INSENSITIVE),
+                Pattern.compile(".*退下.*", Pattern.CASE_INSENSITIVE),
+                Pattern.compile(".*走了.*", Pattern.CASE_INSENSITIVE),
+                Pattern.compile(".*我?要?走了.*", Pattern.CASE_INSENSITIVE),
+                Pattern.compile(".*结束对话.*", Pattern.CASE_INSENSITIVE),
+                Pattern.compile(".*退出.*", Pattern.CASE_INSENSITIVE),
+                Pattern.compile(".*告辞.*", Pattern.CASE_INSENSITIVE),
+                Pattern.compile(".*告退.*", Pattern.CASE_INSENSITIVE),
+                Pattern.compile(".*(?:我|你)?(?:先)?(?:要)?离开.*", Pattern.CASE_INSENSITIVE),
+                Pattern.compile(".*(?:我|你)?(?:先)?下线.*", Pattern.CASE_INSENSITIVE),
+                Pattern.compile(".*bye\\s*bye.*", Pattern.CASE_INSENSITIVE),
+                Pattern.compile(".*goodbye.*", Pattern.CASE_INSENSITIVE),
+                Pattern.compile(".*see\\s+you.*", Pattern.CASE_INSENSITIVE),
+                Pattern.compile(".*see\\s+ya.*", Pattern.CASE_INSENSITIVE)
+        );
+
+        private static final List<Pattern> EXCLUDE_PATTERNS = Arrays.asList(
+                Pattern.compile(".*不.*(?:退出|离开|走|退下|结束).*", Pattern.CASE_INSENSITIVE),
+                Pattern.compile(".*别.*(?:退出|离开|走|退下|结束).*", Pattern.CASE_INSENSITIVE),
+                Pattern.compile(".*不要.*(?:退出|离开|走|退下|结束).*", Pattern.CASE_INSENSITIVE),
+                Pattern.compile(".*为什么.*(?:退出|离开|走|退下|结束).*", Pattern.CASE_INSENSITIVE),
+                Pattern.compile(".*怎么.*(?:退出|离开|走|退下|结束).*", Pattern.CASE_INSENSITIVE),
+                Pattern.compile(".*如何.*(?:退出|离开|走|退下|结束).*", Pattern.CASE_INSENSITIVE),
+                Pattern.compile(".*能否.*(?:退出|离开|走|退下|结束).*", Pattern.CASE_INSENSITIVE),
+                Pattern.compile(".*可以.*(?:退出|离开|走|退下|结束).*", Pattern.CASE_INSENSITIVE),
+                Pattern.compile(".*会.*(?:退出|离开|走|退下|结束).*", Pattern.CASE_INSENSITIVE),
+                Pattern.compile(".*什么.*(?:退出|离开|走|退下|结束).*", Pattern.CASE_INSENSITIVE),
+                Pattern.compile(".*don't.*(?:leave|exit|quit|bye).*", Pattern.CASE_INSENSITIVE),
+                Pattern.compile(".*not.*(?:leave|exit|quit|bye).*", Pattern.CASE_INSENSITIVE)
+        );
+
+        boolean detectExitIntent(String input) {
+            if (input == null || input.trim().isEmpty()) {
+                return false;
+            }
+            String normalizedInput = input.trim().toLowerCase();
+            for (Pattern excludePattern : EXCLUDE_PATTERNS) {
+                if (excludePattern.matcher(normalizedInput).matches()) {
+                    return false;
+                }
+            }
+            for (Pattern pattern : EXACT_PATTERNS) {
+                if (pattern.matcher(normalizedInput).matches()) {
+                    return true;
+                }
+            }
+            if (normalizedInput.length() <= 15) {
+                for (String keyword : EXIT_KEYWORDS) {
+                    if (normalizedInput.contains(keyword.toLowerCase())) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.xiaozhi.dialogue.llm.memory;
+
+import com.xiaozhi.dao.MessageMapper;
+import com.xiaozhi.entity.SysDevice;
+import com.xiaozhi.entity.SysMessage;
+import com.xiaozhi.entity.SysRole;
+import com.xiaozhi.service.impl.MessageWriteBuffer;
+import com.xiaozhi.service.impl.RecentMessageCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 验证设备重连时从最近消息缓存加载历史、不查询数据库，以及对话窗口的滑动
+ */
+public class MessageWindowConversationTest {
+
+    private static final String DEVICE_ID = "aa:bb:cc:dd:ee:ff";
+    private static final int ROLE_ID = 1;
+    private static final int MAX_MESSAGES = 16;
+
+    private FakeMessageMapper messageMapper;
+    private RecentMessageCache cache;
+    private MessageWriteBuffer writeBuffer;
+    private DatabaseChatMemory chatMemory;
+    private long clock = 1_700_000_000_000L;
+
+    @BeforeEach
+    void setUp() {
+        messageMapper = new FakeMessageMapper();
+        cache = new RecentMessageCache(MAX_MESSAGES, 10_000, 30);
+        // 定时写入间隔足够长，测试期间只在显式flush时写入
+        writeBuffer = new MessageWriteBuffer(messageMapper, 200, 600_000, 10_000);
+        chatMemory = new DatabaseChatMemory(messageMapper, cache, writeBuffer);
+        for (int i = 0; i < 15; i++) {
+            messageMapper.saveAll(turn("问题" + i, "回答" + i, SysMessage.MESSAGE_TYPE_NORMAL));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        writeBuffer.shutdown();
+    }
+
+    @Test
+    void warmReconnectDoesNotQueryDatabase() {
+        MessageWindowConversation first = connect("session-1");
+        assertEquals(1, messageMapper.finds.get());
+        assertEquals(texts(MAX_MESSAGES), texts(first.messages()));
+
+        // 对话三轮，保存时写入数据库并追加到缓存
+        for (int i = 15; i < 18; i++) {
+            chat(first, "问题" + i, "回答" + i);
+        }
+
+        // 闲置超时断开后重连
+        MessageWindowConversation second = connect("session-2");
+        assertEquals(1, messageMapper.finds.get());
+        assertEquals(texts(MAX_MESSAGES), texts(second.messages()));
+        assertEquals("回答17", second.messages().getLast().getText());
+        assertEquals(new RecentMessageCache.Stats(1, 1, 1), cache.getStats());
+
+        // 与直接查询数据库的结果一致
+        DatabaseChatMemory cold = new DatabaseChatMemory(messageMapper, new RecentMessageCache(MAX_MESSAGES, 10_000, 30), writeBuffer);
+        assertEquals(texts(cold.find(DEVICE_ID, ROLE_ID, MAX_MESSAGES)), texts(second.messages()));
+    }
+
+    @Test
+    void missIncludesMessagesStillInWriteBuffer() {
+        // 与 SysMessageServiceImpl.saveAll 一样，先放入写入缓冲区再追加到缓存；缓存中还没有该设备
+        List<SysMessage> messages = turn("问题15", "回答15", SysMessage.MESSAGE_TYPE_NORMAL);
+        writeBuffer.add(messages);
+        cache.append(messages);
+        assertEquals(2, writeBuffer.getStats().pending());
+
+        MessageWindowConversation conversation = connect("session-1");
+        assertEquals(0, writeBuffer.getStats().pending());
+        assertEquals("回答15", conversation.messages().getLast().getText());
+        assertEquals(texts(MAX_MESSAGES), texts(conversation.messages()));
+    }
+
+    @Test
+    void functionCallTurnsAreNotCached() {
+        connect("session-1");
+        List<SysMessage> exit = turn("退出", "再见", SysMessage.MESSAGE_TYPE_FUNCTION_CALL);
+        messageMapper.saveAll(exit);
+        cache.append(exit);
+
+        MessageWindowConversation second = connect("session-2");
+        assertEquals(1, messageMapper.finds.get());
+        assertEquals("回答14", second.messages().getLast().getText());
+    }
+
+    @Test
+    void deletingMessagesEvictsCache() {
+        connect("session-1");
+        messageMapper.rows.clear();
+        cache.evict(DEVICE_ID);
+
+        MessageWindowConversation second = connect("session-2");
+        assertEquals(2, messageMapper.finds.get());
+        assertTrue(second.messages().isEmpty());
+    }
+
+    @Test
+    void windowSlidesWithoutChangingReturnedMessages() {
+        MessageWindowConversation conversation = MessageWindowConversation.builder()
+                .device(device()).role(role()).sessionId("session-1")
+                .maxMessages(4).chatMemory(chatMemory).build();
+        assertEquals(List.of("问题13", "回答13", "问题14", "回答14"), texts(conversation.messages()));
+
+        List<List<String>> prompts = new ArrayList<>();
+        for (int i = 15; i < 30; i++) {
+            conversation.add(new UserMessage("问题" + i), clock);
+            List<Message> prompt = conversation.messages();
+            prompts.add(texts(prompt));
+            conversation.add(new AssistantMessage("回答" + i), clock);
+            // 之后添加的消息和窗口滑动都不影响已返回的消息列表
+            assertEquals(prompts.getLast(), texts(prompt));
+            assertThrows(UnsupportedOperationException.class, () -> prompt.add(new UserMessage("x")));
+        }
+        for (int i = 15; i < 30; i++) {
+            assertEquals(List.of("回答" + (i - 2), "问题" + (i - 1), "回答" + (i - 1), "问题" + i),
+                    prompts.get(i - 15).subList(1, 5));
+            assertEquals(5, prompts.get(i - 15).size());
+        }
+
+        // 回滚移除刚添加的用户消息，不影响已返回的消息列表
+        conversation.add(new UserMessage("退出"), clock);
+        List<Message> prompt = conversation.messages();
+        conversation.add(Conversation.ROLLBACK_MESSAGE, clock);
+        assertEquals(List.of("回答28", "问题29", "回答29", "退出"), texts(prompt).subList(1, 5));
+        assertEquals(List.of("问题28", "回答28", "问题29", "回答29"), texts(conversation.messages()));
+    }
+
+    private MessageWindowConversation connect(String sessionId) {
+        return MessageWindowConversation.builder()
+                .device(device()).role(role()).sessionId(sessionId)
+                .maxMessages(MAX_MESSAGES).chatMemory(chatMemory).build();
+    }
+
+    /**
+     * 与 ChatModelObservationHandler 一样，模型回复后把一轮对话加入Conversation并保存
+     */
+    private void chat(Conversation conversation, String question, String answer) {
+        conversation.add(new UserMessage(question), clock);
+        conversation.messages();
+        conversation.add(new AssistantMessage(answer), clock);
+        List<SysMessage> messages = turn(question, answer, SysMessage.MESSAGE_TYPE_NORMAL);
+        messageMapper.saveAll(messages);
+        cache.append(messages);
+    }
+
+    private List<SysMessage> turn(String question, String answer, String messageType) {
+        Date time = new Date(clock += 10_000);
+        return List.of(message("user", question, messageType, time), message("assistant", answer, messageType, time));
+    }
+
+    private static SysMessage message(String sender, String text, String messageType, Date time) {
+        SysMessage message = new SysMessage()
+                .setDeviceId(DEVICE_ID)
+                .setRoleId(ROLE_ID)
+                .setSender(sender)
+                .setMessage(text)
+                .setMessageType(messageType);
+        message.setCreateTime(time);
+        return message;
+    }
+
+    private static SysDevice device() {
+        SysDevice device = new SysDevice().setDeviceId(DEVICE_ID);
+        device.setRoleId(ROLE_ID);
+        return device;
+    }
+
+    private static SysRole role() {
+        return new SysRole().setRoleId(ROLE_ID);
+    }
+
+    private List<String> texts(int last) {
+        List<SysMessage> normal = messageMapper.rows.stream()
+                .filter(row -> SysMessage.MESSAGE_TYPE_NORMAL.equals(row.getMessageType())).toList();
+        return normal.subList(normal.size() - last, normal.size()).stream().map(SysMessage::getMessage).toList();
+    }
+
+    private static List<String> texts(List<Message> messages) {
+        return messages.stream().map(Message::getText).toList();
+    }
+
+    /**
+     * 内存中的消息表，记录历史查询次数
+     */
+    private static class FakeMessageMapper implements MessageMapper {
+        final List<SysMessage> rows = new ArrayList<>();
+        final AtomicInteger finds = new AtomicInteger();
+
+        @Override
+        public List<SysMessage> find(String deviceId, int roleId, int limit) {
+            finds.incrementAndGet();
+            return rows.stream()
+                    .filter(row -> row.getDeviceId().equals(deviceId) && row.getRoleId() == roleId
+                            && SysMessage.MESSAGE_TYPE_NORMAL.equals(row.getMessageType()))
+                    .sorted(Comparator.comparing(SysMessage::getCreateTime).reversed()
+                            .thenComparing(SysMessage::getSender))
+                    .limit(limit)
+                    .toList();
+        }
+
+        @Override
+        public void saveAll(List<SysMessage> messages) {
+            rows.addAll(messages);
+        }
+
+        @Override
+        public int add(SysMessage message) {
+            rows.add(message);
+            return 1;
+        }
+
+        @Override
+        public void saveAllWithAudio(List<SysMessage> messages) {
+            rows.addAll(messages);
+        }
+
+        @Override
+        public int delete(SysMessage message) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<SysMessage> query(SysMessage message) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<SysMessage> findAfter(String deviceId, int roleId, Instant timeMillis) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void updateMessageByAudioFile(SysMessage sysMessage) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.xiaozhi.dialogue.llm.tool;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 用带延迟的模拟工具验证多个工具调用并发执行、按顺序返回结果、顺序执行的工具和超时
+ */
+public class XiaoZhiToolCallingManagerTest {
+
+    private final XiaoZhiToolCallingManager manager = XiaoZhiToolCallingManager.builder().build();
+
+    @Test
+    void independentCallsRunConcurrently() {
+        List<DelayedTool> tools = List.of(
+                new DelayedTool("turn_on_light", 300, ToolMetadata.builder().build()),
+                new DelayedTool("set_volume", 300, ToolMetadata.builder().build()),
+                new DelayedTool("get_weather", 300, ToolMetadata.builder().build()));
+
+        long start = System.nanoTime();
+        ToolExecutionResult result = manager.executeToolCalls(prompt(tools), response(
+                "turn_on_light", "set_volume", "get_weather"));
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        // 依次执行至少需要900ms
+        assertTrue(elapsedMs < 600, "耗时 " + elapsedMs + "ms");
+        assertEquals(List.of("turn_on_light", "set_volume", "get_weather"), responseNames(result));
+        assertEquals(List.of("call-0", "call-1", "call-2"), responseIds(result));
+        assertEquals("turn_on_light done", responses(result).get(0).responseData());
+        assertFalse(result.returnDirect());
+    }
+
+    @Test
+    void sameToolCanBeCalledSeveralTimes() {
+        DelayedTool tool = new DelayedTool("set_volume", 200, ToolMetadata.builder().returnDirect(true).build());
+        long start = System.nanoTime();
+        ToolExecutionResult result = manager.executeToolCalls(prompt(List.of(tool)), response(
+                "set_volume", "set_volume", "set_volume", "set_volume"));
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(elapsedMs < 600, "耗时 " + elapsedMs + "ms");
+        assertEquals(4, tool.calls.size());
+        assertEquals(List.of("call-0", "call-1", "call-2", "call-3"), responseIds(result));
+        assertTrue(result.returnDirect());
+    }
+
+    @Test
+    void sequentialToolWaitsForEarlierCallsAndBlocksLaterOnes() {
+        DelayedTool before = new DelayedTool("turn_on_light", 200, ToolMetadata.builder().build());
+        DelayedTool exit = new DelayedTool("exit", 200, new XiaozhiToolMetadata(true, true, true));
+        DelayedTool after = new DelayedTool("set_volume", 200, ToolMetadata.builder().build());
+
+        ToolExecutionResult result = manager.executeToolCalls(prompt(List.of(before, exit, after)), response(
+                "turn_on_light", "exit", "set_volume"));
+
+        assertTrue(exit.calls.getFirst().start >= before.calls.getFirst().end);
+        assertTrue(after.calls.getFirst().start >= exit.calls.getFirst().end);
+        assertEquals(List.of("turn_on_light", "exit", "set_volume"), responseNames(result));
+    }
+
+    @Test
+    void slowCallTimesOutWithoutDelayingOthers() throws Exception {
+        XiaoZhiToolCallingManager manager = XiaoZhiToolCallingManager.builder()
+                .toolCallTimeout(Duration.ofMillis(300))
+                .build();
+        DelayedTool slow = new DelayedTool("self.get_device_status", 10_000, ToolMetadata.builder().build());
+        DelayedTool fast = new DelayedTool("get_weather", 50, ToolMetadata.builder().build());
+
+        long start = System.nanoTime();
+        ToolExecutionResult result = manager.executeToolCalls(prompt(List.of(slow, fast)), response(
+                "self.get_device_status", "get_weather"));
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(elapsedMs < 1000, "耗时 " + elapsedMs + "ms");
+        assertTrue(responses(result).get(0).responseData().contains("timed out"));
+        assertEquals("get_weather done", responses(result).get(1).responseData());
+        // 超时的调用被中断
+        assertTrue(slow.interrupted.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void singleCallAlsoTimesOut() throws Exception {
+        XiaoZhiToolCallingManager manager = XiaoZhiToolCallingManager.builder()
+                .toolCallTimeout(Duration.ofMillis(300))
+                .build();
+        DelayedTool slow = new DelayedTool("self.get_device_status", 10_000, ToolMetadata.builder().build());
+
+        long start = System.nanoTime();
+        ToolExecutionResult result = manager.executeToolCalls(prompt(List.of(slow)), response("self.get_device_status"));
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(elapsedMs < 1000, "耗时 " + elapsedMs + "ms");
+        assertTrue(responses(result).getFirst().responseData().contains("timed out"));
+        assertTrue(slow.interrupted.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void conversationHistoryEndsWithAssistantAndToolResponses() {
+        DelayedTool tool = new DelayedTool("get_weather", 0, ToolMetadata.builder().build());
+        Prompt prompt = prompt(List.of(tool));
+        ToolExecutionResult result = manager.executeToolCalls(prompt, response("get_weather", "get_weather"));
+
+        List<Message> history = result.conversationHistory();
+        assertEquals(prompt.getInstructions().size() + 2, history.size());
+        AssistantMessage assistant = (AssistantMessage) history.get(history.size() - 2);
+        assertEquals("get_weather", assistant.getMetadata().get("toolName"));
+        assertEquals(2, assistant.getToolCalls().size());
+        // 工具执行时可以拿到调用前的对话历史
+        List<?> toolCallHistory = (List<?>) tool.calls.getFirst().context.getContext().get(ToolContext.TOOL_CALL_HISTORY);
+        assertEquals(history.subList(0, history.size() - 1), toolCallHistory);
+    }
+
+    private static Prompt prompt(List<? extends ToolCallback> tools) {
+        return new Prompt(List.of(new UserMessage("开灯，音量调到50，再查一下天气")),
+                ToolCallingChatOptions.builder()
+                        .toolCallbacks(new ArrayList<>(tools))
+                        .toolContext(Map.of("conversationTimestamp", 0L))
+                        .build());
+    }
+
+    private static ChatResponse response(String... toolNames) {
+        List<AssistantMessage.ToolCall> toolCalls = new ArrayList<>();
+        for (int i = 0; i < toolNames.length; i++) {
+            toolCalls.add(new AssistantMessage.ToolCall("call-" + i, "function", toolNames[i], "{\"index\":" + i + "}"));
+        }
+        return new ChatResponse(List.of(new Generation(AssistantMessage.builder().content("").toolCalls(toolCalls).build())));
+    }
+
+    private static List<ToolResponseMessage.ToolResponse> responses(ToolExecutionResult result) {
+        return ((ToolResponseMessage) result.conversationHistory().getLast()).getResponses();
+    }
+
+    private static List<String> responseNames(ToolExecutionResult result) {
+        return responses(result).stream().map(ToolResponseMessage.ToolResponse::name).toList();
+    }
+
+    private static List<String> responseIds(ToolExecutionResult result) {
+        return responses(result).stream().map(ToolResponseMessage.ToolResponse::id).toList();
+    }
+
+    /**
+     * 固定耗时的模拟工具，记录每次调用的开始和结束时间
+     */
+    private static class DelayedTool implements ToolCallback {
+        record Call(long start, long end, ToolContext context) {
+        }
+
+        final List<Call> calls = new ArrayList<>();
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        private final ToolDefinition definition;
+        private final ToolMetadata metadata;
+        private final long delayMs;
+
+        DelayedTool(String name, long delayMs, ToolMetadata metadata) {
+            this.definition = ToolDefinition.builder().name(name).description(name).inputSchema("{}").build();
+            this.metadata = metadata;
+            this.delayMs = delayMs;
+        }
+
+        @Override
+        public ToolDefinition getToolDefinition() {
+            return definition;
+        }
+
+        @Override
+        public ToolMetadata getToolMetadata() {
+            return metadata;
+        }
+
+        @Override
+        public String call(String toolInput) {
+            return call(toolInput, new ToolContext(Map.of()));
+        }
+
+        @Override
+        public String call(String toolInput, ToolContext toolContext) {
+            long start = System.nanoTime();
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                Thread.currentThread().interrupt();
+                return "interrupted";
+            }
+            synchronized (calls) {
+                calls.add(new Call(start, System.nanoTime(), toolContext));
+            }
+            return definition.name() + " done";
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.xiaozhi.dialogue.llm.tool.mcp.device;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.xiaozhi.communication.common.ChatSession;
+import com.xiaozhi.communication.domain.DeviceMcpMessage;
+import com.xiaozhi.communication.domain.mcp.device.DeviceMcpPayload;
+import com.xiaozhi.dialogue.llm.tool.ToolsSessionHolder;
+import com.xiaozhi.entity.SysDevice;
+import com.xiaozhi.utils.CmsUtils;
+import com.xiaozhi.utils.JsonUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToLongFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 用模拟设备验证MCP请求与响应按ID对应：响应乱序、延迟到达、超时、会话关闭，以及分页加载工具列表
+ */
+public class DeviceMcpServiceTest {
+
+    private DeviceMcpService deviceMcpService;
+
+    @BeforeEach
+    void setUp() {
+        deviceMcpService = new DeviceMcpService();
+        ReflectionTestUtils.setField(deviceMcpService, "cmsUtils", new CmsUtils());
+    }
+
+    @Test
+    void outOfOrderResponsesAreMatchedById() throws Exception {
+        // 越早发出的请求越晚响应
+        FakeDevice device = new FakeDevice(request -> 500 - request.getId() % 10_000 * 50);
+        List<CompletableFuture<DeviceMcpMessage>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            futures.add(deviceMcpService.sendMcpRequestAsync(device, toolCall(device, "self.light.set_" + i)));
+        }
+        for (int i = 0; i < 10; i++) {
+            DeviceMcpMessage response = futures.get(i).get(5, TimeUnit.SECONDS);
+            assertEquals("self.light.set_" + i, response.getPayload().getResult().get("content"));
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        // 不需要依次等待每个请求
+        assertTrue(elapsedMs < 1500, "耗时 " + elapsedMs + "ms");
+        assertEquals(List.of(10009L, 10008L, 10007L), device.answered.subList(0, 3));
+        assertEquals(0, device.getDeviceMcpHolder().getMcpPendingRequests().size());
+    }
+
+    @Test
+    void concurrentRequestsFromManyThreads() throws Exception {
+        FakeDevice device = new FakeDevice(request -> ThreadLocalRandom.current().nextLong(50));
+        Map<String, CompletableFuture<DeviceMcpMessage>> futures = new ConcurrentHashMap<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 20; t++) {
+            int thread = t;
+            threads.add(Thread.startVirtualThread(() -> {
+                for (int i = 0; i < 50; i++) {
+                    String name = "tool_" + thread + "_" + i;
+                    futures.put(name, deviceMcpService.sendMcpRequestAsync(device, toolCall(device, name)));
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(1000, futures.size());
+        for (Map.Entry<String, CompletableFuture<DeviceMcpMessage>> entry : futures.entrySet()) {
+            DeviceMcpMessage response = entry.getValue().get(5, TimeUnit.SECONDS);
+            assertEquals(entry.getKey(), response.getPayload().getResult().get("content"));
+        }
+        assertEquals(0, device.getDeviceMcpHolder().getMcpPendingRequests().size());
+    }
+
+    @Test
+    void slowResponseTimesOutAndIsIgnoredWhenItArrives() throws Exception {
+        FakeDevice device = new FakeDevice(request -> 1000);
+        long start = System.nanoTime();
+        CompletableFuture<DeviceMcpMessage> future =
+                deviceMcpService.sendMcpRequestAsync(device, toolCall(device, "self.camera.take_photo"), 200);
+        ExecutionException error = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertInstanceOf(TimeoutException.class, error.getCause());
+        assertTrue(elapsedMs < 800, "耗时 " + elapsedMs + "ms");
+        assertEquals(0, device.getDeviceMcpHolder().getMcpPendingRequests().size());
+        // 超时后到达的响应没有对应的请求
+        long deadline = System.currentTimeMillis() + 5000;
+        while (device.answeredCount() == 0) {
+            assertTrue(System.currentTimeMillis() < deadline, "设备没有响应");
+            Thread.sleep(20);
+        }
+        assertEquals(0, device.completed.get());
+    }
+
+    @Test
+    void closingSessionCancelsPendingRequests() {
+        FakeDevice device = new FakeDevice(request -> 10_000);
+        CompletableFuture<DeviceMcpMessage> future =
+                deviceMcpService.sendMcpRequestAsync(device, toolCall(device, "self.get_device_status"));
+        device.getDeviceMcpHolder().getMcpPendingRequests().cancelAll();
+
+        assertThrows(CancellationException.class, () -> future.get(1, TimeUnit.SECONDS));
+        // 阻塞调用返回null
+        assertNull(deviceMcpService.sendMcpRequest(new FakeDevice(request -> 10_000) {
+            @Override
+            public void sendTextMessage(String message) {
+                super.sendTextMessage(message);
+                getDeviceMcpHolder().getMcpPendingRequests().cancelAll();
+            }
+        }, toolCall(device, "self.get_device_status")));
+    }
+
+    @Test
+    void initializeLoadsAllToolPages() throws Exception {
+        FakeDevice device = new FakeDevice(request -> 20);
+        deviceMcpService.initializeAsync(device).get(5, TimeUnit.SECONDS);
+
+        assertTrue(device.getDeviceMcpHolder().isMcpInitialized());
+        assertNull(device.getDeviceMcpHolder().getMcpCursor());
+        assertEquals(List.of("initialize", "tools/list", "tools/list", "tools/list"), device.methods);
+        List<String> names = device.getToolCallbacks().stream()
+                .map(toolCallback -> toolCallback.getToolDefinition().name()).sorted().toList();
+        assertEquals(List.of("mcp_self_audio_set_volume", "mcp_self_get_device_status", "mcp_self_light_turn_on"), names);
+
+        // 调用注册的工具，经MCP请求设备执行
+        ToolCallback volume = device.getToolsSessionHolder().getFunction("mcp_self_audio_set_volume");
+        assertEquals("\"self.audio.set_volume\"", volume.call("{\"volume\":50}"));
+    }
+
+    private static DeviceMcpMessage toolCall(ChatSession chatSession, String name) {
+        DeviceMcpMessage message = new DeviceMcpMessage();
+        message.setSessionId(chatSession.getSessionId());
+        DeviceMcpPayload payload = new DeviceMcpPayload();
+        payload.setId(chatSession.getDeviceMcpHolder().getMcpRequestId());
+        payload.setMethod("tools/call");
+        payload.setParams(Map.of("name", name, "arguments", Map.of()));
+        message.setPayload(payload);
+        return message;
+    }
+
+    /**
+     * 模拟设备：在虚拟线程上延迟响应收到的MCP请求，tools/call 以工具名作为结果，tools/list 分三页返回
+     */
+    private static class FakeDevice extends ChatSession {
+        private static final List<List<String>> PAGES = List.of(
+                List.of("self.get_device_status"), List.of("self.audio.set_volume"), List.of("self.light.turn_on"));
+
+        final List<Long> answered = new ArrayList<>();
+        final List<String> methods = new ArrayList<>();
+        final AtomicInteger completed = new AtomicInteger();
+        private final ToLongFunction<DeviceMcpPayload> delayMs;
+
+        FakeDevice(ToLongFunction<DeviceMcpPayload> delayMs) {
+            super("session-" + System.nanoTime());
+            this.delayMs = delayMs;
+            setFunctionSessionHolder(new ToolsSessionHolder(getSessionId(), new SysDevice(), null));
+        }
+
+        int answeredCount() {
+            synchronized (answered) {
+                return answered.size();
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void sendBinaryMessage(byte[] message) {
+        }
+
+        @Override
+        public void sendTextMessage(String message) {
+            Map<String, Object> json = JsonUtil.fromJson(message, new TypeReference<>() {
+            });
+            DeviceMcpPayload request = JsonUtil.OBJECT_MAPPER.convertValue(json.get("payload"), DeviceMcpPayload.class);
+            synchronized (methods) {
+                methods.add(request.getMethod());
+            }
+            long delay = delayMs.applyAsLong(request);
+            Thread.startVirtualThread(() -> {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                // 与 MessageHandler.handleDeviceMcpMessage 一样在收到消息的线程完成请求
+                if (getDeviceMcpHolder().getMcpPendingRequests().complete(response(request))) {
+                    completed.incrementAndGet();
+                }
+                synchronized (answered) {
+                    answered.add(request.getId());
+                }
+            });
+        }
+
+        @SuppressWarnings("unchecked")
+        private DeviceMcpMessage response(DeviceMcpPayload request) {
+            DeviceMcpPayload payload = new DeviceMcpPayload();
+            payload.setId(request.getId());
+            Map<String, Object> params = (Map<String, Object>) request.getParams();
+            switch (request.getMethod()) {
+                case "initialize" -> payload.setResult(Map.of("protocolVersion", "2024-11-05"));
+                case "tools/list" -> {
+                    String cursor = String.valueOf(params.get("cursor"));
+                    int page = cursor.isEmpty() ? 0 : Integer.parseInt(cursor.substring(1));
+                    List<Map<String, Object>> tools = PAGES.get(page).stream()
+                            .map(name -> Map.<String, Object>of("name", name, "description", name,
+                                    "inputSchema", Map.of("type", "object")))
+                            .toList();
+                    payload.setResult(Map.of("tools", tools,
+                            "nextCursor", page + 1 < PAGES.size() ? "p" + (page + 1) : ""));
+                }
+                default -> payload.setResult(Map.of("isError", false, "content", params.get("name")));
+            }
+            DeviceMcpMessage message = new DeviceMcpMessage();
+            message.setSessionId(getSessionId());
+            message.setPayload(payload);
+            return message;
+        }
+    }
+}
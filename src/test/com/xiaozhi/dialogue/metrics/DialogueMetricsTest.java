@@ -0,0 +1,326 @@
+package com.xiaozhi.dialogue.metrics;
+
+import com.xiaozhi.communication.common.ChatSession;
+import com.xiaozhi.communication.common.SessionManager;
+import com.xiaozhi.dialogue.llm.ChatService;
+import com.xiaozhi.dialogue.llm.cache.SemanticCache;
+import com.xiaozhi.dialogue.llm.factory.ChatModelFactory;
+import com.xiaozhi.dialogue.llm.memory.Conversation;
+import com.xiaozhi.dialogue.service.FilePlayer;
+import com.xiaozhi.dialogue.service.FileSynthesizer;
+import com.xiaozhi.dialogue.service.MessageService;
+import com.xiaozhi.dialogue.service.StreamSynthesizer;
+import com.xiaozhi.dialogue.service.ThreadSynthesizer;
+import com.xiaozhi.dialogue.service.VadService;
+import com.xiaozhi.dialogue.stt.SttService;
+import com.xiaozhi.dialogue.tts.TtsService;
+import com.xiaozhi.entity.SysDevice;
+import com.xiaozhi.entity.SysRole;
+import com.xiaozhi.utils.AudioUtils;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 用本地模拟的STT、LLM、TTS走完一轮对话，验证每个阶段及整体响应耗时都被记录
+ */
+public class DialogueMetricsTest {
+
+    private static final long SILENCE_MS = 500;
+    private static final long STT_DELAY_MS = 50;
+    private static final long TOKEN_DELAY_MS = 20;
+    private static final long TTS_DELAY_MS = 80;
+    private static final int TTS_CHUNKS = 5;
+    private static final long TTS_CHUNK_DELAY_MS = 20;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final DialogueMetrics metrics = new DialogueMetrics(registry);
+    private final List<Path> audioFiles = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void cleanup() throws Exception {
+        for (Path path : audioFiles) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    void recordsEveryStageOfTurn() throws Exception {
+        runTurn(false);
+
+        assertStage(TurnTrace.Stage.VAD, "silero", SILENCE_MS);
+        assertStage(TurnTrace.Stage.STT, "fake-stt", STT_DELAY_MS);
+        assertStage(TurnTrace.Stage.LLM_FIRST_TOKEN, "fake", TOKEN_DELAY_MS);
+        assertStage(TurnTrace.Stage.FIRST_SENTENCE, "fake", TOKEN_DELAY_MS * 3);
+        assertStage(TurnTrace.Stage.TTS, "fake-tts", TTS_DELAY_MS);
+        assertStage(TurnTrace.Stage.FIRST_AUDIO, "fake-tts", TTS_DELAY_MS);
+        assertResponse();
+    }
+
+    @Test
+    void recordsStreamingTts() throws Exception {
+        runTurn(true);
+
+        // 首段音频在首个分片到达时记录，整句在最后一个分片之后记录
+        assertStage(TurnTrace.Stage.TTS_FIRST_CHUNK, "fake-tts", TTS_DELAY_MS);
+        // 分片之间才有间隔
+        assertStage(TurnTrace.Stage.TTS, "fake-tts", TTS_DELAY_MS + (TTS_CHUNKS - 1) * TTS_CHUNK_DELAY_MS);
+        // 每句的整句耗时至少比首段音频多出后续分片的间隔
+        double firstChunk = registry.find(DialogueMetrics.STAGE_TIMER)
+                .tag("stage", TurnTrace.Stage.TTS_FIRST_CHUNK.tag()).timer().max(TimeUnit.MILLISECONDS);
+        double whole = registry.find(DialogueMetrics.STAGE_TIMER)
+                .tag("stage", TurnTrace.Stage.TTS.tag()).timer().max(TimeUnit.MILLISECONDS);
+        assertTrue(whole - firstChunk >= (TTS_CHUNKS - 1) * TTS_CHUNK_DELAY_MS,
+                "首段音频: " + firstChunk + "ms, 整句: " + whole + "ms");
+        assertStage(TurnTrace.Stage.FIRST_AUDIO, "fake-tts", TTS_DELAY_MS);
+        // 流式合成同样带上TTS提供商，而不是unknown
+        assertResponse();
+    }
+
+    /**
+     * VAD -> STT -> LLM -> 切分句子 -> TTS -> 播放，等待整体响应耗时记录完成
+     */
+    private void runTurn(boolean stream) throws Exception {
+        TestSession session = new TestSession();
+        session.setTurnTrace(metrics.newTurn());
+        session.setAssistantTimeMillis(System.currentTimeMillis());
+
+        // VAD：与DialogueService收到SPEECH_END时一样
+        session.getTurnTrace().speechEnded(VadService.PROVIDER_NAME, SILENCE_MS);
+
+        // STT
+        SttService stt = new FakeStt();
+        Sinks.Many<byte[]> audio = Sinks.many().unicast().onBackpressureBuffer();
+        audio.tryEmitComplete();
+        String text = stt.streamRecognitionResults(audio).blockLast().text();
+        session.getTurnTrace().sttFinished(stt.getProviderName());
+
+        // LLM -> 切分句子 -> TTS -> 播放
+        ChatService chatService = new ChatService();
+        ChatModelFactory chatModelFactory = mock(ChatModelFactory.class);
+        when(chatModelFactory.takeChatModel(any(ChatSession.class))).thenReturn(new FakeChatModel());
+        ReflectionTestUtils.setField(chatService, "chatModelFactory", chatModelFactory);
+        ReflectionTestUtils.setField(chatService, "semanticCache",
+                new SemanticCache(List.of(), 0.92f, 60, 1000, 1000, null));
+
+        FilePlayer player = new FilePlayer(session, new MessageService(), mock(SessionManager.class));
+        ThreadSynthesizer synthesizer = stream
+                ? new StreamSynthesizer(session, new MessageService(), new FakeTts(), player, 2, null)
+                : new FileSynthesizer(session, new MessageService(), new FakeTts(), player, 2, null);
+        session.setPlayer(player);
+        session.setSynthesizer(synthesizer);
+        try {
+            synthesizer.startSynthesis(chatService.chatStream(session, new UserMessage(text), false));
+            assertTrue(session.firstFrame.await(10, TimeUnit.SECONDS), "未下发音频");
+            // 首帧发送之后才记录；流式合成的整句耗时在最后一个分片之后记录
+            long deadline = System.currentTimeMillis() + 2000;
+            while ((registry.find(DialogueMetrics.RESPONSE_TIMER).timer() == null
+                    || registry.find(DialogueMetrics.STAGE_TIMER).tag("stage", TurnTrace.Stage.TTS.tag()).timer() == null)
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        } finally {
+            synthesizer.cancel();
+            player.stop();
+        }
+    }
+
+    private void assertResponse() {
+        Timer response = registry.find(DialogueMetrics.RESPONSE_TIMER)
+                .tag("stt", "fake-stt").tag("llm", "fake").tag("tts", "fake-tts").timer();
+        assertNotNull(response, "未记录整体响应耗时");
+        assertEquals(1, response.count());
+        // 从说话停止开始计算，包含VAD等待的静音时长
+        long millis = (long) response.totalTime(TimeUnit.MILLISECONDS);
+        assertTrue(millis >= SILENCE_MS + STT_DELAY_MS + TTS_DELAY_MS, "响应耗时: " + millis);
+    }
+
+    @Test
+    void recordsEachBoundaryOnce() {
+        TurnTrace trace = metrics.newTurn();
+        trace.speechEnded(VadService.PROVIDER_NAME, 300);
+        trace.speechEnded(VadService.PROVIDER_NAME, 300);
+        trace.sttFinished("vosk");
+        trace.llmRequested("openai");
+        trace.llmFirstToken();
+        trace.llmFirstToken();
+        trace.firstSentence();
+        trace.firstSentence();
+        trace.firstAudio();
+        trace.firstAudio();
+
+        for (TurnTrace.Stage stage : List.of(TurnTrace.Stage.VAD, TurnTrace.Stage.STT,
+                TurnTrace.Stage.LLM_FIRST_TOKEN, TurnTrace.Stage.FIRST_SENTENCE, TurnTrace.Stage.FIRST_AUDIO)) {
+            assertEquals(1, registry.find(DialogueMetrics.STAGE_TIMER).tag("stage", stage.tag()).timer().count(), stage.tag());
+        }
+        assertEquals(1, registry.find(DialogueMetrics.RESPONSE_TIMER).timer().count());
+
+        // 会话第一轮对话之前的追踪不发布指标
+        TurnTrace.NOOP.speechEnded(VadService.PROVIDER_NAME, 300);
+        TurnTrace.NOOP.firstAudio();
+        assertEquals(1, registry.find(DialogueMetrics.RESPONSE_TIMER).timer().count());
+    }
+
+    private void assertStage(TurnTrace.Stage stage, String provider, long minMillis) {
+        Timer timer = registry.find(DialogueMetrics.STAGE_TIMER).tag("stage", stage.tag()).tag("provider", provider).timer();
+        assertNotNull(timer, "未记录阶段: " + stage.tag());
+        assertTrue(timer.count() >= 1, stage.tag());
+        assertTrue(timer.max(TimeUnit.MILLISECONDS) >= minMillis,
+                stage.tag() + ": " + timer.max(TimeUnit.MILLISECONDS) + "ms");
+    }
+
+    private static class FakeStt implements SttService {
+        @Override
+        public String getProviderName() {
+            return "fake-stt";
+        }
+
+        @Override
+        public String recognition(byte[] audioData) {
+            return streamRecognition(null);
+        }
+
+        @Override
+        public String streamRecognition(Sinks.Many<byte[]> audioSink) {
+            try {
+                Thread.sleep(STT_DELAY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "给我讲个故事";
+        }
+    }
+
+    /**
+     * 按固定间隔逐个返回token的模型
+     */
+    private static class FakeChatModel implements ChatModel {
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Flux<ChatResponse> stream(Prompt prompt) {
+            return Flux.just("从前", "有一只", "小兔子。", "它住在", "森林里。")
+                    .delayElements(Duration.ofMillis(TOKEN_DELAY_MS))
+                    .map(token -> new ChatResponse(List.of(new Generation(new AssistantMessage(token)))));
+        }
+    }
+
+    private class FakeTts implements TtsService {
+        @Override
+        public String getProviderName() {
+            return "fake-tts";
+        }
+
+        @Override
+        public String getVoiceName() {
+            return "fake";
+        }
+
+        @Override
+        public Float getSpeed() {
+            return 1.0f;
+        }
+
+        @Override
+        public Float getPitch() {
+            return 1.0f;
+        }
+
+        @Override
+        public boolean isSupportStreamTts() {
+            return true;
+        }
+
+        @Override
+        public String textToSpeech(String text) throws Exception {
+            Thread.sleep(TTS_DELAY_MS);
+            String path = AudioUtils.saveAsWav(tone(AudioUtils.SAMPLE_RATE / 5));
+            audioFiles.add(Path.of(path));
+            return path;
+        }
+
+        /**
+         * 首个分片在TTS_DELAY_MS后返回，之后每隔TTS_CHUNK_DELAY_MS返回一片
+         */
+        @Override
+        public void streamTextToSpeech(String text, Consumer<byte[]> audioDataConsumer) throws Exception {
+            Thread.sleep(TTS_DELAY_MS);
+            for (int i = 0; i < TTS_CHUNKS; i++) {
+                if (i > 0) {
+                    Thread.sleep(TTS_CHUNK_DELAY_MS);
+                }
+                audioDataConsumer.accept(tone(AudioUtils.SAMPLE_RATE / 25));
+            }
+        }
+
+        private byte[] tone(int samples) {
+            byte[] pcm = new byte[samples * 2];
+            for (int i = 0; i < samples; i++) {
+                short s = (short) (Math.sin(2 * Math.PI * 440 * i / AudioUtils.SAMPLE_RATE) * 8000);
+                pcm[i * 2] = (byte) (s & 0xFF);
+                pcm[i * 2 + 1] = (byte) ((s >> 8) & 0xFF);
+            }
+            return pcm;
+        }
+    }
+
+    private static class TestSession extends ChatSession {
+        final CountDownLatch firstFrame = new CountDownLatch(1);
+
+        TestSession() {
+            super("metrics-session");
+            SysDevice device = new SysDevice();
+            device.setDeviceId("aa:bb:cc:dd:ee:ff");
+            device.setRoleId(1);
+            setSysDevice(device);
+            SysRole role = new SysRole();
+            role.setRoleId(1);
+            setConversation(new Conversation(device, role, getSessionId()));
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void sendTextMessage(String message) {
+        }
+
+        @Override
+        public void sendBinaryMessage(byte[] message) {
+            firstFrame.countDown();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.xiaozhi.dialogue.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 断句吞吐量，单位为每秒处理的token数。
+ * reply 为带标点、表情和颜文字的普通回复；unbroken 为长时间没有断句标记的输出（如长段英文、代码），
+ * 此时每个字符都要判断当前句子是否包含颜文字。
+ * <p>
+ * 运行：在IDE中执行 main 方法，或 mvn test-compile 后以测试classpath运行本类
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DialogueHelperBenchmark {
+
+    // 每次调用处理的token数
+    private static final int TOKENS = 4000;
+
+    private static final String REPLY = "好的，我来给你讲一个笑话吧：有一天，小明去上学，老师问他为什么迟到，"
+            + "他说因为路上有个牌子写着\"学校，慢行\"。哈哈哈😂 今天北京的天气晴，气温在15到25度之间，"
+            + "适合外出活动哦😊 嗯嗯，我明白你的意思了(^_^)，我们可以一起想办法，别担心哦！\n"
+            + "The weather today is sunny, with a high of 25 degrees. Don't forget your sunglasses! ";
+
+    private static final String UNBROKEN = "The quick brown fox jumps over the lazy dog and keeps running "
+            + "through the long field without ever stopping to take a breath ";
+
+    @Param({"reply", "unbroken"})
+    public String text;
+
+    private List<String> tokens;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String source = "reply".equals(text) ? REPLY : UNBROKEN;
+        // 与LLM流式输出类似，每个token为2到4个字符
+        tokens = new ArrayList<>(TOKENS);
+        int pos = 0;
+        for (int i = 0; i < TOKENS; i++) {
+            int length = 2 + i % 3;
+            StringBuilder token = new StringBuilder(length);
+            for (int k = 0; k < length; k++) {
+                int codePoint = source.codePointAt(pos);
+                token.appendCodePoint(codePoint);
+                pos = (pos + Character.charCount(codePoint)) % source.length();
+            }
+            tokens.add(token.toString());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public long split() {
+        DialogueHelper helper = new DialogueHelper();
+        return Flux.<String>create(sink -> {
+            for (String token : tokens) {
+                helper.onToken(token, sink);
+            }
+            helper.onComplete(sink);
+        }).count().block();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(DialogueHelperBenchmark.class.getSimpleName()).build()).run();
+    }
+}
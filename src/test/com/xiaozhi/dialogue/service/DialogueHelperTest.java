@@ -0,0 +1,97 @@
+package com.xiaozhi.dialogue.service;
+
+import com.xiaozhi.utils.EmojiUtils;
+import com.xiaozhi.utils.JsonUtil;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import reactor.core.publisher.Flux;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 用固定语料验证断句结果不变。
+ * dialogue/sentence-split-golden.jsonl 每行是一组LLM输出的token及其断句结果，
+ * 包括常见回复（整段、逐字、随机切分三种token粒度）和由标点、表情、颜文字等随机组成的文本，
+ * 断句结果由改为状态机之前基于正则的实现生成。
+ */
+public class DialogueHelperTest {
+
+    private static final String GOLDEN = "/dialogue/sentence-split-golden.jsonl";
+
+    record Case(String name, List<String> tokens, List<String> sentences) {
+    }
+
+    @Test
+    void matchesGoldenOutput() throws Exception {
+        List<Case> cases = loadGolden();
+        assertTrue(cases.size() > 200);
+        for (Case c : cases) {
+            assertEquals(c.sentences(), split(c.tokens()), c.name());
+        }
+    }
+
+    @Test
+    void convertsChatResponseStream() throws Exception {
+        Case c = loadGolden().getFirst();
+        Flux<ChatResponse> responses = Flux.fromIterable(c.tokens())
+                .map(token -> new ChatResponse(List.of(new Generation(new AssistantMessage(token)))));
+        assertEquals(c.sentences(), new DialogueHelper().convert2sentence(responses).collectList().block());
+    }
+
+    @Test
+    void kaomojiIsDetectedAtTheCharacterThatCompletesIt() {
+        String alphabet = "好a 。，!?()（）<>＜＞\\¯*_-o/:;D=^・ω😀";
+        int[] codePoints = alphabet.codePoints().toArray();
+        Random random = new Random(42);
+        for (int n = 0; n < 5000; n++) {
+            StringBuilder text = new StringBuilder();
+            boolean contains = false;
+            for (int k = random.nextInt(30); k >= 0; k--) {
+                text.appendCodePoint(codePoints[random.nextInt(codePoints.length)]);
+                contains = contains || EmojiUtils.endsWithKaomoji(text);
+                assertEquals(EmojiUtils.containsKaomoji(text.toString()), contains, text.toString());
+            }
+        }
+    }
+
+    @Test
+    void longOutputWithoutBreaksIsEmittedOnComplete() {
+        String text = "很长的没有标点的文本".repeat(2000);
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < text.length(); i += 3) {
+            tokens.add(text.substring(i, Math.min(text.length(), i + 3)));
+        }
+        assertEquals(List.of(text), split(tokens));
+    }
+
+    private static List<String> split(List<String> tokens) {
+        DialogueHelper helper = new DialogueHelper();
+        return Flux.<String>create(sink -> {
+            for (String token : tokens) {
+                helper.onToken(token, sink);
+            }
+            helper.onComplete(sink);
+        }).collectList().block();
+    }
+
+    private static List<Case> loadGolden() throws Exception {
+        List<Case> cases = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                DialogueHelperTest.class.getResourceAsStream(GOLDEN), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                cases.add(JsonUtil.fromJson(line, Case.class));
+            }
+        }
+        return cases;
+    }
+}
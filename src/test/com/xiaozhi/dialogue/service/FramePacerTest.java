@@ -0,0 +1,320 @@
+package com.xiaozhi.dialogue.service;
+
+import com.xiaozhi.utils.AudioUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 帧下发对比：500个会话同时播放，
+ * 原实现（每会话一个虚拟线程逐帧 Thread.sleep） vs 共享的 FramePacer。
+ * 抖动为相邻两帧实际发送间隔与60ms之差，跳过预缓冲阶段的帧；漂移为最后一帧相对理想时间的延迟。
+ * 单次抖动受机器负载影响大，断言只比较不随负载累积的漂移；超时未播完的漂移记为无穷大，FramePacer的漂移断言因此同时检查了超时。
+ * 时间线、暂停和取消的测试使用手动推进的时钟，写循环在调度线程中直接执行。
+ */
+public class FramePacerTest {
+
+    private static final int SESSIONS = 500;
+    private static final int FRAMES = 40;
+    private static final long FRAME_MS = AudioUtils.OPUS_FRAME_DURATION_MS;
+    private static final long PREBUFFER_MS = 120;
+    private static final int PREBUFFER_FRAMES = (int) (PREBUFFER_MS / FRAME_MS) + 1;
+
+    private final FramePacer pacer = new FramePacer(PREBUFFER_MS, 2, 4);
+    private final AtomicBoolean loaded = new AtomicBoolean();
+    private final ManualClock clock = new ManualClock();
+    private final FramePacer manualPacer = new FramePacer(PREBUFFER_MS, clock, Runnable::run);
+    // 负载线程的计算结果，避免计算被优化掉
+    private volatile double sink;
+
+    @AfterEach
+    void tearDown() {
+        loaded.set(false);
+        pacer.shutdown();
+    }
+
+    @Test
+    void pacerDoesNotDriftUnderLoad() throws Exception {
+        Stats sleepIdle = measure(this::runSleeping);
+        Stats pacerIdle = measure(this::runPaced);
+
+        // 模拟VAD、Opus编解码等占用虚拟线程载体线程的CPU负载
+        startLoad();
+        Stats sleepLoaded = measure(this::runSleeping);
+        Stats pacerLoaded = measure(this::runPaced);
+
+        assertTrue(pacerIdle.maxDriftMs < FRAME_MS, "空闲漂移 " + pacerIdle.maxDriftMs + "ms");
+
+        // 按绝对时间下发，最后一帧不应累积漂移
+        assertTrue(pacerLoaded.maxDriftMs < FRAME_MS, "漂移 " + pacerLoaded.maxDriftMs + "ms");
+        assertTrue(pacerLoaded.maxDriftMs < sleepLoaded.maxDriftMs,
+                "FramePacer 漂移 " + pacerLoaded + ", Thread.sleep 漂移 " + sleepLoaded);
+    }
+
+    @Test
+    void pauseAndCancel() throws Exception {
+        List<Long> sent = new ArrayList<>();
+        FramePacer.Channel channel = manualPacer.open(frame -> {
+            sent.add(clock.millis());
+            return true;
+        });
+        for (int i = 0; i < 4; i++) {
+            channel.offer(new byte[1]);
+        }
+        channel.pause(300);
+        channel.offer(new byte[1]);
+
+        // 预缓冲的前3帧立即发送，第4帧在60ms，第5帧在 60+60+300ms
+        clock.advance(0);
+        assertEquals(List.of(0L, 0L, 0L), sent);
+        clock.advance(59);
+        assertEquals(3, sent.size());
+        clock.advance(1);
+        assertEquals(List.of(0L, 0L, 0L, 60L), sent);
+        clock.advance(359);
+        assertEquals(4, sent.size());
+        clock.advance(1);
+        assertEquals(List.of(0L, 0L, 0L, 60L, 420L), sent);
+        channel.awaitDrained();
+
+        // 时间线未落后超过预缓冲，紧接着上一帧每60ms一帧
+        for (int i = 0; i < 10; i++) {
+            channel.offer(new byte[1]);
+        }
+        clock.advance(59);
+        assertEquals(5, sent.size());
+        clock.advance(1);
+        assertEquals(480L, sent.get(5));
+        assertEquals(9, channel.pending());
+        channel.cancel();
+        channel.awaitDrained();
+        channel.offer(new byte[1]);
+        clock.advance(1000);
+        assertEquals(0, channel.pending());
+        assertEquals(6, sent.size());
+        assertEquals(0, clock.scheduled());
+    }
+
+    @Test
+    void senderCanStopChannel() throws Exception {
+        AtomicInteger sent = new AtomicInteger();
+        FramePacer.Channel channel = manualPacer.open(frame -> sent.incrementAndGet() < 3);
+        for (int i = 0; i < 10; i++) {
+            channel.offer(new byte[1]);
+        }
+        clock.advance(1000);
+        channel.awaitDrained();
+        assertTrue(channel.isCancelled());
+        assertEquals(3, sent.get());
+        assertEquals(0, channel.pending());
+    }
+
+    @Test
+    void blockedSenderDoesNotDelayOtherChannels() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        FramePacer.Channel slow = pacer.open(frame -> {
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        });
+        slow.offer(new byte[1]);
+        slow.offer(new byte[1]);
+        assertTrue(blocked.await(1, TimeUnit.SECONDS));
+
+        // 调度线程2个、写线程4个，阻塞的会话只占用一个写线程，不占用调度线程
+        List<FramePacer.Channel> channels = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(5);
+        for (int c = 0; c < 5; c++) {
+            AtomicInteger count = new AtomicInteger();
+            FramePacer.Channel channel = pacer.open(frame -> {
+                if (count.incrementAndGet() == 5) {
+                    done.countDown();
+                }
+                return true;
+            });
+            for (int i = 0; i < 5; i++) {
+                channel.offer(new byte[1]);
+            }
+            channels.add(channel);
+        }
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        for (FramePacer.Channel channel : channels) {
+            channel.awaitDrained();
+        }
+        assertEquals(1, slow.pending());
+
+        release.countDown();
+        slow.awaitDrained();
+        assertEquals(0, slow.pending());
+    }
+
+    private interface Session {
+        void play(long[] sendTimes, CountDownLatch done);
+    }
+
+    /**
+     * 原FilePlayer的做法：墙上时钟的绝对时间戳 + Thread.sleep
+     */
+    private void runSleeping(long[] sendTimes, CountDownLatch done) {
+        Thread.startVirtualThread(() -> {
+            long startTimestamp = System.currentTimeMillis();
+            long playPosition = -PREBUFFER_MS;
+            try {
+                for (int i = 0; i < FRAMES; i++) {
+                    long delay = startTimestamp + playPosition - System.currentTimeMillis();
+                    if (delay > 0) {
+                        Thread.sleep(delay);
+                    }
+                    sendTimes[i] = System.nanoTime();
+                    playPosition += FRAME_MS;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                done.countDown();
+            }
+        });
+    }
+
+    private void runPaced(long[] sendTimes, CountDownLatch done) {
+        AtomicInteger index = new AtomicInteger();
+        FramePacer.Channel channel = pacer.open(frame -> {
+            int i = index.getAndIncrement();
+            sendTimes[i] = System.nanoTime();
+            if (i == FRAMES - 1) {
+                done.countDown();
+            }
+            return true;
+        });
+        for (int i = 0; i < FRAMES; i++) {
+            channel.offer(new byte[1]);
+        }
+    }
+
+    private Stats measure(Session session) throws Exception {
+        long[][] sendTimes = new long[SESSIONS][FRAMES];
+        long[] starts = new long[SESSIONS];
+        CountDownLatch done = new CountDownLatch(SESSIONS);
+        for (int s = 0; s < SESSIONS; s++) {
+            starts[s] = System.nanoTime();
+            session.play(sendTimes[s], done);
+        }
+        if (!done.await(FRAMES * FRAME_MS * 5, TimeUnit.MILLISECONDS)) {
+            // 载体线程少时（如单核），负载线程可能让睡眠的虚拟线程一直得不到调度，视为漂移无上限
+            return new Stats(Double.NaN, Double.NaN, Double.NaN, Double.POSITIVE_INFINITY);
+        }
+
+        double[] jitter = new double[SESSIONS * (FRAMES - PREBUFFER_FRAMES)];
+        int n = 0;
+        double maxDrift = 0;
+        for (int s = 0; s < SESSIONS; s++) {
+            for (int i = PREBUFFER_FRAMES; i < FRAMES; i++) {
+                double interval = (sendTimes[s][i] - sendTimes[s][i - 1]) / 1e6;
+                jitter[n++] = Math.abs(interval - FRAME_MS);
+            }
+            double ideal = (FRAMES - 1) * FRAME_MS - PREBUFFER_MS;
+            maxDrift = Math.max(maxDrift, (sendTimes[s][FRAMES - 1] - starts[s]) / 1e6 - ideal);
+        }
+        Arrays.sort(jitter);
+        return new Stats(Arrays.stream(jitter).average().orElse(0), jitter[(int) (jitter.length * 0.99)],
+                jitter[jitter.length - 1], maxDrift);
+    }
+
+    private void startLoad() {
+        loaded.set(true);
+        int carriers = Runtime.getRuntime().availableProcessors();
+        for (int i = 0; i < carriers; i++) {
+            Thread.startVirtualThread(() -> {
+                double x = 0;
+                while (loaded.get()) {
+                    // 每次约几毫秒的计算，期间不让出载体线程
+                    for (int k = 0; k < 2_000_000; k++) {
+                        x += Math.sqrt(k);
+                    }
+                    Thread.yield();
+                }
+                sink = x;
+            });
+        }
+    }
+
+    private record Stats(double meanMs, double p99Ms, double maxMs, double maxDriftMs) {
+        @Override
+        public String toString() {
+            return String.format("平均抖动 %.2fms, p99 %.2fms, 最大 %.2fms, 最大漂移 %.2fms", meanMs, p99Ms, maxMs, maxDriftMs);
+        }
+    }
+
+    /**
+     * 手动推进的时钟，advance 时按到期顺序执行定时任务
+     */
+    private static class ManualClock implements FramePacer.Clock {
+        private record Task(long deadline, long seq, FutureTask<?> future) {
+        }
+
+        private final PriorityQueue<Task> tasks = new PriorityQueue<>(
+                (a, b) -> a.deadline != b.deadline ? Long.compare(a.deadline, b.deadline) : Long.compare(a.seq, b.seq));
+        private long now = 0;
+        private long seq = 0;
+
+        @Override
+        public synchronized long nanoTime() {
+            return now;
+        }
+
+        long millis() {
+            return TimeUnit.NANOSECONDS.toMillis(nanoTime());
+        }
+
+        @Override
+        public synchronized Future<?> schedule(Runnable task, long delayNanos) {
+            FutureTask<?> future = new FutureTask<>(task, null);
+            tasks.add(new Task(now + delayNanos, seq++, future));
+            return future;
+        }
+
+        void advance(long millis) {
+            long target;
+            synchronized (this) {
+                target = now + TimeUnit.MILLISECONDS.toNanos(millis);
+            }
+            while (true) {
+                Task task;
+                synchronized (this) {
+                    task = tasks.peek();
+                    if (task == null || task.deadline > target) {
+                        now = target;
+                        return;
+                    }
+                    tasks.poll();
+                    now = Math.max(now, task.deadline);
+                }
+                task.future.run();
+            }
+        }
+
+        /**
+         * 尚未执行且未取消的定时任务数
+         */
+        synchronized int scheduled() {
+            return (int) tasks.stream().filter(task -> !task.future.isCancelled()).count();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.xiaozhi.dialogue.service;
+
+import com.xiaozhi.communication.common.ChatSession;
+import com.xiaozhi.communication.common.SessionManager;
+import com.xiaozhi.dialogue.tts.TtsService;
+import com.xiaozhi.utils.AudioUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 首帧耗时对比：流式合成（PCM分片直接编码下发） vs 文件合成（整句落盘后再读取编码）
+ */
+public class StreamSynthesizerTest {
+
+    // 10个分片，每片100ms音频，分片间隔30ms，模拟远端TTS边合成边返回
+    private static final int CHUNKS = 10;
+    private static final int CHUNK_SAMPLES = AudioUtils.SAMPLE_RATE / 10;
+    private static final long CHUNK_DELAY_MS = 30;
+
+    private final List<Path> audioFiles = new ArrayList<>();
+
+    @AfterEach
+    void cleanup() throws Exception {
+        for (Path path : audioFiles) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    void streamPathSendsFirstFrameBeforeSynthesisFinishes() throws Exception {
+        long fileFirstFrame = measureFirstFrameMillis(false);
+        long streamFirstFrame = measureFirstFrameMillis(true);
+
+        // 文件路径至少要等所有分片返回
+        assertTrue(fileFirstFrame >= CHUNKS * CHUNK_DELAY_MS, "文件路径首帧: " + fileFirstFrame);
+        // 流式路径在合成结束之前就已下发首帧
+        assertTrue(streamFirstFrame < CHUNKS * CHUNK_DELAY_MS / 2, "流式路径首帧: " + streamFirstFrame);
+    }
+
+    @Test
+    void streamPathSendsAllFrames() throws Exception {
+        TestSession session = new TestSession();
+        FilePlayer player = new FilePlayer(session, new MessageService(), mock(SessionManager.class));
+        StreamSynthesizer synthesizer = new StreamSynthesizer(session, new MessageService(), new FakeStreamingTts(), player);
+        session.setSynthesizer(synthesizer);
+        try {
+            Sentence sentence = newSentence();
+            synthesizer.doSynthesize(sentence);
+            // 1秒音频按60ms一帧，补零后共17帧
+            int expected = (CHUNKS * CHUNK_SAMPLES + AudioUtils.FRAME_SIZE - 1) / AudioUtils.FRAME_SIZE;
+            long deadline = System.currentTimeMillis() + 5000;
+            while (session.frames.get() < expected && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(expected, session.frames.get());
+            assertTrue(sentence.isSynthesisCompleted());
+            assertNotNull(sentence.getAudioPath());
+            audioFiles.add(sentence.getAudioPath());
+        } finally {
+            synthesizer.cancel();
+        }
+    }
+
+    private long measureFirstFrameMillis(boolean stream) throws Exception {
+        TestSession session = new TestSession();
+        FilePlayer player = new FilePlayer(session, new MessageService(), mock(SessionManager.class));
+        FakeStreamingTts tts = new FakeStreamingTts();
+        ThreadSynthesizer synthesizer = stream
+                ? new StreamSynthesizer(session, new MessageService(), tts, player)
+                : new FileSynthesizer(session, new MessageService(), tts, player);
+        session.setSynthesizer(synthesizer);
+        try {
+            Sentence sentence = newSentence();
+            session.startNanos = System.nanoTime();
+            synthesizer.doSynthesize(sentence);
+            assertTrue(session.firstFrame.await(5, TimeUnit.SECONDS));
+            if (sentence.getAudioPath() != null) {
+                audioFiles.add(sentence.getAudioPath());
+            }
+            return TimeUnit.NANOSECONDS.toMillis(session.firstFrameNanos - session.startNanos);
+        } finally {
+            synthesizer.cancel();
+        }
+    }
+
+    private static Sentence newSentence() {
+        Sentence sentence = new Sentence("你好，这是一段测试语音。");
+        sentence.setText4Speech(sentence.getText());
+        sentence.setShouldMerge(false);
+        return sentence;
+    }
+
+    /**
+     * 本地模拟的流式TTS，按固定间隔返回正弦波PCM分片
+     */
+    static class FakeStreamingTts implements TtsService {
+
+        @Override
+        public String getProviderName() {
+            return "fake";
+        }
+
+        @Override
+        public String getVoiceName() {
+            return "fake";
+        }
+
+        @Override
+        public Float getSpeed() {
+            return 1.0f;
+        }
+
+        @Override
+        public Float getPitch() {
+            return 1.0f;
+        }
+
+        @Override
+        public boolean isSupportStreamTts() {
+            return true;
+        }
+
+        @Override
+        public String textToSpeech(String text) throws Exception {
+            ByteArrayOutputStream pcm = new ByteArrayOutputStream();
+            streamTextToSpeech(text, pcm::writeBytes);
+            return AudioUtils.saveAsWav(pcm.toByteArray());
+        }
+
+        @Override
+        public void streamTextToSpeech(String text, Consumer<byte[]> audioDataConsumer) throws Exception {
+            for (int c = 0; c < CHUNKS; c++) {
+                Thread.sleep(CHUNK_DELAY_MS);
+                byte[] chunk = new byte[CHUNK_SAMPLES * 2];
+                for (int i = 0; i < CHUNK_SAMPLES; i++) {
+                    short s = (short) (Math.sin(2 * Math.PI * 440 * (c * CHUNK_SAMPLES + i) / AudioUtils.SAMPLE_RATE) * 8000);
+                    chunk[i * 2] = (byte) (s & 0xFF);
+                    chunk[i * 2 + 1] = (byte) ((s >> 8) & 0xFF);
+                }
+                audioDataConsumer.accept(chunk);
+            }
+        }
+    }
+
+    /**
+     * 记录下发帧的会话
+     */
+    static class TestSession extends ChatSession {
+        final CountDownLatch firstFrame = new CountDownLatch(1);
+        final AtomicInteger frames = new AtomicInteger();
+        volatile long startNanos;
+        volatile long firstFrameNanos;
+
+        TestSession() {
+            super("test-session");
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void sendTextMessage(String message) {
+        }
+
+        @Override
+        public void sendBinaryMessage(byte[] message) {
+            if (frames.getAndIncrement() == 0) {
+                firstFrameNanos = System.nanoTime();
+                firstFrame.countDown();
+            }
+        }
+    }
+}
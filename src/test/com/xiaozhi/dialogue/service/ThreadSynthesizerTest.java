@@ -0,0 +1,205 @@
+package com.xiaozhi.dialogue.service;
+
+import com.xiaozhi.communication.common.SessionManager;
+import com.xiaozhi.dialogue.service.StreamSynthesizerTest.TestSession;
+import com.xiaozhi.dialogue.tts.TtsService;
+import com.xiaozhi.utils.AudioUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 预合成对比：逐句合成 vs 同一会话多句并发合成。
+ * 模拟TTS延迟随机（600~1000ms），并发合成的句子完成顺序是乱的，验证播放顺序仍与输入一致，且句间停顿更短。
+ */
+public class ThreadSynthesizerTest {
+
+    private static final List<String> SENTENCES = List.of(
+            "今天天气不错。", "我们去公园走走吧。", "顺便买点水果回来。", "晚上再一起看电影。", "你觉得怎么样？");
+    // 每个字对应的音频时长
+    private static final int MS_PER_CHAR = 80;
+    // LLM输出句子的间隔
+    private static final long LLM_INTERVAL_MS = 100;
+
+    private final List<Path> audioFiles = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void cleanup() throws Exception {
+        for (Path path : audioFiles) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    void lookAheadKeepsOrderAndShortensGaps() throws Exception {
+        Result sequential = play(1, null);
+        Result lookAhead = play(3, new Semaphore(16));
+
+        assertEquals(String.join("", SENTENCES), sequential.text);
+        assertEquals(String.join("", SENTENCES), lookAhead.text);
+        // 合成期间到达的文本会合并为一句，预合成时合并得更少
+        assertTrue(lookAhead.sentences > sequential.sentences);
+        assertTrue(lookAhead.gapMillis < sequential.gapMillis,
+                "预合成停顿 " + lookAhead.gapMillis + "ms, 逐句合成停顿 " + sequential.gapMillis + "ms");
+    }
+
+    @Test
+    void providerPermitsBoundConcurrency() throws Exception {
+        RandomLatencyTts tts = new RandomLatencyTts(7);
+        play(3, new Semaphore(1), tts);
+        assertEquals(1, tts.maxConcurrent.get());
+    }
+
+    @Test
+    void cancelDropsPendingSentences() throws Exception {
+        TestSession session = new TestSession();
+        session.setAssistantTimeMillis(System.currentTimeMillis());
+        RecordingPlayer player = new RecordingPlayer(session);
+        FileSynthesizer synthesizer = new FileSynthesizer(session, new MessageService(),
+                new RandomLatencyTts(3), player, 3, null);
+        session.setSynthesizer(synthesizer);
+        SENTENCES.forEach(synthesizer::append);
+        Thread.sleep(100);
+        synthesizer.cancel();
+        Thread.sleep(1200);
+        assertTrue(player.starts.isEmpty(), "中止后不应再播放: " + player.starts);
+    }
+
+    private Result play(int maxInFlight, Semaphore providerPermits) throws Exception {
+        return play(maxInFlight, providerPermits, new RandomLatencyTts(42));
+    }
+
+    private Result play(int maxInFlight, Semaphore providerPermits, RandomLatencyTts tts) throws Exception {
+        TestSession session = new TestSession();
+        session.setAssistantTimeMillis(System.currentTimeMillis());
+        RecordingPlayer player = new RecordingPlayer(session);
+        FileSynthesizer synthesizer = new FileSynthesizer(session, new MessageService(), tts, player,
+                maxInFlight, providerPermits);
+        session.setSynthesizer(synthesizer);
+
+        for (String sentence : SENTENCES) {
+            synthesizer.append(sentence);
+            Thread.sleep(LLM_INTERVAL_MS);
+        }
+        synthesizer.setLast();
+        assertTrue(player.stopped.await(30, TimeUnit.SECONDS), "播放未结束");
+
+        // 上一句最后一帧到下一句第一帧的间隔
+        long gaps = 0;
+        for (int i = 1; i < player.firstFrames.size(); i++) {
+            gaps += player.firstFrames.get(i) - player.lastFrames.get(i - 1);
+        }
+        int sentences = player.starts.size();
+        long gap = sentences > 1 ? gaps / (sentences - 1) : 0;
+        return new Result(String.join("", player.starts), sentences, gap);
+    }
+
+    private record Result(String text, int sentences, long gapMillis) {
+    }
+
+    /**
+     * 记录句子开始与帧下发时间的播放器
+     */
+    private static class RecordingPlayer extends FilePlayer {
+        final List<String> starts = new CopyOnWriteArrayList<>();
+        final List<Long> firstFrames = new CopyOnWriteArrayList<>();
+        final List<Long> lastFrames = new CopyOnWriteArrayList<>();
+        final CountDownLatch stopped = new CountDownLatch(1);
+
+        RecordingPlayer(TestSession session) {
+            super(session, new MessageService(), mock(SessionManager.class));
+        }
+
+        @Override
+        protected void sendSentenceStart(String text) {
+            starts.add(text);
+        }
+
+        @Override
+        public void sendOpusFrame(byte[] opusFrame) {
+            long now = System.currentTimeMillis();
+            // 播放器单线程下发，句子的帧与sendSentenceStart交替出现
+            if (firstFrames.size() < starts.size()) {
+                firstFrames.add(now);
+                lastFrames.add(now);
+            } else {
+                lastFrames.set(lastFrames.size() - 1, now);
+            }
+        }
+
+        @Override
+        protected void sendStop() {
+            super.sendStop();
+            stopped.countDown();
+        }
+    }
+
+    /**
+     * 延迟随机的非流式TTS，音频时长与文本长度成正比
+     */
+    private class RandomLatencyTts implements TtsService {
+        final Random random;
+        final AtomicInteger concurrent = new AtomicInteger();
+        final AtomicInteger maxConcurrent = new AtomicInteger();
+
+        RandomLatencyTts(long seed) {
+            this.random = new Random(seed);
+        }
+
+        @Override
+        public String getProviderName() {
+            return "fake";
+        }
+
+        @Override
+        public String getVoiceName() {
+            return "fake";
+        }
+
+        @Override
+        public Float getSpeed() {
+            return 1.0f;
+        }
+
+        @Override
+        public Float getPitch() {
+            return 1.0f;
+        }
+
+        @Override
+        public String textToSpeech(String text) throws Exception {
+            maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            try {
+                long latency;
+                synchronized (random) {
+                    latency = 600 + random.nextInt(400);
+                }
+                Thread.sleep(latency);
+                int samples = text.length() * MS_PER_CHAR * AudioUtils.SAMPLE_RATE / 1000;
+                byte[] pcm = new byte[samples * 2];
+                for (int i = 0; i < samples; i++) {
+                    short s = (short) (Math.sin(2 * Math.PI * 440 * i / AudioUtils.SAMPLE_RATE) * 8000);
+                    pcm[i * 2] = (byte) (s & 0xFF);
+                    pcm[i * 2 + 1] = (byte) ((s >> 8) & 0xFF);
+                }
+                String path = AudioUtils.saveAsWav(pcm);
+                audioFiles.add(Path.of(path));
+                return path;
+            } finally {
+                concurrent.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.xiaozhi.dialogue.service;
+
+import com.xiaozhi.communication.common.SessionManager;
+import com.xiaozhi.dialogue.vad.VadModel.InferenceResult;
+import com.xiaozhi.dialogue.vad.impl.SileroVadModel;
+import com.xiaozhi.utils.AudioFixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * VadService 处理一帧设备上行音频的耗时（Opus解码、可选的音频增强、预缓冲与状态判断），
+ * 不含模型推理：模型替换为按能量返回概率的桩，模型本身的耗时见 SileroVadModelBenchmark。
+ * 输入为循环的"说话3秒 + 静音1秒"，覆盖说话开始、持续和结束。
+ * <p>
+ * 运行：在IDE中执行 main 方法，或 mvn -P benchmark test
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VadServiceBenchmark {
+
+    private static final String SESSION_ID = "benchmark";
+
+    @Param({"false", "true"})
+    public boolean enhancement;
+
+    private List<byte[]> frames;
+    private VadService vadService;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        frames = AudioFixtures.utteranceOpus();
+        vadService = new VadService();
+        ReflectionTestUtils.setField(vadService, "vadModel", new EnergyVadModel());
+        ReflectionTestUtils.setField(vadService, "sessionManager", new SessionManager());
+        ReflectionTestUtils.setField(vadService, "preBufferMs", 500);
+        ReflectionTestUtils.setField(vadService, "tailKeepMs", 300);
+        ReflectionTestUtils.setField(vadService, "audioEnhancementEnabled", enhancement);
+        vadService.initSession(SESSION_ID);
+    }
+
+    @Benchmark
+    public VadService.VadResult processFrame() {
+        byte[] frame = frames.get(index);
+        index = (index + 1) % frames.size();
+        return vadService.processAudio(SESSION_ID, frame);
+    }
+
+    /**
+     * 按均方根能量返回语音概率的模型桩
+     */
+    static class EnergyVadModel extends SileroVadModel {
+        @Override
+        public InferenceResult infer(float[] samples, float[][][] prevState) {
+            double sum = 0;
+            for (float sample : samples) {
+                sum += sample * sample;
+            }
+            return new InferenceResult(Math.sqrt(sum / samples.length) > 0.02 ? 0.9f : 0.05f, prevState);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(VadServiceBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,340 @@
+package com.xiaozhi.dialogue.stt.providers;
+
+import com.xiaozhi.dialogue.stt.SttResult;
+import com.xiaozhi.entity.SysConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.DeploymentException;
+import jakarta.websocket.Endpoint;
+import jakarta.websocket.EndpointConfig;
+import jakarta.websocket.HandshakeResponse;
+import jakarta.websocket.Session;
+import jakarta.websocket.server.HandshakeRequest;
+import jakarta.websocket.server.ServerContainer;
+import jakarta.websocket.server.ServerEndpointConfig;
+import org.apache.catalina.Context;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.websocket.server.WsSci;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Sinks;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 用本地的模拟FunASR服务验证部分结果先于最终结果到达、连接复用、取消时关闭连接，并统计识别延迟。
+ */
+public class FunASRSttServiceTest {
+
+    private static final String[] WORDS = {"今天", "天气", "怎么样"};
+    // 模拟远程服务的握手耗时
+    private static final long HANDSHAKE_DELAY_MS = 50;
+
+    private FakeFunAsrServer server;
+    private final List<FunASRSttService> services = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new FakeFunAsrServer(0);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        services.forEach(FunASRSttService::close);
+        server.stop();
+    }
+
+    private FunASRSttService newService(int minIdle, int maxIdle) {
+        FunASRSttService service = new FunASRSttService(
+                new SysConfig().setApiUrl("ws://127.0.0.1:" + server.getPort()), minIdle, maxIdle);
+        services.add(service);
+        return service;
+    }
+
+    @Test
+    void partialResultsArriveBeforeFinal() {
+        FunASRSttService sttService = newService(1, 4);
+        Sinks.Many<byte[]> audioSink = Sinks.many().multicast().onBackpressureBuffer();
+        Thread.startVirtualThread(() -> speak(audioSink, 100));
+
+        List<SttResult> results = sttService.streamRecognitionResults(audioSink)
+                .collectList()
+                .block(Duration.ofSeconds(10));
+
+        assertNotNull(results);
+        assertEquals(List.of(
+                SttResult.partial("今天"),
+                SttResult.partial("今天天气"),
+                SttResult.partial("今天天气怎么样"),
+                SttResult.ofFinal("今天天气怎么样。")), results);
+    }
+
+    @Test
+    void streamRecognitionReturnsFinalText() {
+        FunASRSttService sttService = newService(1, 4);
+        Sinks.Many<byte[]> audioSink = Sinks.many().multicast().onBackpressureBuffer();
+        audioSink.tryEmitNext(new byte[1920]);
+        audioSink.tryEmitComplete();
+        assertEquals("今天。", sttService.streamRecognition(audioSink));
+    }
+
+    @Test
+    void connectionIsReusedAcrossUtterances() throws Exception {
+        FunASRSttService sttService = newService(1, 4);
+        awaitIdle(sttService, 1);
+        for (int i = 0; i < 10; i++) {
+            Sinks.Many<byte[]> audioSink = Sinks.many().multicast().onBackpressureBuffer();
+            Thread.startVirtualThread(() -> speak(audioSink, 0));
+            assertEquals("今天天气怎么样。", sttService.streamRecognition(audioSink));
+        }
+        // 只有预热时建立的一个连接，每句话以 is_speaking 开始和结束
+        assertEquals(1, server.connections.get());
+        assertEquals(10, server.utterances.get());
+        FunASRConnectionPool.Stats stats = sttService.getPoolStats();
+        assertEquals(1, stats.created());
+        assertEquals(10, stats.reused());
+        assertEquals(1, stats.idle());
+        assertEquals(0, stats.waited());
+    }
+
+    @Test
+    void poolStatsArePublishedToMeterRegistry() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        FunASRSttService sttService = newService(0, 4);
+        sttService.bindTo(registry);
+        String uri = "ws://127.0.0.1:" + server.getPort();
+        for (int i = 0; i < 3; i++) {
+            Sinks.Many<byte[]> audioSink = Sinks.many().multicast().onBackpressureBuffer();
+            Thread.startVirtualThread(() -> speak(audioSink, 0));
+            assertEquals("今天天气怎么样。", sttService.streamRecognition(audioSink));
+        }
+        awaitIdle(sttService, 1);
+
+        // 第一句没有空闲连接，新建连接时等待了握手
+        assertEquals(1, registry.get("xiaozhi.stt.funasr.connections.idle").tag("uri", uri).gauge().value());
+        assertEquals(1, registry.get("xiaozhi.stt.funasr.connections.created").functionCounter().count());
+        assertEquals(2, registry.get("xiaozhi.stt.funasr.connections.reused").functionCounter().count());
+        assertEquals(0, registry.get("xiaozhi.stt.funasr.connections.failures").functionCounter().count());
+        assertEquals(1, registry.get("xiaozhi.stt.funasr.acquire.wait").functionTimer().count());
+        assertTrue(registry.get("xiaozhi.stt.funasr.acquire.wait").functionTimer().totalTime(TimeUnit.MILLISECONDS)
+                >= HANDSHAKE_DELAY_MS);
+
+        // 配置变更关闭服务后移除指标，新的服务可以重新注册
+        sttService.close();
+        assertTrue(registry.find("xiaozhi.stt.funasr.connections.idle").meters().isEmpty());
+    }
+
+    @Test
+    void cancelClosesConnection() throws Exception {
+        FunASRSttService sttService = newService(0, 4);
+        Sinks.Many<byte[]> audioSink = Sinks.many().multicast().onBackpressureBuffer();
+        audioSink.tryEmitNext(new byte[1920]);
+        // 拿到第一个部分结果后取消，音频流并未结束
+        SttResult first = sttService.streamRecognitionResults(audioSink)
+                .next()
+                .block(Duration.ofSeconds(10));
+        assertEquals(SttResult.partial("今天"), first);
+        assertTrue(server.closed.await(5, TimeUnit.SECONDS), "取消后应关闭连接");
+        assertEquals(0, sttService.getPoolStats().idle());
+    }
+
+    @Test
+    void reconnectsAfterServerRestart() throws Exception {
+        FunASRSttService sttService = newService(1, 4);
+        awaitIdle(sttService, 1);
+        int port = server.getPort();
+        server.stop();
+        awaitIdle(sttService, 0);
+
+        server = new FakeFunAsrServer(port);
+        // 后台按退避间隔重连
+        awaitIdle(sttService, 1);
+        Sinks.Many<byte[]> audioSink = Sinks.many().multicast().onBackpressureBuffer();
+        Thread.startVirtualThread(() -> speak(audioSink, 0));
+        assertEquals("今天天气怎么样。", sttService.streamRecognition(audioSink));
+        assertEquals(1, server.connections.get());
+    }
+
+    @Test
+    void latencyWithWarmConnections() throws Exception {
+        int rounds = 20;
+        FunASRSttService coldService = newService(0, 0);
+        FunASRSttService warmService = newService(1, 4);
+        long[] cold = measure(coldService, rounds, 0);
+        long[] warm = measure(warmService, rounds, 1);
+        // 不保留空闲连接时每句都要新建连接，连接池每句都复用预热的连接
+        assertEquals(rounds, coldService.getPoolStats().waited());
+        assertEquals(0, warmService.getPoolStats().waited());
+        assertEquals(rounds, warmService.getPoolStats().reused());
+        assertTrue(warm[0] + rounds * HANDSHAKE_DELAY_MS / 2 * 1_000_000 < cold[0],
+                "连接池首个结果 " + warm[0] / rounds + "ns, 新建连接 " + cold[0] / rounds + "ns");
+    }
+
+    /**
+     * @return 开始说话到首个结果、说话结束到最终结果的总耗时（纳秒）
+     */
+    private long[] measure(FunASRSttService sttService, int rounds, int minIdle) throws Exception {
+        awaitIdle(sttService, minIdle);
+        long firstResult = 0;
+        long finalResult = 0;
+        for (int i = 0; i < rounds; i++) {
+            Sinks.Many<byte[]> audioSink = Sinks.many().multicast().onBackpressureBuffer();
+            long start = System.nanoTime();
+            long[] endOfSpeech = new long[1];
+            long[] first = new long[1];
+            audioSink.tryEmitNext(new byte[1920]);
+            SttResult result = sttService.streamRecognitionResults(audioSink)
+                    .doOnNext(r -> {
+                        if (first[0] == 0) {
+                            first[0] = System.nanoTime();
+                            endOfSpeech[0] = System.nanoTime();
+                            // 在WebSocket线程中结束音频流，可能与订阅线程的下发并发
+                            audioSink.emitComplete(Sinks.EmitFailureHandler.busyLooping(Duration.ofSeconds(1)));
+                        }
+                    })
+                    .blockLast(Duration.ofSeconds(10));
+            assertNotNull(result);
+            assertTrue(result.isFinal());
+            firstResult += first[0] - start;
+            finalResult += System.nanoTime() - endOfSpeech[0];
+        }
+        return new long[]{firstResult, finalResult};
+    }
+
+    private static void awaitIdle(FunASRSttService sttService, int idle) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (sttService.getPoolStats().idle() != idle) {
+            assertTrue(System.currentTimeMillis() < deadline, "空闲连接数 " + sttService.getPoolStats());
+            Thread.sleep(20);
+        }
+    }
+
+    private static void speak(Sinks.Many<byte[]> audioSink, long intervalMs) {
+        try {
+            for (int i = 0; i < WORDS.length; i++) {
+                Thread.sleep(intervalMs);
+                audioSink.tryEmitNext(new byte[1920]);
+            }
+            Thread.sleep(intervalMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        audioSink.tryEmitComplete();
+    }
+
+    /**
+     * 嵌入式Tomcat上的模拟FunASR服务
+     */
+    private static class FakeFunAsrServer {
+        final CountDownLatch closed = new CountDownLatch(1);
+        final AtomicInteger connections = new AtomicInteger();
+        final AtomicInteger utterances = new AtomicInteger();
+        private final Tomcat tomcat;
+        private final int port;
+
+        FakeFunAsrServer(int port) throws Exception {
+            tomcat = new Tomcat();
+            tomcat.setBaseDir(Files.createTempDirectory("tomcat").toString());
+            tomcat.setPort(port);
+            Context context = tomcat.addContext("", null);
+            Tomcat.addServlet(context, "default", new HttpServlet() {
+            });
+            context.addServletMappingDecoded("/", "default");
+            context.addServletContainerInitializer(new WsSci(), null);
+            context.addServletContainerInitializer((classes, servletContext) -> {
+                ServerContainer container = (ServerContainer) servletContext.getAttribute(ServerContainer.class.getName());
+                try {
+                    container.addEndpoint(ServerEndpointConfig.Builder.create(FunAsrEndpoint.class, "/")
+                            .configurator(new ServerEndpointConfig.Configurator() {
+                                @Override
+                                public void modifyHandshake(ServerEndpointConfig config, HandshakeRequest request,
+                                                            HandshakeResponse response) {
+                                    // 模拟远程服务的握手耗时
+                                    try {
+                                        Thread.sleep(HANDSHAKE_DELAY_MS);
+                                    } catch (InterruptedException e) {
+                                        Thread.currentThread().interrupt();
+                                    }
+                                }
+
+                                @Override
+                                @SuppressWarnings("unchecked")
+                                public <T> T getEndpointInstance(Class<T> endpointClass) {
+                                    return (T) new FunAsrEndpoint(FakeFunAsrServer.this);
+                                }
+                            }).build());
+                } catch (DeploymentException e) {
+                    throw new ServletException(e);
+                }
+            }, null);
+            tomcat.start();
+            this.port = tomcat.getConnector().getLocalPort();
+        }
+
+        int getPort() {
+            return port;
+        }
+
+        void stop() throws Exception {
+            tomcat.stop();
+            tomcat.destroy();
+        }
+    }
+
+    /**
+     * online模式：每收到一段音频返回新识别出的文字，收到 is_speaking=false 后返回 is_final
+     */
+    private static class FunAsrEndpoint extends Endpoint {
+        private final FakeFunAsrServer server;
+        private final AtomicInteger chunks = new AtomicInteger();
+
+        FunAsrEndpoint(FakeFunAsrServer server) {
+            this.server = server;
+        }
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+            server.connections.incrementAndGet();
+            session.addMessageHandler(String.class, message -> {
+                if (message.contains("\"is_speaking\":true")) {
+                    // 新的一句话
+                    server.utterances.incrementAndGet();
+                    chunks.set(0);
+                } else if (message.contains("\"is_speaking\": false")) {
+                    send(session, "{\"mode\":\"online\",\"text\":\"。\",\"is_final\":true}");
+                }
+            });
+            session.addMessageHandler(ByteBuffer.class, message -> {
+                int index = chunks.getAndIncrement() % WORDS.length;
+                send(session, "{\"mode\":\"online\",\"text\":\"" + WORDS[index] + "\",\"is_final\":false}");
+            });
+        }
+
+        @Override
+        public void onClose(Session session, CloseReason closeReason) {
+            server.closed.countDown();
+        }
+
+        private static void send(Session session, String text) {
+            try {
+                session.getBasicRemote().sendText(text);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
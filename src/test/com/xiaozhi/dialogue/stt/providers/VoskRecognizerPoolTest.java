@@ -0,0 +1,130 @@
+package com.xiaozhi.dialogue.stt.providers;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.vosk.Recognizer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 识别器池的复用、并发上限与等待统计，用mock的Recognizer代替native识别器
+ */
+public class VoskRecognizerPoolTest {
+
+    private final AtomicInteger created = new AtomicInteger();
+
+    private VoskRecognizerPool newPool(int maxSize, long acquireTimeoutMillis) {
+        return new VoskRecognizerPool(sampleRate -> {
+            created.incrementAndGet();
+            return mock(Recognizer.class);
+        }, maxSize, acquireTimeoutMillis);
+    }
+
+    @Test
+    void releasedRecognizerIsResetAndReused() throws Exception {
+        VoskRecognizerPool pool = newPool(4, 100);
+        VoskRecognizerPool.Lease first = pool.acquire(16000);
+        Recognizer recognizer = first.getRecognizer();
+        pool.release(first);
+        verify(recognizer).reset();
+
+        for (int i = 0; i < 10; i++) {
+            VoskRecognizerPool.Lease lease = pool.acquire(16000);
+            assertSame(recognizer, lease.getRecognizer());
+            pool.release(lease);
+        }
+        assertEquals(1, created.get());
+
+        // 不同采样率使用不同的识别器
+        VoskRecognizerPool.Lease other = pool.acquire(8000);
+        assertNotSame(recognizer, other.getRecognizer());
+        pool.release(other);
+
+        VoskRecognizerPool.Stats stats = pool.getStats();
+        assertEquals(0, stats.inUse());
+        assertEquals(2, stats.idle());
+        assertEquals(12, stats.acquired());
+        assertEquals(0, stats.waited());
+    }
+
+    @Test
+    void discardedRecognizerIsClosed() throws Exception {
+        VoskRecognizerPool pool = newPool(1, 100);
+        VoskRecognizerPool.Lease lease = pool.acquire(16000);
+        pool.discard(lease);
+        verify(lease.getRecognizer()).close();
+
+        VoskRecognizerPool.Lease next = pool.acquire(16000);
+        assertNotSame(lease.getRecognizer(), next.getRecognizer());
+        assertEquals(2, created.get());
+    }
+
+    @Test
+    void capWaitsAndTimesOut() throws Exception {
+        VoskRecognizerPool pool = newPool(2, 200);
+        List<VoskRecognizerPool.Lease> leases = new ArrayList<>();
+        leases.add(pool.acquire(16000));
+        leases.add(pool.acquire(16000));
+        assertEquals(2, pool.getStats().inUse());
+
+        // 上限已满，等待超时
+        long start = System.nanoTime();
+        assertThrows(TimeoutException.class, () -> pool.acquire(16000));
+        assertTrue((System.nanoTime() - start) / 1_000_000 >= 190);
+
+        // 100ms后有识别器归还，等待的请求拿到它
+        Thread.startVirtualThread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            pool.release(leases.get(0));
+        });
+        VoskRecognizerPool.Lease lease = pool.acquire(16000);
+        assertSame(leases.get(0).getRecognizer(), lease.getRecognizer());
+
+        VoskRecognizerPool.Stats stats = pool.getStats();
+        assertEquals(2, stats.waited());
+        assertEquals(1, stats.timeouts());
+        assertTrue(stats.maxWaitMillis() >= 190, "最长等待 " + stats.maxWaitMillis());
+        assertTrue(stats.totalWaitMillis() >= 280, "累计等待 " + stats.totalWaitMillis());
+        assertEquals(2, created.get());
+    }
+
+    @Test
+    void statsArePublishedToMeterRegistry() throws Exception {
+        VoskRecognizerPool pool = newPool(1, 50);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        pool.bindTo(registry);
+
+        VoskRecognizerPool.Lease lease = pool.acquire(16000);
+        assertEquals(1, registry.get("xiaozhi.stt.vosk.recognizers").tag("state", "in_use").gauge().value());
+        // 上限已满，后台请求等待识别器
+        Thread waiter = Thread.startVirtualThread(() -> assertThrows(TimeoutException.class, () -> pool.acquire(16000)));
+        long deadline = System.currentTimeMillis() + 1000;
+        while (registry.get("xiaozhi.stt.vosk.waiters").gauge().value() < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(1, registry.get("xiaozhi.stt.vosk.waiters").gauge().value());
+        waiter.join();
+        pool.release(lease);
+
+        assertEquals(0, registry.get("xiaozhi.stt.vosk.waiters").gauge().value());
+        assertEquals(0, registry.get("xiaozhi.stt.vosk.recognizers").tag("state", "in_use").gauge().value());
+        assertEquals(1, registry.get("xiaozhi.stt.vosk.recognizers").tag("state", "idle").gauge().value());
+        assertEquals(1, registry.get("xiaozhi.stt.vosk.recognizers.max").gauge().value());
+        assertEquals(1, registry.get("xiaozhi.stt.vosk.acquires").functionCounter().count());
+        assertEquals(1, registry.get("xiaozhi.stt.vosk.recognizers.created").functionCounter().count());
+        assertEquals(1, registry.get("xiaozhi.stt.vosk.acquire.timeouts").functionCounter().count());
+        assertEquals(1, registry.get("xiaozhi.stt.vosk.acquire.wait").functionTimer().count());
+        assertTrue(registry.get("xiaozhi.stt.vosk.acquire.wait").functionTimer().totalTime(TimeUnit.MILLISECONDS) >= 45);
+    }
+}
@@ -0,0 +1,172 @@
+package com.xiaozhi.dialogue.stt.providers;
+
+import com.xiaozhi.dialogue.stt.SttResult;
+import com.xiaozhi.utils.AudioUtils;
+import org.junit.jupiter.api.Test;
+import org.vosk.Model;
+import org.vosk.Recognizer;
+import reactor.core.publisher.Sinks;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 用录音样本测试Vosk流式识别：部分结果先于最终结果到达；50路并发时复用识别器与每句新建识别器的延迟和内存对比。
+ * 需要将Vosk模型（如 vosk-model-small-cn）解压到 models/vosk-model，否则跳过。
+ */
+public class VoskSttServiceTest {
+
+    private static final int FRAME_BYTES = AudioUtils.SAMPLE_RATE / 1000 * 2 * 60;
+    private static final int CONCURRENT = 50;
+    private static final int ROUNDS = 3;
+
+    private static final Path MODEL_PATH = Paths.get(System.getProperty("user.dir"), "models", "vosk-model");
+
+    private static byte[] loadPcm() throws Exception {
+        return AudioUtils.mp3ToPcm(Paths.get("src/test/resources/audio/speech-24k-mono.mp3").toString());
+    }
+
+    @Test
+    void partialResultsArriveBeforeFinal() throws Exception {
+        assumeTrue(Files.isDirectory(MODEL_PATH), "未找到Vosk模型: " + MODEL_PATH);
+
+        VoskSttService sttService = new VoskSttService();
+        sttService.initialize();
+        byte[] pcm = loadPcm();
+
+        Sinks.Many<byte[]> audioSink = Sinks.many().multicast().onBackpressureBuffer();
+        long start = System.nanoTime();
+        Thread.startVirtualThread(() -> {
+            try {
+                // 与设备一样每60ms送入一帧
+                for (int offset = 0; offset < pcm.length; offset += FRAME_BYTES) {
+                    audioSink.tryEmitNext(Arrays.copyOfRange(pcm, offset, Math.min(pcm.length, offset + FRAME_BYTES)));
+                    Thread.sleep(60);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            audioSink.tryEmitComplete();
+        });
+
+        List<Long> partialTimes = new ArrayList<>();
+        List<SttResult> results = sttService.streamRecognitionResults(audioSink)
+                .doOnNext(result -> partialTimes.add(System.nanoTime() - start))
+                .collectList()
+                .block(Duration.ofSeconds(60));
+
+        assertNotNull(results);
+        SttResult last = results.get(results.size() - 1);
+        assertTrue(last.isFinal());
+        assertFalse(last.text().isEmpty());
+        assertTrue(results.size() > 1, "没有部分结果: " + results);
+        assertFalse(results.get(0).isFinal());
+        assertTrue(results.subList(0, results.size() - 1).stream().noneMatch(SttResult::isFinal));
+        // 首个部分结果在说话过程中到达，而不是等所有音频送完
+        long audioMillis = (long) pcm.length / FRAME_BYTES * 60;
+        assertTrue(partialTimes.getFirst() / 1_000_000 < audioMillis,
+                "首个部分结果 " + partialTimes.getFirst() / 1_000_000 + "ms，音频时长 " + audioMillis + "ms");
+    }
+
+    @Test
+    void pooledRecognizersUnderConcurrency() throws Exception {
+        assumeTrue(Files.isDirectory(MODEL_PATH), "未找到Vosk模型: " + MODEL_PATH);
+        byte[] pcm = loadPcm();
+
+        // 原实现：每句话新建识别器
+        Model model = new Model(MODEL_PATH.toString());
+        long rssBefore = rssKb();
+        double[] unpooled = runConcurrent(() -> {
+            try (Recognizer recognizer = new Recognizer(model, AudioUtils.SAMPLE_RATE)) {
+                feed(recognizer, pcm);
+            }
+            return null;
+        });
+        long rssUnpooled = rssKb() - rssBefore;
+
+        VoskSttService sttService = new VoskSttService(CONCURRENT, 10_000);
+        sttService.initialize();
+        rssBefore = rssKb();
+        double[] pooled = runConcurrent(() -> {
+            Sinks.Many<byte[]> audioSink = Sinks.many().multicast().onBackpressureBuffer();
+            Thread.startVirtualThread(() -> {
+                for (int offset = 0; offset < pcm.length; offset += FRAME_BYTES) {
+                    audioSink.tryEmitNext(Arrays.copyOfRange(pcm, offset, Math.min(pcm.length, offset + FRAME_BYTES)));
+                }
+                audioSink.tryEmitComplete();
+            });
+            return sttService.streamRecognition(audioSink);
+        });
+        long rssPooled = rssKb() - rssBefore;
+
+        // 复用识别器不比每句新建慢，占用的内存也不更多
+        assertTrue(pooled[0] <= unpooled[0] * 1.2,
+                "p50 识别器池 " + pooled[0] + "ms, 每句新建 " + unpooled[0] + "ms");
+        assertTrue(rssPooled <= rssUnpooled,
+                "RSS增长 识别器池 " + rssPooled / 1024 + "MB, 每句新建 " + rssUnpooled / 1024 + "MB");
+
+        VoskRecognizerPool.Stats stats = sttService.getPoolStats();
+        // 每轮最多同时使用 CONCURRENT 个识别器，之后的轮次全部复用
+        assertTrue(stats.created() <= CONCURRENT, "创建了 " + stats.created() + " 个识别器");
+        assertEquals((long) CONCURRENT * ROUNDS, stats.acquired());
+        assertEquals(0, stats.inUse());
+    }
+
+    /**
+     * CONCURRENT 路同时识别，重复 ROUNDS 轮
+     * @return 单句耗时的 p50 和 p99（毫秒）
+     */
+    private static double[] runConcurrent(Callable<?> utterance) throws Exception {
+        List<Double> latencies = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int round = 0; round < ROUNDS; round++) {
+                List<Future<Double>> futures = new ArrayList<>();
+                for (int i = 0; i < CONCURRENT; i++) {
+                    futures.add(executor.submit(() -> {
+                        long start = System.nanoTime();
+                        utterance.call();
+                        return (System.nanoTime() - start) / 1e6;
+                    }));
+                }
+                for (Future<Double> future : futures) {
+                    latencies.add(future.get(120, TimeUnit.SECONDS));
+                }
+            }
+        }
+        latencies.sort(null);
+        return new double[]{latencies.get(latencies.size() / 2), latencies.get((int) (latencies.size() * 0.99))};
+    }
+
+    private static void feed(Recognizer recognizer, byte[] pcm) {
+        for (int offset = 0; offset < pcm.length; offset += FRAME_BYTES) {
+            int length = Math.min(FRAME_BYTES, pcm.length - offset);
+            recognizer.acceptWaveForm(Arrays.copyOfRange(pcm, offset, offset + length), length);
+        }
+        recognizer.getFinalResult();
+    }
+
+    /**
+     * 进程常驻内存，包括Vosk在native层分配的内存
+     */
+    private static long rssKb() throws Exception {
+        for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+            if (line.startsWith("VmRSS:")) {
+                return Long.parseLong(line.replaceAll("\\D+", ""));
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,252 @@
+package com.xiaozhi.dialogue.tts;
+
+import com.xiaozhi.utils.AudioUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 用计数的模拟TTS服务验证缓存命中、LRU淘汰、磁盘持久化和同一短句只合成一次
+ */
+public class TtsCacheTest {
+
+    private static final List<String> PHRASES = List.of(
+            "好的，拜拜~有需要随时叫我哦！",
+            "好哒，那我先走啦，拜拜~",
+            "设备未配置角色，请到角色配置页面完成配置后开始对话",
+            "嗯嗯，我在听",
+            "收到！");
+
+    @TempDir
+    Path tempDir;
+
+    private Path cacheDir;
+    private CountingTtsService ttsService;
+
+    @BeforeEach
+    void setUp() {
+        cacheDir = tempDir.resolve("tts-cache");
+        ttsService = new CountingTtsService(tempDir, "zh-CN-XiaoyiNeural", 1.0f, 0);
+    }
+
+    private TtsCache newCache(long memoryMaxBytes, long diskMaxBytes) throws Exception {
+        TtsCache cache = new TtsCache(cacheDir, memoryMaxBytes, diskMaxBytes, 50);
+        cache.init();
+        return cache;
+    }
+
+    @Test
+    void repeatedPhrasesAreSynthesizedOnce() throws Exception {
+        TtsCache cache = newCache(32 << 20, 512 << 20);
+        for (int i = 0; i < 100; i++) {
+            String text = PHRASES.get(i % PHRASES.size());
+            TtsCache.Entry entry = cache.synthesize(ttsService, text);
+            assertFalse(entry.frames().isEmpty());
+            assertTrue(Files.exists(entry.path()));
+        }
+        assertEquals(PHRASES.size(), ttsService.calls.get());
+        TtsCache.Stats stats = cache.getStats();
+        assertEquals(95, stats.memoryHits());
+        assertEquals(5, stats.misses());
+        assertEquals(0.95, stats.hitRate(), 1e-9);
+        assertEquals(PHRASES.size(), stats.memoryEntries());
+        assertEquals(PHRASES.size(), stats.diskEntries());
+        // 合成时生成的音频文件已删除，只保留缓存文件
+        try (var files = Files.list(tempDir)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void keyCoversVoiceAndNormalizedText() {
+        String text = "你好，我是小智";
+        String key = TtsCache.key(ttsService, text);
+        assertEquals(key, TtsCache.key(ttsService, "  你好,我是小智 "));
+        assertNotEquals(key, TtsCache.key(new CountingTtsService(tempDir, "zh-CN-YunxiNeural", 1.0f, 0), text));
+        assertNotEquals(key, TtsCache.key(new CountingTtsService(tempDir, "zh-CN-XiaoyiNeural", 1.2f, 0), text));
+        assertNotEquals(key, TtsCache.key(ttsService, "你好，我是小明"));
+    }
+
+    @Test
+    void memoryEvictionFallsBackToDiskAndSurvivesRestart() throws Exception {
+        TtsCache cache = newCache(32 << 20, 512 << 20);
+        TtsCache.Entry first = cache.synthesize(ttsService, PHRASES.get(0));
+        long entryBytes = cache.getStats().memoryBytes();
+
+        // 重启后内存只放得下第一条的大小
+        cache = newCache(entryBytes, 512 << 20);
+        assertEquals(1, cache.getStats().diskEntries());
+        for (String text : PHRASES) {
+            cache.synthesize(ttsService, text);
+        }
+        assertEquals(PHRASES.size(), ttsService.calls.get());
+        TtsCache.Stats stats = cache.getStats();
+        assertEquals(1, stats.diskHits());
+        assertTrue(stats.memoryBytes() <= entryBytes);
+        assertTrue(stats.memoryEntries() < PHRASES.size());
+        assertEquals(PHRASES.size(), stats.diskEntries());
+
+        // 从磁盘读回的帧与合成时编码的帧一致
+        TtsCache.Entry reloaded = cache.get(ttsService, PHRASES.get(0));
+        assertNotNull(reloaded);
+        assertEquals(first.frames().size(), reloaded.frames().size());
+        for (int i = 0; i < first.frames().size(); i++) {
+            assertArrayEquals(first.frames().get(i), reloaded.frames().get(i));
+        }
+        assertEquals(2, cache.getStats().diskHits());
+        assertEquals(PHRASES.size(), ttsService.calls.get());
+    }
+
+    @Test
+    void diskEvictsLeastRecentlyUsed() throws Exception {
+        TtsCache cache = newCache(32 << 20, 512 << 20);
+        cache.synthesize(ttsService, PHRASES.get(0));
+        long fileBytes = cache.getStats().diskBytes();
+
+        // 磁盘上放得下大约三条
+        cache = newCache(32 << 20, fileBytes * 7 / 2);
+        TtsCache.Entry evicted = cache.synthesize(ttsService, PHRASES.get(1));
+        // 句子还在排队等待合并时导出的文件
+        Path exported = cache.export(evicted);
+        cache.synthesize(ttsService, PHRASES.get(2));
+        // 使用第0条，之后最久未用的是第1条
+        assertNotNull(cache.get(ttsService, PHRASES.get(0)));
+        cache.synthesize(ttsService, PHRASES.get(3));
+
+        assertNull(cache.get(ttsService, PHRASES.get(1)));
+        assertEquals(1, cache.getStats().diskEvictions());
+        // 缓存文件已删除，导出的文件不受影响
+        assertFalse(Files.exists(evicted.path()));
+        assertEquals(evicted.frames().size(), AudioUtils.readOpus(exported.toFile()).size());
+        assertNotNull(cache.get(ttsService, PHRASES.get(0)));
+        assertTrue(cache.getStats().diskBytes() <= fileBytes * 7 / 2);
+        try (var files = Files.list(cacheDir)) {
+            assertEquals(cache.getStats().diskEntries(), files.count());
+        }
+    }
+
+    @Test
+    void concurrentRequestsForSamePhraseShareOneSynthesis() throws Exception {
+        ttsService = new CountingTtsService(tempDir, "zh-CN-XiaoyiNeural", 1.0f, 200);
+        TtsCache cache = newCache(32 << 20, 512 << 20);
+        List<Future<TtsCache.Entry>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 20; i++) {
+                futures.add(executor.submit(() -> cache.synthesize(ttsService, PHRASES.get(0))));
+            }
+            for (Future<TtsCache.Entry> future : futures) {
+                assertFalse(future.get(10, TimeUnit.SECONDS).frames().isEmpty());
+            }
+        }
+        assertEquals(1, ttsService.calls.get());
+    }
+
+    @Test
+    void exportWritesFramesWhenFileIsGone() throws Exception {
+        TtsCache cache = newCache(32 << 20, 512 << 20);
+        TtsCache.Entry entry = cache.synthesize(ttsService, PHRASES.get(0));
+        Files.delete(entry.path());
+        Path exported = cache.export(entry);
+        assertEquals(entry.frames().size(), AudioUtils.readOpus(exported.toFile()).size());
+    }
+
+    @Test
+    void statsArePublishedToMeterRegistry() throws Exception {
+        TtsCache cache = newCache(32 << 20, 512 << 20);
+        cache.synthesize(ttsService, PHRASES.get(0));
+        long entryBytes = cache.getStats().memoryBytes();
+        cache = newCache(entryBytes, 512 << 20);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        cache.bindTo(registry);
+
+        cache.synthesize(ttsService, PHRASES.get(0));
+        cache.synthesize(ttsService, PHRASES.get(0));
+        cache.synthesize(ttsService, PHRASES.get(1));
+
+        assertEquals(1, registry.get("xiaozhi.tts.cache.hits").tag("tier", "disk").functionCounter().count());
+        assertEquals(1, registry.get("xiaozhi.tts.cache.hits").tag("tier", "memory").functionCounter().count());
+        assertEquals(1, registry.get("xiaozhi.tts.cache.misses").functionCounter().count());
+        // 内存只放得下一条，写入第二条时淘汰第一条
+        assertEquals(1, registry.get("xiaozhi.tts.cache.evictions").tag("tier", "memory").functionCounter().count());
+        assertEquals(0, registry.get("xiaozhi.tts.cache.evictions").tag("tier", "disk").functionCounter().count());
+        assertEquals(2, registry.get("xiaozhi.tts.cache.entries").tag("tier", "disk").gauge().value());
+        assertEquals(cache.getStats().memoryBytes(),
+                registry.get("xiaozhi.tts.cache.bytes").tag("tier", "memory").gauge().value());
+    }
+
+    @Test
+    void longTextIsNotCacheable() throws Exception {
+        TtsCache cache = newCache(32 << 20, 512 << 20);
+        assertTrue(cache.isCacheable(PHRASES.get(0)));
+        assertFalse(cache.isCacheable("这是一段很长的回答".repeat(10)));
+        assertFalse(cache.isCacheable("  "));
+    }
+
+    /**
+     * 记录调用次数的模拟TTS服务，每次生成一段正弦波wav文件
+     */
+    private static class CountingTtsService implements TtsService {
+        final AtomicInteger calls = new AtomicInteger();
+        private final Path outputDir;
+        private final String voiceName;
+        private final Float pitch;
+        private final long delayMs;
+
+        CountingTtsService(Path outputDir, String voiceName, Float pitch, long delayMs) {
+            this.outputDir = outputDir;
+            this.voiceName = voiceName;
+            this.pitch = pitch;
+            this.delayMs = delayMs;
+        }
+
+        @Override
+        public String getProviderName() {
+            return "counting";
+        }
+
+        @Override
+        public String getVoiceName() {
+            return voiceName;
+        }
+
+        @Override
+        public Float getSpeed() {
+            return 1.0f;
+        }
+
+        @Override
+        public Float getPitch() {
+            return pitch;
+        }
+
+        @Override
+        public String textToSpeech(String text) throws Exception {
+            calls.incrementAndGet();
+            Thread.sleep(delayMs);
+            // 每个字约200ms
+            int samples = AudioUtils.SAMPLE_RATE / 5 * text.length();
+            byte[] pcm = new byte[samples * 2];
+            for (int i = 0; i < samples; i++) {
+                short sample = (short) (Math.sin(2 * Math.PI * 440 * i / AudioUtils.SAMPLE_RATE) * 8000);
+                pcm[2 * i] = (byte) sample;
+                pcm[2 * i + 1] = (byte) (sample >> 8);
+            }
+            Path path = outputDir.resolve(getAudioFileName());
+            AudioUtils.saveAsWav(path, pcm);
+            return path.toString();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.xiaozhi.dialogue.vad.impl;
+
+import com.xiaozhi.dialogue.vad.VadModel.InferenceResult;
+import com.xiaozhi.utils.AudioFixtures;
+import com.xiaozhi.utils.AudioUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Silero VAD 推理耗时，使用仓库中的 models/silero_vad.onnx，需要在项目根目录运行。
+ * 每次操作为 sessions 个会话各推理一个窗口（512个采样点，32ms）：perFrame 逐个会话单独推理，
+ * batched 堆叠为一次批量推理（与开启 vad.batch.enabled 时调度线程的做法相同）。
+ * 隐状态在窗口之间传递，与会话中连续推理相同。
+ * <p>
+ * 运行：在IDE中执行 main 方法，或 mvn -P benchmark test
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SileroVadModelBenchmark {
+
+    @Param({"1", "8", "32"})
+    public int sessions;
+
+    private float[][] windows;
+    private SileroVadModel model;
+    private float[][][][] states;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        byte[] pcm = AudioFixtures.utterancePcm();
+        windows = new float[pcm.length / (AudioUtils.BUFFER_SIZE * 2)][];
+        for (int i = 0; i < windows.length; i++) {
+            windows[i] = AudioFixtures.toFloats(pcm, i * AudioUtils.BUFFER_SIZE * 2, AudioUtils.BUFFER_SIZE);
+        }
+        model = new SileroVadModel();
+        ReflectionTestUtils.setField(model, "modelPath", "models/silero_vad.onnx");
+        ReflectionTestUtils.setField(model, "intraOpThreads", 1);
+        model.initialize();
+        states = new float[sessions][][][];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        model.close();
+    }
+
+    @Benchmark
+    public float perFrame() {
+        float sum = 0;
+        for (int s = 0; s < sessions; s++) {
+            InferenceResult result = model.inferSingle(window(s), states[s]);
+            states[s] = result.state;
+            sum += result.probability;
+        }
+        index++;
+        return sum;
+    }
+
+    @Benchmark
+    public float batched() {
+        List<VadInferenceBatcher.Request> requests = new ArrayList<>(sessions);
+        for (int s = 0; s < sessions; s++) {
+            requests.add(new VadInferenceBatcher.Request(window(s), states[s]));
+        }
+        InferenceResult[] results = model.inferBatch(requests);
+        float sum = 0;
+        for (int s = 0; s < sessions; s++) {
+            states[s] = results[s].state;
+            sum += results[s].probability;
+        }
+        index++;
+        return sum;
+    }
+
+    /**
+     * 各会话从录音的不同位置开始
+     */
+    private float[] window(int session) {
+        return windows[(session * windows.length / sessions + index) % windows.length];
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SileroVadModelBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,104 @@
+package com.xiaozhi.dialogue.vad.impl;
+
+import com.xiaozhi.dialogue.vad.VadModel.InferenceResult;
+import com.xiaozhi.utils.AudioFixtures;
+import com.xiaozhi.utils.AudioUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 批量推理与逐帧推理的结果一致：多个会话的帧堆叠推理后，每个会话的概率和隐状态与单独推理相同，
+ * 且隐状态在连续的批次之间正确传递。使用仓库中的 models/silero_vad.onnx，需要在项目根目录运行。
+ */
+public class SileroVadModelTest {
+
+    private static final int SESSIONS = 6;
+    private static final int FRAMES = 40;
+    private static final float TOLERANCE = 1e-5f;
+
+    private SileroVadModel model;
+    private float[][] windows;
+
+    @BeforeEach
+    void setUp() {
+        byte[] pcm = AudioFixtures.utterancePcm();
+        windows = new float[pcm.length / (AudioUtils.BUFFER_SIZE * 2)][];
+        for (int i = 0; i < windows.length; i++) {
+            windows[i] = AudioFixtures.toFloats(pcm, i * AudioUtils.BUFFER_SIZE * 2, AudioUtils.BUFFER_SIZE);
+        }
+        model = new SileroVadModel();
+        ReflectionTestUtils.setField(model, "modelPath", "models/silero_vad.onnx");
+        ReflectionTestUtils.setField(model, "intraOpThreads", 1);
+        model.initialize();
+    }
+
+    @AfterEach
+    void tearDown() {
+        model.close();
+    }
+
+    @Test
+    void batchedMatchesPerFrame() {
+        // 各会话从录音的不同位置开始，处于说话、静音等不同阶段
+        float[][][][] singleStates = new float[SESSIONS][][][];
+        float[][][][] batchStates = new float[SESSIONS][][][];
+        float maxProbability = 0;
+        for (int frame = 0; frame < FRAMES; frame++) {
+            List<VadInferenceBatcher.Request> requests = new ArrayList<>();
+            float[] expected = new float[SESSIONS];
+            for (int s = 0; s < SESSIONS; s++) {
+                float[] samples = window(s, frame);
+                InferenceResult single = model.inferSingle(samples, singleStates[s]);
+                expected[s] = single.probability;
+                singleStates[s] = single.state;
+                requests.add(new VadInferenceBatcher.Request(samples, batchStates[s]));
+            }
+
+            InferenceResult[] batched = model.inferBatch(requests);
+            assertEquals(SESSIONS, batched.length);
+            for (int s = 0; s < SESSIONS; s++) {
+                assertEquals(expected[s], batched[s].probability, TOLERANCE, "会话" + s + " 第" + frame + "帧");
+                assertStateEquals(singleStates[s], batched[s].state);
+                // 下一批使用本批输出的隐状态
+                batchStates[s] = batched[s].state;
+                maxProbability = Math.max(maxProbability, expected[s]);
+            }
+        }
+        // 确认覆盖到了说话的帧，而不是全部为静音
+        assertTrue(maxProbability > 0.5f, "最大语音概率 " + maxProbability);
+    }
+
+    @Test
+    void singleSessionBatchMatchesPerFrame() {
+        float[][][] singleState = null;
+        float[][][] batchState = null;
+        for (int frame = 0; frame < FRAMES; frame++) {
+            InferenceResult single = model.inferSingle(windows[frame], singleState);
+            InferenceResult batched = model.inferBatch(List.of(
+                    new VadInferenceBatcher.Request(windows[frame], batchState)))[0];
+            assertEquals(single.probability, batched.probability, TOLERANCE);
+            assertStateEquals(single.state, batched.state);
+            singleState = single.state;
+            batchState = batched.state;
+        }
+    }
+
+    private float[] window(int session, int frame) {
+        return windows[(session * windows.length / SESSIONS + frame) % windows.length];
+    }
+
+    private static void assertStateEquals(float[][][] expected, float[][][] actual) {
+        assertEquals(2, actual.length);
+        for (int layer = 0; layer < 2; layer++) {
+            assertEquals(1, actual[layer].length);
+            assertArrayEquals(expected[layer][0], actual[layer][0], TOLERANCE);
+        }
+    }
+}
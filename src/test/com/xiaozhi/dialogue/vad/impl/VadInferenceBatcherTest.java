@@ -0,0 +1,101 @@
+package com.xiaozhi.dialogue.vad.impl;
+
+import com.xiaozhi.dialogue.vad.VadModel.InferenceResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 用记录调用的批量推理函数验证请求的合并、结果分发和撤回
+ */
+public class VadInferenceBatcherTest {
+
+    // 每批推理的帧，帧的第一个样本为编号
+    private final List<List<Float>> batches = new CopyOnWriteArrayList<>();
+    private CountDownLatch release = new CountDownLatch(0);
+    private final CountDownLatch started = new CountDownLatch(1);
+    private VadInferenceBatcher batcher;
+
+    @AfterEach
+    void shutdown() {
+        release.countDown();
+        batcher.shutdown();
+    }
+
+    private InferenceResult[] infer(List<VadInferenceBatcher.Request> requests) {
+        started.countDown();
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Float> ids = new ArrayList<>();
+        InferenceResult[] results = new InferenceResult[requests.size()];
+        for (int i = 0; i < requests.size(); i++) {
+            float id = requests.get(i).getSamples()[0];
+            ids.add(id);
+            results[i] = new InferenceResult(id / 100, new float[][][]{{{id}}, {{id}}});
+        }
+        batches.add(ids);
+        return results;
+    }
+
+    @Test
+    void framesInWindowShareOneBatch() throws Exception {
+        batcher = new VadInferenceBatcher(this::infer, 50_000, 64);
+        List<VadInferenceBatcher.Request> requests = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            requests.add(batcher.submit(new float[]{i}, null));
+        }
+        for (int i = 0; i < 10; i++) {
+            InferenceResult result = requests.get(i).getFuture().get(5, TimeUnit.SECONDS);
+            // 结果回到对应的请求
+            assertEquals(i / 100f, result.probability);
+            assertEquals(i, result.state[0][0][0]);
+        }
+        assertEquals(1, batches.size());
+        assertEquals(10, batches.getFirst().size());
+    }
+
+    @Test
+    void maxBatchSizeSplitsBatches() throws Exception {
+        batcher = new VadInferenceBatcher(this::infer, 50_000, 4);
+        List<VadInferenceBatcher.Request> requests = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            requests.add(batcher.submit(new float[]{i}, null));
+        }
+        for (VadInferenceBatcher.Request request : requests) {
+            request.getFuture().get(5, TimeUnit.SECONDS);
+        }
+        assertTrue(batches.stream().allMatch(batch -> batch.size() <= 4), batches.toString());
+        assertEquals(10, batches.stream().mapToInt(List::size).sum());
+    }
+
+    @Test
+    void cancelledRequestIsNeverInferred() throws Exception {
+        release = new CountDownLatch(1);
+        batcher = new VadInferenceBatcher(this::infer, 0, 64);
+        // 第一批阻塞在推理中，第二个请求留在队列里
+        VadInferenceBatcher.Request running = batcher.submit(new float[]{1}, null);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        VadInferenceBatcher.Request queued = batcher.submit(new float[]{2}, null);
+
+        // 已在推理的请求不能撤回，排队的可以
+        assertFalse(running.cancel());
+        assertTrue(queued.cancel());
+        assertTrue(queued.getFuture().isCancelled());
+
+        release.countDown();
+        assertEquals(0.01f, running.getFuture().get(5, TimeUnit.SECONDS).probability);
+        VadInferenceBatcher.Request next = batcher.submit(new float[]{3}, null);
+        next.getFuture().get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(List.of(1f), List.of(3f)), batches);
+    }
+}
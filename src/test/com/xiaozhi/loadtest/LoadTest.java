@@ -0,0 +1,117 @@
+package com.xiaozhi.loadtest;
+
+import com.xiaozhi.utils.AudioFixtures;
+import com.xiaozhi.utils.AudioUtils;
+import com.xiaozhi.utils.OpusProcessor;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 模拟大量ESP32设备压测 WebSocketHandler -> MessageHandler -> DialogueService 的完整链路。
+ * <p>
+ * 准备：
+ * <ol>
+ * <li>执行 db/loadtest.sql，创建提供商为 loadtest 的模拟STT/LLM/TTS配置、压测角色和设备 loadtest-00001 ~ loadtest-05000</li>
+ * <li>在本机启动服务器，模拟提供商的耗时见 application.yml 中的 loadtest 配置</li>
+ * </ol>
+ * 运行：在IDE中执行 main 方法，或 mvn -P loadtest test -Dloadtest.devices=1000
+ * <p>
+ * 参数（系统属性）：
+ * <ul>
+ * <li>loadtest.url：WebSocket地址，只允许本机，默认 ws://localhost:8091/ws/xiaozhi/v1/</li>
+ * <li>loadtest.devices：设备数，默认100</li>
+ * <li>loadtest.turns：每台设备的对话轮数，默认3</li>
+ * <li>loadtest.ramp-up-ms：所有设备在这段时间内均匀接入，默认10000</li>
+ * <li>loadtest.think-ms：每轮对话之间的间隔，默认1000</li>
+ * <li>loadtest.mode：auto（服务器VAD判断说话结束）或 manual（设备发送 listen stop），默认auto</li>
+ * <li>loadtest.abort-rate：在播放中打断的轮次比例，默认0.1</li>
+ * <li>loadtest.mcp：是否响应MCP请求，默认true</li>
+ * <li>loadtest.device-prefix：设备ID前缀，默认 loadtest-，与 db/loadtest.sql 一致</li>
+ * </ul>
+ * 结束后输出连接建立耗时、说话结束到首帧音频的耗时分位数、下行帧抖动和卡顿，以及服务器堆内存与线程数。
+ */
+public class LoadTest {
+
+    /**
+     * 压测参数
+     */
+    public record Options(URI url, int devices, int turns, long rampUpMs, long thinkMs, String mode,
+                          double abortRate, boolean mcp, String devicePrefix) {
+
+        static Options fromSystemProperties() {
+            return new Options(
+                    URI.create(System.getProperty("loadtest.url", "ws://localhost:8091/ws/xiaozhi/v1/")),
+                    Integer.getInteger("loadtest.devices", 100),
+                    Integer.getInteger("loadtest.turns", 3),
+                    Long.getLong("loadtest.ramp-up-ms", 10_000),
+                    Long.getLong("loadtest.think-ms", 1_000),
+                    System.getProperty("loadtest.mode", "auto"),
+                    Double.parseDouble(System.getProperty("loadtest.abort-rate", "0.1")),
+                    Boolean.parseBoolean(System.getProperty("loadtest.mcp", "true")),
+                    System.getProperty("loadtest.device-prefix", "loadtest-"));
+        }
+
+        String deviceId(int index) {
+            return devicePrefix + String.format("%05d", index + 1);
+        }
+
+        /**
+         * 同一服务器的 /actuator/prometheus
+         */
+        URI metricsUrl() {
+            String scheme = "wss".equals(url.getScheme()) ? "https" : "http";
+            return URI.create(scheme + "://" + url.getAuthority() + "/actuator/prometheus");
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.fromSystemProperties();
+        if (!InetAddress.getByName(options.url().getHost()).isLoopbackAddress()) {
+            throw new IllegalArgumentException("压测只允许连接本机服务器: " + options.url());
+        }
+        if (!"auto".equals(options.mode()) && !"manual".equals(options.mode())) {
+            throw new IllegalArgumentException("loadtest.mode 只能是 auto 或 manual: " + options.mode());
+        }
+
+        // 所有设备共用同一段录音
+        List<byte[]> utterance = List.copyOf(AudioFixtures.utteranceOpus());
+        int speechFrames = (int) Math.ceil(AudioFixtures.speechMillis() / (double) AudioUtils.OPUS_FRAME_DURATION_MS);
+        byte[] silence = new OpusProcessor().pcmToOpus(new byte[AudioUtils.FRAME_SIZE * 2], false).get(0);
+
+        System.out.printf("压测 %s：%d 台设备，每台 %d 轮，%s 模式，%dms 内接入%n",
+                options.url(), options.devices(), options.turns(), options.mode(), options.rampUpMs());
+
+        LoadTestReport report = new LoadTestReport();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient client = HttpClient.newBuilder().executor(executor).connectTimeout(Duration.ofSeconds(10)).build()) {
+            ServerStats server = new ServerStats(client, options.metricsUrl(), Duration.ofSeconds(1));
+            server.start();
+
+            long start = System.nanoTime();
+            ExecutorService devices = Executors.newVirtualThreadPerTaskExecutor();
+            for (int i = 0; i < options.devices(); i++) {
+                // 均匀接入，避免所有设备同时握手
+                long at = start + TimeUnit.MILLISECONDS.toNanos(options.rampUpMs()) * i / options.devices();
+                LockSupport.parkNanos(at - System.nanoTime());
+                SimulatedDevice device = new SimulatedDevice(options.deviceId(i), options, report,
+                        utterance, speechFrames, silence);
+                devices.submit(() -> device.run(client));
+            }
+            devices.shutdown();
+            while (!devices.awaitTermination(5, TimeUnit.SECONDS)) {
+                System.out.printf("在线 %d，完成对话 %d 轮，超时 %d%n",
+                        report.active.get(), report.turns.sum(), report.timeouts.sum());
+            }
+            server.stop();
+            report.print(System.out, System.nanoTime() - start, server);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.xiaozhi.loadtest;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 所有模拟设备共用的统计结果
+ */
+public class LoadTestReport {
+
+    /**
+     * 建立连接到收到hello响应
+     */
+    final Samples setup = new Samples();
+    /**
+     * 说话结束（最后一帧语音上行，手动模式为发送listen stop）到收到首帧音频
+     */
+    final Samples response = new Samples();
+    /**
+     * 相邻下行音频帧的间隔与帧时长之差的绝对值
+     */
+    final Samples jitter = new Samples();
+    /**
+     * 按帧时长连续播放时，下一帧晚于上一帧播放完毕的时长，即设备端的卡顿
+     */
+    final Samples stalls = new Samples();
+
+    final LongAdder connected = new LongAdder();
+    final LongAdder turns = new LongAdder();
+    final LongAdder aborts = new LongAdder();
+    final LongAdder timeouts = new LongAdder();
+    final LongAdder mcpResponses = new LongAdder();
+    final LongAdder uplinkFrames = new LongAdder();
+    final LongAdder downlinkFrames = new LongAdder();
+    final AtomicLong maxConcurrent = new AtomicLong();
+    final AtomicLong active = new AtomicLong();
+
+    // 按错误类型计数
+    final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+    void error(String type) {
+        errors.computeIfAbsent(type, k -> new LongAdder()).increment();
+    }
+
+    void deviceStarted() {
+        maxConcurrent.accumulateAndGet(active.incrementAndGet(), Math::max);
+    }
+
+    void deviceFinished() {
+        active.decrementAndGet();
+    }
+
+    void print(PrintStream out, long elapsedNanos, ServerStats server) {
+        out.println();
+        out.printf("压测时长 %.1fs，连接成功 %d，最大同时在线 %d%n",
+                elapsedNanos / 1e9, connected.sum(), maxConcurrent.get());
+        out.printf("完成对话 %d 轮，打断 %d，超时 %d，MCP响应 %d，上行帧 %d，下行帧 %d%n",
+                turns.sum(), aborts.sum(), timeouts.sum(), mcpResponses.sum(), uplinkFrames.sum(), downlinkFrames.sum());
+        if (!errors.isEmpty()) {
+            out.println("错误：" + errors);
+        }
+        out.println();
+        out.printf("%-24s %8s %9s %9s %9s %9s%n", "耗时(ms)", "样本数", "p50", "p95", "p99", "max");
+        printRow(out, "连接建立（到hello响应）", setup);
+        printRow(out, "说话结束到首帧音频", response);
+        printRow(out, "下行帧抖动", jitter);
+        printRow(out, "播放卡顿", stalls);
+        out.printf("卡顿总时长 %.1fs%n", stalls.sum() / 1e9);
+        out.println();
+        if (server.available()) {
+            out.printf("服务器堆内存：开始 %dMB，峰值 %dMB，结束 %dMB%n",
+                    mb(server.baselineHeap()), mb(server.maxHeap()), mb(server.lastHeap()));
+            out.printf("服务器平台线程：开始 %d，峰值 %d，结束 %d%n",
+                    server.baselineThreads(), server.maxThreads(), server.lastThreads());
+        } else {
+            out.println("未获取到服务器指标，请确认 management.endpoints.web.exposure.include 包含 prometheus");
+        }
+    }
+
+    private static void printRow(PrintStream out, String name, Samples samples) {
+        long[] sorted = samples.sorted();
+        out.printf("%-24s %8d %9.1f %9.1f %9.1f %9.1f%n", name, sorted.length,
+                millis(Samples.percentile(sorted, 0.50)),
+                millis(Samples.percentile(sorted, 0.95)),
+                millis(Samples.percentile(sorted, 0.99)),
+                millis(sorted.length == 0 ? 0 : sorted[sorted.length - 1]));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private static long mb(long bytes) {
+        return bytes / (1024 * 1024);
+    }
+}
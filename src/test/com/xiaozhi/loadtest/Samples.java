@@ -0,0 +1,53 @@
+package com.xiaozhi.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * 耗时样本（纳秒），多个设备线程同时记录，结束后计算分位数
+ */
+public class Samples {
+
+    private long[] values = new long[1024];
+    private int size;
+
+    public synchronized void record(long nanos) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = nanos;
+    }
+
+    public synchronized int count() {
+        return size;
+    }
+
+    /**
+     * 排序后的快照
+     */
+    public synchronized long[] sorted() {
+        long[] copy = Arrays.copyOf(values, size);
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    /**
+     * @param sorted   {@link #sorted()} 的结果
+     * @param quantile 0到1之间
+     * @return 最近秩法的分位数，没有样本时为0
+     */
+    public static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(quantile * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    public synchronized long sum() {
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            total += values[i];
+        }
+        return total;
+    }
+}
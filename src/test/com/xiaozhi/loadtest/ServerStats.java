@@ -0,0 +1,124 @@
+package com.xiaozhi.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * 压测过程中定时读取服务器的 /actuator/prometheus，记录堆内存和线程数的峰值。
+ * 平台线程数取 jvm_threads_live_threads，不包含虚拟线程。
+ */
+public class ServerStats {
+
+    private static final String HEAP_USED = "jvm_memory_used_bytes{area=\"heap\"";
+    private static final String LIVE_THREADS = "jvm_threads_live_threads";
+
+    private final HttpClient client;
+    private final URI uri;
+    private final Duration interval;
+
+    private volatile boolean running;
+    private Thread poller;
+
+    private volatile long baselineHeap = -1;
+    private volatile long baselineThreads = -1;
+    private volatile long maxHeap = -1;
+    private volatile long maxThreads = -1;
+    private volatile long lastHeap = -1;
+    private volatile long lastThreads = -1;
+
+    public ServerStats(HttpClient client, URI uri, Duration interval) {
+        this.client = client;
+        this.uri = uri;
+        this.interval = interval;
+    }
+
+    public void start() {
+        running = true;
+        poller = Thread.ofVirtual().name("server-stats").start(() -> {
+            while (running) {
+                poll();
+                try {
+                    Thread.sleep(interval);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+    }
+
+    public void stop() throws InterruptedException {
+        running = false;
+        if (poller != null) {
+            poller.interrupt();
+            poller.join();
+        }
+        poll();
+    }
+
+    private void poll() {
+        String body;
+        try {
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(5)).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                return;
+            }
+            body = response.body();
+        } catch (Exception e) {
+            return;
+        }
+        long heap = 0;
+        long threads = -1;
+        for (String line : body.split("\n")) {
+            if (line.startsWith(HEAP_USED)) {
+                // 各堆内存区的用量相加
+                heap += (long) value(line);
+            } else if (line.startsWith(LIVE_THREADS)) {
+                threads = (long) value(line);
+            }
+        }
+        if (baselineHeap < 0) {
+            baselineHeap = heap;
+            baselineThreads = threads;
+        }
+        lastHeap = heap;
+        lastThreads = threads;
+        maxHeap = Math.max(maxHeap, heap);
+        maxThreads = Math.max(maxThreads, threads);
+    }
+
+    private static double value(String line) {
+        return Double.parseDouble(line.substring(line.lastIndexOf(' ') + 1));
+    }
+
+    public boolean available() {
+        return maxHeap >= 0;
+    }
+
+    public long baselineHeap() {
+        return baselineHeap;
+    }
+
+    public long baselineThreads() {
+        return baselineThreads;
+    }
+
+    public long maxHeap() {
+        return maxHeap;
+    }
+
+    public long maxThreads() {
+        return maxThreads;
+    }
+
+    public long lastHeap() {
+        return lastHeap;
+    }
+
+    public long lastThreads() {
+        return lastThreads;
+    }
+}
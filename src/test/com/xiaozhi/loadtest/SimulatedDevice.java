@@ -0,0 +1,348 @@
+package com.xiaozhi.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.xiaozhi.utils.AudioUtils;
+import com.xiaozhi.utils.JsonUtil;
+
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 一台模拟的ESP32设备，按固件的WebSocket协议与服务器对话：
+ * <ol>
+ * <li>连接时在请求头中带 device-id，发送hello，等待服务器的hello响应</li>
+ * <li>开启MCP时响应服务器的 initialize、tools/list、tools/call 请求</li>
+ * <li>每轮对话发送 listen start，按60ms的实际节奏上行一段话的Opus帧；
+ * 自动模式下继续上行静音，直到服务器发送 tts start（VAD检测到说话结束）；手动模式下发完语音后发送 listen stop</li>
+ * <li>接收下行音频直到 tts stop，按配置的比例在播放中发送 abort 打断</li>
+ * <li>全部轮次结束后发送 goodbye 并断开</li>
+ * </ol>
+ */
+public class SimulatedDevice implements WebSocket.Listener {
+
+    private static final long FRAME_NANOS = TimeUnit.MILLISECONDS.toNanos(AudioUtils.OPUS_FRAME_DURATION_MS);
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    private static final long HELLO_TIMEOUT_MS = 10_000;
+    // 说话结束后等待 tts start 的超时时间
+    private static final long RESPONSE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(20);
+    // 等待 tts stop 的超时时间
+    private static final long PLAYBACK_TIMEOUT_MS = 60_000;
+    // 打断后等待 tts stop 的超时时间
+    private static final long ABORT_TIMEOUT_MS = 3_000;
+    // 收到这么多帧音频后打断
+    private static final int ABORT_AFTER_FRAMES = 5;
+
+    private static final String HELLO = """
+            {"type":"hello","version":1,"transport":"websocket","features":{"mcp":%s},\
+            "audio_params":{"format":"opus","sample_rate":16000,"channels":1,"frame_duration":60}}""";
+
+    /**
+     * 一轮对话的状态，下行的字段只在WebSocket回调中修改
+     */
+    private static final class Turn {
+        final boolean abort;
+        final CompletableFuture<Void> ttsStart = new CompletableFuture<>();
+        final CompletableFuture<Void> ttsStop = new CompletableFuture<>();
+        // 说话结束的时间，0表示还在说话
+        volatile long speechEnd;
+        int frames;
+        long lastFrame;
+        // 按帧时长连续播放时，已收到的音频播放完毕的时间
+        long playEnd;
+
+        Turn(boolean abort) {
+            this.abort = abort;
+        }
+    }
+
+    private final String deviceId;
+    private final LoadTest.Options options;
+    private final LoadTestReport report;
+    private final List<byte[]> utterance;
+    private final int speechFrames;
+    private final byte[] silence;
+
+    private final CompletableFuture<String> hello = new CompletableFuture<>();
+    // 收到服务器的关闭帧
+    private final CompletableFuture<Void> closeReply = new CompletableFuture<>();
+    private final StringBuilder textBuffer = new StringBuilder();
+    private WebSocket webSocket;
+    // WebSocket同一时刻只能有一个未完成的发送，按顺序串联
+    private volatile CompletableFuture<WebSocket> sending = CompletableFuture.completedFuture(null);
+    private volatile String sessionId = "";
+    private volatile boolean closed;
+    private volatile Turn turn;
+
+    /**
+     * @param utterance    一段话的Opus帧，前 speechFrames 帧为语音，之后为静音
+     * @param speechFrames 语音帧数
+     * @param silence      一帧静音
+     */
+    public SimulatedDevice(String deviceId, LoadTest.Options options, LoadTestReport report,
+                           List<byte[]> utterance, int speechFrames, byte[] silence) {
+        this.deviceId = deviceId;
+        this.options = options;
+        this.report = report;
+        this.utterance = utterance;
+        this.speechFrames = speechFrames;
+        this.silence = silence;
+    }
+
+    /**
+     * 连接服务器并完成全部轮次的对话，阻塞到结束
+     */
+    public void run(HttpClient client) {
+        report.deviceStarted();
+        try {
+            long start = System.nanoTime();
+            webSocket = client.newWebSocketBuilder()
+                    .connectTimeout(CONNECT_TIMEOUT)
+                    .header("device-id", deviceId)
+                    .header("client-id", UUID.randomUUID().toString())
+                    .header("Protocol-Version", "1")
+                    .buildAsync(options.url(), this)
+                    .get(CONNECT_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+            sendText(HELLO.formatted(options.mcp()));
+            sessionId = hello.get(HELLO_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            report.setup.record(System.nanoTime() - start);
+            report.connected.increment();
+
+            for (int i = 0; i < options.turns(); i++) {
+                if (!runTurn()) {
+                    break;
+                }
+                Thread.sleep(options.thinkMs());
+            }
+            sendText(message("goodbye"));
+            sending.get(5, TimeUnit.SECONDS);
+            webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "").get(5, TimeUnit.SECONDS);
+            // 等服务器回复关闭帧再断开，否则abort会丢弃服务器尚未读取的 goodbye 等消息
+            closeReply.completeOnTimeout(null, 5, TimeUnit.SECONDS).join();
+        } catch (TimeoutException e) {
+            report.error(hello.isDone() ? "timeout" : "hello-timeout");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            report.error(cause.getClass().getSimpleName());
+        } finally {
+            if (webSocket != null) {
+                webSocket.abort();
+            }
+            report.deviceFinished();
+        }
+    }
+
+    /**
+     * @return false表示连接已不可用，不再继续
+     */
+    private boolean runTurn() throws Exception {
+        Turn current = new Turn(ThreadLocalRandom.current().nextDouble() < options.abortRate());
+        turn = current;
+        boolean manual = "manual".equals(options.mode());
+        sendText(message("listen", "state", "start", "mode", options.mode()));
+
+        long next = System.nanoTime();
+        int index = 0;
+        while (!current.ttsStart.isDone()) {
+            if (closed || webSocket.isOutputClosed()) {
+                report.error("closed");
+                return false;
+            }
+            if (manual && index == speechFrames) {
+                sendText(message("listen", "state", "stop"));
+                current.speechEnd = System.nanoTime();
+                break;
+            }
+            if (current.speechEnd != 0 && System.nanoTime() - current.speechEnd > RESPONSE_TIMEOUT_NANOS) {
+                report.timeouts.increment();
+                return true;
+            }
+            // 语音发完后继续上行静音，与设备在自动模式下一直录音相同
+            sendBinary(index < utterance.size() ? utterance.get(index) : silence);
+            report.uplinkFrames.increment();
+            index++;
+            if (index == speechFrames) {
+                current.speechEnd = System.nanoTime();
+            }
+            // 按绝对时间计算下一帧的发送时间，不累积误差
+            next += FRAME_NANOS;
+            LockSupport.parkNanos(next - System.nanoTime());
+        }
+
+        try {
+            current.ttsStop.get(current.abort ? PLAYBACK_TIMEOUT_MS + ABORT_TIMEOUT_MS : PLAYBACK_TIMEOUT_MS,
+                    TimeUnit.MILLISECONDS);
+            if (closed) {
+                report.error("closed");
+                return false;
+            }
+            report.turns.increment();
+        } catch (TimeoutException e) {
+            report.timeouts.increment();
+        }
+        return true;
+    }
+
+    @Override
+    public void onOpen(WebSocket webSocket) {
+        webSocket.request(1);
+    }
+
+    @Override
+    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+        textBuffer.append(data);
+        if (last) {
+            String text = textBuffer.toString();
+            textBuffer.setLength(0);
+            try {
+                handleText(JsonUtil.OBJECT_MAPPER.readTree(text));
+            } catch (Exception e) {
+                report.error("bad-message");
+            }
+        }
+        webSocket.request(1);
+        return null;
+    }
+
+    @Override
+    public CompletionStage<?> onBinary(WebSocket webSocket, ByteBuffer data, boolean last) {
+        if (last) {
+            handleFrame(System.nanoTime());
+        }
+        webSocket.request(1);
+        return null;
+    }
+
+    @Override
+    public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+        closed = true;
+        closeReply.complete(null);
+        Turn current = turn;
+        if (current != null) {
+            current.ttsStart.complete(null);
+            current.ttsStop.complete(null);
+        }
+        return null;
+    }
+
+    @Override
+    public void onError(WebSocket webSocket, Throwable error) {
+        report.error(error.getClass().getSimpleName());
+        hello.completeExceptionally(error);
+        onClose(webSocket, WebSocket.NORMAL_CLOSURE, "");
+    }
+
+    private void handleText(JsonNode message) {
+        String type = message.path("type").asText();
+        switch (type) {
+            case "hello" -> hello.complete(message.path("session_id").asText(""));
+            case "tts" -> {
+                Turn current = turn;
+                if (current == null) {
+                    return;
+                }
+                switch (message.path("state").asText()) {
+                    case "start" -> current.ttsStart.complete(null);
+                    case "stop" -> current.ttsStop.complete(null);
+                    default -> {
+                    }
+                }
+            }
+            case "mcp" -> handleMcp(message.path("payload"));
+            default -> {
+            }
+        }
+    }
+
+    private void handleFrame(long now) {
+        report.downlinkFrames.increment();
+        Turn current = turn;
+        if (current == null) {
+            return;
+        }
+        if (current.frames == 0) {
+            long speechEnd = current.speechEnd;
+            if (speechEnd != 0) {
+                report.response.record(now - speechEnd);
+            }
+            current.playEnd = now;
+        } else {
+            report.jitter.record(Math.abs(now - current.lastFrame - FRAME_NANOS));
+            if (now > current.playEnd) {
+                report.stalls.record(now - current.playEnd);
+                current.playEnd = now;
+            }
+        }
+        current.playEnd += FRAME_NANOS;
+        current.lastFrame = now;
+        current.frames++;
+        if (current.abort && current.frames == ABORT_AFTER_FRAMES) {
+            report.aborts.increment();
+            sendText(message("abort", "reason", "wake_word_detected"));
+        }
+    }
+
+    /**
+     * 响应服务器发来的MCP请求，工具列表只有一个设置音量的工具
+     */
+    private void handleMcp(JsonNode payload) {
+        JsonNode id = payload.get("id");
+        if (id == null) {
+            return;
+        }
+        Object result = switch (payload.path("method").asText()) {
+            case "initialize" -> Map.of(
+                    "protocolVersion", "2024-11-05",
+                    "capabilities", Map.of("tools", Map.of()),
+                    "serverInfo", Map.of("name", "xiaozhi-loadtest", "version", "1.0.0"));
+            case "tools/list" -> Map.of("tools", List.of(Map.of(
+                    "name", "self.audio_speaker.set_volume",
+                    "description", "设置扬声器音量",
+                    "inputSchema", Map.of(
+                            "type", "object",
+                            "properties", Map.of("volume", Map.of("type", "integer", "minimum", 0, "maximum", 100)),
+                            "required", List.of("volume")))));
+            case "tools/call" -> Map.of(
+                    "content", List.of(Map.of("type", "text", "text", "true")),
+                    "isError", false);
+            default -> null;
+        };
+        if (result == null) {
+            return;
+        }
+        report.mcpResponses.increment();
+        sendText(JsonUtil.toJson(Map.of(
+                "session_id", sessionId,
+                "type", "mcp",
+                "payload", Map.of("jsonrpc", "2.0", "id", id.asLong(), "result", result))));
+    }
+
+    private String message(String type, String... fields) {
+        StringBuilder json = new StringBuilder("{\"session_id\":\"").append(sessionId)
+                .append("\",\"type\":\"").append(type).append('"');
+        for (int i = 0; i + 1 < fields.length; i += 2) {
+            json.append(",\"").append(fields[i]).append("\":\"").append(fields[i + 1]).append('"');
+        }
+        return json.append('}').toString();
+    }
+
+    private synchronized void sendText(String text) {
+        sending = sending.thenCompose(ws -> webSocket.sendText(text, true));
+    }
+
+    private synchronized void sendBinary(byte[] frame) {
+        sending = sending.thenCompose(ws -> webSocket.sendBinary(ByteBuffer.wrap(frame), true));
+    }
+}
@@ -0,0 +1,189 @@
+package com.xiaozhi.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.xiaozhi.utils.JsonUtil;
+import org.java_websocket.WebSocket;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 用本机上按协议应答的简易服务器验证模拟设备的交互流程和统计
+ */
+public class SimulatedDeviceTest {
+
+    private static final int SPEECH_FRAMES = 3;
+    // 模拟VAD：说话结束后再收到这么多帧静音才判定说话结束
+    private static final int VAD_SILENCE_FRAMES = 2;
+    private static final int REPLY_FRAMES = 8;
+    private static final long RESPONSE_DELAY_MS = 100;
+
+    private final LoadTestReport report = new LoadTestReport();
+    private FakeServer server;
+
+    @AfterEach
+    void stopServer() throws Exception {
+        if (server != null) {
+            server.stop(1000);
+        }
+    }
+
+    @Test
+    void autoModeCompletesEveryTurn() throws Exception {
+        run("auto", 0, 2, 2);
+
+        assertEquals(Map.of(), report.errors);
+        assertEquals(2, report.connected.sum());
+        assertEquals(4, report.turns.sum());
+        assertEquals(0, report.timeouts.sum());
+        // 每台设备响应 initialize 和 tools/list
+        assertEquals(4, report.mcpResponses.sum());
+        assertEquals(4, report.response.count());
+        assertTrue(Samples.percentile(report.response.sorted(), 0) >= TimeUnit.MILLISECONDS.toNanos(RESPONSE_DELAY_MS));
+        assertEquals(4 * REPLY_FRAMES, report.downlinkFrames.sum());
+        assertEquals(4 * (REPLY_FRAMES - 1), report.jitter.count());
+        assertEquals(2, server.goodbyes.get());
+        // 说话结束后继续上行静音，直到VAD判定结束
+        assertTrue(report.uplinkFrames.sum() >= 4 * (SPEECH_FRAMES + VAD_SILENCE_FRAMES));
+        assertEquals(2, server.devices.size());
+    }
+
+    @Test
+    void manualModeStopsListeningAndAborts() throws Exception {
+        run("manual", 1, 1, 2);
+
+        assertEquals(Map.of(), report.errors);
+        assertEquals(2, report.turns.sum());
+        assertEquals(2, report.aborts.sum());
+        assertEquals(2, server.aborts.get());
+        // 手动模式只上行语音帧
+        assertEquals(2 * SPEECH_FRAMES, report.uplinkFrames.sum());
+        assertEquals(2, report.response.count());
+        assertTrue(report.downlinkFrames.sum() < 2 * REPLY_FRAMES);
+    }
+
+    private void run(String mode, double abortRate, int devices, int turns) throws Exception {
+        server = new FakeServer(mode);
+        server.start();
+        assertTrue(server.started.await(5, TimeUnit.SECONDS));
+        LoadTest.Options options = new LoadTest.Options(URI.create("ws://localhost:" + server.getPort() + "/ws/xiaozhi/v1/"),
+                devices, turns, 0, 50, mode, abortRate, true, "test-");
+        List<byte[]> utterance = List.of(new byte[]{1}, new byte[]{2}, new byte[]{3}, new byte[]{0});
+        try (HttpClient client = HttpClient.newHttpClient()) {
+            Thread[] threads = new Thread[devices];
+            for (int i = 0; i < devices; i++) {
+                SimulatedDevice device = new SimulatedDevice(options.deviceId(i), options, report,
+                        utterance, SPEECH_FRAMES, new byte[]{0});
+                threads[i] = Thread.startVirtualThread(() -> device.run(client));
+            }
+            for (Thread thread : threads) {
+                thread.join(TimeUnit.SECONDS.toMillis(30));
+            }
+        }
+    }
+
+    /**
+     * 按协议应答的服务器：回复hello并发起MCP请求，说话结束后发送 tts start、若干音频帧和 tts stop
+     */
+    private static class FakeServer extends WebSocketServer {
+        final String mode;
+        final CountDownLatch started = new CountDownLatch(1);
+        final Map<String, Boolean> devices = new ConcurrentHashMap<>();
+        final Map<WebSocket, AtomicInteger> silentFrames = new ConcurrentHashMap<>();
+        final Map<WebSocket, Boolean> aborted = new ConcurrentHashMap<>();
+        final AtomicInteger aborts = new AtomicInteger();
+        final AtomicInteger goodbyes = new AtomicInteger();
+
+        FakeServer(String mode) {
+            super(new InetSocketAddress("localhost", 0));
+            this.mode = mode;
+            setReuseAddr(true);
+        }
+
+        @Override
+        public void onStart() {
+            started.countDown();
+        }
+
+        @Override
+        public void onOpen(WebSocket conn, ClientHandshake handshake) {
+            devices.put(handshake.getFieldValue("device-id"), true);
+        }
+
+        @Override
+        public void onMessage(WebSocket conn, String message) {
+            JsonNode json = JsonUtil.fromJson(message, JsonNode.class);
+            switch (json.path("type").asText()) {
+                case "hello" -> {
+                    conn.send("{\"type\":\"hello\",\"transport\":\"websocket\",\"session_id\":\"s-" + conn.hashCode() + "\"}");
+                    conn.send("{\"type\":\"mcp\",\"payload\":{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"initialize\",\"params\":{}}}");
+                    conn.send("{\"type\":\"mcp\",\"payload\":{\"jsonrpc\":\"2.0\",\"id\":2,\"method\":\"tools/list\",\"params\":{\"cursor\":\"\"}}}");
+                }
+                case "listen" -> {
+                    switch (json.path("state").asText()) {
+                        case "start" -> {
+                            silentFrames.put(conn, new AtomicInteger());
+                            aborted.remove(conn);
+                        }
+                        case "stop" -> respond(conn);
+                        default -> {
+                        }
+                    }
+                }
+                case "abort" -> {
+                    aborts.incrementAndGet();
+                    aborted.put(conn, true);
+                }
+                case "goodbye" -> goodbyes.incrementAndGet();
+                default -> {
+                }
+            }
+        }
+
+        @Override
+        public void onMessage(WebSocket conn, ByteBuffer frame) {
+            // 静音帧为单字节0
+            if ("auto".equals(mode) && frame.remaining() == 1 && frame.get(0) == 0
+                    && silentFrames.get(conn).incrementAndGet() == VAD_SILENCE_FRAMES) {
+                respond(conn);
+            }
+        }
+
+        private void respond(WebSocket conn) {
+            Thread.startVirtualThread(() -> {
+                try {
+                    conn.send("{\"type\":\"tts\",\"state\":\"start\"}");
+                    Thread.sleep(RESPONSE_DELAY_MS);
+                    for (int i = 0; i < REPLY_FRAMES && !aborted.containsKey(conn); i++) {
+                        conn.send(new byte[]{(byte) i, 1, 2});
+                        Thread.sleep(60);
+                    }
+                    conn.send("{\"type\":\"tts\",\"state\":\"stop\"}");
+                } catch (Exception ignored) {
+                }
+            });
+        }
+
+        @Override
+        public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+        }
+
+        @Override
+        public void onError(WebSocket conn, Exception ex) {
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.xiaozhi.service.impl;
+
+import com.xiaozhi.dao.MessageMapper;
+import com.xiaozhi.entity.SysMessage;
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.session.SqlSessionManager;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 在MySQL兼容模式的H2内存库上验证批量写入、音频路径合并、关闭时写完缓冲区，以及1000台设备同时对话时每条消息和音频路径都被写入。
+ * 表结构取自 db/init.sql。
+ */
+public class MessageWriteBufferTest {
+
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+    private static final int DEVICES = 1000;
+    private static final int TURNS = 5;
+
+    private JdbcDataSource dataSource;
+    private MessageMapper messageMapper;
+    private final List<MessageWriteBuffer> buffers = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:xiaozhi" + DATABASES.incrementAndGet() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute(messageTableDdl());
+        }
+        Configuration configuration = new Configuration(
+                new Environment("test", new JdbcTransactionFactory(), dataSource));
+        try (InputStream in = Files.newInputStream(Path.of("src/main/java/com/xiaozhi/mapper/MessageMapper.xml"))) {
+            new XMLMapperBuilder(in, configuration, "MessageMapper.xml", configuration.getSqlFragments()).parse();
+        }
+        // 每次调用打开一个会话并提交，与SqlSessionTemplate一样可以多线程共用
+        messageMapper = SqlSessionManager.newInstance(new SqlSessionFactoryBuilder().build(configuration))
+                .getMapper(MessageMapper.class);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        buffers.forEach(MessageWriteBuffer::shutdown);
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("SHUTDOWN");
+        }
+    }
+
+    private MessageWriteBuffer newBuffer(int batchSize, long flushIntervalMs, int capacity) {
+        MessageWriteBuffer buffer = new MessageWriteBuffer(messageMapper, batchSize, flushIntervalMs, capacity);
+        buffers.add(buffer);
+        return buffer;
+    }
+
+    @Test
+    void audioArrivingBeforeInsertIsWrittenWithIt() throws Exception {
+        MessageWriteBuffer buffer = newBuffer(200, 60_000, 10_000);
+        Date time = seconds(1000);
+        buffer.add(turn("aa:bb", 1, time));
+        buffer.attachAudio(audio("aa:bb", 1, "user", time));
+        buffer.flush();
+
+        assertEquals(2, count("SELECT COUNT(*) FROM sys_message"));
+        assertEquals(audio("aa:bb", 1, "user", time).getAudioPath(),
+                string("SELECT audioPath FROM sys_message WHERE sender = 'user'"));
+        assertEquals(1, count("SELECT COUNT(*) FROM sys_message WHERE sender = 'assistant' AND audioPath IS NULL"));
+        MessageWriteBuffer.Stats stats = buffer.getStats();
+        assertEquals(1, stats.merged());
+        assertEquals(0, stats.updates());
+        assertEquals(2, stats.inserted());
+    }
+
+    @Test
+    void audioArrivingAfterInsertIsUpdated() {
+        MessageWriteBuffer buffer = newBuffer(200, 60_000, 10_000);
+        Date time = seconds(1000);
+        buffer.add(turn("aa:bb", 1, time));
+        buffer.flush();
+        buffer.attachAudio(audio("aa:bb", 1, "assistant", time));
+        buffer.flush();
+
+        assertEquals(1, count("SELECT COUNT(*) FROM sys_message WHERE sender = 'assistant' AND audioPath IS NOT NULL"));
+        assertEquals(1, buffer.getStats().updates());
+    }
+
+    @Test
+    void flushesBySizeAndByTime() throws Exception {
+        MessageWriteBuffer buffer = newBuffer(50, 300, 10_000);
+        // 第25轮加入后达到批量大小，立即写入；再多加入的消息可能赶不上这次写入，只能等定时写入
+        for (int i = 0; i < 25; i++) {
+            buffer.add(turn("dev-" + i, 1, seconds(i)));
+        }
+        awaitCount(50, 250);
+        buffer.add(turn("dev-last", 1, seconds(100)));
+        // 不足一批，等定时写入
+        awaitCount(52, 1000);
+        assertEquals(0, buffer.getStats().pending());
+    }
+
+    @Test
+    void shutdownFlushesPendingMessages() {
+        MessageWriteBuffer buffer = newBuffer(200, 3_600_000, 10_000);
+        for (int i = 0; i < 10; i++) {
+            buffer.add(turn("dev-" + i, 1, seconds(i)));
+        }
+        assertEquals(0, count("SELECT COUNT(*) FROM sys_message"));
+        buffer.shutdown();
+        assertEquals(20, count("SELECT COUNT(*) FROM sys_message"));
+    }
+
+    @Test
+    void fullBufferIsWrittenByCaller() {
+        MessageWriteBuffer buffer = newBuffer(10, 3_600_000, 20);
+        for (int i = 0; i < 10; i++) {
+            buffer.add(turn("dev-" + i, 1, seconds(i)));
+        }
+        // 达到上限时 add 返回前已写入
+        assertTrue(count("SELECT COUNT(*) FROM sys_message") >= 20);
+    }
+
+    @Test
+    void thousandDevicesWriteEveryMessageWithAudio() throws Exception {
+        // 原实现：每轮对话单独插入，再单独更新用户和助手的音频路径
+        simulate(new Persistence() {
+            @Override
+            public void save(List<SysMessage> messages) {
+                messageMapper.saveAll(messages);
+            }
+
+            @Override
+            public void attachAudio(SysMessage update) {
+                messageMapper.updateMessageByAudioFile(update);
+            }
+        });
+        assertEquals(DEVICES * TURNS * 2, count("SELECT COUNT(*) FROM sys_message"));
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("DELETE FROM sys_message");
+        }
+
+        MessageWriteBuffer buffer = newBuffer(200, 1000, 10_000);
+        simulate(new Persistence() {
+            @Override
+            public void save(List<SysMessage> messages) {
+                buffer.add(messages);
+            }
+
+            @Override
+            public void attachAudio(SysMessage update) {
+                buffer.attachAudio(update);
+            }
+
+            @Override
+            public void drain() {
+                buffer.flush();
+            }
+        });
+        assertEquals(DEVICES * TURNS * 2, count("SELECT COUNT(*) FROM sys_message"));
+        assertEquals(DEVICES * TURNS * 2, count("SELECT COUNT(*) FROM sys_message WHERE audioPath IS NOT NULL"));
+
+        // 每条音频路径要么随INSERT写入，要么单独更新；INSERT合并为远少于消息数的批次
+        MessageWriteBuffer.Stats stats = buffer.getStats();
+        assertEquals(0, stats.failures());
+        assertEquals(DEVICES * TURNS * 2, stats.inserted());
+        assertEquals(DEVICES * TURNS * 2, stats.merged() + stats.updates());
+        assertTrue(stats.batches() < stats.inserted() / 10, stats.toString());
+    }
+
+    private interface Persistence {
+        void save(List<SysMessage> messages);
+
+        void attachAudio(SysMessage update);
+
+        default void drain() {
+        }
+    }
+
+    /**
+     * 每台设备一个虚拟线程，每轮保存用户和助手消息，随即附上用户音频，播放结束后附上助手音频
+     */
+    private void simulate(Persistence persistence) throws Exception {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int device = 0; device < DEVICES; device++) {
+                String deviceId = "dev-%04d".formatted(device);
+                futures.add(executor.submit(() -> {
+                    for (int turn = 0; turn < TURNS; turn++) {
+                        Date time = seconds(turn * 10L);
+                        persistence.save(turn(deviceId, 1, time));
+                        persistence.attachAudio(audio(deviceId, 1, "user", time));
+                        Thread.sleep(5);
+                        persistence.attachAudio(audio(deviceId, 1, "assistant", time));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(120, TimeUnit.SECONDS);
+            }
+        }
+        persistence.drain();
+    }
+
+    private static List<SysMessage> turn(String deviceId, int roleId, Date time) {
+        return List.of(message(deviceId, roleId, "user", time).setMessage("今天天气怎么样"),
+                message(deviceId, roleId, "assistant", time).setMessage("今天晴，气温二十度"));
+    }
+
+    private static SysMessage audio(String deviceId, int roleId, String sender, Date time) {
+        SysMessage update = message(deviceId, roleId, sender, time);
+        update.setAudioPath("audio/" + deviceId + "/" + sender + ".wav");
+        return update;
+    }
+
+    private static SysMessage message(String deviceId, int roleId, String sender, Date time) {
+        SysMessage message = new SysMessage()
+                .setDeviceId(deviceId)
+                .setSessionId("session-" + deviceId)
+                .setSender(sender)
+                .setRoleId(roleId)
+                .setMessageType(SysMessage.MESSAGE_TYPE_NORMAL);
+        message.setCreateTime(time);
+        return message;
+    }
+
+    private static Date seconds(long seconds) {
+        return new Date(1_700_000_000_000L + seconds * 1000);
+    }
+
+    private int count(String sql) {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String string(String sql) {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            resultSet.next();
+            return resultSet.getString(1);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void awaitCount(int expected, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (count("SELECT COUNT(*) FROM sys_message") < expected) {
+            assertTrue(System.currentTimeMillis() < deadline,
+                    "消息数 " + count("SELECT COUNT(*) FROM sys_message") + ", 期望 " + expected);
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * db/init.sql 中的 sys_message 表，H2不支持列级字符集，去掉后建表
+     */
+    private static String messageTableDdl() throws Exception {
+        String sql = Files.readString(Path.of("db/init.sql"));
+        int start = sql.indexOf("CREATE TABLE `xiaozhi`.`sys_message`");
+        int end = sql.indexOf(";", start);
+        return sql.substring(start, end).replace("`xiaozhi`.", "")
+                .replaceAll("CHARACTER SET \\w+ COLLATE \\w+ ", "");
+    }
+}
@@ -0,0 +1,57 @@
+package com.xiaozhi.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单帧（60ms）音频增强耗时，开启 vad.audio.enhancement.enabled 时VAD对每一帧调用
+ * <p>
+ * 运行：在IDE中执行 main 方法，或 mvn -P benchmark test
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AudioEnhancerBenchmark {
+
+    private float[][] frames;
+    private AudioEnhancer enhancer;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        byte[] pcm = AudioFixtures.utterancePcm();
+        frames = new float[pcm.length / (AudioUtils.FRAME_SIZE * 2)][];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = AudioFixtures.toFloats(pcm, i * AudioUtils.FRAME_SIZE * 2, AudioUtils.FRAME_SIZE);
+        }
+        enhancer = new AudioEnhancer();
+    }
+
+    @Benchmark
+    public float[] process() {
+        float[] frame = frames[index];
+        index = (index + 1) % frames.length;
+        return enhancer.process(frame);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(AudioEnhancerBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,85 @@
+package com.xiaozhi.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * 基准测试和压测使用的音频，来自测试资源，不依赖网络和外部模型服务。
+ * 一段话为 audio/speech-24k-mono.mp3 解码后的3秒信号加1秒静音，16kHz单声道16位PCM，
+ * 循环输入时VAD会反复经历说话开始与结束。
+ */
+public final class AudioFixtures {
+
+    private static final String SPEECH = "/audio/speech-24k-mono.mp3";
+    private static final int SILENCE_MS = 1000;
+
+    private static byte[] utterance;
+
+    private AudioFixtures() {
+    }
+
+    /**
+     * 一段话的PCM
+     */
+    public static synchronized byte[] utterancePcm() {
+        if (utterance == null) {
+            byte[] speech = decodeSpeech();
+            byte[] pcm = new byte[speech.length + SILENCE_MS * AudioUtils.SAMPLE_RATE / 1000 * 2];
+            System.arraycopy(speech, 0, pcm, 0, speech.length);
+            utterance = pcm;
+        }
+        return utterance.clone();
+    }
+
+    /**
+     * 一段话中语音部分的时长（毫秒），之后为静音
+     */
+    public static long speechMillis() {
+        return utterancePcm().length / 2 * 1000L / AudioUtils.SAMPLE_RATE - SILENCE_MS;
+    }
+
+    /**
+     * 一段话编码为60ms的Opus帧，与设备上行的格式相同
+     */
+    public static List<byte[]> utteranceOpus() {
+        return new OpusProcessor().pcmToOpus(utterancePcm(), false);
+    }
+
+    /**
+     * 16位PCM转为 -1.0 到 1.0 的样本
+     */
+    public static float[] toFloats(byte[] pcm, int offset, int samples) {
+        float[] result = new float[samples];
+        for (int i = 0; i < samples; i++) {
+            int index = offset + i * 2;
+            result[i] = (short) ((pcm[index] & 0xFF) | (pcm[index + 1] << 8)) / 32768.0f;
+        }
+        return result;
+    }
+
+    private static byte[] decodeSpeech() {
+        Path mp3 = null;
+        try (InputStream in = AudioFixtures.class.getResourceAsStream(SPEECH)) {
+            if (in == null) {
+                throw new IllegalStateException("缺少测试音频 " + SPEECH);
+            }
+            mp3 = Files.createTempFile("speech-", ".mp3");
+            Files.copy(in, mp3, StandardCopyOption.REPLACE_EXISTING);
+            return AudioUtils.mp3ToPcm(mp3.toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (mp3 != null) {
+                try {
+                    Files.deleteIfExists(mp3);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.xiaozhi.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每个句子送入TTS前都要移除表情符号并映射为心情，这里测一个句子的平均耗时。
+ * 句子为LLM常见的回复：纯文本、带emoji、带颜文字、中英混合。
+ * <p>
+ * 运行：在IDE中执行 main 方法，或 mvn -P benchmark test
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EmojiUtilsBenchmark {
+
+    private static final List<String> SENTENCES = List.of(
+            "好的，我来给你讲一个笑话吧。",
+            "哈哈哈😂 这个笑话是不是很好笑？",
+            "今天北京的天气晴，气温在15到25度之间，适合外出活动哦😊",
+            "嗯嗯，我明白你的意思了(^_^)，我们可以一起想办法，别担心哦！",
+            "The weather today is sunny, with a high of 25 degrees. Don't forget your sunglasses! 😎",
+            "晚安啦🌙✨ 做个好梦～",
+            "呜呜(╥﹏╥)，你怎么不理我了？",
+            "好的，已经帮你把客厅的灯打开了💡，还有什么需要吗？");
+
+    private int index;
+
+    @Benchmark
+    public String processSentence() {
+        String sentence = SENTENCES.get(index);
+        index = (index + 1) % SENTENCES.size();
+        return EmojiUtils.processSentence(sentence, new ArrayList<>(2));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(EmojiUtilsBenchmark.class.getSimpleName()).build()).run();
+    }
+}
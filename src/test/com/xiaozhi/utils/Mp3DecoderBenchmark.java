@@ -0,0 +1,73 @@
+package com.xiaozhi.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 3秒24kHz单声道MP3（Edge TTS的输出格式）转16kHz PCM的耗时：进程内解码+重采样 vs ffmpeg子进程。
+ * ffmpeg 基准需要安装ffmpeg，未安装时只运行 inProcess：-Djmh.include=Mp3DecoderBenchmark.inProcess
+ * <p>
+ * 运行：在IDE中执行 main 方法，或 mvn -P benchmark test
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Mp3DecoderBenchmark {
+
+    private static final String FIXTURE = "/audio/speech-24k-mono.mp3";
+
+    private Path mp3File;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        mp3File = Files.createTempFile("speech-", ".mp3");
+        try (InputStream in = Mp3DecoderBenchmark.class.getResourceAsStream(FIXTURE)) {
+            if (in == null) {
+                throw new IllegalStateException("缺少测试音频 " + FIXTURE);
+            }
+            Files.copy(in, mp3File, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.createDirectories(Path.of(AudioUtils.AUDIO_PATH));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(mp3File);
+    }
+
+    @Benchmark
+    public byte[] inProcess() throws Exception {
+        return AudioUtils.mp3ToPcm(mp3File.toString());
+    }
+
+    @Benchmark
+    public byte[] ffmpeg() throws Exception {
+        return AudioUtils.mp3ToPcmByFfmpeg(mp3File.toString());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(Mp3DecoderBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,151 @@
+package com.xiaozhi.utils;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * MP3解码对比：进程内解码+重采样 vs ffmpeg子进程的时长与信噪比
+ * 测试音频 audio/speech-24k-mono.mp3 由 {@link #reference} 的同一公式在24kHz下生成，
+ * 以48kbps单声道编码（与Edge TTS输出格式一致），因此可以直接在16kHz下计算参考信号求信噪比。
+ */
+public class Mp3DecoderTest {
+
+    private static final String FIXTURE = "/audio/speech-24k-mono.mp3";
+    private static final double FIXTURE_SECONDS = 3.0;
+
+    private static Path mp3File;
+
+    @BeforeAll
+    static void copyFixture() throws Exception {
+        mp3File = Files.createTempFile("speech-", ".mp3");
+        try (InputStream in = Mp3DecoderTest.class.getResourceAsStream(FIXTURE)) {
+            assertNotNull(in, "缺少测试音频 " + FIXTURE);
+            Files.copy(in, mp3File, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @AfterAll
+    static void deleteFixture() throws Exception {
+        Files.deleteIfExists(mp3File);
+    }
+
+    @Test
+    void inProcessDecodeMatchesSource() throws Exception {
+        byte[] pcm = AudioUtils.mp3ToPcm(mp3File.toString());
+        double seconds = pcm.length / 2.0 / AudioUtils.SAMPLE_RATE;
+        assertEquals(FIXTURE_SECONDS, seconds, 0.1);
+
+        double snr = snr(pcm);
+        assertTrue(snr > 15, "SNR: " + snr);
+    }
+
+    @Test
+    void inProcessDecodeIsComparableToFfmpeg() throws Exception {
+        Assumptions.assumeTrue(ffmpegAvailable(), "未安装ffmpeg，跳过对比");
+        Files.createDirectories(Path.of(AudioUtils.AUDIO_PATH));
+
+        byte[] javaPcm = AudioUtils.mp3ToPcm(mp3File.toString());
+        byte[] ffmpegPcm = AudioUtils.mp3ToPcmByFfmpeg(mp3File.toString());
+        double javaSnr = snr(javaPcm);
+        double ffmpegSnr = snr(ffmpegPcm);
+
+        assertEquals(ffmpegPcm.length / 2.0, javaPcm.length / 2.0, AudioUtils.SAMPLE_RATE * 0.1);
+        assertTrue(javaSnr > ffmpegSnr - 1.0, "进程内 " + javaSnr + "dB, ffmpeg " + ffmpegSnr + "dB");
+    }
+
+    @Test
+    void resamplerPassesToneAndRejectsAlias() {
+        int inRate = 48000;
+        int outRate = AudioUtils.SAMPLE_RATE;
+        short[] pass = AudioResampler.resample(tone(1000, inRate, inRate), inRate, outRate);
+        short[] alias = AudioResampler.resample(tone(12000, inRate, inRate), inRate, outRate);
+
+        // 1kHz通带内误差（跳过两端滤波器暂态）
+        double signal = 0, noise = 0, aliasEnergy = 0;
+        for (int i = 200; i < pass.length - 200; i++) {
+            double expected = 10000 * Math.sin(2 * Math.PI * 1000 * i / (double) outRate);
+            signal += expected * expected;
+            noise += (pass[i] - expected) * (pass[i] - expected);
+            aliasEnergy += (double) alias[i] * alias[i];
+        }
+        assertTrue(10 * Math.log10(signal / noise) > 60, "通带SNR过低");
+        // 12kHz高于8kHz奈奎斯特频率，应被抗混叠滤波器滤除
+        assertTrue(10 * Math.log10(signal / Math.max(aliasEnergy, 1)) > 60, "混叠抑制不足");
+    }
+
+    @Test
+    void durationWithoutFfprobe() {
+        assertEquals(FIXTURE_SECONDS, AudioUtils.getAudioDuration(mp3File), 0.1);
+    }
+
+    /**
+     * 与测试音频生成时相同的信号：基频起伏的谐波序列乘以音节包络
+     */
+    private static double[] reference(int length, int rate) {
+        double[] out = new double[length];
+        double phase = 0;
+        for (int i = 0; i < length; i++) {
+            double t = (double) i / rate;
+            double f0 = 140 + 40 * Math.sin(2 * Math.PI * 0.7 * t);
+            phase += 2 * Math.PI * f0 / rate;
+            double env = 0.5 + 0.5 * Math.sin(2 * Math.PI * 3 * t);
+            double s = 0;
+            for (int h = 1; h <= 12; h++) {
+                s += Math.sin(h * phase) / h;
+            }
+            out[i] = s * env * 6000;
+        }
+        return out;
+    }
+
+    /**
+     * 搜索编解码延迟后计算信噪比
+     */
+    private static double snr(byte[] pcm) {
+        short[] decoded = new short[pcm.length / 2];
+        for (int i = 0; i < decoded.length; i++) {
+            decoded[i] = (short) ((pcm[i * 2] & 0xFF) | (pcm[i * 2 + 1] << 8));
+        }
+        int rate = AudioUtils.SAMPLE_RATE;
+        double[] ref = reference(decoded.length, rate);
+        int margin = rate / 5;
+        double best = Double.NEGATIVE_INFINITY;
+        for (int lag = 0; lag < rate / 10; lag++) {
+            double signal = 0, noise = 0;
+            for (int i = margin; i + lag < decoded.length - margin; i++) {
+                double diff = decoded[i + lag] - ref[i];
+                signal += ref[i] * ref[i];
+                noise += diff * diff;
+            }
+            best = Math.max(best, 10 * Math.log10(signal / Math.max(noise, 1)));
+        }
+        return best;
+    }
+
+    private static short[] tone(int freq, int rate, int length) {
+        short[] samples = new short[length];
+        for (int i = 0; i < length; i++) {
+            samples[i] = (short) (10000 * Math.sin(2 * Math.PI * freq * i / (double) rate));
+        }
+        return samples;
+    }
+
+    private static boolean ffmpegAvailable() {
+        try {
+            Process process = new ProcessBuilder("ffmpeg", "-version").redirectErrorStream(true).start();
+            process.getInputStream().readAllBytes();
+            return process.waitFor() == 0;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
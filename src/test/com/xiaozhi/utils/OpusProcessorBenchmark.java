@@ -0,0 +1,84 @@
+package com.xiaozhi.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单帧（60ms）Opus编解码耗时。设备上行的每一帧都要解码，TTS下行的每一帧都要编码。
+ * decode 为VAD使用的零分配路径，decodeToBytes 为返回字节数组的路径。
+ * <p>
+ * 运行：在IDE中执行 main 方法，或 mvn -P benchmark test
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OpusProcessorBenchmark {
+
+    private static final int FRAME_BYTES = AudioUtils.FRAME_SIZE * 2;
+
+    private List<byte[]> opusFrames;
+    private byte[][] pcmFrames;
+    private final short[] scratch = new short[OpusProcessor.MAX_DECODE_SAMPLES];
+    private OpusProcessor decoder;
+    private OpusProcessor encoder;
+    private int decodeIndex;
+    private int encodeIndex;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        opusFrames = AudioFixtures.utteranceOpus();
+        byte[] pcm = AudioFixtures.utterancePcm();
+        pcmFrames = new byte[pcm.length / FRAME_BYTES][];
+        for (int i = 0; i < pcmFrames.length; i++) {
+            pcmFrames[i] = new byte[FRAME_BYTES];
+            System.arraycopy(pcm, i * FRAME_BYTES, pcmFrames[i], 0, FRAME_BYTES);
+        }
+        decoder = new OpusProcessor();
+        encoder = new OpusProcessor();
+    }
+
+    @Benchmark
+    public int decode() throws Exception {
+        return decoder.opusToPcm(nextOpusFrame(), scratch);
+    }
+
+    @Benchmark
+    public byte[] decodeToBytes() throws Exception {
+        return decoder.opusToPcm(nextOpusFrame());
+    }
+
+    @Benchmark
+    public List<byte[]> encode() {
+        byte[] frame = pcmFrames[encodeIndex];
+        encodeIndex = (encodeIndex + 1) % pcmFrames.length;
+        return encoder.pcmToOpus(frame, true);
+    }
+
+    private byte[] nextOpusFrame() {
+        byte[] frame = opusFrames.get(decodeIndex);
+        decodeIndex = (decodeIndex + 1) % opusFrames.size();
+        return frame;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(OpusProcessorBenchmark.class.getSimpleName()).build()).run();
+    }
+}
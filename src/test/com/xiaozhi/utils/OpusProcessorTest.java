@@ -0,0 +1,87 @@
+package com.xiaozhi.utils;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * OpusProcessor 解码路径对比：逐帧新建解码器 vs 会话级复用解码器
+ */
+public class OpusProcessorTest {
+
+    private static final int FRAMES = 200;
+
+    private static List<byte[]> opusFrames;
+
+    @BeforeAll
+    static void encodeStream() {
+        // 生成一段 12 秒的扫频信号并编码为 Opus 帧，作为录制流使用
+        int totalSamples = AudioUtils.FRAME_SIZE * FRAMES;
+        byte[] pcm = new byte[totalSamples * 2];
+        for (int i = 0; i < totalSamples; i++) {
+            double t = (double) i / AudioUtils.SAMPLE_RATE;
+            short s = (short) (Math.sin(2 * Math.PI * (200 + 40 * t) * t) * 8000);
+            pcm[i * 2] = (byte) (s & 0xFF);
+            pcm[i * 2 + 1] = (byte) ((s >> 8) & 0xFF);
+        }
+        opusFrames = new OpusProcessor().pcmToOpus(pcm, false);
+        assertEquals(FRAMES, opusFrames.size());
+    }
+
+    @Test
+    void zeroAllocationPathIsBitIdentical() throws Exception {
+        // 字节数组路径与零分配路径分别使用独立解码器顺序解码同一条流
+        OpusProcessor reused = new OpusProcessor();
+        OpusProcessor sequential = new OpusProcessor();
+        short[] scratch = new short[OpusProcessor.MAX_DECODE_SAMPLES];
+
+        for (byte[] frame : opusFrames) {
+            byte[] expected = sequential.opusToPcm(frame);
+            int samples = reused.opusToPcm(frame, scratch);
+
+            assertEquals(expected.length, samples * 2);
+            for (int i = 0; i < samples; i++) {
+                short e = (short) ((expected[i * 2] & 0xFF) | (expected[i * 2 + 1] << 8));
+                assertEquals(e, scratch[i], "样本不一致: " + i);
+            }
+        }
+    }
+
+    @Test
+    void reusedDecoderAllocatesLess() throws Exception {
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().getId();
+
+        // 预热
+        perFrameProcessor();
+        reusedProcessor();
+
+        long before = mx.getThreadAllocatedBytes(tid);
+        perFrameProcessor();
+        long perFrame = mx.getThreadAllocatedBytes(tid) - before;
+
+        before = mx.getThreadAllocatedBytes(tid);
+        reusedProcessor();
+        long reused = mx.getThreadAllocatedBytes(tid) - before;
+
+        assertTrue(reused < perFrame, "复用解码器分配 " + reused + " 字节，逐帧新建分配 " + perFrame + " 字节");
+    }
+
+    private void perFrameProcessor() throws Exception {
+        for (byte[] frame : opusFrames) {
+            new OpusProcessor().opusToPcm(frame);
+        }
+    }
+
+    private void reusedProcessor() throws Exception {
+        OpusProcessor processor = new OpusProcessor();
+        short[] scratch = new short[OpusProcessor.MAX_DECODE_SAMPLES];
+        for (byte[] frame : opusFrames) {
+            processor.opusToPcm(frame, scratch);
+        }
+    }
+}